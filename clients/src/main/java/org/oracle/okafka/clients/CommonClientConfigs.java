@@ -61,6 +61,24 @@ public class CommonClientConfigs extends org.apache.kafka.clients.CommonClientCo
 	public static final String ORACLE_CONSUMER_LIGHTWEIGHT = "oracle.consumer.lightweight";
 	public static final String ORACLE_CONSUMER_LIGHTWEIGHT_DOC = "Creates a light weight subscriber";
 	
+	public static final String ORACLE_CONNECTION_POOL = "oracle.connection.pool";
+	public static final String ORACLE_CONNECTION_POOL_DOC = "If true, database connections are borrowed from a connection pool shared by all clients of the JVM "
+			+ "connecting to the same database instance with the same <code>oracle.net.tns_admin</code>. The pool keeps connections open in advance, "
+			+ "so that connecting and reconnecting after a failover does not wait for a new login. Connections of producers and admin clients are "
+			+ "given back to the pool when closed. Connections of consumer sessions are closed, as their database session is bound to the consumer. "
+			+ "The pool closes its connections once every client using it is closed.";
+	public static final String ORACLE_CONNECTION_POOL_INITIAL_SIZE = "oracle.connection.pool.initial.size";
+	public static final String ORACLE_CONNECTION_POOL_INITIAL_SIZE_DOC = "The number of idle connections the connection pool opens in background, when created and whenever "
+			+ "a connection is borrowed. Set by the first client creating the pool.";
+	public static final String ORACLE_CONNECTION_POOL_MAX_IDLE = "oracle.connection.pool.max.idle";
+	public static final String ORACLE_CONNECTION_POOL_MAX_IDLE_DOC = "The maximum number of idle connections kept by the connection pool. Set by the first client creating the pool.";
+	
+	public static final String ORACLE_METADATA_SHARED = "oracle.metadata.shared";
+	public static final String ORACLE_METADATA_SHARED_DOC = "If true, metadata fetched from the database is shared by all clients of the JVM with the same "
+			+ "bootstrap servers, service name, tns alias and <code>oracle.net.tns_admin</code>. A client whose metadata is due for refresh takes "
+			+ "the metadata fetched by another client if it is not older than <code>metadata.max.age.ms</code> and covers its topics, and "
+			+ "only one client at a time fetches metadata from the database.";
+	
 	/*
     public static final String METADATA_MAX_AGE_CONFIG = "metadata.max.age.ms";
     public static final String METADATA_MAX_AGE_DOC = "The period of time in milliseconds after which we force a refresh of metadata even if we haven't seen any partition leadership changes to proactively discover any new brokers or partitions.";
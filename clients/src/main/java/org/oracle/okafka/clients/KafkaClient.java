@@ -30,13 +30,16 @@
 package org.oracle.okafka.clients;
 
 import java.io.Closeable;
+import java.util.Map;
 
 import org.oracle.okafka.common.Node;
 import org.apache.kafka.clients.ClientRequest;
 import org.apache.kafka.clients.ClientResponse;
 import org.apache.kafka.clients.RequestCompletionHandler;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.AuthenticationException;
 import org.oracle.okafka.common.requests.AbstractRequest;
+import org.oracle.okafka.common.utils.MessageIdConverter.OKafkaOffset;
 
 /**
  * The interface for {@link NetworkClient}
@@ -176,4 +179,16 @@ public interface KafkaClient extends Closeable {
     	// NO-OP for all AQKafkaAdmin AQKafkaConsumer and AQKafkaProuducer
     }
 
+    /**
+     * Checks in one call to the given node whether the first message of each retried batch was already published.
+     *
+     * @param node the node the batches were published to
+     * @param firstMsgIds first message id of each retried batch
+     * @return for each partition, true if its message id exists. Null if the node does not support batched checks.
+     */
+    default Map<TopicPartition, Boolean> checkDuplicates(Node node, Map<TopicPartition, OKafkaOffset> firstMsgIds) throws Exception
+    {
+    	return null;
+    }
+
 }
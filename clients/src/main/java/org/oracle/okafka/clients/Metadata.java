@@ -54,6 +54,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import java.sql.SQLException;
 import java.util.StringTokenizer;
@@ -62,6 +63,9 @@ import java.util.StringTokenizer;
  * A class encapsulating some of the logic around metadata.
  * <p>
  * This class is shared by the client thread (for partitioning) and the background sender thread.
+ * <p>
+ * The cluster, its version and the topic parameters are kept in an immutable {@link MetadataSnapshot} replaced on every
+ * update. Updates are synchronized; reads used when sending and consuming records take the current snapshot without locking.
  *
  * Metadata is maintained for only a subset of topics, which can be added to over time. When we request metadata for a
  * topic we don't have any metadata for it will trigger a metadata update.
@@ -79,12 +83,11 @@ public final class Metadata implements Closeable {
 
 	private final long refreshBackoffMs;
 	private final long metadataExpireMs;
-	private int version;
 	private long lastRefreshMs;
 	private long lastSuccessfulRefreshMs;
+	private long updateRequestedMs;
 	private AuthenticationException authenticationException;
-	private Cluster cluster;
-	private boolean isBootStrap;
+	private volatile MetadataSnapshot snapshot;
 	private boolean needUpdate;
 	/* Topics with expiry time */
 	private final Map<String, Long> topics;
@@ -95,11 +98,13 @@ public final class Metadata implements Closeable {
 	private final boolean topicExpiryEnabled;
 	private boolean isClosed;
 	private final AbstractConfig configs;
-	HashMap<String, Node> clusterLeaderMap = new HashMap<String, Node>();
+	final Map<String, Node> clusterLeaderMap = new ConcurrentHashMap<String, Node>();
 	private KafkaException fatalException;
 	int dbMajorVersion = 23;
 	int dbMinorVersion = 1;
-	public final HashMap<String, TopicTeqParameters> topicParaMap = new HashMap<>();
+	/* Metadata shared with the other clients of the JVM, null if not enabled */
+	private final SharedMetadata shared;
+	private int sharedVersion = 0;
 	
 	public Metadata(long refreshBackoffMs, long metadataExpireMs, boolean allowAutoTopicCreation, AbstractConfig configs) {
 		this(refreshBackoffMs, metadataExpireMs, allowAutoTopicCreation, false, new ClusterResourceListeners(), configs);
@@ -123,43 +128,38 @@ public final class Metadata implements Closeable {
 		this.topicExpiryEnabled = topicExpiryEnabled;
 		this.lastRefreshMs = 0L;
 		this.lastSuccessfulRefreshMs = 0L;
-		this.version = 0;
-		this.cluster = Cluster.empty();
+		this.snapshot = new MetadataSnapshot(Cluster.empty(), 0, true, Collections.emptyMap());
 		this.needUpdate = false;
-		this.topics = new HashMap<>();
+		this.topics = new ConcurrentHashMap<>();
 		this.listeners = new ArrayList<>();
 		this.clusterResourceListeners = clusterResourceListeners;
 		this.needMetadataForAllTopics = false;
 		this.isClosed = false;
 		this.configs = configs;
-		this.isBootStrap=true;
+		this.shared = configs != null && SharedMetadata.isEnabled(configs) ? SharedMetadata.acquire(configs) : null;
 	}
 
 	/**
 	 * Get the current cluster info without blocking
 	 */
-	public synchronized Cluster fetch() {
-		return this.cluster;
+	public Cluster fetch() {
+		return this.snapshot.cluster;
 	}
 
 	/**
-	 * Add the topic to maintain in the metadata. If topic expiry is enabled, expiry time
-	 * will be reset on the next update.
+	 * Add the topic to maintain in the metadata.
 	 */
-	public synchronized void add(String topic) {
-		Objects.requireNonNull(topic, "topic cannot be null");
-		if (topics.put(topic, TOPIC_EXPIRY_NEEDS_UPDATE) == null) {
-			// requestUpdateForNewTopics();
-		}
+	public void add(String topic) {
+		add(topic, TOPIC_EXPIRY_NEEDS_UPDATE);
 	}
 	// Changes for 2.8.1  See if requestUpdateForNewTopics needs to be invoked
 	/**
-	 * Add the topic to maintain in the metadata. If topic expiry is enabled, expiry time
-	 * will be reset on the next update.
+	 * Add the topic to maintain in the metadata. Topics are not expired, so the expiry time of a topic already
+	 * maintained is left as is and adding it does not write to the topic map.
 	 */
-	public synchronized void add(String topic, long timeout) {
+	public void add(String topic, long timeout) {
 		Objects.requireNonNull(topic, "topic cannot be null");
-		if (topics.put(topic, timeout) == null) {
+		if (!topics.containsKey(topic) && topics.putIfAbsent(topic, timeout) == null) {
 			// requestUpdateForNewTopics();
 		}
 	}
@@ -181,8 +181,10 @@ public final class Metadata implements Closeable {
 	 * Request an update of the current cluster metadata info, return the current version before the update
 	 */
 	public synchronized int requestUpdate() {
+		if (!this.needUpdate)
+			this.updateRequestedMs = System.currentTimeMillis();
 		this.needUpdate = true;
-		return this.version;
+		return this.snapshot.version;
 	}
 
 	/**
@@ -215,7 +217,7 @@ public final class Metadata implements Closeable {
 
 		long begin = System.currentTimeMillis();
 		long remainingWaitMs = maxWaitMs;
-		while ((this.version <= lastVersion) && !isClosed()) {
+		while ((this.snapshot.version <= lastVersion) && !isClosed()) {
 			AuthenticationException ex = getAndClearAuthenticationException();
 			if (ex != null)
 				throw ex;
@@ -248,7 +250,7 @@ public final class Metadata implements Closeable {
 	/**
 	 * Get the list of topics we are currently maintaining metadata for
 	 */
-	public synchronized Set<String> topics() {
+	public Set<String> topics() {
 		return new HashSet<>(this.topics.keySet());
 	}
 
@@ -257,7 +259,7 @@ public final class Metadata implements Closeable {
 	 * @param topic topic to check
 	 * @return true if the topic exists, false otherwise
 	 */
-	public synchronized boolean containsTopic(String topic) {
+	public boolean containsTopic(String topic) {
 		return this.topics.containsKey(topic);
 	}
 
@@ -277,14 +279,14 @@ public final class Metadata implements Closeable {
 		if (isClosed())
 			throw new IllegalStateException("Update requested after metadata close");
 
+		MetadataSnapshot current = this.snapshot;
+		int newVersion = current.version + 1;
 		this.needUpdate = false;
 		this.lastRefreshMs = now;
 		this.lastSuccessfulRefreshMs = now;
-		this.version += 1;
-		if(this.isBootStrap)
-			for(org.apache.kafka.common.Node n : this.cluster.nodes())
+		if(current.bootstrap)
+			for(org.apache.kafka.common.Node n : current.cluster.nodes())
 				((Node)n).setBootstrapFlag(false);
-		this.isBootStrap = bootstrap;
 		
 		/* if (topicExpiryEnabled) {
             // Handle expiry of topics from the metadata refresh set.
@@ -304,16 +306,16 @@ public final class Metadata implements Closeable {
 		
 		if(bootstrap)
 		{
-			this.cluster = newCluster;
-			log.debug("Updated cluster metadata version {} to {}", this.version, this.cluster);
+			this.snapshot = new MetadataSnapshot(newCluster, newVersion, true, current.teqParameters);
+			log.debug("Updated cluster metadata version {} to {}", newVersion, newCluster);
 			return;
 		}
 
 		
-		String previousClusterId = cluster.clusterResource().clusterId();
+		String previousClusterId = current.cluster.clusterResource().clusterId();
 		Node newLeaderNode = null;
 		
-		newLeaderNode = getLeaderNode(this.cluster, newCluster); 
+		newLeaderNode = getLeaderNode(current.cluster, current.version, newCluster); 
 		
 		/* If a node previously present is not available in newCluster, then
 		 * we still want to keep it because 
@@ -322,7 +324,7 @@ public final class Metadata implements Closeable {
 		newClusterNodes.addAll(newCluster.nodes());
 		
 		boolean oldNodesAdded = false;
-		for(org.apache.kafka.common.Node oldNode : cluster.nodes())
+		for(org.apache.kafka.common.Node oldNode : current.cluster.nodes())
 		{
 			org.apache.kafka.common.Node nodeById = newCluster.nodeById(oldNode.id());
 			if(nodeById == null)
@@ -344,18 +346,20 @@ public final class Metadata implements Closeable {
 			newCluster = newClusterWithOldNodes;
 		}
 		
+		Cluster updatedCluster;
 		if (this.needMetadataForAllTopics) {
 			log.debug("needMetadataForAllTopics = " + needMetadataForAllTopics);
 		
 			// the listener may change the interested topics, which could cause another metadata refresh.
 			// If we have already fetched all topics, however, another fetch should be unnecessary.
 			this.needUpdate = false;
-			this.cluster = getClusterForCurrentTopics(newCluster, null);
+			updatedCluster = getClusterForCurrentTopics(newCluster, null);
 		} else {
-			this.cluster = newCluster;
+			updatedCluster = newCluster;
 		}
-		//Changes for 2.8.1:
-		setLeader(newLeaderNode);
+		//Changes for 2.8.1: Set the leader before publishing the version, so that readers of the version find its leader
+		setLeader(updatedCluster, newVersion, newLeaderNode);
+		this.snapshot = new MetadataSnapshot(updatedCluster, newVersion, false, current.teqParameters);
 		//clusterLeaderMap.put(cluster.clusterResource().clusterId()+"_"+version, newLeaderNode);
 
 		// The bootstrap cluster is guaranteed not to have any useful information
@@ -367,31 +371,90 @@ public final class Metadata implements Closeable {
 		}
 		
 		notifyAll();
-		log.debug("Updated cluster metadata version {} to {}", this.version, this.cluster);
+		log.debug("Updated cluster metadata version {} to {}", newVersion, updatedCluster);
 	}
 	
-	public void updateTeqParameters(Map<String, TopicTeqParameters> teqParams) {
+	/**
+	 * Adds the parameters of topics not known yet. Parameters of a known topic are kept.
+	 */
+	public synchronized void updateTeqParameters(Map<String, TopicTeqParameters> teqParams) {
+		MetadataSnapshot current = this.snapshot;
+		Map<String, TopicTeqParameters> updated = null;
 		for (Map.Entry<String, TopicTeqParameters> entry : teqParams.entrySet()) {
-			if (!this.topicParaMap.containsKey(entry.getKey())) {
-				topicParaMap.put(entry.getKey(), entry.getValue());
+			if (entry.getValue() != null && !current.teqParameters.containsKey(entry.getKey())) {
+				if (updated == null)
+					updated = new HashMap<>(current.teqParameters);
+				updated.put(entry.getKey(), entry.getValue());
 			}
 		}
+		if (updated != null)
+			this.snapshot = new MetadataSnapshot(current.cluster, current.version, current.bootstrap,
+					Collections.unmodifiableMap(updated));
+	}
+
+	/**
+	 * Returns the TEQ parameters of the topic, or null if not fetched yet.
+	 */
+	public TopicTeqParameters topicParameters(String topic) {
+		return this.snapshot.teqParameters.get(topic);
 	}
 
-	private  Node  getLeaderNode(Cluster oldCluster, Cluster newCluster)
+	/**
+	 * Updates the cluster metadata from the snapshot of the shared metadata, if it was published after this metadata was
+	 * last updated or an update was requested, is not older than the metadata max age and covers the topics of this client.
+	 *
+	 * @param now current time in milliseconds
+	 * @return true if the metadata was updated
+	 */
+	public synchronized boolean maybeUpdateFromShared(long now) {
+		if (shared == null || isClosed() || this.needMetadataForAllTopics)
+			return false;
+		SharedMetadata.Snapshot snapshot = shared.snapshot();
+		if (snapshot == null || snapshot.version() == this.sharedVersion)
+			return false;
+		long updateTimeMs = snapshot.updateTimeMs();
+		if (needUpdate ? updateTimeMs < this.updateRequestedMs : updateTimeMs <= this.lastSuccessfulRefreshMs)
+			return false;
+		if (now - updateTimeMs >= this.metadataExpireMs || !snapshot.covers(this.topics.keySet()))
+			return false;
+
+		log.debug("Update Metadata from shared metadata version {}", snapshot.version());
+		this.sharedVersion = snapshot.version();
+		update(snapshot.cluster(), null, updateTimeMs, false);
+		updateTeqParameters(snapshot.teqParameters());
+		return true;
+	}
+
+	/**
+	 * Returns true if this client should fetch the metadata from the database, false if another client sharing
+	 * the metadata is fetching it.
+	 */
+	public boolean tryRefreshShared(long now, long leaseMs) {
+		return shared == null || shared.tryRefresh(this, now, leaseMs);
+	}
+
+	/**
+	 * Publishes metadata fetched from the database to the other clients sharing it.
+	 */
+	public void publishShared(Cluster newCluster, Map<String, TopicTeqParameters> teqParams, long now) {
+		if (shared != null)
+			shared.publish(this, newCluster, teqParams, now);
+	}
+
+	private  Node  getLeaderNode(Cluster oldCluster, int oldVersion, Cluster newCluster)
 	{
 		if(oldCluster == null || newCluster == null)
 			return null;
 
-		Node oldLeader = getLeader(this.version-1);
+		Node oldLeader = getLeader(oldCluster.clusterResource().clusterId(), oldVersion);
 		
 		if(oldLeader != null)
 		{
-			log.debug("Update Metadata: OldLeaderNode as of version"+(this.version-1)+": " + oldLeader);
+			log.debug("Update Metadata: OldLeaderNode as of version"+oldVersion+": " + oldLeader);
 		}
 		else
 			log.debug("Update Metadata: No old leader as of now for cluster " + 
-					cluster.clusterResource().clusterId() + " for version " + (this.version-1));
+					oldCluster.clusterResource().clusterId() + " for version " + oldVersion);
 		
 		if(oldLeader == null)
 		{
@@ -482,6 +545,8 @@ public final class Metadata implements Closeable {
 	public synchronized void failedUpdate(long now, AuthenticationException authenticationException) {
 		this.lastRefreshMs = now;
 		this.authenticationException = authenticationException;
+		if (shared != null)
+			shared.refreshFailed(this);
 		if (authenticationException != null)
 			this.notifyAll();
 	}
@@ -489,8 +554,8 @@ public final class Metadata implements Closeable {
 	/**
 	 * @return The current metadata version
 	 */
-	public synchronized int version() {
-		return this.version;
+	public int version() {
+		return this.snapshot.version;
 	}
 
 	/**
@@ -543,6 +608,8 @@ public final class Metadata implements Closeable {
 	 */
 	@Override
 	public synchronized void close() {
+		if (!this.isClosed && shared != null)
+			shared.release();
 		this.isClosed = true;
 		/*try {
         	this.cluster.close();
@@ -640,32 +707,35 @@ public final class Metadata implements Closeable {
 	 */
 	public Node getNodeById(int id)
 	{
-		if(cluster!=null)
-			return (Node)cluster.nodeById(id);
-		return null;
+		return (Node)this.snapshot.cluster.nodeById(id);
 	}
 
 	public void setLeader(Node leaderNode)
 	{
-		if(cluster != null)
-		{
+		MetadataSnapshot current = this.snapshot;
+		setLeader(current.cluster, current.version, leaderNode);
+	}
+
+	private void setLeader(Cluster cluster, int version, Node leaderNode)
+	{
+		// ConcurrentHashMap does not take null values
+		if(leaderNode == null)
+			clusterLeaderMap.remove(cluster.clusterResource().clusterId()+"_"+version);
+		else
 			clusterLeaderMap.put(cluster.clusterResource().clusterId()+"_"+version, leaderNode);
-			log.debug("Leader Node for Version " +
-						cluster.clusterResource().clusterId()+"_"+version + ":" + leaderNode);
-		}
+		log.debug("Leader Node for Version " +
+					cluster.clusterResource().clusterId()+"_"+version + ":" + leaderNode);
 	}
 
 	public Node getLeader()
 	{
-		return getLeader(this.version);
+		MetadataSnapshot current = this.snapshot;
+		return getLeader(current.cluster.clusterResource().clusterId(), current.version);
 	}
 
 	public Node getLeader(int version)
 	{
-		if(cluster != null)
-			return getLeader(cluster.clusterResource().clusterId(), version);
-		else
-			return null;
+		return getLeader(this.snapshot.cluster.clusterResource().clusterId(), version);
 	}
 
 	public Node getLeader(String clusterId, int version)
@@ -675,7 +745,7 @@ public final class Metadata implements Closeable {
 
 	public boolean isBootstrap()
 	{
-		return isBootStrap;
+		return this.snapshot.bootstrap;
 	}
 
 	/**
@@ -730,4 +800,20 @@ public final class Metadata implements Closeable {
 		return this.dbMinorVersion;
 	}
 
+	/**
+	 * Immutable state of the metadata, replaced as a whole on update.
+	 */
+	private static final class MetadataSnapshot {
+		final Cluster cluster;
+		final int version;
+		final boolean bootstrap;
+		final Map<String, TopicTeqParameters> teqParameters;
+
+		MetadataSnapshot(Cluster cluster, int version, boolean bootstrap, Map<String, TopicTeqParameters> teqParameters) {
+			this.cluster = cluster;
+			this.version = version;
+			this.bootstrap = bootstrap;
+			this.teqParameters = teqParameters;
+		}
+	}
 }
@@ -39,6 +39,7 @@ import org.apache.kafka.clients.MetadataUpdater;
 import org.apache.kafka.clients.RequestCompletionHandler;
 import org.apache.kafka.common.Cluster;
 import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.AuthenticationException;
 import org.oracle.okafka.common.errors.ConnectionException;
 import org.oracle.okafka.common.errors.InvalidLoginCredentialsException;
@@ -48,6 +49,7 @@ import org.oracle.okafka.common.protocol.ApiKeys;
 import org.oracle.okafka.common.requests.AbstractRequest;
 import org.oracle.okafka.common.requests.MetadataRequest;
 import org.oracle.okafka.common.requests.MetadataResponse;
+import org.oracle.okafka.common.utils.MessageIdConverter.OKafkaOffset;
 import org.apache.kafka.common.utils.LogContext;
 import org.apache.kafka.common.utils.Time;
 import org.slf4j.Logger;
@@ -67,7 +69,8 @@ import javax.jms.JMSSecurityException;
  * A network client for synchronous request/response network i/o. This is an internal class used to implement the
  * user-facing producer and consumer clients.
  * <p>
- * This class is not thread-safe!
+ * This class is not thread-safe! Only the methods which read or update the connection state of the nodes are
+ * synchronized, so that a producer with pipelined produce enabled can send produce requests from several threads.
  */
 public class NetworkClient implements KafkaClient {
 
@@ -242,7 +245,7 @@ public class NetworkClient implements KafkaClient {
 	 * @return True if we are ready to send to the given node
 	 */
 	// @Override
-	public boolean ready(Node node, long now) {
+	public synchronized boolean ready(Node node, long now) {
 		if (node.isEmpty())
 			throw new IllegalArgumentException("Cannot connect to empty node " + node);
 		if (isReady(node, now))
@@ -256,7 +259,7 @@ public class NetworkClient implements KafkaClient {
 	}
 
 	// Visible for testing
-	boolean canConnect(Node node, long now) {
+	synchronized boolean canConnect(Node node, long now) {
 		return connectionStates.canConnect(node, now);
 	}
 
@@ -281,7 +284,7 @@ public class NetworkClient implements KafkaClient {
 	 * @param node the node
 	 */
 	//@Override
-	public void close(Node node) {
+	public synchronized void close(Node node) {
 		aqClient.close(node);
 		connectionStates.remove(node);
 	}
@@ -296,7 +299,7 @@ public class NetworkClient implements KafkaClient {
 	 * @return The number of milliseconds to wait.
 	 */
 	// @Override
-	public long connectionDelay(Node node, long now) {
+	public synchronized long connectionDelay(Node node, long now) {
 		return connectionStates.connectionDelay(node, now);
 	}
 
@@ -306,7 +309,7 @@ public class NetworkClient implements KafkaClient {
 	 * @param now the current time in ms
 	 */
 	// @Override
-	public long pollDelayMs(Node node, long now) {
+	public synchronized long pollDelayMs(Node node, long now) {
 		return connectionStates.pollDelayMs(node, now);
 	}
 
@@ -319,7 +322,7 @@ public class NetworkClient implements KafkaClient {
 	 * @return true iff the connection has failed and the node is disconnected
 	 */
 	// @Override
-	public boolean connectionFailed(Node node) {
+	public synchronized boolean connectionFailed(Node node) {
 		return connectionStates.isDisconnected(node);
 	}
 
@@ -343,7 +346,7 @@ public class NetworkClient implements KafkaClient {
 	 * @return true if the node is ready
 	 */
 	// @Override
-	public boolean isReady(Node node, long now) {
+	public synchronized boolean isReady(Node node, long now) {
 		// if we need to update our metadata now declare all requests unready to make metadata requests first
 		// priority
 		// isReady will return false if metadata is due for update.  Alternative is to not check for this and handle on the caller partreturn canSendRequest(node, now);
@@ -440,7 +443,7 @@ public class NetworkClient implements KafkaClient {
 	}
 
 	// @Override
-	public boolean hasReadyNodes(long now) {
+	public synchronized boolean hasReadyNodes(long now) {
 		return connectionStates.hasReadyNodes(now);
 	}
 
@@ -449,6 +452,11 @@ public class NetworkClient implements KafkaClient {
 		return metadataUpdater.maybeUpdate(now);
 	}
 
+	@Override
+	public Map<TopicPartition, Boolean> checkDuplicates(Node node, Map<TopicPartition, OKafkaOffset> firstMsgIds) throws Exception {
+		return aqClient.checkDuplicates(node, firstMsgIds);
+	}
+
 	/**
 	 * Close the network client
 	 */
@@ -464,7 +472,7 @@ public class NetworkClient implements KafkaClient {
 	 * @return The node ready.
 	 */
 	//  @Override
-	public Node leastLoadedNode(long now) {
+	public synchronized Node leastLoadedNode(long now) {
 
 		List<Node> nodes = convertToOracleNodes(this.metadataUpdater.fetchNodes());
 		log.info("Available Nodes " + nodes.size());
@@ -543,7 +551,7 @@ public class NetworkClient implements KafkaClient {
 	}
 
 	//  @Override
-	public void disconnected(Node node, long now) {
+	public synchronized void disconnected(Node node, long now) {
 		this.aqClient.close(node);
 		this.connectionStates.disconnected(node, now);
 	}
@@ -552,7 +560,7 @@ public class NetworkClient implements KafkaClient {
 	/**
 	 * Initiate a connection to the given node
 	 */
-	public boolean initiateConnect(Node node, long now) {
+	public synchronized boolean initiateConnect(Node node, long now) {
 		try {
 			log.info("Initiating connection to node {}", node);
 			this.connectionStates.connecting(node, now);
@@ -666,6 +674,11 @@ public class NetworkClient implements KafkaClient {
 			if (metadataTimeout > 0) {
 				return metadataTimeout;
 			}
+			// Take the metadata fetched by another client of the JVM, or wait for it while that client fetches it
+			if (metadata.maybeUpdateFromShared(now))
+				return metadata.timeToNextUpdate(now);
+			if (!metadata.tryRefreshShared(now, defaultRequestTimeoutMs))
+				return reconnectBackoffMs;
 			Node node = leastLoadedNode(now);
 			if (node == null)  
 			{
@@ -725,6 +738,7 @@ public class NetworkClient implements KafkaClient {
 			if (response.getException() == null && errors.isEmpty()) {
 				this.metadata.update(cluster, null, now, false);
 				this.metadata.updateTeqParameters(response.teqParameters());
+				this.metadata.publishShared(cluster, response.teqParameters(), now);
 			} else {
 				log.debug("Ignoring empty metadata response with correlation id {}.", requestHeader.correlationId());
 				this.metadata.failedUpdate(now, null);
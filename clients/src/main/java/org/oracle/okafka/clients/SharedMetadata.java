@@ -0,0 +1,256 @@
+/*
+ ** OKafka Java Client version 23.4.
+ **
+ ** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+ ** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+
+package org.oracle.okafka.clients;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.config.AbstractConfig;
+import org.oracle.okafka.common.Node;
+import org.oracle.okafka.common.config.SslConfigs;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Metadata shared by all producers, consumers and admin clients of the JVM which connect to the same database with
+ * the same bootstrap servers, service, tns alias and credentials. Enabled by <code>oracle.metadata.shared</code>.
+ *
+ * A client which fetched metadata from the database publishes it here. The cluster of the latest snapshot contains the
+ * nodes of the latest fetch and the partitions of every topic fetched so far, each from its latest fetch. When the
+ * metadata of another client is due for refresh, it takes the snapshot instead of querying the database if the snapshot
+ * is recent enough and covers its topics. Only one client at a time refreshes from the database; the others wait for its
+ * snapshot until the refresh lease expires.
+ *
+ * Snapshots are immutable. Clients update the nodes they connect to, so nodes are copied when published and when taken.
+ */
+public final class SharedMetadata {
+
+	private static final Logger log = LoggerFactory.getLogger(SharedMetadata.class);
+	private static final Map<String, SharedMetadata> registry = new HashMap<>();
+
+	private final String key;
+	private int refCount = 0;
+	private volatile Snapshot snapshot = null;
+	private Object refreshOwner = null;
+	private long refreshLeaseEndMs = 0;
+
+	private SharedMetadata(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * Returns the shared metadata of the database the configs connect to, and registers one more client using it.
+	 * Every call must be matched by a call to {@link #release()}.
+	 */
+	public static SharedMetadata acquire(AbstractConfig configs) {
+		String key = key(configs);
+		synchronized (registry) {
+			SharedMetadata shared = registry.get(key);
+			if (shared == null) {
+				shared = new SharedMetadata(key);
+				registry.put(key, shared);
+				log.debug("Created shared metadata for {}", key);
+			}
+			shared.refCount++;
+			return shared;
+		}
+	}
+
+	/**
+	 * Unregisters a client. The shared metadata is dropped when no client uses it anymore.
+	 */
+	public void release() {
+		synchronized (registry) {
+			if (--refCount <= 0 && registry.get(key) == this) {
+				registry.remove(key);
+				log.debug("Dropped shared metadata for {}", key);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the configs ask for metadata shared with the other clients of the JVM.
+	 */
+	public static boolean isEnabled(AbstractConfig configs) {
+		return configs.getBoolean(CommonClientConfigs.ORACLE_METADATA_SHARED);
+	}
+
+	private static String key(AbstractConfig configs) {
+		StringBuilder key = new StringBuilder();
+		for (String name : new String[] { CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG, CommonClientConfigs.ORACLE_SERVICE_NAME,
+				CommonClientConfigs.ORACLE_INSTANCE_NAME, SslConfigs.TNS_ALIAS, CommonClientConfigs.SECURITY_PROTOCOL_CONFIG,
+				CommonClientConfigs.ORACLE_NET_TNS_ADMIN }) {
+			key.append(configs.values().get(name)).append('|');
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns the latest snapshot, or null if no client has published metadata yet.
+	 */
+	public Snapshot snapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Publishes metadata fetched from the database by a client, and ends its refresh lease.
+	 *
+	 * @param cluster nodes and partitions of the topics fetched
+	 * @param teqParameters parameters of the topics fetched
+	 * @param nowMs time of the fetch
+	 */
+	public synchronized void publish(Object client, Cluster cluster, Map<String, TopicTeqParameters> teqParameters, long nowMs) {
+		Snapshot current = this.snapshot;
+		Cluster merged = cluster;
+		Map<String, TopicTeqParameters> mergedParameters = new HashMap<>();
+		if (current != null) {
+			// Keep the partitions of topics fetched by other clients, with the nodes of this fetch
+			Map<Integer, org.apache.kafka.common.Node> nodesById = new HashMap<>();
+			for (org.apache.kafka.common.Node node : cluster.nodes())
+				nodesById.put(node.id(), node);
+			List<PartitionInfo> partitions = new ArrayList<>();
+			for (String topic : cluster.topics())
+				partitions.addAll(cluster.partitionsForTopic(topic));
+			for (String topic : current.cluster.topics()) {
+				if (cluster.topics().contains(topic))
+					continue;
+				for (PartitionInfo p : current.cluster.partitionsForTopic(topic)) {
+					org.apache.kafka.common.Node leader = p.leader() == null ? null : nodesById.getOrDefault(p.leader().id(), p.leader());
+					partitions.add(new PartitionInfo(p.topic(), p.partition(), leader, p.replicas(), p.inSyncReplicas(), p.offlineReplicas()));
+				}
+			}
+			merged = new Cluster(cluster.clusterResource().clusterId(), cluster.nodes(), partitions,
+					cluster.unauthorizedTopics(), cluster.invalidTopics(), cluster.internalTopics(), cluster.controller());
+			mergedParameters.putAll(current.teqParameters);
+		}
+		if (teqParameters != null)
+			mergedParameters.putAll(teqParameters);
+		this.snapshot = new Snapshot(copy(merged), Collections.unmodifiableMap(mergedParameters), nowMs,
+				current == null ? 1 : current.version + 1);
+		if (refreshOwner == client)
+			refreshOwner = null;
+		log.debug("Published shared metadata version {} with topics {}", snapshot.version, merged.topics());
+	}
+
+	/**
+	 * Acquires the lease to refresh the metadata from the database, unless another client holds an unexpired one.
+	 *
+	 * @return true if the client should refresh from the database
+	 */
+	public synchronized boolean tryRefresh(Object client, long nowMs, long leaseMs) {
+		if (refreshOwner != null && refreshOwner != client && nowMs < refreshLeaseEndMs)
+			return false;
+		refreshOwner = client;
+		refreshLeaseEndMs = nowMs + leaseMs;
+		return true;
+	}
+
+	/**
+	 * Ends the refresh lease of a client whose refresh failed, so that another client can refresh.
+	 */
+	public synchronized void refreshFailed(Object client) {
+		if (refreshOwner == client)
+			refreshOwner = null;
+	}
+
+	/**
+	 * Returns a copy of the cluster with copies of its nodes. Partitions and the controller refer to the copied nodes.
+	 */
+	static Cluster copy(Cluster cluster) {
+		Map<org.apache.kafka.common.Node, Node> copies = new IdentityHashMap<>();
+		List<org.apache.kafka.common.Node> nodes = new ArrayList<>();
+		for (org.apache.kafka.common.Node node : cluster.nodes())
+			nodes.add(copy(node, copies));
+		List<PartitionInfo> partitions = new ArrayList<>();
+		for (String topic : cluster.topics()) {
+			for (PartitionInfo p : cluster.partitionsForTopic(topic)) {
+				partitions.add(new PartitionInfo(p.topic(), p.partition(), copy(p.leader(), copies), copy(p.replicas(), copies),
+						copy(p.inSyncReplicas(), copies), copy(p.offlineReplicas(), copies)));
+			}
+		}
+		return new Cluster(cluster.clusterResource().clusterId(), nodes, partitions, cluster.unauthorizedTopics(),
+				cluster.invalidTopics(), cluster.internalTopics(), copy(cluster.controller(), copies));
+	}
+
+	private static Node copy(org.apache.kafka.common.Node node, Map<org.apache.kafka.common.Node, Node> copies) {
+		if (node == null)
+			return null;
+		Node copy = copies.get(node);
+		if (copy == null) {
+			Node okafkaNode = (Node) node;
+			copy = new Node(okafkaNode);
+			if (okafkaNode.user() != null)
+				copy.setUser(okafkaNode.user());
+			if (okafkaNode.protocol() != null)
+				copy.setProtocol(okafkaNode.protocol());
+			copy.updateHashCode();
+			copies.put(node, copy);
+		}
+		return copy;
+	}
+
+	private static org.apache.kafka.common.Node[] copy(org.apache.kafka.common.Node[] nodes,
+			Map<org.apache.kafka.common.Node, Node> copies) {
+		if (nodes == null)
+			return null;
+		org.apache.kafka.common.Node[] copy = new org.apache.kafka.common.Node[nodes.length];
+		for (int i = 0; i < nodes.length; i++)
+			copy[i] = copy(nodes[i], copies);
+		return copy;
+	}
+
+	/**
+	 * Immutable metadata published by a client.
+	 */
+	public static final class Snapshot {
+		private final Cluster cluster;
+		private final Map<String, TopicTeqParameters> teqParameters;
+		private final long updateTimeMs;
+		private final int version;
+
+		private Snapshot(Cluster cluster, Map<String, TopicTeqParameters> teqParameters, long updateTimeMs, int version) {
+			this.cluster = cluster;
+			this.teqParameters = teqParameters;
+			this.updateTimeMs = updateTimeMs;
+			this.version = version;
+		}
+
+		/**
+		 * Returns a copy of the cluster, whose nodes the caller may update.
+		 */
+		public Cluster cluster() {
+			return copy(cluster);
+		}
+
+		public Map<String, TopicTeqParameters> teqParameters() {
+			return teqParameters;
+		}
+
+		public long updateTimeMs() {
+			return updateTimeMs;
+		}
+
+		public int version() {
+			return version;
+		}
+
+		/**
+		 * Returns true if the snapshot has metadata for all the given topics.
+		 */
+		public boolean covers(Collection<String> topics) {
+			return cluster.topics().containsAll(topics);
+		}
+	}
+}
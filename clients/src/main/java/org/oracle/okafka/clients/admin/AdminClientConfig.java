@@ -207,7 +207,29 @@ public class AdminClientConfig extends AbstractConfig {
                                 .define(CommonClientConfigs.ORACLE_NET_TNS_ADMIN, 
                                 		ConfigDef.Type.STRING, 
                                 		Importance.MEDIUM, 
-                                		CommonClientConfigs.ORACLE_NET_TNS_ADMIN_DOC);
+                                		CommonClientConfigs.ORACLE_NET_TNS_ADMIN_DOC)
+                                .define(CommonClientConfigs.ORACLE_CONNECTION_POOL,
+                                		Type.BOOLEAN,
+                                		false,
+                                		Importance.LOW,
+                                		CommonClientConfigs.ORACLE_CONNECTION_POOL_DOC)
+                                .define(CommonClientConfigs.ORACLE_CONNECTION_POOL_INITIAL_SIZE,
+                                		Type.INT,
+                                		2,
+                                		atLeast(0),
+                                		Importance.LOW,
+                                		CommonClientConfigs.ORACLE_CONNECTION_POOL_INITIAL_SIZE_DOC)
+                                .define(CommonClientConfigs.ORACLE_CONNECTION_POOL_MAX_IDLE,
+                                		Type.INT,
+                                		8,
+                                		atLeast(0),
+                                		Importance.LOW,
+                                		CommonClientConfigs.ORACLE_CONNECTION_POOL_MAX_IDLE_DOC)
+                                .define(CommonClientConfigs.ORACLE_METADATA_SHARED,
+                                		Type.BOOLEAN,
+                                		false,
+                                		Importance.LOW,
+                                		CommonClientConfigs.ORACLE_METADATA_SHARED_DOC);
     }
 
     @Override
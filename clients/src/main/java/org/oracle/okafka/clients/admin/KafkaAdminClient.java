@@ -145,6 +145,7 @@ import org.apache.kafka.clients.admin.ListOffsetsResult.ListOffsetsResultInfo;
 import org.apache.kafka.clients.admin.OffsetSpec.TimestampSpec;
 
 import org.oracle.okafka.clients.CommonClientConfigs;
+import org.oracle.okafka.clients.SharedMetadata;
 import org.oracle.okafka.clients.KafkaClient;
 import org.oracle.okafka.clients.NetworkClient;
 import org.oracle.okafka.clients.TopicTeqParameters;
@@ -349,6 +350,13 @@ public class KafkaAdminClient extends AdminClient {
     private final long retryBackoffMaxMs;
     private final ExponentialBackoff retryBackoff;
 
+	/**
+	 * Metadata shared with the other clients of the JVM, or null if not enabled.
+	 */
+	private final SharedMetadata sharedMetadata;
+
+	private final long metadataMaxAgeMs;
+
 	/**
 	 * Get or create a list value from a map.
 	 *
@@ -584,6 +592,8 @@ public class KafkaAdminClient extends AdminClient {
             CommonClientConfigs.RETRY_BACKOFF_EXP_BASE,
             retryBackoffMaxMs,
             CommonClientConfigs.RETRY_BACKOFF_JITTER);
+		this.metadataMaxAgeMs = config.getLong(AdminClientConfig.METADATA_MAX_AGE_CONFIG);
+		this.sharedMetadata = SharedMetadata.isEnabled(config) ? SharedMetadata.acquire(config) : null;
 		config.logUnused();
 		AppInfoParser.registerAppInfo(JMX_PREFIX, clientId, metrics, time.milliseconds());
 		log.debug("Kafka admin client initialized");
@@ -966,6 +976,12 @@ public class KafkaAdminClient extends AdminClient {
 		 */
 		private final ArrayList<Call> pendingCalls = new ArrayList<>();
 
+		/**
+		 * Version of the last shared metadata snapshot taken, and time of the last metadata update.
+		 */
+		private int sharedMetadataVersion = 0;
+		private long lastMetadataUpdateMs = 0;
+
 		/**
 		 * Maps nodes to calls that we want to send. Only accessed from this thread.
 		 */
@@ -1354,6 +1370,8 @@ public class KafkaAdminClient extends AdminClient {
 				}
 				closeQuietly(client, "KafkaClient");
 				closeQuietly(metrics, "Metrics");
+				if (sharedMetadata != null)
+					sharedMetadata.release();
 				log.debug("Exiting AdminClientRunnable thread.");
 			}
 		}
@@ -1386,6 +1404,8 @@ public class KafkaAdminClient extends AdminClient {
 				// Choose nodes for our pending calls.
 				pollTimeout = Math.min(pollTimeout, maybeDrainPendingCalls(now));
 				long metadataFetchDelayMs = metadataManager.metadataFetchDelayMs(now);
+				if (metadataFetchDelayMs == 0 && maybeUpdateFromSharedMetadata(now))
+					metadataFetchDelayMs = metadataManager.metadataFetchDelayMs(now);
 				if (metadataFetchDelayMs == 0) {
 					metadataManager.transitionToUpdatePending(now);
 					Call metadataCall = makeMetadataCall(now);
@@ -1476,6 +1496,27 @@ public class KafkaAdminClient extends AdminClient {
 			}
 		}
 
+		/**
+		 * Takes the nodes of the shared metadata, if another client published a snapshot since the last update
+		 * and it is not older than metadata.max.age.ms.
+		 *
+		 * @return true if the metadata was updated
+		 */
+		private boolean maybeUpdateFromSharedMetadata(long now) {
+			if (sharedMetadata == null)
+				return false;
+			SharedMetadata.Snapshot snapshot = sharedMetadata.snapshot();
+			if (snapshot == null || snapshot.version() == sharedMetadataVersion
+					|| snapshot.updateTimeMs() <= lastMetadataUpdateMs || now - snapshot.updateTimeMs() >= metadataMaxAgeMs)
+				return false;
+			log.debug("Updating metadata from shared metadata version {}", snapshot.version());
+			sharedMetadataVersion = snapshot.version();
+			lastMetadataUpdateMs = snapshot.updateTimeMs();
+			metadataManager.update(snapshot.cluster(), snapshot.updateTimeMs());
+			unassignUnsentCalls(node -> true);
+			return true;
+		}
+
 		/**
 		 * Create a new metadata call.
 		 */
@@ -1503,6 +1544,9 @@ public class KafkaAdminClient extends AdminClient {
 					}
 					long now = time.milliseconds();
 					metadataManager.update(response.cluster(), now);
+					lastMetadataUpdateMs = now;
+					if (sharedMetadata != null)
+						sharedMetadata.publish(KafkaAdminClient.this, response.cluster(), null, now);
 
 					// Unassign all unsent requests after a metadata refresh to allow for a new
 					// destination to be selected from the new metadata
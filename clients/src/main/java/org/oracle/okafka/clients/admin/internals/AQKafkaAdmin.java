@@ -46,6 +46,7 @@ import org.oracle.okafka.common.requests.OffsetFetchRequest;
 import org.oracle.okafka.common.requests.OffsetFetchResponse;
 import org.oracle.okafka.common.requests.CreateTopicsRequest.TopicDetails;
 import org.oracle.okafka.common.requests.OffsetFetchResponse.PartitionOffsetData;
+import org.oracle.okafka.common.utils.ConnectionPool;
 import org.oracle.okafka.common.utils.ConnectionUtils;
 import org.oracle.okafka.common.utils.CreateTopics;
 import org.oracle.okafka.common.utils.FetchOffsets;
@@ -590,7 +591,7 @@ public class AQKafkaAdmin extends AQClient{
 	 */
 	private Connection getConnection(Node node) {
 		try {
-			Connection newConn = ConnectionUtils.createJDBCConnection(node, configs, this.log);
+			Connection newConn = ConnectionUtils.createJDBCConnection(node, configs, this.log, this);
 
 			ConnectionUtils.updateNodeInfo(node, newConn);
 
@@ -641,6 +642,7 @@ public class AQKafkaAdmin extends AQClient{
 		List<Node> closeNodes = new ArrayList<Node>();
 		closeNodes.addAll(connections.keySet());
 		closeNodes.forEach(n->close(n));
+		ConnectionPool.release(this);
 	}
 	
 	/**
@@ -144,7 +144,14 @@ public class ConsumerConfig extends AbstractConfig {
         "ordered by preference, of supported partition assignment strategies that the client will use to distribute " +
         "partition ownership amongst consumer instances when group management is used. Available options are:" +
         "<ul>" +
-        "<li><code>org.apache.kafka.clients.consumer.RangeAssignor</code>: The default assignor, which works on a per-topic basis.</li>" +
+        "<li><code>org.oracle.okafka.clients.consumer.TxEQAssignor</code>: The default assignor. Balances partitions among " +
+        "consumer sessions, preferring partitions owned by the database instance a session is connected to.</li>" +
+        "<li><code>org.oracle.okafka.clients.consumer.TxEQCooperativeStickyAssignor</code>: Follows the same TxEQAssignor " +
+        "logic, but preserves existing partition assignments first and only revokes partitions which move to another consumer.</li>" +
+        "<li><code>org.oracle.okafka.clients.consumer.TxEQInstanceAffinityAssignor</code>: Assigns partitions to sessions connected " +
+        "to the instance owning them whenever balance allows, balancing sessions by backlog of their partitions. Partitions are " +
+        "reassigned when their owner instance changes.</li>" +
+        "<li><code>org.apache.kafka.clients.consumer.RangeAssignor</code>: Works on a per-topic basis.</li>" +
         "<li><code>org.apache.kafka.clients.consumer.RoundRobinAssignor</code>: Assigns partitions to consumers in a round-robin fashion.</li>" +
         "<li><code>org.apache.kafka.clients.consumer.StickyAssignor</code>: Guarantees an assignment that is " +
         "maximally balanced while preserving as many existing partition assignments as possible.</li>" +
@@ -175,14 +182,16 @@ public class ConsumerConfig extends AbstractConfig {
             "Records are fetched in batches by the consumer, and if the first record batch in the first non-empty partition of the fetch is larger than " +
             "this value, the record batch will still be returned to ensure that the consumer can make progress. As such, this is not a absolute maximum. " +
             "The maximum record batch size accepted by the broker is defined via <code>message.max.bytes</code> (broker config) or " +
-            "<code>max.message.bytes</code> (topic config). Note that the consumer performs multiple fetches in parallel. This property is not yet supported.";
+            "<code>max.message.bytes</code> (topic config). Note that the consumer performs multiple fetches in parallel. " +
+            "When <code>oracle.consumer.prefetch</code> is enabled, the background fetcher stops fetching once this many bytes are buffered.";
     public static final int DEFAULT_FETCH_MAX_BYTES = 50 * 1024 * 1024;
 
     /**
      * <code>fetch.max.wait.ms</code>
      */
     public static final String FETCH_MAX_WAIT_MS_CONFIG = "fetch.max.wait.ms";
-    private static final String FETCH_MAX_WAIT_MS_DOC = "The maximum amount of time the server will block before answering the fetch request if there isn't sufficient data to immediately satisfy the requirement given by fetch.min.bytes. This property is not yet supported.";
+    private static final String FETCH_MAX_WAIT_MS_DOC = "The maximum amount of time the server will block before answering the fetch request if there isn't sufficient data to immediately satisfy the requirement given by fetch.min.bytes. " +
+            "When <code>oracle.consumer.prefetch</code> is enabled, this is the maximum time a background fetch waits for messages.";
 
     /** <code>metadata.max.age.ms</code> */
     public static final String METADATA_MAX_AGE_CONFIG = CommonClientConfigs.METADATA_MAX_AGE_CONFIG;
@@ -351,6 +360,29 @@ public class ConsumerConfig extends AbstractConfig {
     public static final String ORACLE_CONSUMER_LIGHTWEIGHT = "oracle.consumer.lightweight";
     public static final String ORACLE_CONSUMER_LIGHTWEIGHT_DOC = "Creates a light weight subscriber";
     
+    /** <code>oracle.consumer.prefetch</code> */
+    public static final String ORACLE_CONSUMER_PREFETCH = "oracle.consumer.prefetch";
+    public static final String ORACLE_CONSUMER_PREFETCH_DOC = "If true, a background thread dequeues the next batch of records while the application processes "
+    		+ "the current one, and <code>poll()</code> returns already dequeued records without waiting for the database. "
+    		+ "At most <code>max.poll.records</code> records or <code>fetch.max.bytes</code> bytes are buffered. "
+    		+ "Buffered records which are not yet returned by <code>poll()</code> are rolled back before any commit, and are consumed again.";
+
+    /** <code>oracle.consumer.instance.sessions</code> */
+    public static final String ORACLE_CONSUMER_INSTANCE_SESSIONS = "oracle.consumer.instance.sessions";
+    public static final String ORACLE_CONSUMER_INSTANCE_SESSIONS_DOC = "If true, the consumer opens a database session to every Oracle RAC instance owning partitions "
+    		+ "of the subscribed topics, and dequeues from all of them in parallel. Each session is a member of the consumer group and gets its own "
+    		+ "partitions assigned. <code>poll()</code> merges records of all sessions, at most <code>max.poll.records</code> in total, and a commit "
+    		+ "commits every session. Ignored for partitions assigned with <code>assign()</code> and once the database connection is obtained with "
+    		+ "<code>getDBConnection()</code>. <code>oracle.consumer.prefetch</code> is ignored when enabled.";
+
+    /** <code>oracle.consumer.lag.probe.interval.ms</code> */
+    public static final String ORACLE_CONSUMER_LAG_PROBE_INTERVAL_MS = "oracle.consumer.lag.probe.interval.ms";
+    public static final String ORACLE_CONSUMER_LAG_PROBE_INTERVAL_MS_DOC = "The interval in milliseconds at which <code>poll()</code> fetches the earliest and latest offsets "
+    		+ "of the assigned partitions with one request per topic, the latest offsets along with the number of messages not yet dequeued by the group, "
+    		+ "read from GV$AQ_SHARDED_SUBSCRIBER_STAT. "
+    		+ "The records-lag and records-lead metrics and <code>currentLag()</code> are computed from these values and the position of the consumer. "
+    		+ "A value of 0 disables the probe, and lag is then not available.";
+    
     
     static {
         CONFIG = new ConfigDef().define(BOOTSTRAP_SERVERS_CONFIG,
@@ -617,6 +649,44 @@ public class ConsumerConfig extends AbstractConfig {
                 						false,
                 						Importance.LOW, 
                 						CommonClientConfigs.ORACLE_CONSUMER_LIGHTWEIGHT_DOC)
+                                .define(ORACLE_CONSUMER_PREFETCH, 
+                						ConfigDef.Type.BOOLEAN,
+                						false,
+                						Importance.LOW, 
+                						ORACLE_CONSUMER_PREFETCH_DOC)
+                                .define(ORACLE_CONSUMER_INSTANCE_SESSIONS, 
+                						ConfigDef.Type.BOOLEAN,
+                						false,
+                						Importance.LOW, 
+                						ORACLE_CONSUMER_INSTANCE_SESSIONS_DOC)
+                                .define(ORACLE_CONSUMER_LAG_PROBE_INTERVAL_MS, 
+                						ConfigDef.Type.LONG,
+                						30000L,
+                						atLeast(0),
+                						Importance.LOW, 
+                						ORACLE_CONSUMER_LAG_PROBE_INTERVAL_MS_DOC)
+                                .define(org.oracle.okafka.clients.CommonClientConfigs.ORACLE_CONNECTION_POOL,
+                						ConfigDef.Type.BOOLEAN,
+                						false,
+                						Importance.LOW,
+                						org.oracle.okafka.clients.CommonClientConfigs.ORACLE_CONNECTION_POOL_DOC)
+                                .define(org.oracle.okafka.clients.CommonClientConfigs.ORACLE_CONNECTION_POOL_INITIAL_SIZE,
+                						ConfigDef.Type.INT,
+                						2,
+                						atLeast(0),
+                						Importance.LOW,
+                						org.oracle.okafka.clients.CommonClientConfigs.ORACLE_CONNECTION_POOL_INITIAL_SIZE_DOC)
+                                .define(org.oracle.okafka.clients.CommonClientConfigs.ORACLE_CONNECTION_POOL_MAX_IDLE,
+                						ConfigDef.Type.INT,
+                						8,
+                						atLeast(0),
+                						Importance.LOW,
+                						org.oracle.okafka.clients.CommonClientConfigs.ORACLE_CONNECTION_POOL_MAX_IDLE_DOC)
+                                .define(org.oracle.okafka.clients.CommonClientConfigs.ORACLE_METADATA_SHARED,
+                						ConfigDef.Type.BOOLEAN,
+                						false,
+                						Importance.LOW,
+                						org.oracle.okafka.clients.CommonClientConfigs.ORACLE_METADATA_SHARED_DOC)
                                 ;
 
     }
@@ -33,12 +33,15 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -79,6 +82,7 @@ import org.oracle.okafka.clients.TopicTeqParameters;
 import org.apache.kafka.clients.consumer.internals.ConsumerInterceptors;
 import org.oracle.okafka.clients.consumer.internals.ConsumerNetworkClient;
 import org.oracle.okafka.clients.consumer.internals.FetchMetricsRegistry;
+import org.oracle.okafka.clients.consumer.internals.OffsetLagProbe;
 import org.oracle.okafka.clients.consumer.internals.OkafkaConsumerMetrics;
 import org.oracle.okafka.clients.consumer.internals.NoOpConsumerRebalanceListener;
 
@@ -87,6 +91,7 @@ import org.oracle.okafka.clients.consumer.internals.SubscriptionState.FetchPosit
 import org.oracle.okafka.clients.consumer.internals.TopicMetadataFetcher;
 import org.apache.kafka.clients.Metadata.LeaderAndEpoch;
 import org.oracle.okafka.clients.consumer.internals.AQKafkaConsumer;
+import org.oracle.okafka.clients.consumer.internals.AsyncOffsetCommitter;
 import org.apache.kafka.common.Cluster;
 import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.Metric;
@@ -102,6 +107,7 @@ import org.oracle.okafka.common.errors.ConnectionException;
 import org.oracle.okafka.common.errors.FeatureNotSupportedException;
 import org.oracle.okafka.common.errors.InvalidLoginCredentialsException;
 import org.oracle.okafka.common.network.AQClient;
+import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.apache.kafka.common.internals.ClusterResourceListeners;
 import org.apache.kafka.common.metrics.JmxReporter;
@@ -112,13 +118,18 @@ import org.apache.kafka.common.metrics.Sensor;
 import org.apache.kafka.common.metrics.stats.Avg;
 import org.apache.kafka.common.metrics.stats.Max;
 import org.apache.kafka.common.metrics.stats.Meter;
+import org.apache.kafka.common.metrics.stats.Min;
+import org.apache.kafka.common.metrics.stats.Value;
 import org.apache.kafka.common.metrics.stats.WindowedCount;
 import org.apache.kafka.common.record.TimestampType;
 import org.oracle.okafka.common.requests.IsolationLevel;
+import org.oracle.okafka.common.requests.ListOffsetsRequest;
+import org.oracle.okafka.common.requests.ListOffsetsResponse.ListOffsetsPartitionResponse;
 import org.apache.kafka.common.serialization.Deserializer;
 import org.apache.kafka.common.utils.AppInfoParser;
 import org.apache.kafka.common.utils.LogContext;
 import org.oracle.okafka.common.utils.ConnectionUtils;
+import org.oracle.okafka.common.utils.PayloadCompression;
 import org.oracle.okafka.common.utils.MessageIdConverter;
 import org.oracle.okafka.common.utils.MessageIdConverter.OKafkaOffset;
 import org.oracle.okafka.common.utils.TNSParser;
@@ -149,10 +160,12 @@ import org.slf4j.Logger;
  * instances sharing the same {@code group.id} will be part of the same consumer
  * group.
  * 
- * A Consumer can subscribe to single topic using {@link #subscribe(Collection)
+ * A Consumer can subscribe to one or more topics using {@link #subscribe(Collection)
  * subscribe} or {@link #subscribe(Collection, ConsumerRebalanceListener)}.
- * Consumer throws FeatureNotSupportedException exception if topic subscription
- * collection size is greater than one. Also consumers can't subscribe using
+ * All the subscribed topics are consumed over the same database session, and
+ * each poll fetches from the topics in turn, up to <i>max.poll.records</i>
+ * records in total. Partitions of each topic are rebalanced independently of
+ * the other subscribed topics. Consumers can't subscribe using
  * {@link #subscribe(Pattern) subscribe(Pattern)},
  * {@link #subscribe(Pattern, ConsumerRebalanceListener) subscribe(Pattern,
  * ConsumerRebalanceListener)}, as pattern based subscription is not supported
@@ -169,9 +182,11 @@ import org.slf4j.Logger;
  * finish necessary application-level logic such as state cleanup, manual offset
  * commits, etc.
  * 
- * For this release of OKafka, manually assignment of partition is not
- * supported. Application will get <i>FeatureNotSupportedException</i> if
- * {@link #assign(Collection)} method is invoked.
+ * Partitions can also be assigned manually with {@link #assign(Collection)}.
+ * A consumer with manually assigned partitions still joins its group in the
+ * database, but claims exactly its assigned partitions instead of invoking the
+ * partition assignor, and its partitions are never revoked. Every consumer of a
+ * group consuming a topic is expected to assign its partitions manually.
  * 
  * <h3><a name="failuredetection">Detecting Consumer Failures</a></h3>
  * 
@@ -363,9 +378,9 @@ import org.slf4j.Logger;
  * The okafka consumer is NOT thread-safe. All network I/O happens in the thread
  * of the application making the call. It is the responsibility of the user to
  * ensure that multi-threaded access is properly synchronized. Un-synchronized
- * access will result in {@link ConcurrentModificationException}. For this
- * release of OKafka, {@link #wakeup()} is not supported. Invoking the api would
- * not throw FeatureNotSupportedException.
+ * access will result in {@link ConcurrentModificationException}. {@link #wakeup()}
+ * does not interrupt a dequeue in progress in the database, the woken up poll
+ * throws once the dequeue completes.
  * <p>
  */
 
@@ -393,6 +408,8 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	private final SubscriptionState subscriptions;
 	private final Metadata metadata;
 	private final ConsumerNetworkClient client;
+	private final AsyncOffsetCommitter asyncCommitter;
+	private final OffsetLagProbe lagProbe;
 	private final long retryBackoffMs;
 	private final int requestTimeoutMs;
 	private final int defaultApiTimeoutMs;
@@ -409,6 +426,15 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	private final AtomicInteger refcount = new AtomicInteger(0);
 	private final int DLENGTH_SIZE = 4;
 	private AQKafkaConsumer aqConsumer = null;
+	private final int maxPollRecords;
+	private final boolean lightWeightSubscriber;
+	// Records dequeued but not returned by poll yet, per partition. Records beyond max.poll.records, such as the rest
+	// of a batch envelope, are returned by the next polls without dequeuing them again. Records of paused partitions
+	// are held until the partitions are resumed.
+	private final Map<TopicPartition, ArrayDeque<ConsumerRecord<K, V>>> buffered = new LinkedHashMap<>();
+	// Offset of the last record which is not returned when it is dequeued, per partition. Set by a seek into a batch
+	// envelope.
+	private final Map<TopicPartition, Long> skipThrough = new HashMap<>();
 
 	private ConsumerGroupMetadata cgMetadata = null;
 
@@ -663,8 +689,22 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 			this.client = new ConsumerNetworkClient(groupId, logContext, networkClient, metadata, subscriptions,
 					this.assignors, config.getBoolean(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG),
 					config.getInt(ConsumerConfig.AUTO_COMMIT_INTERVAL_MS_CONFIG), time, retryBackoffMs,
-					maxPollIntervalMs, this.requestTimeoutMs, sessionTimeoutMs, defaultApiTimeoutMs, aqConsumer,
-					metrics);
+					maxPollIntervalMs, this.requestTimeoutMs, sessionTimeoutMs, defaultApiTimeoutMs,
+					config.getInt(ConsumerConfig.MAX_POLL_RECORDS_CONFIG), aqConsumer, metrics);
+			if (config.getBoolean(ConsumerConfig.ORACLE_CONSUMER_INSTANCE_SESSIONS)) {
+				this.client.enableInstanceSessions(clientId);
+				if (config.getBoolean(ConsumerConfig.ORACLE_CONSUMER_PREFETCH))
+					log.warn("{} is ignored as {} is enabled", ConsumerConfig.ORACLE_CONSUMER_PREFETCH,
+							ConsumerConfig.ORACLE_CONSUMER_INSTANCE_SESSIONS);
+			} else if (config.getBoolean(ConsumerConfig.ORACLE_CONSUMER_PREFETCH))
+				this.client.enablePrefetch(logContext, clientId, config.getInt(ConsumerConfig.FETCH_MAX_BYTES_CONFIG),
+						config.getInt(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG));
+			this.asyncCommitter = new AsyncOffsetCommitter(logContext, clientId, this.client, aqConsumer, this.metadata,
+					time, this.requestTimeoutMs);
+			this.maxPollRecords = config.getInt(ConsumerConfig.MAX_POLL_RECORDS_CONFIG);
+			this.lightWeightSubscriber = config.getBoolean(ConsumerConfig.ORACLE_CONSUMER_LIGHTWEIGHT);
+			this.lagProbe = new OffsetLagProbe(logContext, this.client, this.subscriptions, time,
+					config.getLong(ConsumerConfig.ORACLE_CONSUMER_LAG_PROBE_INTERVAL_MS), this.requestTimeoutMs);
 			
 			this.topicMetadataFetcher = new TopicMetadataFetcher(logContext,this.client);
 
@@ -714,7 +754,7 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 
 	/**
 	 * Subscribe to the given list of topics to get partitions assigned dynamically.
-	 * However OKafka 23.4.0.0 supports subscription to only a single topic.
+	 * All the topics are consumed over the same database session.
 	 * Partitions are assigned dynamically to consumer based on <i>partition.assignment.strategy</i>. 
 	 * <p>
 	 * This method takes an object of {@link org.apache.kafka.clients.consumer.ConsumerRebalanceListener ConsumerRebalanceListener}.
@@ -732,8 +772,7 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	 * @param topics   The list of topics to subscribe to
 	 * @param listener null if not null is ignored
 	 * @throws IllegalArgumentException If topics is null or contains null or empty
-	 *                                  elements or size of topics is greater than
-	 *                                  one.
+	 *                                  elements.
 	 */
 	@Override
 	public void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
@@ -745,9 +784,6 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 				// treat subscribing to empty topic list as the same as unsubscribing
 				this.unsubscribe();
 			} else {
-				if (topics.size() > 1)
-					throw new IllegalArgumentException("Only one topic can be subscribed");
-				
 				Collection<String> topicsUp = new ArrayList<String>(topics.size());
 				
 				for (String topic : topics) {
@@ -760,8 +796,8 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 				
 				topics = topicsUp;
 				
-				// Only one topic can be subscribed, unsubcribe to previous topics before
-				// subscribing to new topic
+				// Subscriptions are not incremental, unsubcribe to previous topics before
+				// subscribing to new topics
 				Set<String> Alltopics = subscriptions.metadataTopics();
 				if (Alltopics.size() > 0) {
 					this.unsubscribe();
@@ -781,7 +817,7 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 
 	/**
 	 * Subscribe to the given list of topics to get partitions assigned dynamically.
-	 * However OKafka 23.4.0.0 supports subscription to only a single topic.
+	 * All the topics are consumed over the same database session.
 	 * Partitions are assigned dynamically to consumer based on <i>partition.assignment.strategy</i>. 
 	 * 
 	 * <b> Topic subscriptions are not incremental. This list will replace the
@@ -796,8 +832,7 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	 *
 	 * @param topics The list of topics to subscribe to
 	 * @throws IllegalArgumentException If topics is null or contains null or empty
-	 *                                  elements or size of topics is greater than
-	 *                                  one.
+	 *                                  elements.
 	 */
 	@Override
 	public void subscribe(Collection<String> topics) {
@@ -829,6 +864,7 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 		try {
 			log.debug("Unsubscribed to all topics ");
 			this.subscriptions.unsubscribe();
+			this.buffered.clear();
 			this.client.clearSubscription();
 			this.client.unsubscribe();
 			this.metadata.needMetadataForAllTopics(false);
@@ -838,11 +874,70 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Manually assign a list of partitions to this consumer. Partitions assigned
+	 * this way are not revoked by rebalancing and the partition assignor is not
+	 * invoked. The consumer still joins its consumer group in the database, which
+	 * is required to dequeue from a topic, and claims exactly the assigned
+	 * partitions in its join request. The leader of the group grants every consumer
+	 * the partitions it claims. Every consumer of a consumer group consuming a topic
+	 * is expected to assign its partitions manually, and no partition should be
+	 * assigned to more than one consumer of the group.
+	 * <p>
+	 * Offsets are committed and positions are changed with {@link #seek(TopicPartition, long)}
+	 * for the assigned partitions only, when <i>oracle.consumer.lightweight</i> is
+	 * enabled. Otherwise commit commits all the messages consumed by the session.
+	 * <p>
+	 * <b> Manual topic assignment through this method does not use the consumer's
+	 * group management functionality. As such, there will be no rebalance
+	 * operation triggered when group membership or cluster and topic metadata
+	 * change. </b> Manual partition assignment and group assignment through
+	 * {@link #subscribe(Collection)} cannot be mixed.
+	 * <p>
+	 * If the given list of topic partitions is empty, it is treated the same as
+	 * {@link #unsubscribe()}. Assignment replaces the previous assignment, and
+	 * takes effect on the next {@link #poll(Duration)}.
+	 *
+	 * @param partitions The list of partitions to assign this consumer
+	 * @throws IllegalArgumentException If partitions is null or contains null or
+	 *                                  empty topics
+	 * @throws IllegalStateException    If {@code subscribe()} is called previously
+	 *                                  with topics
 	 */
 	@Override
 	public void assign(Collection<TopicPartition> partitions) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		acquireAndEnsureOpen();
+		try {
+			if (partitions == null) {
+				throw new IllegalArgumentException("Topic partition collection to assign to cannot be null");
+			} else if (partitions.isEmpty()) {
+				this.unsubscribe();
+			} else {
+				Set<TopicPartition> assigned = new HashSet<>();
+				Set<String> topics = new HashSet<>();
+				for (TopicPartition tp : partitions) {
+					String topic = (tp != null) ? tp.topic() : null;
+					if (topic == null || topic.trim().isEmpty())
+						throw new IllegalArgumentException("Topic partitions to assign to cannot have null or empty topic");
+					assigned.add(new TopicPartition(topic.toUpperCase(), tp.partition()));
+					topics.add(topic.toUpperCase());
+				}
+
+				log.debug("Assigned to partition(s): {}", assigned);
+				if (this.subscriptions.assignFromUser(assigned)) {
+					// Position of a partition is tracked by the database. Seek to current offset per say
+					for (TopicPartition tp : assigned) {
+						if (!this.subscriptions.hasValidPosition(tp)) {
+							this.subscriptions.seek(tp, 0);
+							this.subscriptions.completeValidation(tp);
+						}
+					}
+					metadata.setTopics(topics);
+					this.client.onManualAssignment(topics);
+				}
+			}
+		} finally {
+			release();
+		}
 	}
 
 	/**
@@ -934,6 +1029,9 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 			if (this.subscriptions.hasNoSubscriptionOrUserAssignment()) {
 				throw new IllegalStateException("Consumer is not subscribed to any topics or assigned any partitions");
 			}
+			// Commits deferred by commitAsync must complete before any record is dequeued
+			asyncCommitter.maybeCommit();
+			asyncCommitter.invokeCompletedCallbacks();
 			do {
 				// poll for new data until the timeout expires
 				long elapsedTime = 0L;
@@ -960,6 +1058,7 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 				elapsedTime += syncStart - syncEnd;
 				// final long fetchStart = time.milliseconds();
 				final Map<TopicPartition, List<ConsumerRecord<K, V>>> records = pollForFetches(timer.remainingMs());
+				updatePartitionLag(records.keySet());
 
 				if (!records.isEmpty()) {
 
@@ -1019,12 +1118,33 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 		}
 	}
 
-	private Map<TopicPartition, List<ConsumerRecord<K, V>>> pollForFetches(final long timeoutMs) {
+	/*
+	 * Records lag and lead of the partitions just fetched from. When the lag probe fetched offsets again, records them
+	 * for every assigned partition, so that lag of partitions without records is updated as well.
+	 */
+	private void updatePartitionLag(Set<TopicPartition> fetchedPartitions) {
+		fetchManagerMetrics.maybeUpdateAssignment(subscriptions.assignedPartitions());
+		Set<TopicPartition> partitions = lagProbe.maybeProbe(this::heldRecords) ? subscriptions.assignedPartitions() : fetchedPartitions;
+		for (TopicPartition tp : partitions) {
+			Long lag = lagProbe.lag(tp);
+			if (lag != null)
+				fetchManagerMetrics.recordPartitionLag(tp, lag);
+			Long lead = lagProbe.lead(tp);
+			if (lead != null)
+				fetchManagerMetrics.recordPartitionLead(tp, lead);
+		}
+	}
 
-		if (timeoutMs <= 0)
-			return Collections.<TopicPartition, List<ConsumerRecord<K, V>>>emptyMap();
+	private Map<TopicPartition, List<ConsumerRecord<K, V>>> pollForFetches(final long timeoutMs) {
 
-		return createConsumerRecordsMap(client.poll(timeoutMs, fetchManagerMetrics));
+		client.maybeTriggerWakeup();
+		// Records dequeued by an earlier poll are returned before any record is dequeued
+		if (!hasReturnableRecords()) {
+			if (timeoutMs <= 0)
+				return Collections.<TopicPartition, List<ConsumerRecord<K, V>>>emptyMap();
+			bufferRecords(client.poll(timeoutMs, fetchManagerMetrics));
+		}
+		return returnBufferedRecords();
 	}
 	/*
 	 * private Map<TopicPartition, List<ConsumerRecord<K, V>>>
@@ -1091,178 +1211,285 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	 * } return consumerRecords; }
 	 */
 
-	private Map<TopicPartition, List<ConsumerRecord<K, V>>> createConsumerRecordsMap(List<AQjmsBytesMessage> messages) {
-
-		if (messages.size() == 0) {
-			return Collections.<TopicPartition, List<ConsumerRecord<K, V>>>emptyMap();
-		}
-
-		Map<TopicPartition, List<ConsumerRecord<K, V>>> consumerRecords = new HashMap<>();
-		Map<TopicPartition, Integer> headersSize = new HashMap();
-		ConsumerRecord<K, V> record;
+	/*
+	 * Decodes the given messages into records, which are buffered per partition until poll returns them.
+	 * Records of paused partitions are held until the partitions are resumed, while records of the other partitions
+	 * keep being returned. A light weight subscriber commits the offsets of returned records only, so it holds up to
+	 * max.poll.records records per paused partition and seeks the partition back to the first message beyond them.
+	 * Any other consumer holds every record of a paused partition it dequeues, since its commit covers them anyway.
+	 */
+	private void bufferRecords(List<AQjmsBytesMessage> messages) {
+		// Offset of the first message not held, per paused partition of a light weight subscriber
+		Map<TopicPartition, Long> notHeld = new HashMap<>();
+		List<ConsumerRecord<K, V>> messageRecords;
 		String topic = null;
 		int partition = -1;
 		int messageVersion = 1;
-		byte[] keyArray = null;
-		byte[] valueArray = null;
-		int keyLen = 0;
-		int valueLen = 0;
-		int hSize = 0;
+		int processedMessages = 0;
+		int dequeuedRecords = 0;
+		MessageIdConverter.OffsetDecoder offsetDecoder = new MessageIdConverter.OffsetDecoder();
 
 		for (AQjmsBytesMessage message : messages) {
-			keyArray = null;
-			valueArray = null;
-			keyLen = 0;
-			valueLen = 0;
-
 			try {
-				RecordHeaders rcH = new RecordHeaders();
 				try {
 					messageVersion = message.getIntProperty(AQClient.MESSAGE_VERSION);
 				} catch (Exception e) {
 					messageVersion = 1;
 				}
 
+				topic = ((AQjmsDestination) message.getJMSDestination()).getTopicName();
+				
+				partition = AQClient.getMessagePartition(message);
+
+				long offset = offsetDecoder.getOffset(message.getJMSMessageIDAsBytes());
+				long timestamp = message.getJMSTimestamp();
+
+				TopicPartition tp = new TopicPartition(topic, partition);
+				int recordCount = 1;
+				if (lightWeightSubscriber && subscriptions.isPaused(tp) && (notHeld.containsKey(tp) || heldFull(tp))) {
+					notHeld.putIfAbsent(tp, offset);
+					continue;
+				}
+
 				/*
-				 * Received Byte Payload in below format: | KEY LENGTH (4 Bytes Fixed) | KEY | |
-				 * VALUE LENGTH (4 BYTES FIXED) | VALUE | | HEADER NAME LENGTH(4 BYTES FIXED) |
-				 * HEADER NAME | | HEADER VALUE LENGTH (4 BYTES FIXED) | HEADER VALUE | | HEADER
-				 * NAME LENGTH(4 BYTES FIXED) | HEADER NAME | | HEADER VALUE LENGTH (4 BYTES
-				 * FIXED) | HEADER VALUE |
+				 * Compressed messages carry the V2 payload compressed as described in PayloadCompression.
 				 * 
-				 * For records with null key , KEY LENGTH is set to 0. For records with null
-				 * value, VALUE LENGTH is set to 0. Number of headers are set in property
-				 * "AQINTERNAL_HEADERCOUNT"
+				 * Batch envelopes carry many records, in below format, compressed as described in PayloadCompression:
+				 * | RECORD COUNT (4 Bytes Fixed) |
+				 * | RECORD LENGTH (4 Bytes Fixed) | RECORD PAYLOAD in V2 format |
 				 * 
+				 * The last record of an envelope has the offset of the message, the other records have offsets
+				 * derived from it, see MessageIdConverter.
 				 */
-				if (messageVersion == 2) {
-					byte[] payloadArray = message.getBytesData();
-					byte[] bLength = new byte[DLENGTH_SIZE];
-
-					// Read Key First
+				if (messageVersion != AQClient.MESSAGE_VERSION_ENVELOPE && skipped(tp, offset)) {
+					messageRecords = Collections.emptyList();
+				} else if (messageVersion == 2 || messageVersion == AQClient.MESSAGE_VERSION_COMPRESSED) {
+					byte[] payloadArray = messageVersion == 2 ? message.getBytesData()
+							: PayloadCompression.decompress(message.getBytesData());
+					messageRecords = Collections.singletonList(
+							createV2Record(topic, partition, offset, timestamp, payloadArray, 0, payloadArray.length));
+				} else if (messageVersion == AQClient.MESSAGE_VERSION_ENVELOPE) {
+					byte[] payloadArray = PayloadCompression.decompress(message.getBytesData());
 					ByteBuffer pBuffer = ByteBuffer.wrap(payloadArray);
-					pBuffer.get(bLength, 0, DLENGTH_SIZE);
-					keyLen = ConnectionUtils.convertToInt(bLength);
-					keyArray = new byte[keyLen];
-					pBuffer.get(keyArray, 0, keyLen);
-
-					// Get Actual Payload
-					pBuffer.get(bLength, 0, DLENGTH_SIZE);
-					valueLen = ConnectionUtils.convertToInt(bLength);
-
-					valueArray = new byte[valueLen];
-					pBuffer.get(valueArray, 0, valueLen);
-
-					int hCount = 0;
-					try {
-						hCount = message.getIntProperty(AQClient.HEADERCOUNT_PROPERTY);
-					} catch (Exception e) {
-						hCount = 0;
-					}
-					int hKeyLen = 0;
-					int hValueLen = 0;
-
-					for (int i = 0; i < hCount; i++) {
-						pBuffer.get(bLength, 0, DLENGTH_SIZE);
-						hKeyLen = ConnectionUtils.convertToInt(bLength);
-						if (hKeyLen > 0) {
-							byte[] hKeyArray = new byte[hKeyLen];
-							hSize += hKeyArray.length;
-							pBuffer.get(hKeyArray, 0, hKeyLen);
-							String hKey = new String(hKeyArray);
-							pBuffer.get(bLength, 0, DLENGTH_SIZE);
-							hValueLen = ConnectionUtils.convertToInt(bLength);
-							byte[] hValueArray = new byte[hValueLen];
-							hSize += hValueArray.length;
-							pBuffer.get(hValueArray, 0, hValueLen);
-							rcH.add(hKey, hValueArray);
-						}
-
+					recordCount = pBuffer.getInt();
+					messageRecords = new ArrayList<>(recordCount);
+					for (int i = 0; i < recordCount; i++) {
+						int recordLen = pBuffer.getInt();
+						long recordOffset = i < recordCount - 1 ? MessageIdConverter.envelopeOffset(offset, i) : offset;
+						if (!skipped(tp, recordOffset))
+							messageRecords.add(createV2Record(topic, partition, recordOffset, timestamp, payloadArray,
+									pBuffer.position(), pBuffer.position() + recordLen));
+						pBuffer.position(pBuffer.position() + recordLen);
 					}
 				} else {
-					keyArray = message.getJMSCorrelationIDAsBytes();
-					valueArray = message.getBytesData();
+					byte[] keyArray = message.getJMSCorrelationIDAsBytes();
+					byte[] valueArray = message.getBytesData();
+					RecordHeaders rcH = new RecordHeaders();
+					K key = this.keyDeserializer.deserialize(topic, rcH, keyArray);
+					V value = this.valueDeserializer.deserialize(topic, rcH, valueArray);
+					int keyLen = keyArray != null ? keyArray.length : 0;
+					int valueLen = valueArray != null ? valueArray.length : 0;
+
+					messageRecords = Collections.singletonList(new ConsumerRecord<>(topic, partition, offset, timestamp,
+							TimestampType.LOG_APPEND_TIME, null, keyLen == 0 ? ConsumerRecord.NULL_SIZE : keyLen,
+							valueLen == 0 ? ConsumerRecord.NULL_SIZE : valueLen, key, value, rcH));
 				}
-
-				topic = ((AQjmsDestination) message.getJMSDestination()).getTopicName();
-				
-				partition = AQClient.getMessagePartition(message);
-				
-				K key = this.keyDeserializer.deserialize(topic, keyArray);
-				V value = this.valueDeserializer.deserialize(topic, valueArray);
-				OKafkaOffset okOffset = MessageIdConverter.getOKafkaOffset(message.getJMSMessageID(), true, true);
-
-				record = new ConsumerRecord<>(topic, partition, okOffset.getOffset(), message.getJMSTimestamp(),
-						TimestampType.LOG_APPEND_TIME, null, keyLen == 0 ? ConsumerRecord.NULL_SIZE : keyLen,
-						valueLen == 0 ? ConsumerRecord.NULL_SIZE : valueLen, key, value, rcH);
+				processedMessages++;
+				dequeuedRecords += recordCount;
 
 			} catch (JMSException exception) {
 				log.error("JMS Exception while creting ConsumerRecord  " + exception, exception);
-				record = new ConsumerRecord<>("", -1, -1, -1, TimestampType.NO_TIMESTAMP_TYPE, null,
-						ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE, null, null, new RecordHeaders());
+				messageRecords = Collections.singletonList(new ConsumerRecord<>("", -1, -1, -1,
+						TimestampType.NO_TIMESTAMP_TYPE, null, ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE,
+						null, null, new RecordHeaders()));
 			} catch (Exception e) {
-				record = new ConsumerRecord<>("", -1, -1, -1, TimestampType.NO_TIMESTAMP_TYPE, null,
-						ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE, null, null, new RecordHeaders());
+				messageRecords = Collections.singletonList(new ConsumerRecord<>("", -1, -1, -1,
+						TimestampType.NO_TIMESTAMP_TYPE, null, ConsumerRecord.NULL_SIZE, ConsumerRecord.NULL_SIZE,
+						null, null, new RecordHeaders()));
 
 				log.error("Exception while creting ConsumerRecord  " + e, e);
 			}
 
-			TopicPartition tp = new TopicPartition(topic, partition);
-			if (tp != null && partition != -1) {
-				// Changes for 2.8.1
-				try {
-					subscriptions.position(tp, new FetchPosition(record.offset(), Optional.empty(),
-							new LeaderAndEpoch(Optional.empty(), Optional.empty())));
-				} catch (IllegalStateException isE) {
-					TopicTeqParameters teqParam = metadata.topicParaMap.get(topic);
-					int stickyDeqParam = teqParam != null ? teqParam.getStickyDeq(): 2;
-					if (metadata.getDBMajorVersion() < 23 || stickyDeqParam == 1) {
-						// Partition assigned by TEQ Server not through JoinGroup/Sync
-						subscriptions.assignFromSubscribed(Collections.singleton(tp));
-						subscriptions.seek(tp, 0);
-						subscriptions.completeValidation(tp);
-					}
-					subscriptions.position(tp, new FetchPosition(record.offset(), Optional.empty(),
-							new LeaderAndEpoch(Optional.empty(), Optional.empty())));
-				} catch (Exception e) {
-					log.error("Exception while setting fetch position " + e, e);
-				}
-				/*
-				 * OffsetAndMetadata offset = subscriptions.allConsumed().get(tp); if(offset ==
-				 * null) subscriptions.allConsumed().put(tp , new
-				 * OffsetAndMetadata(record.offset())); else { if(offset.offset() <
-				 * record.offset()) subscriptions.allConsumed().put(tp , new
-				 * OffsetAndMetadata(record.offset())); }
-				 */
+			if (messageRecords.isEmpty()) {
+				// Empty envelope, or records skipped after a seek
+				continue;
 			}
+			buffered.computeIfAbsent(new TopicPartition(topic, partition), tp -> new ArrayDeque<>()).addAll(messageRecords);
+		}
+		client.recordDequeued(processedMessages, dequeuedRecords);
+		if (!notHeld.isEmpty()) {
+			log.debug("Seeking back paused partitions {}, as they hold {} records already", notHeld.keySet(), maxPollRecords);
+			client.seekBack(notHeld);
+		}
+	}
 
-			if (!consumerRecords.containsKey(tp))
-				consumerRecords.put(tp, new ArrayList<ConsumerRecord<K, V>>());
-			consumerRecords.get(tp).add(record);
+	private int heldRecords(TopicPartition tp) {
+		ArrayDeque<ConsumerRecord<K, V>> held = buffered.get(tp);
+		return held == null ? 0 : held.size();
+	}
 
-			if (!headersSize.containsKey(tp))
-				headersSize.put(tp, hSize);
-			headersSize.put(tp, headersSize.get(tp) + hSize);
+	private boolean heldFull(TopicPartition tp) {
+		ArrayDeque<ConsumerRecord<K, V>> held = buffered.get(tp);
+		return held != null && held.size() >= maxPollRecords;
+	}
 
+	/*
+	 * Returns true if poll can return buffered records without dequeuing.
+	 */
+	private boolean hasReturnableRecords() {
+		for (Map.Entry<TopicPartition, ArrayDeque<ConsumerRecord<K, V>>> entry : buffered.entrySet()) {
+			if (!entry.getValue().isEmpty() && !subscriptions.isPaused(entry.getKey()))
+				return true;
 		}
+		return false;
+	}
 
-		Set<TopicPartition> topicPartitions = new HashSet<TopicPartition>(consumerRecords.keySet());
-		FetchResponseMetricAggregator fetchResponseMetricAggregator = new FetchResponseMetricAggregator(
-				fetchManagerMetrics, topicPartitions);
+	/*
+	 * Returns up to max.poll.records buffered records, in the order they were dequeued per partition, and moves the
+	 * position of their partitions past them. Records of paused partitions remain buffered until the partition is
+	 * resumed. Records of partitions which are no longer assigned are dropped, they are consumed again by their new
+	 * owner.
+	 */
+	private Map<TopicPartition, List<ConsumerRecord<K, V>>> returnBufferedRecords() {
+		Map<TopicPartition, List<ConsumerRecord<K, V>>> consumerRecords = new HashMap<>();
+		int returnedRecords = 0;
+		Iterator<Map.Entry<TopicPartition, ArrayDeque<ConsumerRecord<K, V>>>> it = buffered.entrySet().iterator();
+		while (it.hasNext() && returnedRecords < maxPollRecords) {
+			Map.Entry<TopicPartition, ArrayDeque<ConsumerRecord<K, V>>> entry = it.next();
+			TopicPartition tp = entry.getKey();
+			ArrayDeque<ConsumerRecord<K, V>> records = entry.getValue();
+			if (tp.partition() != -1 && !subscriptions.isAssigned(tp) && !assignedOnDequeue(tp.topic())) {
+				log.debug("Dropping {} records buffered for revoked partition {}", records.size(), tp);
+				it.remove();
+				continue;
+			}
+			if (subscriptions.isPaused(tp))
+				continue;
+			int count = Math.min(records.size(), maxPollRecords - returnedRecords);
+			List<ConsumerRecord<K, V>> partitionRecords = new ArrayList<>(count);
+			for (int i = 0; i < count; i++)
+				partitionRecords.add(records.poll());
+			if (records.isEmpty())
+				it.remove();
+			returnedRecords += count;
+			lagProbe.recordsReturned(tp, count);
+			if (tp.partition() != -1)
+				updatePosition(tp, partitionRecords.get(count - 1).offset());
+			consumerRecords.computeIfAbsent(tp, p -> new ArrayList<>()).addAll(partitionRecords);
+		}
 
+		FetchResponseMetricAggregator fetchResponseMetricAggregator = new FetchResponseMetricAggregator(
+				fetchManagerMetrics, new HashSet<TopicPartition>(consumerRecords.keySet()));
 		for (Map.Entry<TopicPartition, List<ConsumerRecord<K, V>>> entry : consumerRecords.entrySet()) {
 			int bytes = 0;
-			List<ConsumerRecord<K, V>> recordList = entry.getValue();
-			int recordCount = recordList.size();
+			for (ConsumerRecord<K, V> record : entry.getValue())
+				bytes += record.serializedKeySize() + record.serializedValueSize() + headersSize(record);
+			fetchResponseMetricAggregator.record(entry.getKey(), bytes, entry.getValue().size());
+		}
+		return consumerRecords;
+	}
+
+	/*
+	 * Partitions of topics dequeued without a rebalance are assigned by the database as their records are dequeued.
+	 */
+	private boolean assignedOnDequeue(String topic) {
+		TopicTeqParameters teqParam = metadata.topicParameters(topic);
+		int stickyDeqParam = teqParam != null ? teqParam.getStickyDeq() : 2;
+		return (metadata.getDBMajorVersion() < 23 || stickyDeqParam == 1) && subscriptions.hasAutoAssignedPartitions();
+	}
 
-			for (int i = 0; i < recordCount; i++) {
-				bytes += recordList.get(i).serializedKeySize();
-				bytes += recordList.get(i).serializedValueSize();
-				bytes += hSize;
+	private void updatePosition(TopicPartition tp, long offset) {
+		// Changes for 2.8.1
+		try {
+			subscriptions.position(tp, new FetchPosition(offset, Optional.empty(),
+					new LeaderAndEpoch(Optional.empty(), Optional.empty())));
+		} catch (IllegalStateException isE) {
+			if (assignedOnDequeue(tp.topic())) {
+				// Partition assigned by TEQ Server not through JoinGroup/Sync
+				subscriptions.assignFromSubscribed(Collections.singleton(tp));
+				subscriptions.seek(tp, 0);
+				subscriptions.completeValidation(tp);
 			}
-			fetchResponseMetricAggregator.record(entry.getKey(), bytes, recordCount);
+			subscriptions.position(tp, new FetchPosition(offset, Optional.empty(),
+					new LeaderAndEpoch(Optional.empty(), Optional.empty())));
+		} catch (Exception e) {
+			log.error("Exception while setting fetch position " + e, e);
 		}
-		return consumerRecords;
+	}
+
+	private static int headersSize(ConsumerRecord<?, ?> record) {
+		int size = 0;
+		for (Header header : record.headers())
+			size += Utils.utf8Length(header.key()) + (header.value() != null ? header.value().length : 0);
+		return size;
+	}
+
+	/*
+	 * Returns true if the record is returned already, and is skipped as it is dequeued again.
+	 */
+	private boolean skipped(TopicPartition tp, long offset) {
+		Long through = skipThrough.get(tp);
+		if (through == null)
+			return false;
+		if (MessageIdConverter.notAfter(offset, through))
+			return true;
+		skipThrough.remove(tp);
+		return false;
+	}
+
+	/*
+	 * Creates a ConsumerRecord from a payload in V2 format stored in payloadArray between start and end.
+	 * 
+	 * Received Byte Payload in below format: | KEY LENGTH (4 Bytes Fixed) | KEY | |
+	 * VALUE LENGTH (4 BYTES FIXED) | VALUE | | HEADER NAME LENGTH(4 BYTES FIXED) |
+	 * HEADER NAME | | HEADER VALUE LENGTH (4 BYTES FIXED) | HEADER VALUE | | HEADER
+	 * NAME LENGTH(4 BYTES FIXED) | HEADER NAME | | HEADER VALUE LENGTH (4 BYTES
+	 * FIXED) | HEADER VALUE |
+	 * 
+	 * For records with null key , KEY LENGTH is set to 0. For records with null
+	 * value, VALUE LENGTH is set to 0. Number of headers are set in property
+	 * "AQINTERNAL_HEADERCOUNT"
+	 * 
+	 * Key and value are passed to the deserializers as views over the payload without
+	 * copying. Headers fill the rest of the payload, so they are read until the payload
+	 * ends rather than looking up the header count property.
+	 */
+	private ConsumerRecord<K, V> createV2Record(String topic, int partition, long offset, long timestamp,
+			byte[] payloadArray, int start, int end) {
+		RecordHeaders rcH = new RecordHeaders();
+		ByteBuffer pBuffer = ByteBuffer.wrap(payloadArray, start, end - start);
+
+		// Read Key First
+		int keyLen = pBuffer.getInt();
+		ByteBuffer keyBuffer = ByteBuffer.wrap(payloadArray, pBuffer.position(), keyLen);
+		pBuffer.position(pBuffer.position() + keyLen);
+
+		// Get Actual Payload
+		int valueLen = pBuffer.getInt();
+		ByteBuffer valueBuffer = ByteBuffer.wrap(payloadArray, pBuffer.position(), valueLen);
+		pBuffer.position(pBuffer.position() + valueLen);
+
+		int hKeyLen = 0;
+		int hValueLen = 0;
+
+		while (pBuffer.remaining() >= DLENGTH_SIZE) {
+			hKeyLen = pBuffer.getInt();
+			if (hKeyLen > 0) {
+				String hKey = new String(payloadArray, pBuffer.position(), hKeyLen);
+				pBuffer.position(pBuffer.position() + hKeyLen);
+				hValueLen = pBuffer.getInt();
+				byte[] hValueArray = new byte[hValueLen];
+				pBuffer.get(hValueArray, 0, hValueLen);
+				rcH.add(hKey, hValueArray);
+			}
+		}
+
+		K key = this.keyDeserializer.deserialize(topic, rcH, keyBuffer);
+		V value = this.valueDeserializer.deserialize(topic, rcH, valueBuffer);
+
+		return new ConsumerRecord<>(topic, partition, offset, timestamp, TimestampType.LOG_APPEND_TIME,
+				keyLen == 0 ? ConsumerRecord.NULL_SIZE : keyLen, valueLen == 0 ? ConsumerRecord.NULL_SIZE : valueLen,
+				key, value, rcH, Optional.empty());
 	}
 
 	private long remainingTimeAtLeastZero(final long timeoutMs, final long elapsedTime) {
@@ -1283,6 +1510,11 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	 * or rollback happens. Commit does not take any timeout into account for
 	 * completion of call.
 	 * <p>
+	 * Unless <i>oracle.consumer.lightweight</i> is enabled, the commit also covers
+	 * records dequeued by the session which poll has not returned yet, such as the
+	 * rest of a batch envelope beyond max.poll.records. They are still returned by
+	 * the next polls.
+	 * <p>
 	 *
 	 * @throws org.oracle.okafka.common.KafkaException for any other unrecoverable
 	 *                                                 errors (i.e topic doesn't
@@ -1318,6 +1550,9 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 		long commitStart = time.nanoseconds();
 
 		try {
+			// Complete earlier asynchronous commits first, so that commits are applied in order
+			asyncCommitter.awaitCompletion(timeout.toMillis());
+			asyncCommitter.invokeCompletedCallbacks();
 			client.commitOffsetsSync(subscriptions.allConsumed(), timeout.toMillis());
 			interceptors.onCommit(this.subscriptions.allConsumed());
 		} catch (Exception exception) {
@@ -1365,32 +1600,54 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	 * If process restarts after failure then it starts consuming from this rollback
 	 * position.
 	 * <p>
-	 * Internally this is an synchronous call and blocks until either commit is
-	 * successful or rolled back. Any errors encountered are either passed to the
-	 * callback (if provided) or discarded.
+	 * This call does not block. Offsets of consecutive asynchronous commits are
+	 * coalesced and committed together. A light weight subscriber commits offsets
+	 * in a background thread. Any other consumer commits its session at the
+	 * beginning of the next {@link #poll(Duration)}, before any new message is
+	 * consumed. Any errors encountered are either passed to the callback (if
+	 * provided) or discarded. Callback is invoked by the next
+	 * {@link #poll(Duration)}, {@link #commitSync()} or {@link #close()} once the
+	 * commit completes.
 	 * <p>
 	 * 
 	 * @param callback Callback to invoke when the commit completes
 	 */
 	@Override
 	public void commitAsync(OffsetCommitCallback callback) {
+		acquireAndEnsureOpen();
 		try {
-			client.commitOffsetsSync(subscriptions.allConsumed(), defaultApiTimeoutMs);
-			if (callback != null)
-				callback.onComplete(this.subscriptions.allConsumed(), null);
-		} catch (Exception exception) {
-			if (callback != null)
-				callback.onComplete(this.subscriptions.allConsumed(),
-						new KafkaException("failed to commit the current consumed offsets", exception));
+			asyncCommitter.commitAsync(subscriptions.allConsumed(), onCommitCompletion(callback));
+		} finally {
+			release();
 		}
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Commits the specified offsets asynchronously, see
+	 * {@link #commitAsync(OffsetCommitCallback)}. Only a light weight subscriber
+	 * commits exactly the specified offsets. Any other consumer commits all the
+	 * messages consumed by its session, as the session is committed.
+	 * 
+	 * @param offsets  offsets to commit
+	 * @param callback Callback to invoke when the commit completes
 	 */
 	@Override
 	public void commitAsync(final Map<TopicPartition, OffsetAndMetadata> offsets, OffsetCommitCallback callback) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		acquireAndEnsureOpen();
+		try {
+			asyncCommitter.commitAsync(offsets, onCommitCompletion(callback));
+		} finally {
+			release();
+		}
+	}
+
+	private OffsetCommitCallback onCommitCompletion(OffsetCommitCallback callback) {
+		return (offsets, exception) -> {
+			if (exception == null)
+				interceptors.onCommit(offsets);
+			if (callback != null)
+				callback.onComplete(offsets, exception);
+		};
 	}
 
 	/**
@@ -1415,6 +1672,15 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 			Map<TopicPartition, Long> offsetResetTimestamps = new HashMap<>();
 			offsetResetTimestamps.put(partition, offset);
 			client.resetOffsetsSync(offsetResetTimestamps, offset);
+			// The message carrying the record is consumed again, up to the record itself it is skipped
+			buffered.remove(partition);
+			int index = MessageIdConverter.envelopeIndex(offset);
+			if (index > 0)
+				skipThrough.put(partition, MessageIdConverter.envelopeOffset(MessageIdConverter.messageOffset(offset), index - 1));
+			else if (index < 0)
+				skipThrough.put(partition, MessageIdConverter.envelopeOffset(offset, MessageIdConverter.MAX_ENVELOPE_INDEX));
+			else
+				skipThrough.remove(partition);
 
 		} finally {
 			release();
@@ -1444,6 +1710,8 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 					: partitions;
 			for (TopicPartition tp : parts) {
 				log.debug("Seeking to beginning of partition {}", tp);
+				buffered.remove(tp);
+				skipThrough.remove(tp);
 				subscriptions.requestOffsetReset(tp, OffsetResetStrategy.EARLIEST);
 			}
 		} finally {
@@ -1473,6 +1741,8 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 					: partitions;
 			for (TopicPartition tp : parts) {
 				log.debug("Seeking to end of partition {}", tp);
+				buffered.remove(tp);
+				skipThrough.remove(tp);
 				subscriptions.requestOffsetReset(tp, OffsetResetStrategy.LATEST);
 			}
 		} finally {
@@ -1589,76 +1859,207 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Suspend fetching from the requested partitions. Future calls to {@link #poll(Duration)} will not return any
+	 * records from these partitions until they have been resumed using {@link #resume(Collection)}. Note that this
+	 * method does not affect partition subscription. In particular, it does not cause a group rebalance when automatic
+	 * assignment is used.
+	 * <p>
+	 * Records of a paused partition dequeued along with records of other partitions of the same topic are held by the
+	 * consumer and returned once the partition is resumed, while records of the other partitions keep being returned.
+	 * A topic is not dequeued while all its assigned partitions are paused. A light weight subscriber, see
+	 * {@link ConsumerConfig#ORACLE_CONSUMER_LIGHTWEIGHT}, holds up to max.poll.records records per paused partition and
+	 * seeks the partition back to the first record beyond them. Its held records are not committed, and are consumed
+	 * again when the consumer restarts. Any other consumer commits every record dequeued by its database session, so it
+	 * holds every record of a paused partition it dequeues, and its commits cover them.
+	 * 
+	 * @param partitions The partitions which should be paused
+	 * @throws IllegalStateException if any of the provided partitions are not currently assigned to this consumer
 	 */
 	@Override
 	public void pause(Collection<TopicPartition> partitions) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		acquireAndEnsureOpen();
+		try {
+			log.debug("Pausing partitions {}", partitions);
+			for (TopicPartition partition : partitions) {
+				// Topics are assigned by their upper case queue name, see assign
+				subscriptions.pause(new TopicPartition(partition.topic().toUpperCase(), partition.partition()));
+			}
+			client.onPartitionsPaused();
+		} finally {
+			release();
+		}
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Resume specified partitions which have been paused with {@link #pause(Collection)}. New calls to
+	 * {@link #poll(Duration)} will return records from these partitions if there are any to be fetched.
+	 * If the partitions were not previously paused, this method is a no-op.
+	 * 
+	 * @param partitions The partitions which should be resumed
+	 * @throws IllegalStateException if any of the provided partitions are not currently assigned to this consumer
 	 */
 	@Override
 	public void resume(Collection<TopicPartition> partitions) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		acquireAndEnsureOpen();
+		try {
+			log.debug("Resuming partitions {}", partitions);
+			for (TopicPartition partition : partitions) {
+				subscriptions.resume(new TopicPartition(partition.topic().toUpperCase(), partition.partition()));
+			}
+		} finally {
+			release();
+		}
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Get the set of partitions that were previously paused by a call to {@link #pause(Collection)}.
+	 *
+	 * @return The set of paused partitions
 	 */
 	@Override
 	public Set<TopicPartition> paused() {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		acquireAndEnsureOpen();
+		try {
+			return Collections.unmodifiableSet(subscriptions.pausedPartitions());
+		} finally {
+			release();
+		}
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Look up the offsets for the given partitions by timestamp. The returned offset for each partition is the earliest
+	 * offset whose timestamp is greater than or equal to the given timestamp in the corresponding partition.
+	 * The timestamp of a record is the time it was enqueued. Offsets of all partitions of a topic are looked up with
+	 * one database call.
+	 * 
+	 * @param timestampsToSearch the mapping from partition to the timestamp to look up.
+	 * 
+	 * @return a mapping from partition to the timestamp and offset of the first message with timestamp greater
+	 *         than or equal to the target timestamp. {@code null} will be returned for the partition if there is no
+	 *         such message.
+	 * @throws IllegalArgumentException if the target timestamp is negative
+	 * @throws org.apache.kafka.common.errors.TimeoutException if the offset metadata could not be fetched before
+	 *         the amount of time allocated by {@code default.api.timeout.ms} expires.
 	 */
 	@Override
 	public Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(Map<TopicPartition, Long> timestampsToSearch) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		return offsetsForTimes(timestampsToSearch, Duration.ofMillis(defaultApiTimeoutMs));
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Look up the offsets for the given partitions by timestamp. The returned offset for each partition is the earliest
+	 * offset whose timestamp is greater than or equal to the given timestamp in the corresponding partition.
+	 * 
+	 * @param timestampsToSearch the mapping from partition to the timestamp to look up.
+	 * @param timeout The maximum amount of time the method will block
+	 * 
+	 * @return a mapping from partition to the timestamp and offset of the first message with timestamp greater
+	 *         than or equal to the target timestamp. {@code null} will be returned for the partition if there is no
+	 *         such message.
+	 * @throws IllegalArgumentException if the target timestamp is negative
+	 * @throws org.apache.kafka.common.errors.TimeoutException if the offsets could not be fetched before
+	 *         expiration of the passed timeout
 	 */
 	@Override
 	public Map<TopicPartition, OffsetAndTimestamp> offsetsForTimes(Map<TopicPartition, Long> timestampsToSearch,
 			Duration timeout) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		acquireAndEnsureOpen();
+		try {
+			for (Map.Entry<TopicPartition, Long> entry : timestampsToSearch.entrySet()) {
+				if (entry.getValue() < 0)
+					throw new IllegalArgumentException("The target time for partition " + entry.getKey() + " is "
+							+ entry.getValue() + ". The target time cannot be negative.");
+			}
+			Map<TopicPartition, ListOffsetsPartitionResponse> responses = client.listOffsets(timestampsToSearch,
+					time.timer(timeout));
+			Map<TopicPartition, OffsetAndTimestamp> offsets = new HashMap<>();
+			for (TopicPartition tp : timestampsToSearch.keySet()) {
+				ListOffsetsPartitionResponse response = responses.get(tp);
+				if (response != null && response.offset() >= 0)
+					offsets.put(tp, new OffsetAndTimestamp(response.offset(), response.timestamp()));
+				else
+					offsets.put(tp, null);
+			}
+			return offsets;
+		} finally {
+			release();
+		}
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Get the first offset for the given partitions. Offsets of all partitions of a topic are fetched with one
+	 * database call.
+	 * 
+	 * @param partitions the partitions to get the earliest offsets.
+	 * @return The earliest available offsets for the given partitions
+	 * @throws org.apache.kafka.common.errors.TimeoutException if the offsets could not be fetched before
+	 *         expiration of {@code default.api.timeout.ms}
 	 */
 	@Override
 	public Map<TopicPartition, Long> beginningOffsets(Collection<TopicPartition> partitions) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		return beginningOffsets(partitions, Duration.ofMillis(defaultApiTimeoutMs));
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Get the first offset for the given partitions.
+	 * 
+	 * @param partitions the partitions to get the earliest offsets
+	 * @param timeout The maximum amount of time to await retrieval of the beginning offsets
+	 * 
+	 * @return The earliest available offsets for the given partitions
+	 * @throws org.apache.kafka.common.errors.TimeoutException if the offsets could not be fetched before
+	 *         expiration of the passed timeout
 	 */
 	@Override
 	public Map<TopicPartition, Long> beginningOffsets(Collection<TopicPartition> partitions, Duration timeout) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		return listOffsets(partitions, ListOffsetsRequest.EARLIEST_TIMESTAMP, timeout);
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Get the end offsets for the given partitions. The end offset of a partition is the offset of the last
+	 * message enqueued plus one. Offsets of all partitions of a topic are fetched with one database call.
+	 * 
+	 * @param partitions the partitions to get the end offsets.
+	 * @return The end offsets for the given partitions.
+	 * @throws org.apache.kafka.common.errors.TimeoutException if the offsets could not be fetched before
+	 *         expiration of {@code default.api.timeout.ms}
 	 */
 	@Override
 	public Map<TopicPartition, Long> endOffsets(Collection<TopicPartition> partitions) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		return endOffsets(partitions, Duration.ofMillis(defaultApiTimeoutMs));
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Get the end offsets for the given partitions. The end offset of a partition is the offset of the last
+	 * message enqueued plus one.
+	 * 
+	 * @param partitions the partitions to get the end offsets.
+	 * @param timeout The maximum amount of time to await retrieval of the end offsets
+	 * 
+	 * @return The end offsets for the given partitions.
+	 * @throws org.apache.kafka.common.errors.TimeoutException if the offsets could not be fetched before
+	 *         expiration of the passed timeout
 	 */
 	@Override
 	public Map<TopicPartition, Long> endOffsets(Collection<TopicPartition> partitions, Duration timeout) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		return listOffsets(partitions, ListOffsetsRequest.LATEST_TIMESTAMP, timeout);
+	}
+
+	private Map<TopicPartition, Long> listOffsets(Collection<TopicPartition> partitions, long timestamp, Duration timeout) {
+		acquireAndEnsureOpen();
+		try {
+			Map<TopicPartition, Long> timestampsToSearch = new HashMap<>();
+			for (TopicPartition tp : partitions)
+				timestampsToSearch.put(tp, timestamp);
+			Map<TopicPartition, ListOffsetsPartitionResponse> responses = client.listOffsets(timestampsToSearch,
+					time.timer(timeout));
+			Map<TopicPartition, Long> offsets = new HashMap<>();
+			for (Map.Entry<TopicPartition, ListOffsetsPartitionResponse> entry : responses.entrySet())
+				offsets.put(entry.getKey(), entry.getValue().offset());
+			return offsets;
+		} finally {
+			release();
+		}
 	}
 
 	/**
@@ -1716,11 +2117,13 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Wakeup the consumer. This method is thread-safe. The thread blocking in {@link #poll(Duration)} while every
+	 * partition is paused throws {@link org.apache.kafka.common.errors.WakeupException}. Otherwise the next call to
+	 * {@link #poll(Duration)} throws it, once a dequeue in progress in the database completes.
 	 */
 	@Override
 	public void wakeup() {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		client.wakeup();
 	}
 
 	private ClusterResourceListeners configureClusterResourceListeners(Deserializer<K> keyDeserializer,
@@ -1737,6 +2140,13 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	private void close(long timeoutMs, boolean swallowException) {
 		log.trace("Closing the Kafka consumer");
 		AtomicReference<Throwable> firstException = new AtomicReference<>();
+		try {
+			if (asyncCommitter != null)
+				asyncCommitter.close(Math.min(timeoutMs, requestTimeoutMs));
+		} catch (Throwable t) {
+			firstException.compareAndSet(null, t);
+			log.error("Failed to complete asynchronous commits of OKafka consumer ", t);
+		}
 		try {
 			if (client != null)
 				client.close(Math.min(timeoutMs, requestTimeoutMs));
@@ -1806,15 +2216,20 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 		long threadId = Thread.currentThread().getId();
 		if (threadId != currentThread.get() && !currentThread.compareAndSet(NO_CURRENT_THREAD, threadId))
 			throw new ConcurrentModificationException("KafkaConsumer is not safe for multi-threaded access");
-		refcount.incrementAndGet();
+		// The database session is not used by the prefetcher while the application thread is inside the consumer
+		if (refcount.incrementAndGet() == 1 && client != null)
+			client.pausePrefetch();
 	}
 
 	/**
 	 * Release the light lock protecting the consumer from multi-threaded access.
 	 */
 	private void release() {
-		if (refcount.decrementAndGet() == 0)
+		if (refcount.decrementAndGet() == 0) {
+			if (client != null)
+				client.resumePrefetch();
 			currentThread.set(NO_CURRENT_THREAD);
+		}
 	}
 
 	/**
@@ -1860,11 +2275,34 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 	}
 
 	/**
-	 * This method is not yet supported.
+	 * Get the consumer's current lag on the partition. Returns an "empty" {@link OptionalLong} if the lag is not known,
+	 * for example if the partition was not probed yet.
+	 * 
+	 * The lag is the number of records of the partition not yet returned by poll: the messages not yet dequeued by the
+	 * consumer group, read from GV$AQ_SHARDED_SUBSCRIBER_STAT, plus the records dequeued but not yet returned. A message
+	 * not yet dequeued counts as one record, even if it is an envelope of several records. The number of messages is
+	 * fetched by poll every {@link ConsumerConfig#ORACLE_CONSUMER_LAG_PROBE_INTERVAL_MS}, this method does not make any
+	 * database call. Without SELECT privilege on GV$AQ_SHARDED_SUBSCRIBER_STAT, the lag is only known while the
+	 * position and the latest offset of the partition are in the same subshard, as offsets are not contiguous across
+	 * subshards.
+	 * 
+	 * @param topicPartition The partition to get the lag for.
+	 * @return This {@code Consumer} instance's current lag for the given partition.
+	 * @throws IllegalStateException if the {@code topicPartition} is not assigned
 	 */
 	@Override
 	public OptionalLong currentLag(TopicPartition topicPartition) {
-		throw new FeatureNotSupportedException("This feature is not suported for this release.");
+		acquireAndEnsureOpen();
+		try {
+			// Topics are assigned by their upper case queue name, see assign
+			TopicPartition tp = new TopicPartition(topicPartition.topic().toUpperCase(), topicPartition.partition());
+			if (!subscriptions.isAssigned(tp))
+				throw new IllegalStateException("No current assignment for partition " + topicPartition);
+			Long lag = lagProbe.lag(tp);
+			return lag == null ? OptionalLong.empty() : OptionalLong.of(lag);
+		} finally {
+			release();
+		}
 	}
 	
 	/**
@@ -1939,6 +2377,8 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 		private final Sensor bytesFetched;
 		private final Sensor recordsFetched;
 		private final Sensor fetchLatency;
+		private final Sensor recordsFetchLag;
+		private final Sensor recordsFetchLead;
 
 		private int assignmentId = 0;
 		private Set<TopicPartition> assignedPartitions = Collections.emptySet();
@@ -1964,15 +2404,12 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 			this.fetchLatency
 					.add(new Meter(new WindowedCount(), metrics.metricInstance(metricsRegistry.fetchRequestRate),
 							metrics.metricInstance(metricsRegistry.fetchRequestTotal)));
-			/*
-			 * this.recordsFetchLag = metrics.sensor("records-lag");
-			 * this.recordsFetchLag.add(metrics.metricInstance(metricsRegistry.recordsLagMax
-			 * ), new Max());
-			 * 
-			 * this.recordsFetchLead = metrics.sensor("records-lead");
-			 * this.recordsFetchLead.add(metrics.metricInstance(metricsRegistry.
-			 * recordsLeadMin), new Min());
-			 */
+
+			this.recordsFetchLag = metrics.sensor("records-lag");
+			this.recordsFetchLag.add(metrics.metricInstance(metricsRegistry.recordsLagMax), new Max());
+
+			this.recordsFetchLead = metrics.sensor("records-lead");
+			this.recordsFetchLead.add(metrics.metricInstance(metricsRegistry.recordsLeadMin), new Min());
 		}
 
 		private void recordTopicFetchMetrics(String topic, int bytes, int records) {
@@ -2011,72 +2448,65 @@ public class KafkaConsumer<K, V> implements Consumer<K, V> {
 		public void recordFetchLatency(double value) {
 			fetchLatency.record(value);
 		}
-		/*
-		 * private void maybeUpdateAssignment(SubscriptionState subscription) { int
-		 * newAssignmentId = subscription.assignmentId(); if (this.assignmentId !=
-		 * newAssignmentId) { Set<TopicPartition> newAssignedPartitions =
-		 * subscription.assignedPartitions(); for (TopicPartition tp :
-		 * this.assignedPartitions) { if (!newAssignedPartitions.contains(tp)) {
-		 * metrics.removeSensor(partitionLagMetricName(tp));
-		 * metrics.removeSensor(partitionLeadMetricName(tp));
-		 * metrics.removeMetric(partitionPreferredReadReplicaMetricName(tp)); } }
-		 * 
-		 * for (TopicPartition tp : newAssignedPartitions) { if
-		 * (!this.assignedPartitions.contains(tp)) { MetricName metricName =
-		 * partitionPreferredReadReplicaMetricName(tp); if (metrics.metric(metricName)
-		 * == null) { metrics.addMetric( metricName, (Gauge<Integer>) (config, now) ->
-		 * subscription.preferredReadReplica(tp, 0L).orElse(-1) ); } } }
-		 * 
-		 * this.assignedPartitions = newAssignedPartitions; this.assignmentId =
-		 * newAssignmentId; } }
-		 * 
-		 * private void recordPartitionLead(TopicPartition tp, long lead) {
-		 * this.recordsFetchLead.record(lead);
-		 * 
-		 * String name = partitionLeadMetricName(tp); Sensor recordsLead =
-		 * this.metrics.getSensor(name); if (recordsLead == null) { Map<String, String>
-		 * metricTags = topicPartitionTags(tp);
-		 * 
-		 * recordsLead = this.metrics.sensor(name);
-		 * 
-		 * recordsLead.add(this.metrics.metricInstance(metricsRegistry.
-		 * partitionRecordsLead, metricTags), new Value());
-		 * recordsLead.add(this.metrics.metricInstance(metricsRegistry.
-		 * partitionRecordsLeadMin, metricTags), new Min());
-		 * recordsLead.add(this.metrics.metricInstance(metricsRegistry.
-		 * partitionRecordsLeadAvg, metricTags), new Avg()); } recordsLead.record(lead);
-		 * }
-		 * 
-		 * private void recordPartitionLag(TopicPartition tp, long lag) {
-		 * this.recordsFetchLag.record(lag);
-		 * 
-		 * String name = partitionLagMetricName(tp); Sensor recordsLag =
-		 * this.metrics.getSensor(name); if (recordsLag == null) { Map<String, String>
-		 * metricTags = topicPartitionTags(tp); recordsLag = this.metrics.sensor(name);
-		 * 
-		 * recordsLag.add(this.metrics.metricInstance(metricsRegistry.
-		 * partitionRecordsLag, metricTags), new Value());
-		 * recordsLag.add(this.metrics.metricInstance(metricsRegistry.
-		 * partitionRecordsLagMax, metricTags), new Max());
-		 * recordsLag.add(this.metrics.metricInstance(metricsRegistry.
-		 * partitionRecordsLagAvg, metricTags), new Avg()); } recordsLag.record(lag); }
-		 * 
-		 * private static String partitionLagMetricName(TopicPartition tp) { return tp +
-		 * ".records-lag"; }
-		 * 
-		 * private static String partitionLeadMetricName(TopicPartition tp) { return tp
-		 * + ".records-lead"; }
-		 * 
-		 * private MetricName partitionPreferredReadReplicaMetricName(TopicPartition tp)
-		 * { Map<String, String> metricTags = topicPartitionTags(tp); return
-		 * this.metrics.metricInstance(metricsRegistry.partitionPreferredReadReplica,
-		 * metricTags); }
-		 * 
-		 * 
-		 * private Map<String, String> topicPartitionTags(TopicPartition tp) {
-		 * Map<String, String> metricTags = new HashMap<>(2); metricTags.put("topic",
-		 * tp.topic().replace('.', '_')); metricTags.put("partition",
-		 * String.valueOf(tp.partition())); return metricTags; }
-		 */
+
+		// Removes lag and lead metrics of partitions no longer assigned
+		private void maybeUpdateAssignment(Set<TopicPartition> newAssignedPartitions) {
+			if (this.assignedPartitions.equals(newAssignedPartitions))
+				return;
+			for (TopicPartition tp : this.assignedPartitions) {
+				if (!newAssignedPartitions.contains(tp)) {
+					metrics.removeSensor(partitionLagMetricName(tp));
+					metrics.removeSensor(partitionLeadMetricName(tp));
+				}
+			}
+			this.assignedPartitions = newAssignedPartitions;
+		}
+
+		private void recordPartitionLead(TopicPartition tp, long lead) {
+			this.recordsFetchLead.record(lead);
+
+			String name = partitionLeadMetricName(tp);
+			Sensor recordsLead = this.metrics.getSensor(name);
+			if (recordsLead == null) {
+				Map<String, String> metricTags = topicPartitionTags(tp);
+
+				recordsLead = this.metrics.sensor(name);
+				recordsLead.add(this.metrics.metricInstance(metricsRegistry.partitionRecordsLead, metricTags), new Value());
+				recordsLead.add(this.metrics.metricInstance(metricsRegistry.partitionRecordsLeadMin, metricTags), new Min());
+				recordsLead.add(this.metrics.metricInstance(metricsRegistry.partitionRecordsLeadAvg, metricTags), new Avg());
+			}
+			recordsLead.record(lead);
+		}
+
+		private void recordPartitionLag(TopicPartition tp, long lag) {
+			this.recordsFetchLag.record(lag);
+
+			String name = partitionLagMetricName(tp);
+			Sensor recordsLag = this.metrics.getSensor(name);
+			if (recordsLag == null) {
+				Map<String, String> metricTags = topicPartitionTags(tp);
+
+				recordsLag = this.metrics.sensor(name);
+				recordsLag.add(this.metrics.metricInstance(metricsRegistry.partitionRecordsLag, metricTags), new Value());
+				recordsLag.add(this.metrics.metricInstance(metricsRegistry.partitionRecordsLagMax, metricTags), new Max());
+				recordsLag.add(this.metrics.metricInstance(metricsRegistry.partitionRecordsLagAvg, metricTags), new Avg());
+			}
+			recordsLag.record(lag);
+		}
+
+		private static String partitionLagMetricName(TopicPartition tp) {
+			return tp + ".records-lag";
+		}
+
+		private static String partitionLeadMetricName(TopicPartition tp) {
+			return tp + ".records-lead";
+		}
+
+		private Map<String, String> topicPartitionTags(TopicPartition tp) {
+			Map<String, String> metricTags = new HashMap<>(2);
+			metricTags.put("topic", tp.topic().replace('.', '_'));
+			metricTags.put("partition", String.valueOf(tp.partition()));
+			return metricTags;
+		}
 	}
 }
@@ -214,6 +214,11 @@ public class TxEQAssignor extends AbstractPartitionAssignor {
 			// Calculate how many partitions to be owned by each member
 			ArrayList<SessionData> memberList = partitionMemberMap.get(topicNow);
 			int membersCnt = memberList.size();
+			resolvePreviousOwners(memberList);
+			if (preferSticky()) {
+				// Sessions owning more partitions are picked first for the additional partition, so that they keep it
+				memberList.sort((s1, s2) -> Integer.compare(previousCount(s2), previousCount(s1)));
+			}
 
 			// Actual Partitions created
 			int totalPartitionsCreated = 0;
@@ -375,91 +380,13 @@ public class TxEQAssignor extends AbstractPartitionAssignor {
 					previousPartitions.removeAll(tMem.getAssignedPartitions());
 				}
 			}
-			// System.out.println("TxEQAssignor 4:Local New Assignment");
-			assigner = memberList.iterator();
-			// Phase 2: New Local Assignment
-			while (assigner.hasNext()) {
-				SessionData tMem = assigner.next();
-				// System.out.println("TxEQAssignor: Member " + tMem.name + " Pending partitions
-				// " + tMem.pendingCnt);
-				if (tMem.pendingCnt <= 0)
-					continue;
-
-				ArrayList<Integer> localPartitionList = instPListMap.get(tMem.getInstanceId());
-
-				if (localPartitionList == null || localPartitionList.size() == 0)
-					break;
-
-				ArrayList<Integer> assignedNow = new ArrayList<Integer>();
-
-				for (Integer pNow : localPartitionList) {
-					if (tMem.pendingCnt <= 0)
-						break;
-
-					PartitionData teqP = new PartitionData(topicNow, tMem.getQueueId(), pNow, tMem.getSubscriberName(),
-							tMem.getSubscriberId(), tMem.getInstanceId(), true);
-					tMem.addAssignedPartitions(teqP);
-					tMem.pendingCnt--;
-					assignedNow.add(pNow);
-					// System.out.println("TxEQAssignor: Partitoin " +pNow + " assigned to " +
-					// tMem.name +" Pending " + tMem.pendingCnt);
-				}
-				localPartitionList.removeAll(assignedNow);
-				assignedNow.clear();
-			}
-
-			assigner = memberList.iterator();
-			// Phase 3: Sticky Remote Assignment
-			// System.out.println("TxEQAssignor: TxEQ Assign 5:Sticky Remote Assignment");
-			while (assigner.hasNext()) {
-				SessionData tMem = assigner.next();
-				// System.out.println("TxEQAssignor: Member " + tMem.name + " Pending partitions
-				// " + tMem.pendingCnt);
-
-				if (tMem.pendingCnt <= 0)
-					continue;
-
-				List<PartitionData> previousPartitions = tMem.getPreviousPartitions();
-				if (previousPartitions != null && previousPartitions.size() > 0) {
-					ArrayList<PartitionData> removeList = new ArrayList<PartitionData>();
-					for (PartitionData pNow : previousPartitions) {
-						if (tMem.pendingCnt <= 0)
-							break;
-						int pInstLookup = pNow.getOwnerInstanceId();
-						ArrayList<Integer> remotePartitionList = instPListMap.get(pInstLookup);
-
-						int pIndex;
-						// Search if Partition is still available in the expected partition list
-						if (remotePartitionList == null)
-							pIndex = -1;
-						else
-							pIndex = remotePartitionList.indexOf(pNow.getTopicPartition().partition());
-						if (pIndex == -1) {
-							// lookup in other instances if partition is shifted due to instance shutdown
-							for (Integer instnow : instPListMap.keySet()) {
-								if (instnow.intValue() == pInstLookup)
-									continue;
-
-								remotePartitionList = instPListMap.get(instnow.intValue());
-								pIndex = remotePartitionList.indexOf(pNow.getTopicPartition().partition());
-								if (pIndex != -1) {
-									pInstLookup = instnow.intValue();
-									break;
-								}
-							}
-						}
-						// Partition is available in any of the instance partition list
-						if (pIndex != -1) {
-							pNow.setOwnerInstanceId(pInstLookup);
-							pNow.setLocal(false);
-							tMem.pendingCnt--;
-							tMem.addAssignedPartitions(pNow);
-							remotePartitionList.remove(pIndex);
-							removeList.add(pNow);
-						}
-					}
-					previousPartitions.removeAll(removeList);
-				}
+			// Phase 2 and 3: New Local and Sticky Remote Assignment
+			if (preferSticky()) {
+				assignStickyRemote(memberList);
+				assignNewLocal(topicNow, memberList);
+			} else {
+				assignNewLocal(topicNow, memberList);
+				assignStickyRemote(memberList);
 			}
 
 			assigner = memberList.iterator();
@@ -499,35 +426,168 @@ public class TxEQAssignor extends AbstractPartitionAssignor {
 				}
 			}
 
-			assigner = memberList.iterator();
-			// Create assignments now
-			// System.out.println("TxEQAssignor: Final Partition Map ");
-			while (assigner.hasNext()) {
-				SessionData tMem = assigner.next();
-				// System.out.println("TxEQAssignor: Session: " + tMem.name );
-				List<PartitionData> previousPartitions = tMem.getPreviousPartitions();
-				List<TopicPartition> assignedToMe = assignment.get(tMem.name);
-				List<PartitionData> assignedPartitionList = tMem.getAssignedPartitions();
-				// If no partitions is assigned, set -1 as assigned partition
-				if (assignedPartitionList == null || assignedPartitionList.size() == 0) {
-					PartitionData teqP = new PartitionData(topicNow, tMem.getQueueId(), -1, tMem.getSubscriberName(),
-							tMem.getSubscriberId(), tMem.getInstanceId(), true);
-					assignedPartitionList.add(teqP);
-					assignedToMe.add(teqP.getTopicPartition());
-					// System.out.println("TxEQAssignor: " + teqP.getTopicPartition().partition());
-					previousPartitions.clear();
-					continue;
-				}
-				for (PartitionData teqPNow : assignedPartitionList) {
-					assignedToMe.add(teqPNow.getTopicPartition());
-					// System.out.println("TxEQAssignor: " +
-					// teqPNow.getTopicPartition().partition());
-				}
+			completeAssignment(topicNow, memberList, assignment);
+		}
+		return assignment;
+	}
+
+	/**
+	 * Creates the assignment of each member from partitions added to its session data, and records them as previous
+	 * partitions of the session. A session without any partition is assigned partition -1.
+	 */
+	protected void completeAssignment(String topicNow, List<SessionData> memberList, Map<String, List<TopicPartition>> assignment) {
+		Iterator<SessionData> assigner = memberList.iterator();
+		// System.out.println("TxEQAssignor: Final Partition Map ");
+		while (assigner.hasNext()) {
+			SessionData tMem = assigner.next();
+			// System.out.println("TxEQAssignor: Session: " + tMem.name );
+			List<PartitionData> previousPartitions = tMem.getPreviousPartitions();
+			List<TopicPartition> assignedToMe = assignment.get(tMem.name);
+			List<PartitionData> assignedPartitionList = tMem.getAssignedPartitions();
+			// If no partitions is assigned, set -1 as assigned partition
+			if (assignedPartitionList == null || assignedPartitionList.size() == 0) {
+				PartitionData teqP = new PartitionData(topicNow, tMem.getQueueId(), -1, tMem.getSubscriberName(),
+						tMem.getSubscriberId(), tMem.getInstanceId(), true);
+				assignedPartitionList.add(teqP);
+				assignedToMe.add(teqP.getTopicPartition());
+				// System.out.println("TxEQAssignor: " + teqP.getTopicPartition().partition());
 				previousPartitions.clear();
-				previousPartitions.addAll(tMem.getAssignedPartitions());
+				continue;
+			}
+			for (PartitionData teqPNow : assignedPartitionList) {
+				assignedToMe.add(teqPNow.getTopicPartition());
+				// System.out.println("TxEQAssignor: " +
+				// teqPNow.getTopicPartition().partition());
 			}
+			previousPartitions.clear();
+			previousPartitions.addAll(tMem.getAssignedPartitions());
 		}
-		return assignment;
+	}
+
+	private void assignNewLocal(String topicNow, List<SessionData> memberList) {
+		Iterator<SessionData> assigner = memberList.iterator();
+		// Phase 2: New Local Assignment
+		while (assigner.hasNext()) {
+			SessionData tMem = assigner.next();
+			// System.out.println("TxEQAssignor: Member " + tMem.name + " Pending partitions
+			// " + tMem.pendingCnt);
+			if (tMem.pendingCnt <= 0)
+				continue;
+
+			ArrayList<Integer> localPartitionList = instPListMap.get(tMem.getInstanceId());
+
+			if (localPartitionList == null || localPartitionList.size() == 0)
+				break;
+
+			ArrayList<Integer> assignedNow = new ArrayList<Integer>();
+
+			for (Integer pNow : localPartitionList) {
+				if (tMem.pendingCnt <= 0)
+					break;
+
+				PartitionData teqP = new PartitionData(topicNow, tMem.getQueueId(), pNow, tMem.getSubscriberName(),
+						tMem.getSubscriberId(), tMem.getInstanceId(), true);
+				tMem.addAssignedPartitions(teqP);
+				tMem.pendingCnt--;
+				assignedNow.add(pNow);
+				// System.out.println("TxEQAssignor: Partitoin " +pNow + " assigned to " +
+				// tMem.name +" Pending " + tMem.pendingCnt);
+			}
+			localPartitionList.removeAll(assignedNow);
+			assignedNow.clear();
+		}
+	}
+
+	private void assignStickyRemote(List<SessionData> memberList) {
+		Iterator<SessionData> assigner = memberList.iterator();
+		// Phase 3: Sticky Remote Assignment
+		// System.out.println("TxEQAssignor: TxEQ Assign 5:Sticky Remote Assignment");
+		while (assigner.hasNext()) {
+			SessionData tMem = assigner.next();
+			// System.out.println("TxEQAssignor: Member " + tMem.name + " Pending partitions
+			// " + tMem.pendingCnt);
+
+			if (tMem.pendingCnt <= 0)
+				continue;
+
+			List<PartitionData> previousPartitions = tMem.getPreviousPartitions();
+			if (previousPartitions != null && previousPartitions.size() > 0) {
+				ArrayList<PartitionData> removeList = new ArrayList<PartitionData>();
+				for (PartitionData pNow : previousPartitions) {
+					if (tMem.pendingCnt <= 0)
+						break;
+					int pInstLookup = pNow.getOwnerInstanceId();
+					ArrayList<Integer> remotePartitionList = instPListMap.get(pInstLookup);
+
+					int pIndex;
+					// Search if Partition is still available in the expected partition list
+					if (remotePartitionList == null)
+						pIndex = -1;
+					else
+						pIndex = remotePartitionList.indexOf(pNow.getTopicPartition().partition());
+					if (pIndex == -1) {
+						// lookup in other instances if partition is shifted due to instance shutdown
+						for (Integer instnow : instPListMap.keySet()) {
+							if (instnow.intValue() == pInstLookup)
+								continue;
+
+							remotePartitionList = instPListMap.get(instnow.intValue());
+							pIndex = remotePartitionList.indexOf(pNow.getTopicPartition().partition());
+							if (pIndex != -1) {
+								pInstLookup = instnow.intValue();
+								break;
+							}
+						}
+					}
+					// Partition is available in any of the instance partition list
+					if (pIndex != -1) {
+						pNow.setOwnerInstanceId(pInstLookup);
+						pNow.setLocal(false);
+						tMem.pendingCnt--;
+						tMem.addAssignedPartitions(pNow);
+						remotePartitionList.remove(pIndex);
+						removeList.add(pNow);
+					}
+				}
+				previousPartitions.removeAll(removeList);
+			}
+		}
+	}
+
+	/**
+	 * A partition may be reported as previously owned by more than one session, when a session left the group while its
+	 * partitions were reassigned. Only the claim of the session with the latest assignment version is kept.
+	 */
+	private void resolvePreviousOwners(List<SessionData> memberList) {
+		Map<TopicPartition, SessionData> owners = new HashMap<>();
+		for (SessionData tMem : memberList) {
+			List<PartitionData> previousPartitions = tMem.getPreviousPartitions();
+			if (previousPartitions == null)
+				continue;
+			for (PartitionData pNow : previousPartitions) {
+				SessionData owner = owners.get(pNow.getTopicPartition());
+				if (owner == null || owner.getVersion() < tMem.getVersion())
+					owners.put(pNow.getTopicPartition(), tMem);
+			}
+		}
+		for (SessionData tMem : memberList) {
+			List<PartitionData> previousPartitions = tMem.getPreviousPartitions();
+			if (previousPartitions != null)
+				previousPartitions.removeIf(pNow -> owners.get(pNow.getTopicPartition()) != tMem);
+		}
+	}
+
+	private static int previousCount(SessionData tMem) {
+		List<PartitionData> previousPartitions = tMem.getPreviousPartitions();
+		return previousPartitions == null ? 0 : previousPartitions.size();
+	}
+
+	/**
+	 * @return true if partitions previously owned by a session are kept before partitions are moved to sessions
+	 * connected to the instance owning them. Local new assignment is then only done for partitions not owned by any session.
+	 */
+	protected boolean preferSticky() {
+		return false;
 	}
 
 	/*	if(clusterNow == null)
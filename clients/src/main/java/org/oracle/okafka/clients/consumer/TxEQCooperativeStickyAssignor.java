@@ -0,0 +1,46 @@
+/*
+** OKafka Java Client version 23.4.
+**
+** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+*/
+
+package org.oracle.okafka.clients.consumer;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link TxEQAssignor} which supports cooperative rebalancing.
+ * 
+ * With {@link TxEQAssignor}, every rebalance of a topic revokes all partitions of that topic from every consumer of the group,
+ * and the rebalance listener is invoked for all of them. With this assignor, a consumer keeps its partitions during a rebalance
+ * and only partitions which move to another consumer are revoked, once the new assignment is known. Rebalance listeners
+ * are invoked only for partitions which are actually revoked or newly assigned.
+ * 
+ * Partitions are assigned with below preference:
+ * 
+ * 1. Equal and fair distribution of partitions among alive consumer sessions
+ * 2. 1st Preference for Sticky Assignment, local partitions first
+ * 3. 2nd Preference for Local Assignment
+ * 
+ * When the same partition is reported as previously owned by more than one session, the session with the latest
+ * assignment version keeps it.
+ */
+public class TxEQCooperativeStickyAssignor extends TxEQAssignor {
+
+	@Override
+	public List<RebalanceProtocol> supportedProtocols() {
+		return Arrays.asList(RebalanceProtocol.COOPERATIVE, RebalanceProtocol.EAGER);
+	}
+
+	@Override
+	protected boolean preferSticky() {
+		return true;
+	}
+
+	@Override
+	public String name() {
+		return "TxEQCooperativeStickyAssignor";
+	}
+}
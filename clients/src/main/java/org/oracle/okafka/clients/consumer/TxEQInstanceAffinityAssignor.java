@@ -0,0 +1,126 @@
+/*
+** OKafka Java Client version 23.4.
+**
+** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+*/
+
+package org.oracle.okafka.clients.consumer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.common.TopicPartition;
+import org.oracle.okafka.common.internals.PartitionData;
+import org.oracle.okafka.common.internals.SessionData;
+
+/**
+ * A {@link TxEQAssignor} which minimizes dequeue of partitions owned by a remote Oracle RAC instance, and balances
+ * partitions among consumer sessions by their backlog instead of their count.
+ *
+ * Partitions are assigned heaviest first, where the weight of a partition is the number of messages not yet dequeued
+ * by the consumer group. A partition is assigned to the least loaded session connected to the instance owning it, unless
+ * all those sessions already carry more than their fair share of the backlog. Only then, or when no session is connected
+ * to the owner instance, the partition is assigned to the least loaded session of any instance. The previous owner of a
+ * partition keeps it when that does not increase its load beyond the least loaded candidate by more than the partition weight.
+ *
+ * The backlog is read from GV$AQ_SHARDED_SUBSCRIBER_STAT by the group leader. If it cannot be read, every partition
+ * weighs the same.
+ *
+ * Consumers using this assignor join the group again when the metadata shows that the owner instance of an assigned
+ * partition has changed, so that partitions follow their owner instance.
+ */
+public class TxEQInstanceAffinityAssignor extends TxEQAssignor {
+
+	// Messages not yet dequeued, per partition of each topic
+	private Map<String, Map<Integer, Long>> partitionBacklog = new HashMap<>();
+
+	public void setPartitionBacklog(Map<String, Map<Integer, Long>> _partitionBacklog)
+	{
+		partitionBacklog = _partitionBacklog != null ? _partitionBacklog : new HashMap<>();
+	}
+
+	@Override
+	public Map<String, List<TopicPartition>> assign(Map<String, Integer> partitionsPerTopic,
+			Map<String, Subscription> subscriptions) {
+		Map<String, List<TopicPartition>> assignment = new HashMap<>();
+		for (String memberId : subscriptions.keySet())
+			assignment.put(memberId, new ArrayList<TopicPartition>());
+
+		for (String topicNow : partitionsPerTopic.keySet()) {
+			List<SessionData> memberList = partitionMemberMap.get(topicNow);
+			if (memberList == null || memberList.isEmpty())
+				continue;
+			Map<Integer, Long> backlog = partitionBacklog.getOrDefault(topicNow, Collections.emptyMap());
+
+			Map<SessionData, Long> load = new IdentityHashMap<>();
+			Map<Integer, List<SessionData>> instSessionDataMap = new HashMap<>();
+			Map<TopicPartition, SessionData> previousOwner = new HashMap<>();
+			for (SessionData tMem : memberList) {
+				load.put(tMem, 0L);
+				instSessionDataMap.computeIfAbsent(tMem.getInstanceId(), inst -> new ArrayList<>()).add(tMem);
+				if (tMem.getPreviousPartitions() != null) {
+					for (PartitionData pData : tMem.getPreviousPartitions())
+						previousOwner.put(pData.getTopicPartition(), tMem);
+				}
+			}
+
+			// {partition, owner instance}, heaviest first
+			List<int[]> partitions = new ArrayList<>();
+			long totalWeight = 0;
+			long maxWeight = 0;
+			for (Map.Entry<Integer, ArrayList<Integer>> instEntry : instPListMap.entrySet()) {
+				for (Integer pNow : instEntry.getValue()) {
+					partitions.add(new int[] { pNow, instEntry.getKey() });
+					totalWeight += weight(backlog, pNow);
+					maxWeight = Math.max(maxWeight, weight(backlog, pNow));
+				}
+			}
+			partitions.sort((p1, p2) -> Long.compare(weight(backlog, p2[0]), weight(backlog, p1[0])));
+			long fairShare = totalWeight / memberList.size() + maxWeight;
+
+			for (int[] pNow : partitions) {
+				int partition = pNow[0];
+				int ownerInst = pNow[1];
+				long w = weight(backlog, partition);
+				List<SessionData> candidates = instSessionDataMap.get(ownerInst);
+				if (candidates == null || load.get(leastLoaded(candidates, load)) + w > fairShare)
+					candidates = memberList;
+
+				SessionData target = leastLoaded(candidates, load);
+				SessionData owner = previousOwner.get(new TopicPartition(topicNow, partition));
+				if (owner != null && candidates.contains(owner) && load.get(owner) <= load.get(target) + w)
+					target = owner;
+
+				load.put(target, load.get(target) + w);
+				target.addAssignedPartitions(new PartitionData(topicNow, target.getQueueId(), partition,
+						target.getSubscriberName(), target.getSubscriberId(), ownerInst, ownerInst == target.getInstanceId()));
+			}
+			completeAssignment(topicNow, memberList, assignment);
+		}
+		return assignment;
+	}
+
+	// Empty partitions weigh one message, so that they are spread among sessions as well
+	private static long weight(Map<Integer, Long> backlog, int partition) {
+		return Math.max(0, backlog.getOrDefault(partition, 0L)) + 1;
+	}
+
+	private static SessionData leastLoaded(List<SessionData> candidates, Map<SessionData, Long> load) {
+		SessionData least = null;
+		for (SessionData tMem : candidates) {
+			if (least == null || load.get(tMem) < load.get(least))
+				least = tMem;
+		}
+		return least;
+	}
+
+	@Override
+	public String name() {
+		return "TxEQInstanceAffinityAssignor";
+	}
+}
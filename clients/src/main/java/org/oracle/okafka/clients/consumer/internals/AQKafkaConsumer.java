@@ -48,6 +48,7 @@ import org.oracle.okafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.consumer.ConsumerPartitionAssignor;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.oracle.okafka.clients.consumer.TxEQAssignor;
+import org.oracle.okafka.clients.consumer.TxEQInstanceAffinityAssignor;
 import org.oracle.okafka.common.Node;
 import org.oracle.okafka.common.errors.ConnectionException;
 import org.apache.kafka.common.Cluster;
@@ -83,6 +84,7 @@ import org.oracle.okafka.common.requests.SubscribeResponse;
 import org.oracle.okafka.common.requests.SyncGroupRequest;
 import org.oracle.okafka.common.requests.SyncGroupResponse;
 import org.oracle.okafka.common.requests.UnsubscribeResponse;
+import org.oracle.okafka.common.utils.ConnectionPool;
 import org.oracle.okafka.common.utils.ConnectionUtils;
 import org.oracle.okafka.common.utils.FetchOffsets;
 import org.apache.kafka.common.utils.LogContext;
@@ -117,13 +119,20 @@ public final class AQKafkaConsumer extends AQClient{
 	
 	private final Map<Node, Map<String, CallableStatement>> callableCacheMap = new ConcurrentHashMap<>();
 
+	// Connection used by the asynchronous offset committer of a light weight subscriber, never by the consumer session
+	private Node asyncCommitNode = null;
+	private Connection asyncCommitConn = null;
+	private CallableStatement asyncCommitStmt = null;
+	private String asyncCommitUser = null;
+
 	public AQKafkaConsumer(LogContext logContext, ConsumerConfig configs, Time time, Metadata metadata,Metrics metrics)
 
 	{   
 		super(logContext.logger(AQKafkaConsumer.class), configs);
 		System.setProperty("oracle.jms.conservativeNavigation","1");
 		this.configs = configs;
-		this.topicConsumersMap = new HashMap<Node, TopicConsumers>();
+		// Sessions of several instances dequeue in parallel when oracle.consumer.instance.sessions is enabled
+		this.topicConsumersMap = Collections.synchronizedMap(new HashMap<Node, TopicConsumers>());
 		this.time =time;
 		this.metadata = metadata;
 		this.selectorMetrics = new SelectorMetrics(metrics, "Selector", Collections.<String, String>emptyMap(),true);
@@ -208,6 +217,8 @@ public final class AQKafkaConsumer extends AQClient{
 			return connectMe(request);
 		case OFFSET_FETCH:
 			return fetchOffsets(request);
+		case LIST_OFFSETS:
+			return listOffsets(request);
 		}
 		return null;
 	}
@@ -236,7 +247,7 @@ public final class AQKafkaConsumer extends AQClient{
 			TopicConsumers consumers = topicConsumersMap.get(node);
 			TopicSubscriber subscriber = consumers.getTopicSubscriber(topic);
 			log.debug("Invoking bulkReceive");
-			int maxRecords = configs.getInt(ConsumerConfig.MAX_POLL_RECORDS_CONFIG);
+			int maxRecords = fetchRequest.maxRecords() > 0 ? fetchRequest.maxRecords() : configs.getInt(ConsumerConfig.MAX_POLL_RECORDS_CONFIG);
 			if(maxRecords == 1)
 			{
 				Message msg = subscriber.receive(timeoutMs);
@@ -248,7 +259,7 @@ public final class AQKafkaConsumer extends AQClient{
 			}
 			else 
 			{
-				messages = ((AQjmsConsumer)subscriber).bulkReceive(configs.getInt(ConsumerConfig.MAX_POLL_RECORDS_CONFIG), timeoutMs);
+				messages = ((AQjmsConsumer)subscriber).bulkReceive(maxRecords, timeoutMs);
 			}
 			log.debug("After bulkreceive. #Message = " + (messages!=null?messages.length:"0") );
 			if(messages == null) 
@@ -318,7 +329,6 @@ public final class AQKafkaConsumer extends AQClient{
 		log.debug("Commit Nodes. " + nodes.size());
 		for(Map.Entry<Node, List<TopicPartition>> node : nodes.entrySet()) {
 			if(node.getValue().size() > 0) {
-				String topic = node.getValue().get(0).topic();
 				TopicConsumers consumers = topicConsumersMap.get(node.getKey());
 				TopicSession jmsSession = null;
 				try {
@@ -337,7 +347,10 @@ public final class AQKafkaConsumer extends AQClient{
 					}
 					else{
 						log.debug("Performing lightweight commit for node " + node);
-						commitOffsetsLightWeightSub(node.getKey(), topic, offsets);
+						Map<TopicPartition, OffsetAndMetadata> nodeOffsets = new HashMap<>();
+						for(TopicPartition tp : node.getValue())
+							nodeOffsets.put(tp, offsets.get(tp));
+						commitOffsetsLightWeightSub(node.getKey(), nodeOffsets);
 					}
 					result.put(node.getKey(), null);
 
@@ -358,25 +371,115 @@ public final class AQKafkaConsumer extends AQClient{
 		return createCommitResponse(request, nodes, offsets, result, error);
 	}
 
-	private void commitOffsetsLightWeightSub(Node node, String topic, Map<TopicPartition, OffsetAndMetadata> offsets) throws Exception {
-     	int size = offsets.size();
+	private void commitOffsetsLightWeightSub(Node node, Map<TopicPartition, OffsetAndMetadata> offsets) throws Exception {
+		for (Map.Entry<String, Map<TopicPartition, OffsetAndMetadata>> topicOffsets : offsetsByTopic(offsets).entrySet()) {
+			commitOffsetsLightWeightSub(node, topicOffsets.getKey(), topicOffsets.getValue());
+		}
+	}
+
+	private static Map<String, Map<TopicPartition, OffsetAndMetadata>> offsetsByTopic(Map<TopicPartition, OffsetAndMetadata> offsets) {
+		Map<String, Map<TopicPartition, OffsetAndMetadata>> offsetsByTopic = new HashMap<>();
+		for (Map.Entry<TopicPartition, OffsetAndMetadata> offsetEntry : offsets.entrySet()) {
+			offsetsByTopic.computeIfAbsent(offsetEntry.getKey().topic(), t -> new HashMap<>())
+				.put(offsetEntry.getKey(), offsetEntry.getValue());
+		}
+		return offsetsByTopic;
+	}
+
+	/**
+	 * Commits offsets of a light weight subscriber over a database connection of its own, so that the commit
+	 * neither waits for nor takes part in the transaction of the consumer session.
+	 * Used by {@link AsyncOffsetCommitter}, must not be invoked by more than one thread at a time.
+	 */
+	public void commitOffsetsAsync(Node node, Map<TopicPartition, OffsetAndMetadata> offsets) throws Exception {
+		try {
+			if (asyncCommitConn == null || asyncCommitConn.isClosed() || asyncCommitNode.id() != node.id()) {
+				closeAsyncCommitConnection();
+				asyncCommitConn = ConnectionUtils.createJDBCConnection(node, configs, log, this);
+				asyncCommitStmt = asyncCommitConn.prepareCall(LTWT_COMMIT_SYNC_ALL);
+				asyncCommitUser = asyncCommitConn.getMetaData().getUserName();
+				asyncCommitNode = node;
+			}
+			for (Map.Entry<String, Map<TopicPartition, OffsetAndMetadata>> topicOffsets : offsetsByTopic(offsets).entrySet()) {
+				commitOffsetsLightWeightSub((OracleConnection) asyncCommitConn, asyncCommitStmt, asyncCommitUser,
+						topicOffsets.getKey(), topicOffsets.getValue());
+			}
+			if (!asyncCommitConn.getAutoCommit())
+				asyncCommitConn.commit();
+		} catch (Exception e) {
+			log.error("Error in asynchronous light weight commit for node: " + node, e);
+			closeAsyncCommitConnection();
+			throw e;
+		}
+	}
+
+	public void closeAsyncCommitConnection() {
+		try {
+			if (asyncCommitStmt != null)
+				asyncCommitStmt.close();
+			if (asyncCommitConn != null)
+				asyncCommitConn.close();
+		} catch (SQLException e) {
+			log.debug("Failed to close asynchronous commit connection", e);
+		}
+		asyncCommitStmt = null;
+		asyncCommitConn = null;
+		asyncCommitNode = null;
+	}
+
+	private void commitOffsetsLightWeightSub(OracleConnection oracleCon, CallableStatement cStmt, String user, String topic,
+			Map<TopicPartition, OffsetAndMetadata> offsets) throws SQLException {
+		// A record of a batch envelope other than its last one commits the message before the envelope
+		Map<TopicPartition, Long> messageOffsets = new HashMap<>();
+		for (Map.Entry<TopicPartition, OffsetAndMetadata> offsetEntry : offsets.entrySet()) {
+			long messageOffset = MessageIdConverter.consumedMessageOffset(offsetEntry.getValue().offset());
+			if (messageOffset >= 0)
+				messageOffsets.put(offsetEntry.getKey(), messageOffset);
+		}
+		if (messageOffsets.isEmpty())
+			return;
+		int size = messageOffsets.size();
 		int[] partitions = new int[size];
 		int[] priorities = new int[size];
 		long[] subshards = new long[size];
 		long[] sequences = new long[size];
 
 		int index = 0;
-		for (Map.Entry<TopicPartition, OffsetAndMetadata> offsetEntry : offsets.entrySet()) {
+		for (Map.Entry<TopicPartition, Long> offsetEntry : messageOffsets.entrySet()) {
 			TopicPartition tp = offsetEntry.getKey();
-			OffsetAndMetadata metadata = offsetEntry.getValue();
 			partitions[index] = tp.partition() * 2;
 			priorities[index] = 0;
-			subshards[index] = metadata.offset() / MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
-			sequences[index] = metadata.offset() % MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
+			subshards[index] = offsetEntry.getValue() / MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
+			sequences[index] = offsetEntry.getValue() % MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
 			index++;
 		}
 
-		commitSyncAll(node, topic, partitions, priorities, subshards, sequences);
+		cStmt.setString(1, user);
+		cStmt.setString(2, topic);
+		cStmt.setString(3, configs.getString(ConsumerConfig.GROUP_ID_CONFIG));
+		cStmt.setArray(4, oracleCon.createOracleArray("DBMS_TEQK.INPUT_ARRAY_T", partitions));
+		cStmt.setArray(5, oracleCon.createOracleArray("DBMS_TEQK.INPUT_ARRAY_T", priorities));
+		cStmt.setArray(6, oracleCon.createOracleArray("DBMS_TEQK.INPUT_ARRAY_T", subshards));
+		cStmt.setArray(7, oracleCon.createOracleArray("DBMS_TEQK.INPUT_ARRAY_T", sequences));
+		cStmt.execute();
+		log.debug("Light weight CommitSyncAll executed for topic: {}, partitions: {}", topic, size);
+	}
+
+	/**
+	 * @return true if this consumer is a light weight subscriber, which commits offsets instead of the session.
+	 */
+	public boolean lightWeightSubscriber() {
+		return configs.getBoolean(ConsumerConfig.ORACLE_CONSUMER_LIGHTWEIGHT);
+	}
+
+	private void commitOffsetsLightWeightSub(Node node, String topic, Map<TopicPartition, OffsetAndMetadata> offsets) throws Exception {
+		try {
+			commitOffsetsLightWeightSub((OracleConnection) getConnection(node),
+					getOrCreateCallable(node, "COMMIT_SYNC_ALL", LTWT_COMMIT_SYNC_ALL), getCurrentUser(node), topic, offsets);
+		} catch(Exception ex) {
+			log.error("Error in light weight commitSyncAll for topic: " + topic + ", node: " + node, ex);
+			throw ex;
+		}
 	}
 
 	public void commitSync(Node node, String topic, int partition_id, int priority, 
@@ -528,8 +631,10 @@ public final class AQKafkaConsumer extends AQClient{
 					continue;
 				}
 				else {
-					long subshard = offset / MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
-					long sequence = offset % MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
+					// Records of a batch envelope are consumed again from the message carrying them
+					long messageOffset = MessageIdConverter.messageOffset(offset);
+					long subshard = messageOffset / MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
+					long sequence = messageOffset % MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
 					lightWeightSeek(node, topic, 2*partition, priority, subshard, sequence);
 					responses.put(tp, null);
 				}
@@ -701,7 +806,9 @@ public final class AQKafkaConsumer extends AQClient{
 								seekInputs[indx].seekType = SeekInput.SEEK_MSGID; // Seek to MessageId
 								inArgs[2]= "Seek Type: " + seekInputs[indx].seekType;
 								inArgs[3] ="Seek to Offset: " +  offsets.getValue();
-								seekInputs[indx].seekMsgId = MessageIdConverter.getMsgId(tp, offsets.getValue(), msgIdFormat, 0);
+								// Records of a batch envelope are consumed again from the message carrying them
+								seekInputs[indx].seekMsgId = MessageIdConverter.getMsgId(tp,
+										MessageIdConverter.messageOffset(offsets.getValue()), msgIdFormat, 0);
 								inArgs[4] = "Seek To MsgId: "+seekInputs[indx].seekMsgId ;
 								validateMsgId(seekInputs[indx].seekMsgId);
 							}
@@ -973,7 +1080,7 @@ public final class AQKafkaConsumer extends AQClient{
 			}
 
 
-			return createJoinGroupResponse(request, sessionId, instId, qpatInfo, qpimInfo, joinStmt.getInt(4), null, false);
+			return createJoinGroupResponse(request, con, sessionId, instId, qpatInfo, qpimInfo, joinStmt.getInt(4), null, false);
 		} catch(Exception exception) {
 			boolean disconnected = false;
 			log.error("Exception while executing JoinGroup " + exception.getMessage() , exception);
@@ -988,7 +1095,7 @@ public final class AQKafkaConsumer extends AQClient{
 					disconnected = true;
 				}
 			}
-			return createJoinGroupResponse(request, sessionId, instId, null, null, -1, exception, disconnected);
+			return createJoinGroupResponse(request, con, sessionId, instId, null, null, -1, exception, disconnected);
 		}
 		finally {
 			try {
@@ -1129,8 +1236,40 @@ public final class AQKafkaConsumer extends AQClient{
 		return configs.getString(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG);
 	}
 
+	/**
+	 * Returns the number of messages not yet dequeued by the subscriber, per partition of the queue.
+	 * Returns an empty map if the statistics can not be read, for instance when SELECT privilege on GV$AQ_SHARDED_SUBSCRIBER_STAT is not granted.
+	 */
+	private Map<Integer, Long> getPartitionBacklog(Connection con, int queueId, int subscriberId) {
+		Map<Integer, Long> backlog = new HashMap<>();
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = con.prepareStatement("select shard_id, sum(enqueued_msgs - dequeued_msgs) from gv$aq_sharded_subscriber_stat "
+					+ "where queue_id = ? and subscriber_id = ? group by shard_id");
+			stmt.setInt(1, queueId);
+			stmt.setInt(2, subscriberId);
+			rs = stmt.executeQuery();
+			while(rs.next())
+				backlog.merge(rs.getInt(1)/2, rs.getLong(2), Long::sum);
+		} catch(SQLException e) {
+			log.debug("Failed to fetch backlog of partitions, partitions are balanced by count: " + e.getMessage());
+			backlog.clear();
+		} finally {
+			try {
+				if(rs != null)
+					rs.close();
+				if(stmt != null)
+					stmt.close();
+			} catch(SQLException exception) {
+				//do nothing
+			}
+		}
+		return backlog;
+	}
+
 	/* Returns a list of sessions that are part of rebalancing and their previous assignment */
-	private ClientResponse createJoinGroupResponse(ClientRequest request, int sessionId, int instId, QPATInfo[] qpatInfo, QPIMInfo[] qpimInfo, int version, Exception exception, boolean disconnected) {
+	private ClientResponse createJoinGroupResponse(ClientRequest request, Connection con, int sessionId, int instId, QPATInfo[] qpatInfo, QPIMInfo[] qpimInfo, int version, Exception exception, boolean disconnected) {
 
 		Map<String, SessionData> memberPartitionMap = new HashMap<String, SessionData>();
 		List<PartitionData> partitions = new ArrayList<>();
@@ -1241,6 +1380,9 @@ public final class AQKafkaConsumer extends AQClient{
 							topicMemberMap.put(topic,membersList);
 							log.debug("Setting topicMembership Map. Member List Size " + membersList.size() +" Map Size  " + topicMemberMap.size());
 							txEQAssignor.setPartitionMemberMap(topicMemberMap);
+							if(assignor instanceof TxEQInstanceAffinityAssignor)
+								((TxEQInstanceAffinityAssignor) assignor).setPartitionBacklog(
+										Collections.singletonMap(topic, getPartitionBacklog(con, qpatInfo[0].getQueueId(), qpatInfo[0].getSubscriberId())));
 						}
 					}
 				}
@@ -1469,6 +1611,22 @@ public final class AQKafkaConsumer extends AQClient{
 				request.createdTimeMs(), System.currentTimeMillis(), disconnected, null, null, offsetResponse);
 	}
 
+	private ClientResponse listOffsets(ClientRequest request) {
+		Connection jdbcConn = null;
+		try {
+			for (Node nodeNow : topicConsumersMap.keySet()) {
+				if (request.destination().equals("" + nodeNow.id())) {
+					jdbcConn = topicConsumersMap.get(nodeNow).getDBConnection();
+					break;
+				}
+			}
+		} catch (JMSException jmsE) {
+			log.error("Exception while getting connection to list offsets " + jmsE.getMessage(), jmsE);
+		}
+		// Without connection the response is a disconnection and the request is sent again
+		return getOffsetsResponse(request, jdbcConn);
+	}
+
 	public ClientResponse connectMe(ClientRequest request)
 	{
 		ConnectMeRequest.Builder builder = (ConnectMeRequest.Builder)request.requestBuilder();
@@ -1599,11 +1757,13 @@ public final class AQKafkaConsumer extends AQClient{
 	 */
 	public void close() {
 		log.trace("Closing AQ kafka consumer");
+		closeAsyncCommitConnection();
 		for(Map.Entry<Node, TopicConsumers> nodeConsumers : topicConsumersMap.entrySet()) {
 			close(nodeConsumers.getKey(), nodeConsumers.getValue());
 		}
 		log.trace("Closed AQ kafka consumer");
 		topicConsumersMap.clear();
+		ConnectionPool.release(this);
 	}
 
 	/**
@@ -1657,10 +1817,20 @@ public final class AQKafkaConsumer extends AQClient{
 
 	public ClientResponse subscribe(ClientRequest request) {
 		boolean disconnected = false;
+		SubscribeRequest.Builder builder = (SubscribeRequest.Builder)request.requestBuilder();
+		SubscribeRequest subscribeRequest = builder.build();
+		String topic = subscribeRequest.getTopic();
+		Set<String> subscription = subscribeRequest.getSubscription();
 		
 		for(Map.Entry<Node, TopicConsumers> topicConsumersByNode: topicConsumersMap.entrySet())
 		{
-			for(Map.Entry<String, TopicSubscriber> topicSubscriber : topicConsumersByNode.getValue().getTopicSubscriberMap().entrySet()) {
+			// Subscribers of other subscribed topics share this session and are retained
+			boolean retained = false;
+			for(Map.Entry<String, TopicSubscriber> topicSubscriber : new ArrayList<>(topicConsumersByNode.getValue().getTopicSubscriberMap().entrySet())) {
+				if(subscription.contains(topicSubscriber.getKey()) && !topicSubscriber.getKey().equals(topic)) {
+					retained = true;
+					continue;
+				}
 				try {
 					((AQjmsConsumer)topicSubscriber.getValue()).close();
 					topicConsumersByNode.getValue().remove(topicSubscriber.getKey());
@@ -1668,12 +1838,13 @@ public final class AQKafkaConsumer extends AQClient{
 					//do nothing
 				}
 			}
+			if(retained)
+				continue;
 			// ToDo:Check if we need this or not. Ideally when consumer is closed, not committed messages should be rolled back.
 			try {
 				AQjmsSession sess = ((AQjmsSession)topicConsumersByNode.getValue().getSession());
 				if(sess.children() > 0)
 				{
-					// ToDo: Maintain list of topic subscribed with this topicConsumerMap and remove only those which are not needed
 					log.info("Remove possible old subscribers from this KafkaConsumer");
 					sess.close();
 					topicConsumersByNode.getValue().setSession(null);
@@ -1683,9 +1854,6 @@ public final class AQKafkaConsumer extends AQClient{
 				//log.error("Failed to close session: {} associated with connection: {} and node: {}  ", consumers.getSession(), consumers.getConnection(), node );
 			}
 		}
-		SubscribeRequest.Builder builder = (SubscribeRequest.Builder)request.requestBuilder();
-		SubscribeRequest subscribeRequest = builder.build();
-		String topic = subscribeRequest.getTopic();
 		Node node = metadata.getNodeById(Integer.parseInt(request.destination()));
 		TopicConsumers consumers = null;	
 		try {
@@ -1870,7 +2038,7 @@ public final class AQKafkaConsumer extends AQClient{
 		 */
 		public TopicConnection createTopicConnection(Node node) throws JMSException {
 			if(conn == null)
-				conn = ConnectionUtils.createTopicConnection(node, configs, log);
+				conn = ConnectionUtils.createTopicConnection(node, configs, log, false, AQKafkaConsumer.this);
 			return conn;
 		}
 
@@ -0,0 +1,236 @@
+/*
+ ** OKafka Java Client version 23.4.
+ **
+ ** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+ ** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+
+package org.oracle.okafka.clients.consumer.internals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.KafkaThread;
+import org.apache.kafka.common.utils.LogContext;
+import org.apache.kafka.common.utils.Time;
+import org.oracle.okafka.clients.Metadata;
+import org.oracle.okafka.common.Node;
+import org.slf4j.Logger;
+
+/**
+ * Commits offsets requested by commitAsync.
+ *
+ * Offsets of commitAsync calls which are not yet issued are coalesced, keeping the latest offset of each partition,
+ * and are committed with one database call.
+ * A light weight subscriber commits offsets with DBMS_TEQK.AQ$_COMMITSYNC_ALL, which is issued by a background thread over
+ * a database connection of its own. Any other subscriber commits the transaction of its consumer session, which also
+ * dequeues records. Such a commit is issued at the beginning of the next poll, before any record is dequeued, so that it
+ * covers exactly the records consumed when commitAsync was invoked.
+ *
+ * Callbacks of completed commits are invoked by the application thread, on the next poll, commitSync or close.
+ */
+public class AsyncOffsetCommitter implements Runnable {
+	public static final String COMMIT_THREAD_PREFIX = "okafka-consumer-commit-thread";
+
+	private final Logger log;
+	private final ConsumerNetworkClient client;
+	private final AQKafkaConsumer aqConsumer;
+	private final Metadata metadata;
+	private final Time time;
+	private final String threadName;
+	private final long requestTimeoutMs;
+	// Commits are issued by the background thread only for light weight subscribers
+	private final boolean background;
+
+	// Latest offset of each partition, requested by commitAsync calls which are not yet issued
+	private final Map<TopicPartition, OffsetAndMetadata> pendingOffsets = new HashMap<>();
+	private final List<PendingCommit> pendingCommits = new ArrayList<>();
+	private Node pendingNode = null;
+	private boolean inFlight = false;
+	private final ConcurrentLinkedQueue<PendingCommit> completedCommits = new ConcurrentLinkedQueue<>();
+	private KafkaThread thread = null;
+	private boolean closed = false;
+
+	private static class PendingCommit {
+		private final Map<TopicPartition, OffsetAndMetadata> offsets;
+		private final OffsetCommitCallback callback;
+		private Exception exception = null;
+
+		private PendingCommit(Map<TopicPartition, OffsetAndMetadata> offsets, OffsetCommitCallback callback) {
+			this.offsets = offsets;
+			this.callback = callback;
+		}
+	}
+
+	public AsyncOffsetCommitter(LogContext logContext, String clientId, ConsumerNetworkClient client,
+			AQKafkaConsumer aqConsumer, Metadata metadata, Time time, long requestTimeoutMs) {
+		this.log = logContext.logger(AsyncOffsetCommitter.class);
+		this.client = client;
+		this.aqConsumer = aqConsumer;
+		this.metadata = metadata;
+		this.time = time;
+		this.threadName = COMMIT_THREAD_PREFIX + " | " + clientId;
+		this.requestTimeoutMs = requestTimeoutMs;
+		this.background = aqConsumer.lightWeightSubscriber();
+	}
+
+	/**
+	 * Queues offsets to be committed. Callback, if not null, is invoked once the commit completes.
+	 */
+	public synchronized void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets, OffsetCommitCallback callback) {
+		if (closed)
+			throw new IllegalStateException("Asynchronous offset committer is already closed.");
+
+		PendingCommit commit = new PendingCommit(new HashMap<>(offsets), callback);
+		if (offsets.isEmpty()) {
+			completedCommits.add(commit);
+			return;
+		}
+		pendingOffsets.putAll(offsets);
+		pendingCommits.add(commit);
+		pendingNode = metadata.getLeader();
+		if (background) {
+			if (thread == null) {
+				thread = new KafkaThread(threadName, this, true);
+				thread.start();
+			}
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Issues commits which are deferred to the application thread. Must be invoked before records are dequeued.
+	 */
+	public void maybeCommit() {
+		if (background)
+			return;
+
+		Map<TopicPartition, OffsetAndMetadata> offsets;
+		List<PendingCommit> commits;
+		synchronized (this) {
+			if (pendingCommits.isEmpty())
+				return;
+			offsets = new HashMap<>(pendingOffsets);
+			commits = new ArrayList<>(pendingCommits);
+			pendingOffsets.clear();
+			pendingCommits.clear();
+		}
+		Exception exception = null;
+		try {
+			client.commitOffsetsSync(offsets, requestTimeoutMs);
+		} catch (Exception e) {
+			exception = e;
+		}
+		complete(commits, exception);
+	}
+
+	/**
+	 * Waits until every queued commit completes or timeoutMs elapses.
+	 * @return true if there is no queued commit left.
+	 */
+	public boolean awaitCompletion(long timeoutMs) {
+		if (!background) {
+			maybeCommit();
+			return true;
+		}
+
+		long deadline = time.milliseconds() + timeoutMs;
+		synchronized (this) {
+			while (!pendingCommits.isEmpty() || inFlight) {
+				long remainingMs = deadline - time.milliseconds();
+				if (remainingMs <= 0)
+					return false;
+				try {
+					wait(remainingMs);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Invokes callbacks of completed commits. Must be invoked by the application thread.
+	 */
+	public void invokeCompletedCallbacks() {
+		PendingCommit commit;
+		while ((commit = completedCommits.poll()) != null) {
+			if (commit.callback == null)
+				continue;
+			KafkaException exception = commit.exception == null ? null
+					: new KafkaException("failed to commit the current consumed offsets", commit.exception);
+			commit.callback.onComplete(commit.offsets, exception);
+		}
+	}
+
+	/**
+	 * Waits up to timeoutMs for queued commits, stops the background thread and invokes callbacks of completed commits.
+	 */
+	public void close(long timeoutMs) {
+		if (!awaitCompletion(timeoutMs))
+			log.warn("Closing consumer with asynchronous commits not yet completed");
+		synchronized (this) {
+			closed = true;
+			notifyAll();
+		}
+		invokeCompletedCallbacks();
+	}
+
+	@Override
+	public void run() {
+		log.debug("Starting consumer asynchronous commit thread.");
+		while (true) {
+			Map<TopicPartition, OffsetAndMetadata> offsets;
+			List<PendingCommit> commits;
+			Node node;
+			synchronized (this) {
+				while (!closed && pendingCommits.isEmpty()) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						closed = true;
+					}
+				}
+				if (pendingCommits.isEmpty())
+					break;
+				offsets = new HashMap<>(pendingOffsets);
+				commits = new ArrayList<>(pendingCommits);
+				node = pendingNode;
+				pendingOffsets.clear();
+				pendingCommits.clear();
+				inFlight = true;
+			}
+
+			Exception exception = null;
+			try {
+				if (node == null)
+					throw new KafkaException("No database session to commit offsets. Poll is not invoked yet.");
+				aqConsumer.commitOffsetsAsync(node, offsets);
+			} catch (Exception e) {
+				exception = e;
+			}
+			complete(commits, exception);
+			synchronized (this) {
+				inFlight = false;
+				notifyAll();
+			}
+		}
+		log.debug("Consumer asynchronous commit thread has been closed.");
+	}
+
+	private void complete(List<PendingCommit> commits, Exception exception) {
+		for (PendingCommit commit : commits) {
+			commit.exception = exception;
+			completedCommits.add(commit);
+		}
+	}
+}
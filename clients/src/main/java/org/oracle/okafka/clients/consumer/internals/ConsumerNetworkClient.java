@@ -32,14 +32,25 @@ package org.oracle.okafka.clients.consumer.internals;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 
 import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
 import org.apache.kafka.clients.consumer.ConsumerPartitionAssignor;
@@ -48,6 +59,7 @@ import org.apache.kafka.common.errors.DisconnectException;
 import org.apache.kafka.common.errors.InterruptException;
 import org.apache.kafka.common.errors.InvalidTopicException;
 import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.errors.WakeupException;
 import org.apache.kafka.common.metrics.Measurable;
 import org.apache.kafka.common.metrics.Metrics;
 import org.apache.kafka.common.metrics.Sensor;
@@ -65,15 +77,18 @@ import org.oracle.okafka.clients.Metadata;
 import org.oracle.okafka.clients.NetworkClient;
 import org.oracle.okafka.clients.TopicTeqParameters;
 import org.oracle.okafka.clients.consumer.KafkaConsumer.FetchManagerMetrics;
+import org.oracle.okafka.clients.consumer.TxEQInstanceAffinityAssignor;
 import org.oracle.okafka.clients.consumer.internals.SubscriptionState.FetchPosition;
 import org.apache.kafka.clients.RequestCompletionHandler;
 import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.apache.kafka.clients.consumer.ConsumerPartitionAssignor.Assignment;
 import org.apache.kafka.clients.consumer.ConsumerPartitionAssignor.GroupAssignment;
+import org.apache.kafka.clients.consumer.ConsumerPartitionAssignor.RebalanceProtocol;
 import org.apache.kafka.clients.consumer.ConsumerPartitionAssignor.Subscription;
 //import org.apache.kafka.clients.consumer.internals.SubscriptionState;
 //import org.oracle.okafka.common.Cluster;
 import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.PartitionInfo;
 import org.apache.kafka.common.KafkaException;
 import org.oracle.okafka.common.Node;
 import org.apache.kafka.common.TopicPartition;
@@ -88,6 +103,10 @@ import org.oracle.okafka.common.requests.FetchRequest;
 import org.oracle.okafka.common.requests.FetchResponse;
 import org.oracle.okafka.common.requests.JoinGroupRequest;
 import org.oracle.okafka.common.requests.JoinGroupResponse;
+import org.oracle.okafka.common.requests.ListOffsetsRequest;
+import org.oracle.okafka.common.requests.ListOffsetsRequest.ListOffsetsPartition;
+import org.oracle.okafka.common.requests.ListOffsetsResponse;
+import org.oracle.okafka.common.requests.ListOffsetsResponse.ListOffsetsPartitionResponse;
 import org.oracle.okafka.common.requests.MetadataRequest;
 import org.oracle.okafka.common.requests.OffsetFetchRequest;
 import org.oracle.okafka.common.requests.OffsetFetchResponse;
@@ -100,6 +119,7 @@ import org.oracle.okafka.common.requests.SyncGroupRequest;
 import org.oracle.okafka.common.requests.SyncGroupResponse;
 import org.oracle.okafka.common.requests.UnsubscribeRequest;
 import org.oracle.okafka.common.requests.UnsubscribeResponse;
+import org.apache.kafka.common.utils.KafkaThread;
 import org.apache.kafka.common.utils.Time;
 import org.apache.kafka.common.utils.Timer;
 import org.slf4j.Logger;
@@ -107,6 +127,7 @@ import oracle.jms.AQjmsBytesMessage;
 import org.oracle.okafka.common.utils.ConnectionUtils;
 
 public class ConsumerNetworkClient {
+	public static final String INSTANCE_SESSION_THREAD_PREFIX = "okafka-consumer-instance-thread";
 	private static final int MAX_POLL_TIMEOUT_MS = 5000;
 	private final Logger log;
 	private final KafkaClient client;
@@ -120,18 +141,51 @@ public class ConsumerNetworkClient {
 	private final int requestTimeoutMs;
 	private final int sesssionTimeoutMs;
 	private final long defaultApiTimeoutMs;
+	private final int maxPollRecords;
 	private final SubscriptionState subscriptions;
 	private Set<String> subscriptionSnapshot;
-	private boolean needsJoinPrepare = true;
-	private SessionData sessionData = null;
+	// Topics for which partitions are revoked and rebalance is in progress
+	private final Set<String> joinPreparedTopics = new HashSet<>();
+	// Database session data of this consumer, per subscribed topic
+	private final Map<String, SessionData> sessionDataMap = new HashMap<>();
+	// Topics whose manually assigned partitions changed after this consumer joined the group for them
+	private final Set<String> reassignedTopics = new HashSet<>();
+	// Instance owning each assigned partition, when it was assigned. Only tracked for TxEQInstanceAffinityAssignor.
+	private final Map<TopicPartition, Integer> partitionOwners = new HashMap<>();
+	// Metadata version last checked for partitions moved to another instance
+	private int ownershipCheckedVersion = -1;
+	// Rotates the topic polled first, so that every subscribed topic gets its fair share of records
+	private int pollRotation = 0;
 	private final List<ConsumerPartitionAssignor> assignors;
 	private final List<AQjmsBytesMessage> messages = new ArrayList<>();
+	// Notified by wakeup, while poll waits for a partition to be resumed
+	private final Object pauseMonitor = new Object();
+	private final AtomicBoolean wakeupRequested = new AtomicBoolean(false);
 	private Node currentSession = null;
 	String consumerGroupId;
 	private final AQKafkaConsumer aqConsumer;
+	private final boolean lightWeightSubscriber;
 	private final ConsumerCoordinatorMetrics sensors;
 	private long lastRebalanceStartMs = -1L;
     private long lastRebalanceEndMs = -1L;
+	// Dequeues records in background when oracle.consumer.prefetch is enabled
+	private ConsumerPrefetcher prefetcher = null;
+	// Partitions assigned to the database session of this consumer
+	private final Set<TopicPartition> sessionAssignment = new HashSet<>();
+	// Consumer owning the instance sessions. Itself, unless this is an instance session.
+	private final ConsumerNetworkClient primary;
+	// Instance an instance session is bound to. Null for the primary consumer.
+	private final Node instanceNode;
+	// Sessions to the other instances owning partitions of consumed topics, when oracle.consumer.instance.sessions is enabled
+	private final List<ConsumerNetworkClient> instanceSessions = new ArrayList<>();
+	private String instanceThreadName = null;
+	private ExecutorService instanceExecutor = null;
+	// Rotates the sessions which dequeue first, when there are more sessions than max.poll.records
+	private int sessionRotation = 0;
+	// Failure of an instance session, thrown by the next poll once the records dequeued by the other sessions are returned
+	private RuntimeException instanceFetchException = null;
+	// Moving average of the number of records carried by a dequeued message. Above 1 when batch envelopes are consumed.
+	private double recordsPerMessage = 1;
 	
 
 	public ConsumerNetworkClient(
@@ -149,6 +203,7 @@ public class ConsumerNetworkClient {
 			int maxPollTimeoutMs,
 			int sessionTimeoutMs,
 			long defaultApiTimeoutMs,
+			int maxPollRecords,
 			AQKafkaConsumer aqConsumer,
 			Metrics metrics) {
 		this.consumerGroupId = groupId;
@@ -167,11 +222,44 @@ public class ConsumerNetworkClient {
 		//Snapshot of subscription. Useful for ensuring if all topics are subscribed.
 		this.subscriptionSnapshot = new HashSet<>();
 		this.defaultApiTimeoutMs = defaultApiTimeoutMs;
+		this.maxPollRecords = maxPollRecords;
         this.aqConsumer = aqConsumer;
+        this.lightWeightSubscriber = aqConsumer.lightWeightSubscriber();
         this.sensors = new ConsumerCoordinatorMetrics(metrics, "consumer");
+        this.primary = this;
+        this.instanceNode = null;
 		if (autoCommitEnabled)
 			this.nextAutoCommitDeadline = time.milliseconds() + autoCommitIntervalMs;
 	}
+
+	/**
+	 * Creates a session of the primary consumer bound to the given instance. It shares the subscription, the network client
+	 * and the metrics of the primary consumer, and is a member of the consumer group on its own. Offsets are committed by the primary consumer.
+	 */
+	private ConsumerNetworkClient(ConsumerNetworkClient primary, Node instanceNode) {
+		this.consumerGroupId = primary.consumerGroupId;
+		this.log = primary.log;
+		this.client = primary.client;
+		this.metadata = primary.metadata;
+		this.subscriptions = primary.subscriptions;
+		this.assignors = primary.assignors;
+		this.autoCommitEnabled = false;
+		this.autoCommitIntervalMs = primary.autoCommitIntervalMs;
+		this.time = primary.time;
+		this.retryBackoffMs = primary.retryBackoffMs;
+		this.maxPollTimeoutMs = primary.maxPollTimeoutMs;
+		this.requestTimeoutMs = primary.requestTimeoutMs;
+		this.sesssionTimeoutMs = primary.sesssionTimeoutMs;
+		this.subscriptionSnapshot = primary.subscriptionSnapshot;
+		this.defaultApiTimeoutMs = primary.defaultApiTimeoutMs;
+		this.maxPollRecords = primary.maxPollRecords;
+		this.aqConsumer = primary.aqConsumer;
+		this.lightWeightSubscriber = primary.lightWeightSubscriber;
+		this.sensors = primary.sensors;
+		this.primary = primary;
+		this.instanceNode = instanceNode;
+		this.currentSession = instanceNode;
+	}
 	
 	public Connection getDBConnection()
 	{
@@ -230,18 +318,37 @@ public class ConsumerNetworkClient {
 	/**
 	 * Poll from subscribed topics.
 	 * Each node polls messages from a list of topic partitions for those it is a leader.
+	 * Subscribed topics are polled one after another over the same database session, starting from a different
+	 * topic on every poll. Until a message is consumed, remaining timeout is shared among the topics yet to be polled.
+	 * Once messages are consumed, remaining topics are polled without waiting, until max.poll.records messages are consumed.
 	 * @param timeoutMs poll messages for all subscribed topics.
 	 * @param fetchManagerMetrics for recording fetch Requests
 	 * @return messages consumed.
 	 */
 	public List<AQjmsBytesMessage> poll(final long timeoutMs,FetchManagerMetrics fetchManagerMetrics)  {
+		maybeTriggerWakeup();
+		maybeRejoinReassignedTopics();
+		maybeRejoinMovedPartitions();
+		if(allTopicsPaused()) {
+			// Nothing to fetch until a partition is resumed
+			awaitUnpaused(timeoutMs);
+			return new ArrayList<>();
+		}
+		if(instanceThreadName != null)
+			return pollInstanceSessions(timeoutMs, fetchManagerMetrics);
+		if(prefetcher != null) {
+			if(prefetcher.enabled() && prefetchable())
+				return prefetcher.poll(timeoutMs, fetchManagerMetrics);
+			// No usable session for the prefetcher. Connect and rebalance over this thread.
+			prefetcher.discard();
+		}
 		boolean retry = false;
 		long pollStartTime = System.currentTimeMillis();
 		long timeSpent = 0;
 		do {
 			retry = false;
 			this.messages.clear();
-			Map<Node, String> pollMap = getPollableMap();
+			Map<Node, List<String>> pollMap = getPollableMap();
 			long now = time.milliseconds();
 			RequestCompletionHandler callback = new RequestCompletionHandler() {
 				public void onComplete(ClientResponse response) {
@@ -249,17 +356,10 @@ public class ConsumerNetworkClient {
 				}
 			};
 			log.debug("Polling for topics #" + pollMap.entrySet().size());
-			for(Map.Entry<Node, String> poll : pollMap.entrySet()) {	
+			for(Map.Entry<Node, List<String>> poll : pollMap.entrySet()) {	
 				Node node = poll.getKey();
-				log.debug("Fetch Records for topic " + poll.getValue() + " from host " + node );
-				String topic =  poll.getValue();
-				TopicTeqParameters teqParam = metadata.topicParaMap.get(topic);
-				int stickyDeqParam = teqParam != null ? teqParam.getStickyDeq(): 2;
-				if(stickyDeqParam == 0) {
-					String errMsg = "Topic " + topic + " is not an Oracle kafka topic, Please drop and re-create topic"
-							+" using Admin.createTopics() or dbms_aqadm.create_database_kafka_topic procedure";
-					throw new InvalidTopicException(errMsg);				
-				}
+				List<String> topics = poll.getValue();
+				validateTopics(topics);
 				
 				if(!this.client.ready(node, now)) {
 					log.debug("Failed to consume messages from node: {}", node);
@@ -272,13 +372,22 @@ public class ConsumerNetworkClient {
 					if(connectionDelay != Long.MAX_VALUE)
 						time.sleep(connectionDelay);
 				} else {
-					ClientRequest request  = createFetchRequest(node, poll.getValue(), callback, requestTimeoutMs < timeoutMs ? requestTimeoutMs : (int)timeoutMs);
-					ClientResponse response = client.send(request, now);
-					fetchManagerMetrics.recordFetchLatency(response.requestLatencyMs());
-					handleFetchResponse(response, timeoutMs);
-					if (response.wasDisconnected())
-						retry = true;
-
+					int maxMessages = messageBudget(maxPollRecords);
+					for(int i = 0; i < topics.size() && messages.size() < maxMessages; i++) {
+						String topic = topics.get(i);
+						long remainingMs = timeoutMs - (System.currentTimeMillis() - pollStartTime);
+						long topicTimeoutMs = messages.isEmpty() ? Math.max(1, remainingMs / (topics.size() - i)) : 1;
+						log.debug("Fetch Records for topic " + topic + " from host " + node );
+						ClientRequest request  = createFetchRequest(node, topic, maxMessages - messages.size(), callback,
+								(int)Math.min(requestTimeoutMs, topicTimeoutMs));
+						ClientResponse response = client.send(request, time.milliseconds());
+						fetchManagerMetrics.recordFetchLatency(response.requestLatencyMs());
+						handleFetchResponse(response, timeoutMs);
+						if (response.wasDisconnected()) {
+							retry = true;
+							break;
+						}
+					}
 					break;
 				}
 			}
@@ -288,11 +397,381 @@ public class ConsumerNetworkClient {
 		return this.messages;
 	}
 
+	/**
+	 * Rolls back prefetched records, so that records of newly paused partitions are not dequeued ahead of resume.
+	 */
+	public void onPartitionsPaused() {
+		discardPrefetched();
+	}
+
+	/**
+	 * A topic is not dequeued while all its assigned partitions are paused. Records of paused partitions dequeued along
+	 * with records of other partitions of the topic are held by the consumer until the partitions are resumed.
+	 */
+	private boolean fetchPaused(String topic) {
+		boolean anyAssigned = false;
+		for(TopicPartition tp : subscriptions.assignedPartitions()) {
+			if(!tp.topic().equals(topic))
+				continue;
+			anyAssigned = true;
+			if(!subscriptions.isPaused(tp))
+				return false;
+		}
+		return anyAssigned;
+	}
+
+	/**
+	 * Waits up to timeoutMs while no consumed topic can be dequeued, checking every retry.backoff.ms whether a topic must
+	 * be joined again. Returns early once {@link #wakeup()} is invoked, then poll throws {@link WakeupException}.
+	 */
+	private void awaitUnpaused(long timeoutMs) {
+		long deadlineMs = time.milliseconds() + timeoutMs;
+		long remainingMs = timeoutMs;
+		while(remainingMs > 0 && allTopicsPaused()) {
+			synchronized(pauseMonitor) {
+				if(wakeupRequested.get())
+					break;
+				try {
+					pauseMonitor.wait(Math.max(1, Math.min(remainingMs, retryBackoffMs)));
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptException(e);
+				}
+			}
+			maybeRejoinReassignedTopics();
+			maybeRejoinMovedPartitions();
+			remainingMs = deadlineMs - time.milliseconds();
+		}
+		maybeTriggerWakeup();
+	}
+
+	/**
+	 * Makes the thread waiting in poll for a paused partition, or else the next poll, throw {@link WakeupException}.
+	 * A dequeue in progress in the database completes first.
+	 */
+	public void wakeup() {
+		synchronized(pauseMonitor) {
+			wakeupRequested.set(true);
+			pauseMonitor.notifyAll();
+		}
+	}
+
+	/**
+	 * Throws {@link WakeupException} if {@link #wakeup()} was invoked since the last poll.
+	 */
+	public void maybeTriggerWakeup() {
+		if(wakeupRequested.compareAndSet(true, false))
+			throw new WakeupException();
+	}
+
+	private boolean allTopicsPaused() {
+		if(subscriptionSnapshot.isEmpty() || subscriptions.pausedPartitions().isEmpty())
+			return false;
+		for(String topic : subscriptionSnapshot) {
+			if(!fetchPaused(topic))
+				return false;
+		}
+		return true;
+	}
+
+	private void validateTopics(List<String> topics) {
+		for(String topic : topics) {
+			TopicTeqParameters teqParam = metadata.topicParameters(topic);
+			int stickyDeqParam = teqParam != null ? teqParam.getStickyDeq(): 2;
+			if(stickyDeqParam == 0) {
+				String errMsg = "Topic " + topic + " is not an Oracle kafka topic, Please drop and re-create topic"
+						+" using Admin.createTopics() or dbms_aqadm.create_database_kafka_topic procedure";
+				throw new InvalidTopicException(errMsg);				
+			}
+		}
+	}
+
+	/**
+	 * Enables dequeue of records in a background thread. See {@link ConsumerPrefetcher}.
+	 */
+	public void enablePrefetch(org.apache.kafka.common.utils.LogContext logContext, String clientId, long fetchMaxBytes, long fetchMaxWaitMs) {
+		this.prefetcher = new ConsumerPrefetcher(logContext, this, time, clientId, maxPollRecords, fetchMaxBytes, fetchMaxWaitMs);
+	}
+
+	/**
+	 * Stops the prefetcher from using the database session until {@link #resumePrefetch()} is invoked by the same thread.
+	 */
+	public void pausePrefetch() {
+		if(prefetcher != null)
+			prefetcher.pause();
+	}
+
+	public void resumePrefetch() {
+		if(prefetcher != null)
+			prefetcher.resume();
+	}
+
+	/**
+	 * Rolls back records which are prefetched but not yet returned by poll, before the transaction of the database
+	 * session is committed or the subscription is changed.
+	 */
+	private void discardPrefetched() {
+		if(prefetcher != null)
+			prefetcher.discard();
+	}
+
+	/**
+	 * @return true if the prefetcher can dequeue over the current database session.
+	 * Otherwise poll must connect or complete a rebalance first.
+	 */
+	boolean prefetchable() {
+		return currentSession != null && !subscriptionSnapshot.isEmpty() && joinPreparedTopics.isEmpty()
+				&& reassignedTopics.isEmpty() && !allTopicsPaused() && client.isReady(currentSession, 0);
+	}
+
+	Connection sessionConnection() {
+		return aqConsumer.getDBConnection(currentSession);
+	}
+
+	/**
+	 * Dequeues up to maxRecords records from subscribed topics over the current database session, on behalf of the prefetcher.
+	 * A response which needs a reconnect or a rebalance is not handled here, it is returned to be handled by poll.
+	 * @param out dequeued records are added to this list
+	 * @return response to be handled by poll, null otherwise.
+	 */
+	ClientResponse prefetch(int maxRecords, long timeoutMs, List<AQjmsBytesMessage> out, FetchManagerMetrics fetchManagerMetrics) {
+		Node node = currentSession;
+		List<String> topics = getPollOrder();
+		validateTopics(topics);
+		long startMs = time.milliseconds();
+		for(int i = 0; i < topics.size() && out.size() < maxRecords; i++) {
+			long remainingMs = timeoutMs - (time.milliseconds() - startMs);
+			long topicTimeoutMs = out.isEmpty() ? Math.max(1, remainingMs / (topics.size() - i)) : 1;
+			ClientRequest request  = createFetchRequest(node, topics.get(i), maxRecords - out.size(), response -> { },
+					(int)Math.min(requestTimeoutMs, topicTimeoutMs));
+			ClientResponse response = client.send(request, time.milliseconds());
+			if(fetchManagerMetrics != null)
+				fetchManagerMetrics.recordFetchLatency(response.requestLatencyMs());
+			FetchResponse fetchResponse = (FetchResponse)response.responseBody();
+			if(response.wasDisconnected() || rejoinNeeded(fetchResponse.getException()))
+				return response;
+			out.addAll(fetchResponse.getMessages());
+		}
+		return null;
+	}
+
+	/**
+	 * Records the number of records carried by messages returned by poll, to size later dequeues.
+	 */
+	public void recordDequeued(int messageCount, int recordCount) {
+		if(messageCount > 0)
+			recordsPerMessage += 0.3 * ((double)recordCount / messageCount - recordsPerMessage);
+	}
+
+	/**
+	 * Returns the number of messages to dequeue for up to maxRecords records.
+	 */
+	int messageBudget(int maxRecords) {
+		return Math.max(1, (int)(maxRecords / Math.max(1, primary.recordsPerMessage)));
+	}
+
+	/**
+	 * Seeks the given partitions of a light weight subscriber back to the given offsets, so that records dequeued but
+	 * not held by the consumer are dequeued again. Prefetched records are rolled back first.
+	 * @param notReturned offset of the first message not held, per partition
+	 */
+	public void seekBack(Map<TopicPartition, Long> notReturned) {
+		discardPrefetched();
+		long now = time.milliseconds();
+		Node node = client.leastLoadedNode(now);
+		if(node == null || !client.ready(node, now)) {
+			log.warn("Failed to seek back partitions {}, records not returned by poll are consumed again once the consumer restarts",
+					notReturned.keySet());
+			return;
+		}
+		ClientResponse response = client.send(client.newClientRequest(node, new OffsetResetRequest.Builder(notReturned, 0),
+				now, true, requestTimeoutMs, null), now);
+		for(Map.Entry<TopicPartition, Exception> result : ((OffsetResetResponse)response.responseBody()).offsetResetResponse().entrySet()) {
+			if(result.getValue() != null)
+				log.warn("Failed to seek back partition {}, records not returned by poll are consumed again once the consumer restarts",
+						result.getKey(), result.getValue());
+		}
+	}
+
+	/**
+	 * Enables consumption over a database session to every instance owning partitions of the consumed topics.
+	 * See {@link org.oracle.okafka.clients.consumer.ConsumerConfig#ORACLE_CONSUMER_INSTANCE_SESSIONS}.
+	 */
+	public void enableInstanceSessions(String clientId) {
+		this.instanceThreadName = INSTANCE_SESSION_THREAD_PREFIX + " | " + clientId;
+	}
+
+	/**
+	 * Dequeues over the current session and the instance sessions in parallel, each session dequeuing its share of max.poll.records.
+	 * Responses which need a reconnect or a rebalance are handled afterwards by this thread, one session after another,
+	 * so that the rebalance listener is only invoked by the application thread.
+	 * Records dequeued by the other sessions are returned even when a session fails, since they are committed by the next commit.
+	 * The failure is then thrown by the next poll.
+	 * @return records dequeued by all sessions.
+	 */
+	private List<AQjmsBytesMessage> pollInstanceSessions(long timeoutMs, FetchManagerMetrics fetchManagerMetrics) {
+		if(instanceFetchException != null) {
+			RuntimeException e = instanceFetchException;
+			instanceFetchException = null;
+			throw e;
+		}
+		if(getPollableMap().isEmpty())
+			return new ArrayList<>();
+		updateInstanceSessions();
+		for(ConsumerNetworkClient session : instanceSessions)
+			session.maybeRejoinMovedPartitions();
+
+		List<ConsumerNetworkClient> sessions = new ArrayList<>();
+		long now = time.milliseconds();
+		if(currentSession != null && client.ready(currentSession, now))
+			sessions.add(this);
+		else
+			currentSession = null;
+		for(ConsumerNetworkClient session : instanceSessions) {
+			if(session.currentSession == null)
+				session.currentSession = session.instanceNode;
+			// Initiates the connection if there is none yet
+			if(client.ready(session.currentSession, now))
+				sessions.add(session);
+		}
+		if(sessions.isEmpty()) {
+			time.sleep(Math.min(timeoutMs, retryBackoffMs));
+			return new ArrayList<>();
+		}
+		if(sessions.size() > 1) {
+			sessionRotation = (sessionRotation + 1) % sessions.size();
+			Collections.rotate(sessions, -sessionRotation);
+		}
+
+		int maxMessages = messageBudget(maxPollRecords);
+		int pollable = Math.min(sessions.size(), maxMessages);
+		List<List<AQjmsBytesMessage>> fetched = new ArrayList<>();
+		List<Future<ClientResponse>> responses = new ArrayList<>();
+		for(int i = 0; i < pollable; i++) {
+			ConsumerNetworkClient session = sessions.get(i);
+			int maxRecords = maxMessages / pollable + (i < maxMessages % pollable ? 1 : 0);
+			List<AQjmsBytesMessage> out = new ArrayList<>();
+			fetched.add(out);
+			if(i == pollable - 1) {
+				// The last session dequeues over this thread
+				responses.add(CompletableFuture.completedFuture(session.prefetch(maxRecords, timeoutMs, out, fetchManagerMetrics)));
+			} else {
+				responses.add(instanceExecutor().submit(() -> session.prefetch(maxRecords, timeoutMs, out, fetchManagerMetrics)));
+			}
+		}
+
+		List<AQjmsBytesMessage> records = new ArrayList<>();
+		RuntimeException fetchException = null;
+		for(int i = 0; i < pollable; i++) {
+			ClientResponse response = null;
+			try {
+				response = responses.get(i).get();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptException(e);
+			} catch(ExecutionException e) {
+				if(fetchException == null)
+					fetchException = e.getCause() instanceof RuntimeException ? (RuntimeException)e.getCause()
+							: new KafkaException(e.getCause());
+			}
+			records.addAll(fetched.get(i));
+			if(response != null)
+				sessions.get(i).handleFetchError(response, timeoutMs);
+		}
+		if(fetchException != null) {
+			if(records.isEmpty())
+				throw fetchException;
+			log.debug("Returning {} dequeued records, failure of an instance session is thrown by the next poll", records.size());
+			instanceFetchException = fetchException;
+		}
+		return records;
+	}
+
+	private ExecutorService instanceExecutor() {
+		if(instanceExecutor == null)
+			instanceExecutor = Executors.newCachedThreadPool(task -> new KafkaThread(instanceThreadName, task, true));
+		return instanceExecutor;
+	}
+
+	/**
+	 * Opens an instance session to every instance, other than the one of the current session, which owns partitions of
+	 * the subscribed topics, and closes instance sessions to instances which no longer own any.
+	 * No instance session is used for manually assigned partitions, or once the database connection is handed out to the application.
+	 */
+	private void updateInstanceSessions() {
+		Set<Integer> owners = new HashSet<>();
+		if(currentSession != null && subscriptions.hasAutoAssignedPartitions() && !aqConsumer.skipConnectMe()) {
+			Cluster cluster = metadata.fetch();
+			for(String topic : subscriptionSnapshot) {
+				for(PartitionInfo pInfo : cluster.partitionsForTopic(topic)) {
+					if(pInfo.leader() != null && pInfo.leader().id() != currentSession.id())
+						owners.add(pInfo.leader().id());
+				}
+			}
+		}
+		Iterator<ConsumerNetworkClient> it = instanceSessions.iterator();
+		while(it.hasNext()) {
+			ConsumerNetworkClient session = it.next();
+			if(!owners.remove(session.instanceNode.id())) {
+				it.remove();
+				closeInstanceSession(session);
+			}
+		}
+		if(owners.isEmpty())
+			return;
+		for(Node node : NetworkClient.convertToOracleNodes(metadata.fetch().nodes())) {
+			if(owners.contains(node.id())) {
+				log.debug("Opening database session to instance {} owning partitions of consumed topics", node);
+				instanceSessions.add(new ConsumerNetworkClient(this, node));
+			}
+		}
+	}
+
+	/**
+	 * Revokes the partitions assigned to the given instance session and closes its database session,
+	 * unless the current session is connected to the same instance.
+	 */
+	private void closeInstanceSession(ConsumerNetworkClient session) {
+		log.debug("Closing database session to instance {}", session.instanceNode);
+		Set<TopicPartition> revoked = new HashSet<>(session.sessionAssignment);
+		session.sessionAssignment.clear();
+		revoked.removeIf(session::assignedToOtherSession);
+		if(!revoked.isEmpty() && subscriptions.hasAutoAssignedPartitions()) {
+			invokePartitionsRevoked(revoked);
+			Set<TopicPartition> remaining = new LinkedHashSet<>(subscriptions.assignedPartitions());
+			remaining.removeAll(revoked);
+			subscriptions.assignFromSubscribed(remaining);
+		}
+		if(currentSession == null || session.instanceNode.id() != currentSession.id())
+			client.close(session.instanceNode);
+	}
+
+	private boolean hasInstanceSession(Node node) {
+		for(ConsumerNetworkClient session : instanceSessions) {
+			if(session.instanceNode.id() == node.id())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the partition is assigned to another session of the primary consumer.
+	 */
+	private boolean assignedToOtherSession(TopicPartition tp) {
+		if(primary != this && primary.sessionAssignment.contains(tp))
+			return true;
+		for(ConsumerNetworkClient session : primary.instanceSessions) {
+			if(session != this && session.sessionAssignment.contains(tp))
+				return true;
+		}
+		return false;
+	}
+
 	/**
 	 * 
-	 * @return map of <node , topic> . Every node is leader for its corresponding topic.
+	 * @return map of <node , topics> . Every node is leader for its corresponding topics. Topics are in the order to poll them.
 	 */
-	private Map<Node, String> getPollableMap() {
+	private Map<Node, List<String>> getPollableMap() {
 		try {
 			if(currentSession == null) {
 				List<Node> nodeList = NetworkClient.convertToOracleNodes(metadata.fetch().nodes());
@@ -303,7 +782,7 @@ public class ConsumerNetworkClient {
 					currentSession = nodeList.get(0);
 					log.debug("Leader Node " + currentSession);
 					metadata.setLeader(currentSession);
-					return Collections.singletonMap(currentSession, this.subscriptionSnapshot.iterator().next());
+					return Collections.singletonMap(currentSession, getPollOrder());
 				}
 				
 				//If more than 1 node available then, Pick a READY Node first. 
@@ -338,7 +817,7 @@ public class ConsumerNetworkClient {
 							// Closing other connections
 							for(Node closeNode : nodeList)
 							{
-								if(closeNode != currentSession)
+								if(closeNode != currentSession && !hasInstanceSession(closeNode))
 								{
 									//If DB connection exist for this node then close it
 									if(client.isReady(closeNode,0))
@@ -369,50 +848,67 @@ public class ConsumerNetworkClient {
 					//cluster.setLeader(currentSession);
 				}
 			}
-			return Collections.singletonMap(currentSession, this.subscriptionSnapshot.iterator().next());
+			return Collections.singletonMap(currentSession, getPollOrder());
 		} catch(java.util.NoSuchElementException exception) {
 			//do nothing
 		}
 		return Collections.emptyMap();
 	}
+
+	/**
+	 * Returns subscribed topics, rotated by one topic on every invocation.
+	 */
+	private List<String> getPollOrder() {
+		if(subscriptionSnapshot.isEmpty())
+			throw new java.util.NoSuchElementException();
+		List<String> topics = new ArrayList<>(subscriptionSnapshot);
+		if(!subscriptions.pausedPartitions().isEmpty())
+			topics.removeIf(this::fetchPaused);
+		Collections.sort(topics);
+		if(topics.size() > 1) {
+			pollRotation = (pollRotation + 1) % topics.size();
+			Collections.rotate(topics, -pollRotation);
+		}
+		return topics;
+	}
 	
 	
 
-	private ClientRequest createFetchRequest(Node destination, String topic, RequestCompletionHandler callback, int requestTimeoutMs) {
-		return this.client.newClientRequest(destination,  new FetchRequest.Builder(topic, requestTimeoutMs) , time.milliseconds(), true, requestTimeoutMs, callback);
+	private ClientRequest createFetchRequest(Node destination, String topic, int maxRecords, RequestCompletionHandler callback, int requestTimeoutMs) {
+		return this.client.newClientRequest(destination,  new FetchRequest.Builder(topic, requestTimeoutMs, maxRecords) , time.milliseconds(), true, requestTimeoutMs, callback);
 	}
 
 	private void handleFetchResponse(ClientResponse response, long timeoutMs) {
 		FetchResponse fetchResponse = (FetchResponse)response.responseBody();
 		messages.addAll(fetchResponse.getMessages());
+		handleFetchError(response, timeoutMs);
+	}
+
+	void handleFetchError(ClientResponse response, long timeoutMs) {
 		if(response.wasDisconnected()) {
 			currentSession = null;
-			if(sessionData != null)
-			{
-				log.info("Invalidating database session " + sessionData.name +". New one will get created.");
-				sessionData.invalidSessionData();
-			}
+			invalidateSessionData();
 			return;
 		}
 		joinGroupifNeeded(response, timeoutMs);
 	}
 
+	private void invalidateSessionData() {
+		for(SessionData sessionData : sessionDataMap.values()) {
+			log.info("Invalidating database session " + sessionData.name +". New one will get created.");
+			sessionData.invalidSessionData();
+		}
+	}
+
 	private void joinGroupifNeeded(ClientResponse response, long timeoutMs) {
 		try {
 			FetchResponse fResponse = (FetchResponse)response.responseBody();
 			Exception exception = fResponse.getException();
 			if(rejoinNeeded(exception)) {
-				log.debug("JoinGroup Is Needed");
-				if (needsJoinPrepare) {
-					log.debug("Revoking");
-					onJoinPrepare();
-					needsJoinPrepare = false;
-				}
-				if (lastRebalanceStartMs == -1L)
-					lastRebalanceStartMs = time.milliseconds();
-				log.debug("Sending Join Group Request to database via node " + response.destination());
-				sendJoinGroupRequest(metadata.getNodeById(Integer.parseInt(response.destination())));
-				log.debug("Join Group Response received");
+				// Each subscribed topic is rebalanced on its own
+				String topic = fResponse.topic();
+				log.debug("JoinGroup Is Needed for topic " + topic);
+				rejoinGroup(metadata.getNodeById(Integer.parseInt(response.destination())), topic);
 			}
 			
 		} catch(Exception e)
@@ -422,6 +918,63 @@ public class ConsumerNetworkClient {
 		}
 	}
 
+	private void rejoinGroup(Node node, String topic) {
+		if (joinPreparedTopics.add(topic)) {
+			log.debug("Revoking");
+			onJoinPrepare(topic);
+		}
+		if (lastRebalanceStartMs == -1L)
+			lastRebalanceStartMs = time.milliseconds();
+		log.debug("Sending Join Group Request to database via node " + node);
+		sendJoinGroupRequest(node, topic);
+		log.debug("Join Group Response received");
+	}
+
+	/**
+	 * With {@link TxEQInstanceAffinityAssignor}, joins the group again for a topic once metadata shows that an assigned
+	 * partition moved to another instance since it was assigned, so that it is moved to a session connected to its new owner instance.
+	 */
+	private void maybeRejoinMovedPartitions() {
+		if(currentSession == null || partitionOwners.isEmpty())
+			return;
+		int version = metadata.version();
+		if(version == ownershipCheckedVersion)
+			return;
+		ownershipCheckedVersion = version;
+		Cluster cluster = metadata.fetch();
+		Set<String> movedTopics = new HashSet<>();
+		for(Map.Entry<TopicPartition, Integer> ownerEntry : partitionOwners.entrySet()) {
+			TopicPartition tp = ownerEntry.getKey();
+			PartitionInfo pInfo = cluster.partition(tp);
+			if(pInfo == null || pInfo.leader() == null || pInfo.leader().id() == ownerEntry.getValue())
+				continue;
+			log.info("Partition {} moved from instance {} to instance {}", tp, ownerEntry.getValue(), pInfo.leader().id());
+			ownerEntry.setValue(pInfo.leader().id());
+			movedTopics.add(tp.topic());
+		}
+		for(String topic : movedTopics) {
+			if(!joinPreparedTopics.contains(topic) && consumedTopics().contains(topic)) {
+				log.debug("Joining group again for topic " + topic);
+				rejoinGroup(currentSession, topic);
+			}
+		}
+	}
+
+	/**
+	 * Records the instance owning each partition of the topic assigned to this consumer, when {@link TxEQInstanceAffinityAssignor} is used.
+	 */
+	private void recordPartitionOwners(String topic, Collection<TopicPartition> assignment) {
+		partitionOwners.keySet().removeIf(tp -> tp.topic().equals(topic));
+		if(!(lookUpAssignor() instanceof TxEQInstanceAffinityAssignor))
+			return;
+		Cluster cluster = metadata.fetch();
+		for(TopicPartition tp : assignment) {
+			PartitionInfo pInfo = tp.partition() < 0 ? null : cluster.partition(tp);
+			if(pInfo != null && pInfo.leader() != null)
+				partitionOwners.put(tp, pInfo.leader().id());
+		}
+	}
+
 	private boolean rejoinNeeded(Exception exception ) {
 		SQLException sqlCause = ConnectionUtils.getSQLException(exception);
 		if(exception!=null && sqlCause!=null) {
@@ -434,29 +987,53 @@ public class ConsumerNetworkClient {
 		return false;
 	}
 
-	private void onJoinPrepare() {
-		maybeAutoCommitOffsetsSync(time.milliseconds());
+	private void onJoinPrepare(String topic) {
+		primary.maybeAutoCommitOffsetsSync(time.milliseconds());
+		// Manually assigned partitions are not revoked
+		if(!subscriptions.hasAutoAssignedPartitions())
+			return;
 
-		// execute the user's callback before rebalance
+		// With cooperative rebalancing, partitions which move to another consumer are revoked on join complete
+		if(!cooperativeRebalance()) {
+			// execute the user's callback before rebalance
+			Set<TopicPartition> revoked = new HashSet<>();
+			for(TopicPartition tp : subscriptions.assignedPartitions()) {
+				if(tp.topic().equals(topic) && !assignedToOtherSession(tp))
+					revoked.add(tp);
+			}
+			invokePartitionsRevoked(revoked);
+		}
+        // Changes for 2.8.1 : SubscriptionState.java copied from org.apache.kafka* to org.oracle.okafka*
+		subscriptions.resetGroupSubscription();
+	}
+
+	private void invokePartitionsRevoked(Set<TopicPartition> revoked) {
 		ConsumerRebalanceListener listener = subscriptions.rebalanceListener();
-		log.debug("Revoking previously assigned partitions {}", subscriptions.assignedPartitions());
+		log.debug("Revoking previously assigned partitions {}", revoked);
 		try {
-			Set<TopicPartition> revoked = new HashSet<>(subscriptions.assignedPartitions());
 			listener.onPartitionsRevoked(revoked);
 		} catch (InterruptException e) {
 			throw e;
 		} catch (Exception e) {
 			log.error("User provided listener {} failed on partition revocation", listener.getClass().getName(), e);
 		}
-        // Changes for 2.8.1 : SubscriptionState.java copied from org.apache.kafka* to org.oracle.okafka*
-		subscriptions.resetGroupSubscription();
 	}
-	private void sendJoinGroupRequest(Node node) {
+
+	/**
+	 * @return true if the assignor in use prefers the cooperative rebalance protocol. See {@link org.oracle.okafka.clients.consumer.TxEQCooperativeStickyAssignor}
+	 */
+	private boolean cooperativeRebalance() {
+		ConsumerPartitionAssignor assignor = lookUpAssignor();
+		return assignor != null && !assignor.supportedProtocols().isEmpty()
+				&& assignor.supportedProtocols().get(0) == RebalanceProtocol.COOPERATIVE;
+	}
+	private void sendJoinGroupRequest(Node node, String topic) {
 		log.debug("Sending JoinGroup");
-		SessionData sessionData = this.sessionData;
-		if(sessionData == null || sessionData.isInvalid()) {
+		SessionData sessionData = sessionDataMap.get(topic);
+		if(!subscriptions.hasAutoAssignedPartitions()) {
+			sessionData = manualJoinData(node, topic);
+		} else if(sessionData == null || sessionData.isInvalid()) {
 			// First join group request
-			String topic = subscriptionSnapshot.iterator().next();
 			sessionData = new SessionData(-1, -1, node.user(), topic,-1, null, -1,null, -1, -1, -1);
 			sessionData.addAssignedPartitions(new PartitionData(topic, -1, -1,
 					null, -1, -1, false));
@@ -466,21 +1043,17 @@ public class ConsumerNetworkClient {
 		log.debug("Sending JoinGroup Request");
 		ClientResponse response = this.client.send(request, now);  // Invokes  AQKafkaConsumer.joinGroup
 		log.debug("Got JoinGroup Response, Handling Join Group Response");
-		handleJoinGroupResponse(response);
+		handleJoinGroupResponse(response, topic);
 		log.debug("Handled JoinGroup Response");
 	}
 
-	private void handleJoinGroupResponse(ClientResponse response) {
+	private void handleJoinGroupResponse(ClientResponse response, String topic) {
 		JoinGroupResponse jResponse = (JoinGroupResponse)response.responseBody();
 		
 		if(response.wasDisconnected()) {
 			log.info("Join Group failed as connection to database was severed.");
 			currentSession = null;
-			if(sessionData != null)
-			{
-				log.info("Invalidating database session " + sessionData.name +". New one will get created.");
-				sessionData.invalidSessionData();
-			}
+			invalidateSessionData();
 			return;
 		} 
 		
@@ -488,27 +1061,29 @@ public class ConsumerNetworkClient {
 		
 		//Map<Integer, Map<Integer, SessionData>> sData = jResponse.getSessionData();
 		int leader = jResponse.leader();
-		if(leader == 1) {
+		if(!subscriptions.hasAutoAssignedPartitions()) {
+			log.debug("Invoking onJoinManual ");
+			onJoinManual(metadata.getNodeById(Integer.parseInt(response.destination())), jResponse, topic);
+		} else if(leader == 1) {
 			log.debug("Invoking onJoinLeader ");
-			onJoinLeader(metadata.getNodeById(Integer.parseInt(response.destination())), jResponse);
+			onJoinLeader(metadata.getNodeById(Integer.parseInt(response.destination())), jResponse, topic);
 		} else {
 			log.debug("Invoking onJoinFollower ");
-			onJoinFollower(metadata.getNodeById(Integer.parseInt(response.destination())), jResponse);
+			onJoinFollower(metadata.getNodeById(Integer.parseInt(response.destination())), jResponse, topic);
 		}
 
 	}
 
-	private void onJoinFollower(Node node, JoinGroupResponse jResponse) {
+	private void onJoinFollower(Node node, JoinGroupResponse jResponse, String topic) {
 		List<SessionData> sData = new ArrayList<>();
-		String topic = subscriptionSnapshot.iterator().next();
 		SessionData sessionData = new SessionData(-1, -1, node.user(),  topic, -1, null, -1, null, -1, -1, -1);
 		sessionData.addAssignedPartitions(new PartitionData(topic, -1, -1,
 				null, -1, -1, false));
 		sData.add(sessionData);
-		sendSyncGroupRequest(node, sData, jResponse.version());
+		sendSyncGroupRequest(node, sData, jResponse.version(), topic);
 	}
 
-	private void onJoinLeader(Node node, JoinGroupResponse jResponse) {
+	private void onJoinLeader(Node node, JoinGroupResponse jResponse, String topic) {
 		Map<String, SessionData> sData = jResponse.getSessionData();
 		List<PartitionData> partitions = jResponse.partitions();
 		ConsumerPartitionAssignor assignor = lookUpAssignor();
@@ -543,54 +1118,162 @@ public class ConsumerNetworkClient {
 		
 		log.debug("Invoking geAssignment");
 		List<SessionData> fAssignment = getAssignment(assignment, sData, partitions, jResponse.version());
-		sendSyncGroupRequest(node, fAssignment, jResponse.version());
+		sendSyncGroupRequest(node, fAssignment, jResponse.version(), topic);
+	}
+
+	/**
+	 * Grants the partitions of the topic assigned with {@link org.oracle.okafka.clients.consumer.KafkaConsumer#assign(java.util.Collection)}
+	 * instead of running the assignor. Every consumer claims its partitions in its join request, see {@link #manualJoinData(Node, String)}.
+	 * The leader of the group syncs the claims of every member, a partition claimed by more than one member is granted to one of them only.
+	 * A follower syncs as for automatic assignment, and is granted its partitions by the sync of the leader.
+	 * Every consumer of the group is expected to assign its partitions manually.
+	 */
+	private void onJoinManual(Node node, JoinGroupResponse jResponse, String topic) {
+		if(jResponse.leader() != 1 || jResponse.getSessionData() == null) {
+			onJoinFollower(node, jResponse, topic);
+			return;
+		}
+		Map<TopicPartition, PartitionData> partitionsOfTopic = new HashMap<>();
+		if(jResponse.partitions() != null) {
+			for(PartitionData pData : jResponse.partitions())
+				partitionsOfTopic.put(pData.getTopicPartition(), pData);
+		}
+		Set<TopicPartition> granted = new HashSet<>();
+		List<SessionData> assignment = new ArrayList<>();
+		// Members in a stable order, so that a partition claimed twice is granted to the same member by every leader
+		for(SessionData member : new TreeMap<>(jResponse.getSessionData()).values()) {
+			SessionData data = new SessionData(member.getSessionId(), member.getInstanceId(), member.getSchema(), member.getSubscribedTopics(),
+					member.getQueueId(), member.getSubscriberName(), member.getSubscriberId(), member.createTime, member.getLeader(),
+					jResponse.version(), member.getAuditId());
+			for(PartitionData claimed : member.getPreviousPartitions()) {
+				TopicPartition tp = claimed.getTopicPartition();
+				if(!granted.add(tp)) {
+					log.warn("Partition {} is assigned to more than one consumer of group {}, it is granted to one of them only", tp, consumerGroupId);
+					continue;
+				}
+				PartitionData pData = partitionsOfTopic.get(tp);
+				data.addAssignedPartitions(pData != null ? pData : claimed);
+			}
+			assignment.add(data);
+		}
+		log.debug("Granting manually assigned partitions {}", granted);
+		sendSyncGroupRequest(node, assignment, jResponse.version(), topic);
+	}
+
+	/**
+	 * Returns the session data of a join request for manually assigned partitions, which claims the partitions of the topic assigned
+	 * to this consumer, so that the leader of the group grants them to this session.
+	 */
+	private SessionData manualJoinData(Node node, String topic) {
+		SessionData synced = sessionDataMap.get(topic);
+		SessionData data;
+		if(synced == null || synced.isInvalid())
+			data = new SessionData(-1, -1, node.user(), topic, -1, null, -1, null, -1, -1, -1);
+		else
+			data = new SessionData(synced.getSessionId(), synced.getInstanceId(), synced.getSchema(), synced.getSubscribedTopics(),
+					synced.getQueueId(), synced.getSubscriberName(), synced.getSubscriberId(), synced.createTime, synced.getLeader(),
+					synced.getVersion(), synced.getAuditId());
+		for(TopicPartition tp : subscriptions.assignedPartitions()) {
+			if(tp.topic().equals(topic))
+				data.addAssignedPartitions(new PartitionData(topic, data.getQueueId(), tp.partition(), data.getSubscriberName(),
+						data.getSubscriberId(), -1, false));
+		}
+		if(data.getAssignedPartitions().isEmpty())
+			data.addAssignedPartitions(new PartitionData(topic, -1, -1, null, -1, -1, false));
+		return data;
+	}
+
+	/**
+	 * Invoked after partitions are assigned manually. Topics already synced in the database are joined again on next poll,
+	 * so that the database dequeues from the newly assigned partitions.
+	 */
+	public void onManualAssignment(Set<String> topics) {
+		discardPrefetched();
+		for(String topic : topics) {
+			if(sessionDataMap.containsKey(topic))
+				reassignedTopics.add(topic);
+		}
 	}
 
-	private void sendSyncGroupRequest(Node node, List<SessionData> sessionData, int version) {
+	private void maybeRejoinReassignedTopics() {
+		if(reassignedTopics.isEmpty() || currentSession == null)
+			return;
+		for(String topic : new ArrayList<>(reassignedTopics)) {
+			reassignedTopics.remove(topic);
+			if(!consumedTopics().contains(topic))
+				continue;
+			if (lastRebalanceStartMs == -1L)
+				lastRebalanceStartMs = time.milliseconds();
+			log.debug("Joining group again for reassigned topic " + topic);
+			sendJoinGroupRequest(currentSession, topic);
+		}
+	}
+
+	private void sendSyncGroupRequest(Node node, List<SessionData> sessionData, int version, String topic) {
 		long now = time.milliseconds();
 		ClientRequest request = this.client.newClientRequest(node, new SyncGroupRequest.Builder(sessionData, version), now, true);
 		log.debug("Sending SyncGroup Request");
 		ClientResponse response = this.client.send(request, now);
 		log.debug("Got SyncGroup Response, Handling Sync Group Response");
-		handleSyncGroupResponse(response);
+		handleSyncGroupResponse(response, topic);
 		log.debug("Handled SyncGroup Response");
 	}
-	private void handleSyncGroupResponse(ClientResponse response) {
+	private void handleSyncGroupResponse(ClientResponse response, String topic) {
 		SyncGroupResponse syncResponse = (SyncGroupResponse)response.responseBody();
 		Exception exception = syncResponse.getException();
 		
 		if(response.wasDisconnected()) {
 			log.info("Sync Group failed as connection to database was severed.");
 			currentSession = null;
-			if(sessionData != null)
-			{
-				log.info("Invalidating database session " + sessionData.name +". New one will get created.");
-				sessionData.invalidSessionData();
-			}
+			invalidateSessionData();
 			sensors.failedRebalanceSensor.record();
 			return;
 		}
 		
 		if(exception == null) {
 			sensors.syncSensor.record(response.requestLatencyMs());
-			onJoinComplete(syncResponse.getSessionData());
-			needsJoinPrepare = true;
-			this.sessionData = syncResponse.getSessionData();    	  
+			onJoinComplete(topic, syncResponse.getSessionData());
+			joinPreparedTopics.remove(topic);
+			sessionDataMap.put(topic, syncResponse.getSessionData());
 		}
 
 	}
 
-	protected void onJoinComplete(SessionData sessionData) {
+	protected void onJoinComplete(String topic, SessionData sessionData) {
 		log.debug("OnJoinComplete Invoked");
+		if(!subscriptions.hasAutoAssignedPartitions()) {
+			onManualJoinComplete(topic, sessionData);
+			return;
+		}
 		List<TopicPartition> assignment = new ArrayList<>();
 		for(PartitionData pData : sessionData.getAssignedPartitions()) {
 			log.debug("Assigned PartitionData " + pData.toString());
 			assignment.add(pData.getTopicPartition());
 		}
-		subscriptions.assignFromSubscribed(assignment);
+		// Partitions of the other subscribed topics, and of other sessions of this consumer, remain assigned
+		Set<TopicPartition> allAssigned = new LinkedHashSet<>(assignment);
+		Set<TopicPartition> owned = new HashSet<>();
+		for(TopicPartition tp : subscriptions.assignedPartitions()) {
+			if(!tp.topic().equals(topic) || assignedToOtherSession(tp))
+				allAssigned.add(tp);
+			else
+				owned.add(tp);
+		}
+		sessionAssignment.removeIf(tp -> tp.topic().equals(topic));
+		sessionAssignment.addAll(assignment);
+		Set<TopicPartition> added = new HashSet<>(assignment);
+		if(cooperativeRebalance()) {
+			// Only partitions which moved to another consumer are revoked. Retained partitions keep their position.
+			added.removeAll(owned);
+			owned.removeAll(assignment);
+			if(!owned.isEmpty())
+				invokePartitionsRevoked(owned);
+		}
+		subscriptions.assignFromSubscribed(allAssigned);
+		recordPartitionOwners(topic, assignment);
 		//Changes for 2.8.1
 		// Seek to current offset per say
-		assignment.stream().forEach(tp->
+		added.stream().forEach(tp->
 			{
 				subscriptions.seek(tp,0);
 				subscriptions.completeValidation(tp);
@@ -604,14 +1287,13 @@ public class ConsumerNetworkClient {
 		assignor.onAssignment(new ConsumerPartitionAssignor.Assignment(assignment, null), cgMetaData);
 
 		// reschedule the auto commit starting from now
-		this.nextAutoCommitDeadline = time.milliseconds() + autoCommitIntervalMs;
+		primary.nextAutoCommitDeadline = time.milliseconds() + autoCommitIntervalMs;
 
 		// execute the user's callback after rebalance
 		ConsumerRebalanceListener listener = subscriptions.rebalanceListener();
-		log.debug("Setting newly assigned partitions {}", subscriptions.assignedPartitions());
+		log.debug("Setting newly assigned partitions {}", added);
 		try {
-			Set<TopicPartition> assigned = new HashSet<>(subscriptions.assignedPartitions());
-			listener.onPartitionsAssigned(assigned);
+			listener.onPartitionsAssigned(added);
 			lastRebalanceEndMs = time.milliseconds();
             sensors.successfulRebalanceSensor.record(lastRebalanceEndMs - lastRebalanceStartMs);
             lastRebalanceStartMs = -1L;
@@ -624,6 +1306,21 @@ public class ConsumerNetworkClient {
 		}
 	}
 	
+	private void onManualJoinComplete(String topic, SessionData sessionData) {
+		Set<TopicPartition> claimed = new HashSet<>();
+		for(PartitionData pData : sessionData.getAssignedPartitions())
+			claimed.add(pData.getTopicPartition());
+		for(TopicPartition tp : subscriptions.assignedPartitions()) {
+			if(tp.topic().equals(topic) && !claimed.contains(tp))
+				log.warn("Manually assigned partition {} is not assigned to this session by the database. "
+						+ "It may be assigned to another consumer of the group.", tp);
+		}
+		this.nextAutoCommitDeadline = time.milliseconds() + autoCommitIntervalMs;
+		lastRebalanceEndMs = time.milliseconds();
+		sensors.successfulRebalanceSensor.record(lastRebalanceEndMs - lastRebalanceStartMs);
+		lastRebalanceStartMs = -1L;
+	}
+
 	private List<SessionData> getAssignment(Map<String, Assignment> assignment, Map<String, SessionData> sData, List<PartitionData> partitions, int version) {
 		log.debug("Getting new assignment"); 
 		List<SessionData> fAssignment = new ArrayList<>();
@@ -681,33 +1378,44 @@ public class ConsumerNetworkClient {
 	} 
 
 	/**
-	 * Subscribe to topic if not done
-	 * @return true if subscription is successsful else false.
+	 * Subscribe to topics if not done
+	 * @return true if subscription to all the topics is successsful else false.
 	 * @throws Exception 
 	 */
 	
-	 public boolean mayBeTriggerSubcription(long timeout) {
+	public boolean mayBeTriggerSubcription(long timeout) {
 		
-		if(!subscriptions.subscription().equals(subscriptionSnapshot)) {
-			boolean noSubExist = false;
-			String topic = getSubscribableTopics();
-			long now = time.milliseconds();
-			Node node = client.leastLoadedNode(now);
-			if( node == null || !client.ready(node, now) ) {
-				log.error("Failed to subscribe to topic: {}", topic);
-				return false;
+		Set<String> topics = consumedTopics();
+		if(!topics.equals(subscriptionSnapshot)) {
+			discardPrefetched();
+			this.subscriptionSnapshot.retainAll(topics);
+			for(String topic : getSubscribableTopics()) {
+				if(!mayBeTriggerSubcription(topic, timeout))
+					return false;
 			}
-			try {
-				if(aqConsumer.getSubcriberCount(node, topic) < 1) {
-					noSubExist = true;
-				}
-				
-				ClientRequest request = this.client.newClientRequest(node, new SubscribeRequest.Builder(topic), now, true, requestTimeoutMs < timeout ? requestTimeoutMs: (int)timeout, null);
-				ClientResponse response = this.client.send(request, now);
+		}
+		return true;
+	}
 
-				if(handleSubscribeResponse(response)) {
-					
-					if(noSubExist && aqConsumer.getoffsetStartegy().equalsIgnoreCase("earliest")) {
+	private boolean mayBeTriggerSubcription(String topic, long timeout) {
+		boolean noSubExist = false;
+		long now = time.milliseconds();
+		Node node = client.leastLoadedNode(now);
+		if( node == null || !client.ready(node, now) ) {
+			log.error("Failed to subscribe to topic: {}", topic);
+			return false;
+		}
+		try {
+			if(aqConsumer.getSubcriberCount(node, topic) < 1) {
+				noSubExist = true;
+			}
+			
+			ClientRequest request = this.client.newClientRequest(node, new SubscribeRequest.Builder(topic, consumedTopics()), now, true, requestTimeoutMs < timeout ? requestTimeoutMs: (int)timeout, null);
+			ClientResponse response = this.client.send(request, now);
+
+			if(handleSubscribeResponse(response)) {
+				
+				if(noSubExist && aqConsumer.getoffsetStartegy().equalsIgnoreCase("earliest")) {
 		                	TopicPartition tp = new TopicPartition(topic, -1);
 		                	Map<TopicPartition, Long> offsetResetTimestamps = new HashMap<TopicPartition, Long>(); 		            		
 		            		offsetResetTimestamps.put(tp, -2L);
@@ -718,24 +1426,23 @@ public class ConsumerNetworkClient {
 		            else if(noSubExist && aqConsumer.getoffsetStartegy().equalsIgnoreCase("none")) {
 		                throw new ConfigException("No previous offset found for the consumer group");
 		            }
-				}
-				else {
-					return false;
-				}
-				
 			}
-			catch(ConfigException exception) {
-				log.error("Exception while subscribing to the topic" + exception.getMessage(),exception);
-				log.info("Closing the consumer due to exception : " + exception.getMessage());
-				 throw new ConfigException("No previous offset found for the consumer group");
+			else {
+				return false;
 			}
-			catch(Exception e){
-				log.error("Exception while subscribing to the topic" + e.getMessage(),e);
-				if(e instanceof DisconnectException) {
-						this.aqConsumer.close(node);
-						this.client.disconnected(node, now);;
-						return false;
-				}
+			
+		}
+		catch(ConfigException exception) {
+			log.error("Exception while subscribing to the topic" + exception.getMessage(),exception);
+			log.info("Closing the consumer due to exception : " + exception.getMessage());
+			 throw new ConfigException("No previous offset found for the consumer group");
+		}
+		catch(Exception e){
+			log.error("Exception while subscribing to the topic" + e.getMessage(),e);
+			if(e instanceof DisconnectException) {
+					this.aqConsumer.close(node);
+					this.client.disconnected(node, now);;
+					return false;
 			}
 		}
 		return true;
@@ -786,31 +1493,35 @@ public class ConsumerNetworkClient {
 	}
 
 	/**
-	 * Updates subscription snapshot and returns subscribed topic. 
-	 * @return subscribed topic
+	 * Returns topics to consume. These are topics of the manually assigned partitions, if partitions are assigned with assign().
 	 */
-	private String getSubscribableTopics() {
-		//this.subcriptionSnapshot = new HashSet<>(subscriptions.subscription());
-		return getSubscribedTopic();
+	private Set<String> consumedTopics() {
+		if(subscriptions.hasAutoAssignedPartitions())
+			return subscriptions.subscription();
+		Set<String> topics = new HashSet<>();
+		for(TopicPartition tp : subscriptions.assignedPartitions())
+			topics.add(tp.topic());
+		return topics;
 	}
 
 	/**
-	 * return subscribed topic.
+	 * Returns subscribed topics which are not yet subscribed in the database.
+	 * @return topics to subscribe
 	 */
-	private String getSubscribedTopic() {
-		HashSet<String> subscribableTopics = new HashSet<>();
-		for(String topic : subscriptions.subscription()) {
+	private List<String> getSubscribableTopics() {
+		List<String> subscribableTopics = new ArrayList<>();
+		for(String topic : consumedTopics()) {
 			if(!this.subscriptionSnapshot.contains(topic)) {
 				subscribableTopics.add(topic);
-				this.subscriptionSnapshot.clear();
 			}	
 		}
-		return subscribableTopics.iterator().next();
+		return subscribableTopics;
 	}
 
 	public boolean commitOffsetsSync(Map<TopicPartition, OffsetAndMetadata> offsets, long timeout) throws Exception{
 		try {
 		log.debug("Sending synchronous commit of offsets: {} request", offsets);	
+		discardPrefetched();
 		//long elapsed = 0;
 		ClientRequest request;
 		ClientResponse response;
@@ -892,14 +1603,20 @@ public class ConsumerNetworkClient {
 		log.debug("Sending Commit request to leader Node " + leaderNode);
 		
 		for(Map.Entry<TopicPartition, OffsetAndMetadata> metadata : offsets.entrySet())	{
-			if(!client.ready(leaderNode, time.milliseconds())) {
-				log.info("Failed to send commit as Leader node is not ready to send commit: " + leaderNode);
+			// Partitions assigned to an instance session are committed over that session
+			Node node = leaderNode;
+			for(ConsumerNetworkClient session : instanceSessions) {
+				if(session.currentSession != null && session.sessionAssignment.contains(metadata.getKey()))
+					node = session.currentSession;
+			}
+			if(!client.ready(node, time.milliseconds())) {
+				log.info("Failed to send commit as node is not ready to send commit: " + node);
 				log.error("Failed to commit to topic partiton: {} with  offset: {} ", metadata.getKey(), metadata.getValue());
 			} else {
-				List<TopicPartition> nodeTPList= nodeTPMap.get(leaderNode);
+				List<TopicPartition> nodeTPList= nodeTPMap.get(node);
 				if(nodeTPList == null) {
 					nodeTPList = new ArrayList<TopicPartition>();
-					nodeTPMap.put(leaderNode, nodeTPList );
+					nodeTPMap.put(node, nodeTPList );
 				}
 				nodeTPList.add(metadata.getKey());
 			}
@@ -911,6 +1628,7 @@ public class ConsumerNetworkClient {
 		Node node = client.leastLoadedNode(now);
 		if( node == null || !client.ready(node, now) ) 
 			return false;
+		discardPrefetched();
 		ClientResponse response = client.send(client.newClientRequest(node, new OffsetResetRequest.Builder(offsetResetTimestamps, 0), now, true, requestTimeoutMs < timeout ? requestTimeoutMs: (int)timeout, null), now);
 		return handleOffsetResetResponse(response, offsetResetTimestamps);
 	}
@@ -1035,13 +1753,93 @@ public class ConsumerNetworkClient {
 
 	}
 
+	/**
+	 * Fetches the offsets of the given partitions. Offsets of all partitions of a topic are fetched with one database call.
+	 * 
+	 * @param timestampsToSearch for each partition, {@link ListOffsetsRequest#EARLIEST_TIMESTAMP},
+	 * {@link ListOffsetsRequest#LATEST_TIMESTAMP} or the timestamp to search for
+	 * @return response of each partition
+	 */
+	public Map<TopicPartition, ListOffsetsPartitionResponse> listOffsets(Map<TopicPartition, Long> timestampsToSearch, Timer timer) {
+		return listOffsets(timestampsToSearch, timer, false);
+	}
+
+	/**
+	 * Lists offsets of the given partitions. With {@code withBacklog}, the response of each partition also has the number
+	 * of its messages not yet dequeued by the consumer group, see {@link ListOffsetsPartitionResponse#backlog()}.
+	 */
+	public Map<TopicPartition, ListOffsetsPartitionResponse> listOffsets(Map<TopicPartition, Long> timestampsToSearch,
+			Timer timer, boolean withBacklog) {
+
+		if (timestampsToSearch.isEmpty())
+			return Collections.emptyMap();
+
+		Map<String, List<ListOffsetsPartition>> topicOffsetPartitionMap = new HashMap<>();
+		for (Map.Entry<TopicPartition, Long> entry : timestampsToSearch.entrySet()) {
+			topicOffsetPartitionMap.computeIfAbsent(entry.getKey().topic(), topic -> new ArrayList<>())
+					.add(new ListOffsetsPartition().setPartitionIndex(entry.getKey().partition()).setTimestamp(entry.getValue()));
+		}
+		ListOffsetsRequest.Builder requestBuilder = new ListOffsetsRequest.Builder(topicOffsetPartitionMap,
+				withBacklog ? consumerGroupId : null);
+		maybeUpdateMetadata(timer.remainingMs());
+
+		boolean retry = false;
+
+		do {
+			retry = false;
+			long now = time.milliseconds();
+			Node node = client.leastLoadedNode(now);
+			if (node == null || !client.ready(node, now))
+				throw new KafkaException("Couldn't connect to any node for Listing Offsets");
+			ClientRequest clientRequest = client.newClientRequest(node, requestBuilder, now, true,
+					requestTimeoutMs, null);
+			log.debug("Sending List Offsets Request");
+			ClientResponse response = this.client.send(clientRequest, now);
+			ListOffsetsResponse offsetsResponse = (ListOffsetsResponse) response.responseBody();
+			log.debug("Recieved List Offsets Response");
+
+			if (response.wasDisconnected()) {
+				retry = true;
+				timer.update();
+			} else if (offsetsResponse.getException() != null) {
+				log.error("Exception Caught: ", offsetsResponse.getException());
+				throw new KafkaException("Unexpected error listing offsets", offsetsResponse.getException());
+			} else {
+				Map<TopicPartition, ListOffsetsPartitionResponse> offsetResponseMap = new HashMap<>();
+				for (Map.Entry<String, List<ListOffsetsPartitionResponse>> entry : offsetsResponse
+						.getOffsetPartitionResponseMap().entrySet()) {
+					for (ListOffsetsPartitionResponse partitionResponse : entry.getValue()) {
+						TopicPartition tp = new TopicPartition(entry.getKey(), partitionResponse.partitionIndex());
+						Exception error = partitionResponse.getError();
+						if (error instanceof RuntimeException)
+							throw (RuntimeException) error;
+						else if (error != null)
+							throw new KafkaException("Unexpected error listing offset of " + tp, error);
+						offsetResponseMap.put(tp, partitionResponse);
+					}
+				}
+				return offsetResponseMap;
+			}
+
+		} while (retry && timer.notExpired());
+
+		throw new TimeoutException("Timeout expired while listing offsets");
+	}
+
 	public void unsubscribe() {
 		
+		discardPrefetched();
+		partitionOwners.clear();
+		sessionAssignment.clear();
 		if(currentSession!=null) {
 		ClientRequest request = this.client.newClientRequest(currentSession, new UnsubscribeRequest.Builder(), time.milliseconds(), true);
 		ClientResponse response = this.client.send(request, time.milliseconds());
 		handleUnsubscribeResponse(response);
 		}
+		// Unsubscribe closes the sessions of every instance. Instance sessions are opened again on next poll.
+		for(ConsumerNetworkClient session : instanceSessions)
+			client.close(session.instanceNode);
+		instanceSessions.clear();
 
 	}
 	private void handleUnsubscribeResponse(ClientResponse response) {
@@ -1049,11 +1847,7 @@ public class ConsumerNetworkClient {
 		if(response.wasDisconnected()) {
 			log.debug("handleUnsubscribeResponse : node in disconnected state\n");
 			currentSession = null;
-			if(sessionData != null)
-			{
-				log.debug("handleUnsubscribeResponse : Invalidating database session " + sessionData.name +". New one will get created.\n");
-				sessionData.invalidSessionData();
-			}
+			invalidateSessionData();
 			return;
 		}
 		UnsubscribeResponse  unsubResponse = (UnsubscribeResponse)response.responseBody();
@@ -1088,6 +1882,10 @@ public class ConsumerNetworkClient {
 	 */
 	public void close(long timeoutMs) throws Exception {
 		KafkaException autoCommitException = null;
+		if(prefetcher != null)
+			prefetcher.close();
+		if(instanceExecutor != null)
+			instanceExecutor.shutdownNow();
 		if(autoCommitEnabled) {
 			Map<TopicPartition, OffsetAndMetadata> allConsumedOffsets = subscriptions.allConsumed();
 			try {
@@ -0,0 +1,255 @@
+/*
+ ** OKafka Java Client version 23.4.
+ **
+ ** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+ ** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+
+package org.oracle.okafka.clients.consumer.internals;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.jms.JMSException;
+
+import org.apache.kafka.clients.ClientResponse;
+import org.apache.kafka.common.utils.KafkaThread;
+import org.apache.kafka.common.utils.LogContext;
+import org.apache.kafka.common.utils.Time;
+import org.oracle.okafka.clients.consumer.KafkaConsumer.FetchManagerMetrics;
+import org.slf4j.Logger;
+
+import oracle.jms.AQjmsBytesMessage;
+
+/**
+ * Dequeues records in a background thread, while the application processes records returned by the previous poll.
+ *
+ * Prefetched records are dequeued over the same transacted database session as the records returned by poll.
+ * A savepoint is taken before the first record not yet returned by poll is dequeued. Before any commit, seek,
+ * subscription change or rebalance, undelivered records are rolled back to this savepoint, so that a commit
+ * covers exactly the records returned to the application. Rolled back records are dequeued again later.
+ *
+ * The database session is used either by the application thread or by the prefetcher, never by both. The application
+ * thread holds the lock of the prefetcher for the duration of every consumer call, see {@link #pause()}.
+ */
+public class ConsumerPrefetcher implements Runnable {
+	public static final String PREFETCH_THREAD_PREFIX = "okafka-consumer-prefetch-thread";
+
+	private final Logger log;
+	private final ConsumerNetworkClient client;
+	private final Time time;
+	private final String threadName;
+	private final int maxRecords;
+	private final long maxBytes;
+	private final long fetchMaxWaitMs;
+
+	// Fair, so that the application thread is not starved by back to back fetches
+	private final ReentrantLock lock = new ReentrantLock(true);
+	private final Condition fetchNeeded = lock.newCondition();
+	private final Condition fetchCompleted = lock.newCondition();
+
+	private final List<AQjmsBytesMessage> buffer = new ArrayList<>();
+	private long bufferedBytes = 0;
+	private Savepoint savepoint = null;
+	// Fetch response which needs a reconnect or a rebalance. Handled by the application thread.
+	private ClientResponse pendingResponse = null;
+	private RuntimeException fetchException = null;
+	private FetchManagerMetrics fetchManagerMetrics = null;
+	private KafkaThread thread = null;
+	private boolean disabled = false;
+	private volatile boolean closed = false;
+
+	ConsumerPrefetcher(LogContext logContext, ConsumerNetworkClient client, Time time, String clientId, int maxRecords,
+			long maxBytes, long fetchMaxWaitMs) {
+		this.log = logContext.logger(ConsumerPrefetcher.class);
+		this.client = client;
+		this.time = time;
+		this.threadName = PREFETCH_THREAD_PREFIX + " | " + clientId;
+		this.maxRecords = maxRecords;
+		this.maxBytes = maxBytes;
+		this.fetchMaxWaitMs = Math.max(1, fetchMaxWaitMs);
+	}
+
+	/**
+	 * Takes the database session away from the prefetcher, waiting for an in-flight fetch to complete.
+	 * Must be followed by {@link #resume()} from the same thread.
+	 */
+	public void pause() {
+		lock.lock();
+	}
+
+	/**
+	 * Hands the database session back to the prefetcher.
+	 */
+	public void resume() {
+		lock.unlock();
+	}
+
+	/**
+	 * @return false if prefetch could not be set up for the database session, and records must be fetched by poll.
+	 */
+	boolean enabled() {
+		return !disabled && !closed;
+	}
+
+	/**
+	 * Returns prefetched records. If none are buffered, waits up to timeoutMs for the prefetcher to dequeue some.
+	 */
+	List<AQjmsBytesMessage> poll(long timeoutMs, FetchManagerMetrics fetchManagerMetrics) {
+		lock.lock();
+		try {
+			this.fetchManagerMetrics = fetchManagerMetrics;
+			if (thread == null) {
+				thread = new KafkaThread(threadName, this, true);
+				thread.start();
+			}
+			long deadline = time.milliseconds() + timeoutMs;
+			while (buffer.isEmpty() && pendingResponse == null && fetchException == null && enabled()) {
+				long remainingMs = deadline - time.milliseconds();
+				if (remainingMs <= 0)
+					break;
+				fetchNeeded.signal();
+				try {
+					fetchCompleted.await(remainingMs, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+
+			if (fetchException != null) {
+				RuntimeException exception = fetchException;
+				fetchException = null;
+				discard();
+				throw exception;
+			}
+			if (pendingResponse != null) {
+				ClientResponse response = pendingResponse;
+				pendingResponse = null;
+				discard();
+				client.handleFetchError(response, timeoutMs);
+				return new ArrayList<>();
+			}
+
+			List<AQjmsBytesMessage> records = new ArrayList<>(buffer);
+			buffer.clear();
+			bufferedBytes = 0;
+			// Records up to here belong to the application now and must never be rolled back by discard
+			savepoint = null;
+			fetchNeeded.signal();
+			return records;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Rolls back records which are dequeued but not yet returned by poll.
+	 */
+	void discard() {
+		lock.lock();
+		try {
+			if (!buffer.isEmpty() && savepoint != null) {
+				Connection conn = client.sessionConnection();
+				try {
+					conn.rollback(savepoint);
+					log.debug("Rolled back {} prefetched records", buffer.size());
+				} catch (SQLException e) {
+					log.warn("Failed to roll back prefetched records to savepoint. Rolling back the transaction, "
+							+ "records returned by poll and not yet committed will be consumed again.", e);
+					try {
+						conn.rollback();
+					} catch (SQLException e1) {
+						log.debug("Failed to roll back the transaction", e1);
+					}
+				}
+			}
+			buffer.clear();
+			bufferedBytes = 0;
+			savepoint = null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops the prefetcher. Buffered records are rolled back.
+	 */
+	void close() {
+		lock.lock();
+		try {
+			discard();
+			closed = true;
+			fetchNeeded.signalAll();
+			fetchCompleted.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void run() {
+		log.debug("Starting consumer prefetch thread.");
+		while (!closed) {
+			lock.lock();
+			try {
+				if (closed)
+					break;
+				if (!fetchAllowed()) {
+					fetchNeeded.await(fetchMaxWaitMs, TimeUnit.MILLISECONDS);
+					continue;
+				}
+				fetch();
+			} catch (InterruptedException e) {
+				break;
+			} catch (Throwable t) {
+				log.error("Uncaught error in consumer prefetch thread: ", t);
+			} finally {
+				lock.unlock();
+			}
+		}
+		log.debug("Consumer prefetch thread has been closed.");
+	}
+
+	private boolean fetchAllowed() {
+		return enabled() && pendingResponse == null && fetchException == null && buffer.size() < client.messageBudget(maxRecords)
+				&& bufferedBytes < maxBytes && client.prefetchable();
+	}
+
+	private void fetch() {
+		if (savepoint == null) {
+			try {
+				savepoint = client.sessionConnection().setSavepoint();
+			} catch (Exception e) {
+				log.warn("Failed to set savepoint for prefetched records. Prefetch is disabled, records are fetched by poll.", e);
+				disabled = true;
+				fetchCompleted.signalAll();
+				return;
+			}
+		}
+
+		List<AQjmsBytesMessage> fetched = new ArrayList<>();
+		try {
+			pendingResponse = client.prefetch(client.messageBudget(maxRecords) - buffer.size(), fetchMaxWaitMs, fetched,
+					fetchManagerMetrics);
+		} catch (RuntimeException e) {
+			fetchException = e;
+		}
+		for (AQjmsBytesMessage message : fetched) {
+			buffer.add(message);
+			try {
+				bufferedBytes += message.getBodyLength();
+			} catch (JMSException e) {
+				// size is only used to bound the buffer
+			}
+		}
+		if (!buffer.isEmpty() || pendingResponse != null || fetchException != null)
+			fetchCompleted.signalAll();
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ ** OKafka Java Client version 23.4.
+ **
+ ** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+ ** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+
+package org.oracle.okafka.clients.consumer.internals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+import org.apache.kafka.common.IsolationLevel;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.LogContext;
+import org.apache.kafka.common.utils.Time;
+import org.oracle.okafka.clients.consumer.internals.SubscriptionState.FetchPosition;
+import org.oracle.okafka.common.requests.ListOffsetsRequest;
+import org.oracle.okafka.common.requests.ListOffsetsResponse.ListOffsetsPartitionResponse;
+import org.oracle.okafka.common.utils.MessageIdConverter;
+import org.slf4j.Logger;
+
+/**
+ * Periodically fetches the earliest and latest offsets of the assigned partitions, and keeps them as the log start
+ * offset and high watermark of each partition in {@link SubscriptionState}. Along with the latest offsets, the probe
+ * fetches the number of messages of each partition not yet dequeued by the consumer group, from
+ * GV$AQ_SHARDED_SUBSCRIBER_STAT. The lag and lead of a partition are computed from these cached values without any
+ * database call.
+ *
+ * Offsets of a partition are not contiguous across subshards, an offset being {@code subshard * 20000 + sequence}.
+ * The lag is therefore the fetched number of messages not yet dequeued, plus the records dequeued but not yet returned
+ * by poll. Without SELECT privilege on GV$AQ_SHARDED_SUBSCRIBER_STAT, and for the lead, the number of records is only
+ * known from offsets in the same subshard as the position.
+ *
+ * Offsets of all assigned partitions of a topic are fetched with one database call. The probe is issued by poll, at most
+ * once per interval. A failed probe is not retried before the next interval.
+ */
+public class OffsetLagProbe {
+
+	private final Logger log;
+	private final ConsumerNetworkClient client;
+	private final SubscriptionState subscriptions;
+	private final Time time;
+	private final long intervalMs;
+	private final long requestTimeoutMs;
+	// Records not yet returned by poll, as of the last probe, less the records returned since
+	private final Map<TopicPartition, Long> unreturned = new HashMap<>();
+	private long lastProbeMs = -1;
+
+	public OffsetLagProbe(LogContext logContext, ConsumerNetworkClient client, SubscriptionState subscriptions,
+			Time time, long intervalMs, long requestTimeoutMs) {
+		this.log = logContext.logger(OffsetLagProbe.class);
+		this.client = client;
+		this.subscriptions = subscriptions;
+		this.time = time;
+		this.intervalMs = intervalMs;
+		this.requestTimeoutMs = requestTimeoutMs;
+	}
+
+	/**
+	 * Fetches the offsets and backlog of the assigned partitions if the cached ones are older than the probe interval.
+	 *
+	 * @param heldRecords number of records of a partition dequeued but not yet returned by poll
+	 * @return true if offsets were fetched
+	 */
+	public boolean maybeProbe(ToIntFunction<TopicPartition> heldRecords) {
+		if (intervalMs <= 0)
+			return false;
+		long now = time.milliseconds();
+		if (lastProbeMs >= 0 && now - lastProbeMs < intervalMs)
+			return false;
+
+		Set<TopicPartition> partitions = subscriptions.assignedPartitions();
+		unreturned.keySet().retainAll(partitions);
+		if (partitions.isEmpty())
+			return false;
+		lastProbeMs = now;
+
+		Map<TopicPartition, Long> earliest = new HashMap<>();
+		Map<TopicPartition, Long> latest = new HashMap<>();
+		for (TopicPartition tp : partitions) {
+			earliest.put(tp, ListOffsetsRequest.EARLIEST_TIMESTAMP);
+			latest.put(tp, ListOffsetsRequest.LATEST_TIMESTAMP);
+		}
+		try {
+			Map<TopicPartition, ListOffsetsPartitionResponse> startOffsets = client.listOffsets(earliest,
+					time.timer(requestTimeoutMs));
+			Map<TopicPartition, ListOffsetsPartitionResponse> endOffsets = client.listOffsets(latest,
+					time.timer(requestTimeoutMs), true);
+			for (TopicPartition tp : partitions) {
+				if (!subscriptions.isAssigned(tp))
+					continue;
+				ListOffsetsPartitionResponse start = startOffsets.get(tp);
+				ListOffsetsPartitionResponse end = endOffsets.get(tp);
+				if (start != null && start.offset() >= 0)
+					subscriptions.updateLogStartOffset(tp, start.offset());
+				if (end != null && end.offset() >= 0)
+					subscriptions.updateHighWatermark(tp, end.offset());
+				if (end != null && end.backlog() >= 0)
+					unreturned.put(tp, end.backlog() + heldRecords.applyAsInt(tp));
+				else
+					unreturned.remove(tp);
+			}
+			log.debug("Fetched offsets of {} partitions for lag", partitions.size());
+			return true;
+		} catch (KafkaException e) {
+			log.warn("Failed to fetch offsets of assigned partitions for lag: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Takes into account records of a partition returned by poll since the last probe.
+	 */
+	public void recordsReturned(TopicPartition tp, int count) {
+		unreturned.computeIfPresent(tp, (p, records) -> Math.max(0, records - count));
+	}
+
+	/**
+	 * Returns the number of records of the partition not yet returned by poll, or null if it is not known. A message
+	 * not yet dequeued counts as one record, even if it is an envelope of several records.
+	 */
+	public Long lag(TopicPartition tp) {
+		Long records = unreturned.get(tp);
+		if (records != null || !consumedFrom(tp))
+			return records;
+		Long lag = subscriptions.partitionLag(tp, IsolationLevel.READ_UNCOMMITTED);
+		if (lag == null)
+			return null;
+		long position = MessageIdConverter.messageOffset(subscriptions.position(tp).offset);
+		// The position is the offset of the last consumed record, not of the next one
+		return sameSubshard(position, Math.max(position, position + lag - 1)) ? Math.max(0, lag - 1) : null;
+	}
+
+	/**
+	 * Returns the number of records between the earliest offset fetched by the probe and the position of the consumer,
+	 * or null if it is not known. It is only known while both are in the same subshard.
+	 */
+	public Long lead(TopicPartition tp) {
+		if (!consumedFrom(tp))
+			return null;
+		Long lead = subscriptions.partitionLead(tp);
+		if (lead == null)
+			return null;
+		long position = MessageIdConverter.messageOffset(subscriptions.position(tp).offset);
+		return sameSubshard(position - lead, position) ? Math.max(0, lead + 1) : null;
+	}
+
+	private static boolean sameSubshard(long offset, long other) {
+		return offset / MessageIdConverter.DEFAULT_SUBPARTITION_SIZE == other / MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
+	}
+
+	// The position of a partition is set when a record is consumed from it. Until then it is 0.
+	private boolean consumedFrom(TopicPartition tp) {
+		if (!subscriptions.hasValidPosition(tp))
+			return false;
+		FetchPosition position = subscriptions.position(tp);
+		return position != null && position.offset > 0;
+	}
+}
@@ -38,6 +38,7 @@ import org.apache.kafka.common.message.OffsetForLeaderEpochResponseData.EpochEnd
 import org.apache.kafka.common.protocol.ApiKeys;
 import org.apache.kafka.common.requests.OffsetsForLeaderEpochRequest;
 import org.apache.kafka.common.utils.LogContext;
+import org.oracle.okafka.common.utils.MessageIdConverter;
 import org.slf4j.Logger;
 
 import java.util.ArrayList;
@@ -560,14 +561,14 @@ public class SubscriptionState {
     synchronized Long partitionLag(TopicPartition tp, IsolationLevel isolationLevel) {
         TopicPartitionState topicPartitionState = assignedState(tp);
         if (isolationLevel == IsolationLevel.READ_COMMITTED)
-            return topicPartitionState.lastStableOffset == null ? null : topicPartitionState.lastStableOffset - topicPartitionState.position.offset;
+            return topicPartitionState.lastStableOffset == null ? null : topicPartitionState.lastStableOffset - MessageIdConverter.messageOffset(topicPartitionState.position.offset);
         else
-            return topicPartitionState.highWatermark == null ? null : topicPartitionState.highWatermark - topicPartitionState.position.offset;
+            return topicPartitionState.highWatermark == null ? null : topicPartitionState.highWatermark - MessageIdConverter.messageOffset(topicPartitionState.position.offset);
     }
 
     synchronized Long partitionLead(TopicPartition tp) {
         TopicPartitionState topicPartitionState = assignedState(tp);
-        return topicPartitionState.logStartOffset == null ? null : topicPartitionState.position.offset - topicPartitionState.logStartOffset;
+        return topicPartitionState.logStartOffset == null ? null : MessageIdConverter.messageOffset(topicPartitionState.position.offset) - topicPartitionState.logStartOffset;
     }
 
     synchronized void updateHighWatermark(TopicPartition tp, long highWatermark) {
@@ -88,9 +88,12 @@ import org.apache.kafka.common.utils.Time;
 import org.apache.kafka.common.utils.Utils;
 import org.oracle.okafka.clients.Metadata;
 import org.oracle.okafka.clients.producer.internals.AQKafkaProducer;
+import org.oracle.okafka.clients.producer.internals.AdaptiveBatching;
 import org.oracle.okafka.clients.producer.internals.OracleTransactionManager;
 import org.oracle.okafka.clients.producer.internals.OkafkaProducerMetrics;
 import org.oracle.okafka.clients.producer.internals.SenderThread;
+import org.oracle.okafka.clients.producer.internals.SizeClassBufferPool;
+import org.oracle.okafka.common.utils.MessageIdConverter;
 import org.oracle.okafka.common.config.SslConfigs;
 import org.oracle.okafka.common.errors.FeatureNotSupportedException;
 import org.oracle.okafka.common.errors.InvalidLoginCredentialsException;
@@ -689,11 +692,15 @@ public class KafkaProducer<K, V> implements Producer<K, V> {
 			if (transactionalProducer) {
 				this.accumulator = null;
 			} else {
+				// Records are compressed when they are published to TxEventQ. Compressing the in-memory batch as well would only be undone before publishing.
+				// The index of a record in a batch envelope is part of its offset and is bounded, see MessageIdConverter
+				int batchRecordLimit = config.getBoolean(ProducerConfig.ORACLE_PRODUCER_BATCH_ENVELOPE)
+						? MessageIdConverter.MAX_ENVELOPE_INDEX + 1 : Integer.MAX_VALUE;
 				this.accumulator = new RecordAccumulator(logContext, config.getInt(ProducerConfig.BATCH_SIZE_CONFIG),
-						compression, lingerMs(config), retryBackoffMs, deliveryTimeoutMs, metrics,
+						batchRecordLimit, Compression.NONE, lingerMs(config), retryBackoffMs, deliveryTimeoutMs, metrics,
 						PRODUCER_METRIC_GROUP_NAME, time, apiVersions, transactionManager,
-						new BufferPool(this.totalMemorySize, config.getInt(ProducerConfig.BATCH_SIZE_CONFIG), metrics,
-								time, PRODUCER_METRIC_GROUP_NAME));
+						bufferPool(config),
+						configureAdaptiveBatching(config, logContext));
 			}
 
 			/*
@@ -880,6 +887,25 @@ public class KafkaProducer<K, V> implements Producer<K, V> {
 		return config.getInt(ProducerConfig.RETRIES_CONFIG);
 	}
 
+	private BufferPool bufferPool(ProducerConfig config) {
+		int batchSize = config.getInt(ProducerConfig.BATCH_SIZE_CONFIG);
+		// Adaptive batch sizes are rarely batch.size, their buffers are reused by size class
+		if (config.getBoolean(ProducerConfig.ORACLE_PRODUCER_ADAPTIVE_BATCHING))
+			return new SizeClassBufferPool(this.totalMemorySize, batchSize, metrics, time, PRODUCER_METRIC_GROUP_NAME);
+		return new BufferPool(this.totalMemorySize, batchSize, metrics, time, PRODUCER_METRIC_GROUP_NAME);
+	}
+
+	private AdaptiveBatching configureAdaptiveBatching(ProducerConfig config, LogContext logContext) {
+		if (!config.getBoolean(ProducerConfig.ORACLE_PRODUCER_ADAPTIVE_BATCHING))
+			return null;
+		return new AdaptiveBatching(logContext, metrics, PRODUCER_METRIC_GROUP_NAME, lingerMs(config),
+				config.getInt(ProducerConfig.BATCH_SIZE_CONFIG),
+				config.getLong(ProducerConfig.ORACLE_PRODUCER_ADAPTIVE_LINGER_MAX_MS),
+				config.getInt(ProducerConfig.ORACLE_PRODUCER_ADAPTIVE_BATCH_SIZE_MIN),
+				Math.min(config.getInt(ProducerConfig.ORACLE_PRODUCER_ADAPTIVE_BATCH_SIZE_MAX), maxRequestSize),
+				config.getLong(ProducerConfig.ORACLE_PRODUCER_ADAPTIVE_SEND_TARGET_MS));
+	}
+
 	private static int lingerMs(ProducerConfig config) {
 		return (int) Math.min(config.getLong(ProducerConfig.LINGER_MS_CONFIG), Integer.MAX_VALUE);
 	}
@@ -1634,6 +1660,8 @@ public class KafkaProducer<K, V> implements Producer<K, V> {
 		throwIfProducerClosed();
 		try {
 			long nowNanos = time.nanoseconds();
+			// Publish records still buffered in this transaction before committing it
+			aqProducer.flushTransactional();
 			oracleTransctionManager.commitTransaction();
 			okpMetrics.recordCommitTxn(time.nanoseconds() - nowNanos);
 		} catch (DisconnectException dE) {
@@ -1764,6 +1792,7 @@ public class KafkaProducer<K, V> implements Producer<K, V> {
 		}
 		try {
 			long nowNanos = time.nanoseconds();
+			aqProducer.abortTransactional(new KafkaException("Transaction aborted before the record was published"));
 			oracleTransctionManager.abortTransaction();
 			okpMetrics.recordAbortTxn(time.nanoseconds() - nowNanos);
 		}
@@ -2126,6 +2155,7 @@ public class KafkaProducer<K, V> implements Producer<K, V> {
 			Cluster newCluster = mResponse.cluster();
 			metadata.update(newCluster, null, time.milliseconds(), false);
 			metadata.updateTeqParameters(mResponse.teqParameters());
+			metadata.publishShared(newCluster, mResponse.teqParameters(), time.milliseconds());
 			return new ClusterAndWaitTime(newCluster, elapsed);
 		}
 
@@ -2232,6 +2262,15 @@ public class KafkaProducer<K, V> implements Producer<K, V> {
 	public void flush() {
 		log.trace("Flushing accumulated records in producer.");
 		long start = time.nanoseconds();
+		if (transactionalProducer) {
+			// Records sent within a transaction are buffered by the producer until published
+			try {
+				aqProducer.flushTransactional();
+			} finally {
+				okpMetrics.recordFlush(time.nanoseconds() - start);
+			}
+			return;
+		}
 		this.accumulator.beginFlush();
 		this.sender.wakeup();
 		try {
@@ -2338,8 +2377,10 @@ public class KafkaProducer<K, V> implements Producer<K, V> {
 		AtomicReference<Throwable> firstException = new AtomicReference<>();
 
 		if (transactionalProducer) {
-			if (aqProducer != null)
+			if (aqProducer != null) {
+				aqProducer.abortTransactional(new KafkaException("Producer closed before the record was published"));
 				aqProducer.close();
+			}
 		}
 		boolean invokedFromCallback = false;
 		if (this.ioThread != null)
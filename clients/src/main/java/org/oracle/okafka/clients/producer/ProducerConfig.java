@@ -48,7 +48,9 @@ import org.oracle.okafka.common.config.SslConfigs;
 import org.apache.kafka.common.config.ConfigDef.Importance;
 import org.apache.kafka.common.config.ConfigDef.Type;
 import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.record.CompressionType;
 import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
 
 /**
  * Configuration for the OKafka Producer.
@@ -72,6 +74,53 @@ public class ProducerConfig extends AbstractConfig {
 			+ "A transactional producer will not accumulate the records in the batch "
 			+ "but will immediately send it to Oracle Transactional Event Queue(TxEQ) server to publish into the topic.";
 
+	/** <code>oracle.producer.sessions.per.instance</code> */
+	public static final String ORACLE_PRODUCER_SESSIONS_PER_INSTANCE = "oracle.producer.sessions.per.instance";
+	private static final String ORACLE_PRODUCER_SESSIONS_PER_INSTANCE_DOC = "The number of database sessions the producer opens to each database instance "
+			+ "to publish records. With the default value of 1, batches are published one at a time over a single session per instance. "
+			+ "A value greater than 1 enables pipelined produce: up to this many batches are kept in flight per instance, each one published over its own session, "
+			+ "so that a slow publish call into one partition does not stall the other partitions owned by the same instance. "
+			+ "Ordering of records within a partition is guaranteed only when <code>max.in.flight.requests.per.connection</code> is set to 1.";
+
+	/** <code>oracle.producer.partition.affinity</code> */
+	public static final String ORACLE_PRODUCER_PARTITION_AFFINITY = "oracle.producer.partition.affinity";
+	private static final String ORACLE_PRODUCER_PARTITION_AFFINITY_DOC = "When set to true and <code>" + ORACLE_PRODUCER_SESSIONS_PER_INSTANCE + "</code> is greater than 1, "
+			+ "each partition is always published through the same session of its instance, chosen as partition number modulo the number of sessions. "
+			+ "Partitions mapped to different sessions are published in parallel while records of one partition never race each other across sessions. "
+			+ "When false, a batch is published through any idle session of the instance.";
+
+	/** <code>oracle.producer.batch.envelope</code> */
+	public static final String ORACLE_PRODUCER_BATCH_ENVELOPE = "oracle.producer.batch.envelope";
+	private static final String ORACLE_PRODUCER_BATCH_ENVELOPE_DOC = "When set to true, all records of a producer batch are published as a single message into the Transactional Event Queue, "
+			+ "instead of one message per record. This greatly reduces the number of rows and redo generated for small records. "
+			+ "The envelope is compressed as a whole when <code>compression.type</code> is set. "
+			+ "Consumers receive the records individually. The last record of an envelope has the offset of the message that carries it, "
+			+ "the other records have offsets derived from it and the index of the record in the envelope, above the offsets of messages. "
+			+ "An envelope carries at most 1048576 records, a batch is sent once it holds that many records whatever <code>batch.size</code>. "
+			+ "Such messages can only be consumed by OKafka consumers of this version or later.";
+
+	public static final String ORACLE_PRODUCER_ADAPTIVE_BATCHING = "oracle.producer.adaptive.batching";
+	private static final String ORACLE_PRODUCER_ADAPTIVE_BATCHING_DOC = "When set to true, the producer chooses the linger time and the batch size of each partition "
+			+ "from the rate at which records are sent to it and the time taken to publish its batches, instead of using <code>linger.ms</code> "
+			+ "and <code>batch.size</code>, which are only the initial values. The batch size is reduced when publishing a batch takes longer than "
+			+ "<code>oracle.producer.adaptive.send.target.ms</code>, and grows when full batches are published faster. Batches linger for the time records take "
+			+ "to fill them, but not when too few records arrive to fill them. The chosen values are exported as the <code>adaptive-linger-ms</code> and "
+			+ "<code>adaptive-batch-size</code> metrics of each partition.";
+
+	public static final String ORACLE_PRODUCER_ADAPTIVE_LINGER_MAX_MS = "oracle.producer.adaptive.linger.max.ms";
+	private static final String ORACLE_PRODUCER_ADAPTIVE_LINGER_MAX_MS_DOC = "The longest linger time chosen for a partition when <code>" + ORACLE_PRODUCER_ADAPTIVE_BATCHING + "</code> is true.";
+
+	public static final String ORACLE_PRODUCER_ADAPTIVE_BATCH_SIZE_MIN = "oracle.producer.adaptive.batch.size.min";
+	private static final String ORACLE_PRODUCER_ADAPTIVE_BATCH_SIZE_MIN_DOC = "The smallest batch size in bytes chosen for a partition when <code>" + ORACLE_PRODUCER_ADAPTIVE_BATCHING + "</code> is true.";
+
+	public static final String ORACLE_PRODUCER_ADAPTIVE_BATCH_SIZE_MAX = "oracle.producer.adaptive.batch.size.max";
+	private static final String ORACLE_PRODUCER_ADAPTIVE_BATCH_SIZE_MAX_DOC = "The largest batch size in bytes chosen for a partition when <code>" + ORACLE_PRODUCER_ADAPTIVE_BATCHING + "</code> is true. "
+			+ "Batches are never larger than <code>max.request.size</code>.";
+
+	public static final String ORACLE_PRODUCER_ADAPTIVE_SEND_TARGET_MS = "oracle.producer.adaptive.send.target.ms";
+	private static final String ORACLE_PRODUCER_ADAPTIVE_SEND_TARGET_MS_DOC = "The time publishing one batch to the database should take when <code>" + ORACLE_PRODUCER_ADAPTIVE_BATCHING + "</code> is true. "
+			+ "Longer sends hold the database session from the batches of other partitions.";
+
 	/** <code>bootstrap.servers</code>*/
 	public static final String BOOTSTRAP_SERVERS_CONFIG = CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG;
 
@@ -101,7 +150,10 @@ public class ProducerConfig extends AbstractConfig {
 			+ "<p>"
 			+ "A small batch size will make batching less common and may reduce throughput (a batch size of zero will disable "
 			+ "batching entirely). A very large batch size may use memory a bit more wastefully as we will always allocate a "
-			+ "buffer of the specified batch size in anticipation of additional records.";
+			+ "buffer of the specified batch size in anticipation of additional records."
+			+ "<p>"
+			+ "A transactional producer buffers the records sent within a transaction per partition and publishes them together "
+			+ "once they reach this size, on <code>flush()</code>, on <code>commitTransaction()</code>, or when the result of one of them is awaited.";
 
 	/** <code>acks</code> */
 	public static final String ACKS_CONFIG = "acks";
@@ -165,11 +217,12 @@ public class ProducerConfig extends AbstractConfig {
 	/** <code>retry.backoff.ms</code> */
 	public static final String RETRY_BACKOFF_MS_CONFIG = CommonClientConfigs.RETRY_BACKOFF_MS_CONFIG;
 
-	/** <code>compression.type</code> (This property is not yet supported)*/
+	/** <code>compression.type</code> */
 	public static final String COMPRESSION_TYPE_CONFIG = "compression.type";
 	private static final String COMPRESSION_TYPE_DOC = "The compression type for all data generated by the producer. The default is none (i.e. no compression). Valid "
-			+ " values are <code>none</code>, <code>gzip</code>, <code>snappy</code>, or <code>lz4</code>. "
-			+ "Compression is of full batches of data, so the efficacy of batching will also impact the compression ratio (more batching means better compression). This property is ot yet supported.";
+			+ " values are <code>none</code>, <code>gzip</code>, <code>snappy</code>, <code>lz4</code>, or <code>zstd</code>. "
+			+ "The payload of each message published to the Transactional Event Queue is compressed. Payloads which do not get smaller are published uncompressed. "
+			+ "Compressed messages can only be consumed by OKafka consumers of this version or later.";
 
 	/** <code>metrics.sample.window.ms</code> (This property is not yet supported)*/
 	public static final String METRICS_SAMPLE_WINDOW_MS_CONFIG = CommonClientConfigs.METRICS_SAMPLE_WINDOW_MS_CONFIG;
@@ -188,7 +241,8 @@ public class ProducerConfig extends AbstractConfig {
 	/** <code>max.in.flight.requests.per.connection</code> (This property is not yet supported)*/
 	public static final String MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION = "max.in.flight.requests.per.connection";
 	private static final String MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION_DOC = "The maximum number of unacknowledged requests the client will send on a single connection before blocking."
-			+ "This property is not supportable beacuse client sends a request and waits for response.";
+			+ "Client sends a request and waits for response on each database session. When <code>" + ORACLE_PRODUCER_SESSIONS_PER_INSTANCE + "</code> is greater than 1, "
+			+ "setting this property to 1 makes sure that only one batch per partition is in flight at a time, which preserves the ordering of records within a partition.";
 
 	/** <code>retries</code> */
 	public static final String RETRIES_CONFIG = CommonClientConfigs.RETRIES_CONFIG;
@@ -288,7 +342,7 @@ public class ProducerConfig extends AbstractConfig {
 						in("all", "-1", "0", "1"),
 						Importance.HIGH,
 						ACKS_DOC)
-				.define(COMPRESSION_TYPE_CONFIG, Type.STRING, "none", Importance.HIGH, COMPRESSION_TYPE_DOC)
+				.define(COMPRESSION_TYPE_CONFIG, Type.STRING, "none", in(Utils.enumOptions(CompressionType.class)), Importance.HIGH, COMPRESSION_TYPE_DOC)
 				.define(BATCH_SIZE_CONFIG, Type.INT, 16384, atLeast(0), Importance.MEDIUM, BATCH_SIZE_DOC)
 				.define(LINGER_MS_CONFIG, Type.LONG, 0, atLeast(0L), Importance.MEDIUM, LINGER_MS_DOC)
 				.define(CLIENT_ID_CONFIG, Type.STRING, "", Importance.MEDIUM, CommonClientConfigs.CLIENT_ID_DOC)
@@ -424,7 +478,74 @@ public class ProducerConfig extends AbstractConfig {
 						ConfigDef.Type.BOOLEAN,
 						false,
 						Importance.LOW, 
-						CommonClientConfigs.ORACLE_SERVICE_NAME_DOC);
+						CommonClientConfigs.ORACLE_SERVICE_NAME_DOC)
+				.define(ORACLE_PRODUCER_SESSIONS_PER_INSTANCE,
+						Type.INT,
+						1,
+						atLeast(1),
+						Importance.LOW,
+						ORACLE_PRODUCER_SESSIONS_PER_INSTANCE_DOC)
+				.define(ORACLE_PRODUCER_PARTITION_AFFINITY,
+						Type.BOOLEAN,
+						false,
+						Importance.LOW,
+						ORACLE_PRODUCER_PARTITION_AFFINITY_DOC)
+				.define(ORACLE_PRODUCER_BATCH_ENVELOPE,
+						Type.BOOLEAN,
+						false,
+						Importance.LOW,
+						ORACLE_PRODUCER_BATCH_ENVELOPE_DOC)
+				.define(ORACLE_PRODUCER_ADAPTIVE_BATCHING,
+						Type.BOOLEAN,
+						false,
+						Importance.LOW,
+						ORACLE_PRODUCER_ADAPTIVE_BATCHING_DOC)
+				.define(ORACLE_PRODUCER_ADAPTIVE_LINGER_MAX_MS,
+						Type.LONG,
+						100L,
+						atLeast(0),
+						Importance.LOW,
+						ORACLE_PRODUCER_ADAPTIVE_LINGER_MAX_MS_DOC)
+				.define(ORACLE_PRODUCER_ADAPTIVE_BATCH_SIZE_MIN,
+						Type.INT,
+						4096,
+						atLeast(1),
+						Importance.LOW,
+						ORACLE_PRODUCER_ADAPTIVE_BATCH_SIZE_MIN_DOC)
+				.define(ORACLE_PRODUCER_ADAPTIVE_BATCH_SIZE_MAX,
+						Type.INT,
+						1024 * 1024,
+						atLeast(1),
+						Importance.LOW,
+						ORACLE_PRODUCER_ADAPTIVE_BATCH_SIZE_MAX_DOC)
+				.define(ORACLE_PRODUCER_ADAPTIVE_SEND_TARGET_MS,
+						Type.LONG,
+						50L,
+						atLeast(1),
+						Importance.LOW,
+						ORACLE_PRODUCER_ADAPTIVE_SEND_TARGET_MS_DOC)
+				.define(CommonClientConfigs.ORACLE_CONNECTION_POOL,
+						Type.BOOLEAN,
+						false,
+						Importance.LOW,
+						CommonClientConfigs.ORACLE_CONNECTION_POOL_DOC)
+				.define(CommonClientConfigs.ORACLE_CONNECTION_POOL_INITIAL_SIZE,
+						Type.INT,
+						2,
+						atLeast(0),
+						Importance.LOW,
+						CommonClientConfigs.ORACLE_CONNECTION_POOL_INITIAL_SIZE_DOC)
+				.define(CommonClientConfigs.ORACLE_CONNECTION_POOL_MAX_IDLE,
+						Type.INT,
+						8,
+						atLeast(0),
+						Importance.LOW,
+						CommonClientConfigs.ORACLE_CONNECTION_POOL_MAX_IDLE_DOC)
+				.define(CommonClientConfigs.ORACLE_METADATA_SHARED,
+						Type.BOOLEAN,
+						false,
+						Importance.LOW,
+						CommonClientConfigs.ORACLE_METADATA_SHARED_DOC);
 	}
 
 
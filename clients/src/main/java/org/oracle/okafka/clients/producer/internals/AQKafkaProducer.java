@@ -9,6 +9,7 @@ package org.oracle.okafka.clients.producer.internals;
 
 
 import java.nio.ByteBuffer;
+import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
@@ -16,13 +17,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 
-import javax.jms.BytesMessage;
-import javax.jms.DeliveryMode;
 import javax.jms.JMSException;
 import javax.jms.Topic;
 import javax.jms.TopicConnection;
@@ -31,7 +32,6 @@ import javax.jms.TopicPublisher;
 
 import oracle.jms.AQjmsBytesMessage;
 import oracle.jms.AQjmsConnection;
-import oracle.jms.AQjmsConstants;
 import oracle.jms.AQjmsException;
 import oracle.jms.AQjmsProducer;
 import oracle.jms.AQjmsSession;
@@ -49,8 +49,10 @@ import org.oracle.okafka.common.Node;
 import org.apache.kafka.common.Cluster;
 import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.compress.Compression;
 import org.apache.kafka.common.errors.InvalidTopicException;
 import org.apache.kafka.common.errors.NotLeaderForPartitionException;
+import org.apache.kafka.common.errors.TimeoutException;
 import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.metrics.Metrics;
 //import org.apache.kafka.common.network.Selector.SelectorMetrics;
@@ -59,12 +61,16 @@ import org.oracle.okafka.common.network.SelectorMetrics;
 import org.oracle.okafka.common.protocol.ApiKeys;
 import org.oracle.okafka.common.requests.ProduceRequest;
 import org.oracle.okafka.common.requests.ProduceResponse;
+import org.apache.kafka.common.record.CompressionType;
 import org.apache.kafka.common.record.MemoryRecords;
 import org.apache.kafka.common.record.MutableRecordBatch;
 import org.apache.kafka.common.record.Record;
+import org.oracle.okafka.common.utils.ConnectionPool;
 import org.oracle.okafka.common.utils.ConnectionUtils;
 import org.oracle.okafka.common.utils.MessageIdConverter;
 import org.oracle.okafka.common.utils.MessageIdConverter.OKafkaOffset;
+import org.oracle.okafka.common.utils.PayloadCompression;
+import org.apache.kafka.common.utils.ByteBufferOutputStream;
 import org.apache.kafka.common.utils.LogContext;
 import org.apache.kafka.common.utils.Time;
 
@@ -75,12 +81,24 @@ public final class AQKafkaProducer extends AQClient {
 
 	//Holds TopicPublishers of each node. Each TopicPublisher can contain a connection to corresponding node, session associated with that connection and topic publishers associated with that session
 	private final Map<Node, TopicPublishers> topicPublishersMap;
+	//Holds the pool of TopicPublishers of each node used for pipelined produce. First publisher of each pool is the one held in topicPublishersMap
+	private final Map<Node, PublisherPool> publisherPoolMap;
+	//Number of sessions to each node. More than one session enables pipelined produce
+	private final int sessionsPerNode;
+	//Publish each partition through the same session of the node
+	private final boolean partitionAffinity;
+	//Codec used to compress message payloads
+	private final Compression compression;
+	//Publish all records of a batch as one message
+	private final boolean batchEnvelope;
 	private final ProducerConfig configs;
 	private final Time time;
 	private Metadata metadata; 
 	private final Metrics metrics;
 	private final SelectorMetrics selectorMetrics;
-	private final int DLENGTH_SIZE = 4;
+	private static final int DLENGTH_SIZE = 4;
+	//Initial size of the buffer into which record payloads of a batch are encoded. Grows to the largest record of the batch
+	private static final int INITIAL_PAYLOAD_BUFFER_SIZE = 1024;
 	private boolean transactionalProducer = false;
 	private boolean idempotentProducer = false;
 	private int connectMode = AQjmsSession.AUTO_ACKNOWLEDGE;
@@ -119,6 +137,10 @@ public final class AQKafkaProducer extends AQClient {
 	}
 
 	private HashMap<TopicPartition, OKafkaOffset> currentOffsetMap = null;
+	//Records sent within the current transaction and not yet published, per partition
+	private Map<TopicPartition, TransactionalBatch> transactionalBatches = null;
+	//Size in bytes after which the records of a partition sent within a transaction are published
+	private int transactionalBatchSize;
 	//	private final SelectorMetrics sensors;
 
 	public AQKafkaProducer(LogContext logContext, ProducerConfig configs, Time time, Metadata _metadata, Metrics metrics, OracleTransactionManager txM)
@@ -126,7 +148,12 @@ public final class AQKafkaProducer extends AQClient {
 		super(logContext.logger(AQKafkaProducer.class), configs);
 		this.configs = configs;
 		this.time = time;
-		this.topicPublishersMap = new HashMap<Node, TopicPublishers>();
+		this.topicPublishersMap = new ConcurrentHashMap<Node, TopicPublishers>();
+		this.publisherPoolMap = new ConcurrentHashMap<Node, PublisherPool>();
+		this.sessionsPerNode = configs.getInt(ProducerConfig.ORACLE_PRODUCER_SESSIONS_PER_INSTANCE);
+		this.partitionAffinity = configs.getBoolean(ProducerConfig.ORACLE_PRODUCER_PARTITION_AFFINITY);
+		this.compression = Compression.of(CompressionType.forName(configs.getString(ProducerConfig.COMPRESSION_TYPE_CONFIG))).build();
+		this.batchEnvelope = configs.getBoolean(ProducerConfig.ORACLE_PRODUCER_BATCH_ENVELOPE);
 		this.metadata = _metadata;
 		this.oTxm = txM;
 		this.metrics=metrics;
@@ -155,6 +182,8 @@ public final class AQKafkaProducer extends AQClient {
 		{
 			connectMode = AQjmsSession.SESSION_TRANSACTED;
 			currentOffsetMap = new HashMap<TopicPartition, OKafkaOffset>();
+			transactionalBatches = new LinkedHashMap<TopicPartition, TransactionalBatch>();
+			transactionalBatchSize = configs.getInt(ProducerConfig.BATCH_SIZE_CONFIG);
 		}
 		status = AQKafkaProducerStatus.INIT;
 	}
@@ -274,13 +303,10 @@ public final class AQKafkaProducer extends AQClient {
 		}
 	}
 
-	public Future<RecordMetadata> transactionalSend(TopicPartition tp, byte[] serializedKey, byte[] serializedValue, 
+	public synchronized Future<RecordMetadata> transactionalSend(TopicPartition tp, byte[] serializedKey, byte[] serializedValue, 
 			Header[] headers, Callback interceptCallback) 
 	{
-		ProduceRequestResult produceResult = null;
 		FutureRecordMetadata frm  = null;
-		RuntimeException publishException = null;
-		OKafkaOffset thisOffset = null;
 
 		log.debug("Message for TopicPartition " + tp);
 		try {
@@ -343,60 +369,43 @@ public final class AQKafkaProducer extends AQClient {
 
 			oTxm.setDBConnection(conn);
 
-			TopicTeqParameters topicTeqParam = metadata.topicParaMap.get(tp.topic());
+			TopicTeqParameters topicTeqParam = metadata.topicParameters(tp.topic());
 			if(topicTeqParam == null)
 			{
 				try {
-					super.fetchQueueParameters(tp.topic(), conn, metadata.topicParaMap);
+					topicTeqParam = super.fetchQueueParameters(tp.topic(), conn);
+					metadata.updateTeqParameters(Collections.singletonMap(tp.topic(), topicTeqParam));
 				} catch (SQLException e) {
 					log.error("Exception while fetching TEQ parameters and updating metadata " + e.getMessage());
+					throw e;
 				}
 			}
 			int msgVersion = topicTeqParam.getMsgVersion();
 
-			BytesMessage byteMessage = createBytesMessage(topicPbs.sess, tp, 
+			AQjmsBytesMessage byteMessage = createBytesMessage(topicPbs.sess, tp, 
 
 					serializedKey != null ? ByteBuffer.wrap(serializedKey) : null, 
 							serializedValue != null ? ByteBuffer.wrap(serializedValue) : null , headers, msgVersion);
 
-			try {
-				tps.publish(byteMessage, DeliveryMode.PERSISTENT, 0, AQjmsConstants.EXPIRATION_NEVER);
-			}catch(JMSException e)
+			// Records are published in bulk when the batch of the partition fills up, on flush or on commit.
+			TransactionalBatch txnBatch = transactionalBatches.get(tp);
+			if(txnBatch == null || txnBatch.publisher != tps)
 			{
-				log.error("Exception while producing transactionl message " + e.getMessage());
-				publishException = new RuntimeException(e);
+				if(txnBatch != null)
+					flushTransactionalBatch(txnBatch);
+				txnBatch = new TransactionalBatch(tp, tps);
+				transactionalBatches.put(tp, txnBatch);
 			}
-
-			if(publishException == null)
-			{
-				OKafkaOffset prevOffset = currentOffsetMap.get(tp);
-				thisOffset =  MessageIdConverter.computeOffset(prevOffset, byteMessage.getJMSMessageID());
-				currentOffsetMap.remove(tp);
-				currentOffsetMap.put(tp, thisOffset);
-			}
-			else { 
-				//Create Empty or Invalid Offset
-				thisOffset= MessageIdConverter.getOKafkaOffset(null,false,false);
-			}
-
-			produceResult = new ProduceRequestResult(tp);
-
-			produceResult.set(thisOffset.subPartitionId() * MessageIdConverter.DEFAULT_SUBPARTITION_SIZE,
-					(publishException == null) ? byteMessage.getJMSTimestamp() : -1,
-					Collections.singletonList(thisOffset), publishException);
-
-			frm = new FutureRecordMetadata(produceResult, 0, System.currentTimeMillis(),
-					serializedKey != null ? serializedKey.length : 0, 
-							serializedValue != null ? serializedValue.length : 0 ,time );
-
-
-			produceResult.done();
+			frm = txnBatch.add(byteMessage, serializedKey, serializedValue, interceptCallback);
 			this.oTxm.addRecordToTransaction(frm);
 
+			if(txnBatch.sizeInBytes >= transactionalBatchSize)
+				flushTransactionalBatch(txnBatch);
+
 		}catch(Exception e)
 		{
 			log.error("Error while publishing records within a transaction." + e.getMessage(), e);
-			produceResult = new ProduceRequestResult(tp);
+			ProduceRequestResult produceResult = new ProduceRequestResult(tp);
 			produceResult.set(-1L, -1L, null, new RuntimeException(e));
 			frm = new FutureRecordMetadata(produceResult, -1l, System.currentTimeMillis(),
 					serializedKey != null ? serializedKey.length : 0,
@@ -407,6 +416,129 @@ public final class AQKafkaProducer extends AQClient {
 		return frm;
 	}
 
+	/**
+	 * Publishes all records buffered within the current transaction.
+	 * Failures are reported through the futures of the records, and are thrown by commit.
+	 */
+	public synchronized void flushTransactional() {
+		if(transactionalBatches == null)
+			return;
+		for(TransactionalBatch txnBatch : new ArrayList<>(transactionalBatches.values()))
+			flushTransactionalBatch(txnBatch);
+	}
+
+	/**
+	 * Drops all records buffered within the current transaction. Their futures fail with the given exception.
+	 */
+	public synchronized void abortTransactional(RuntimeException abortException) {
+		if(transactionalBatches == null)
+			return;
+		for(TransactionalBatch txnBatch : transactionalBatches.values())
+			txnBatch.complete(null, abortException);
+		transactionalBatches.clear();
+	}
+
+	private synchronized void flushTransactionalBatch(TransactionalBatch txnBatch) {
+		if(transactionalBatches.get(txnBatch.topicPartition) == txnBatch)
+			transactionalBatches.remove(txnBatch.topicPartition);
+		if(txnBatch.isDone())
+			return;
+
+		AQjmsBytesMessage[] msgs = txnBatch.messages.toArray(new AQjmsBytesMessage[0]);
+		RuntimeException publishException = null;
+		try {
+			log.debug("Publishing " + msgs.length + " records of transaction for " + txnBatch.topicPartition);
+			sendToAQ(msgs, txnBatch.publisher);
+		}catch(JMSException e)
+		{
+			log.error("Exception while producing transactionl message " + e.getMessage());
+			publishException = new RuntimeException(e);
+		}
+
+		List<OKafkaOffset> msgIds = null;
+		if(publishException == null)
+		{
+			msgIds = new ArrayList<>(msgs.length);
+			OKafkaOffset prevOffset = currentOffsetMap.get(txnBatch.topicPartition);
+			try {
+				for(AQjmsBytesMessage msg : msgs) {
+					prevOffset = MessageIdConverter.computeOffset(prevOffset, msg.getJMSMessageID());
+					msgIds.add(prevOffset);
+				}
+				currentOffsetMap.put(txnBatch.topicPartition, prevOffset);
+			}catch(JMSException e) {
+				publishException = new RuntimeException(e);
+				msgIds = null;
+			}
+		}
+		txnBatch.complete(msgIds, publishException);
+	}
+
+	/**
+	 * Records of one partition sent within a transaction and not yet published.
+	 * All records share one ProduceRequestResult, which completes once they are published.
+	 */
+	private final class TransactionalBatch {
+		private final TopicPartition topicPartition;
+		private final TopicPublisher publisher;
+		private final ProduceRequestResult result;
+		private final List<AQjmsBytesMessage> messages = new ArrayList<>();
+		private final List<FutureRecordMetadata> futures = new ArrayList<>();
+		private final List<Callback> callbacks = new ArrayList<>();
+		private int sizeInBytes = 0;
+
+		TransactionalBatch(TopicPartition topicPartition, TopicPublisher publisher) {
+			this.topicPartition = topicPartition;
+			this.publisher = publisher;
+			this.result = new ProduceRequestResult(topicPartition);
+			// Waiting on a record of this batch publishes it
+			this.result.onAwait(() -> flushTransactionalBatch(this));
+		}
+
+		FutureRecordMetadata add(AQjmsBytesMessage msg, byte[] serializedKey, byte[] serializedValue, Callback callback) {
+			int keySize = serializedKey != null ? serializedKey.length : 0;
+			int valueSize = serializedValue != null ? serializedValue.length : 0;
+			FutureRecordMetadata frm = new FutureRecordMetadata(result, messages.size(), System.currentTimeMillis(),
+					keySize, valueSize, time);
+			messages.add(msg);
+			futures.add(frm);
+			callbacks.add(callback);
+			sizeInBytes += keySize + valueSize;
+			return frm;
+		}
+
+		boolean isDone() {
+			return result.completed();
+		}
+
+		void complete(List<OKafkaOffset> msgIds, RuntimeException exception) {
+			if(isDone())
+				return;
+			long baseOffset = (msgIds != null && !msgIds.isEmpty()) ? msgIds.get(0).subPartitionId() * MessageIdConverter.DEFAULT_SUBPARTITION_SIZE : -1L;
+			long logAppendTime = -1L;
+			if(exception == null && !messages.isEmpty()) {
+				try {
+					logAppendTime = messages.get(messages.size() - 1).getJMSTimestamp();
+				}catch(JMSException ignoreE) {}
+			}
+			result.set(baseOffset, logAppendTime, msgIds, exception);
+			result.done();
+			for(int i = 0; i < futures.size(); i++) {
+				Callback callback = callbacks.get(i);
+				if(callback == null)
+					continue;
+				try {
+					if(exception == null)
+						callback.onCompletion(futures.get(i).value(), null);
+					else
+						callback.onCompletion(null, exception);
+				}catch(Exception e) {
+					log.error("Error executing user-provided callback on transactional record for " + topicPartition, e);
+				}
+			}
+		}
+	}
+
 	public ClientResponse send(ClientRequest request) {
 		ClientResponse cr = parseRequest(request, ApiKeys.convertToOracleApiKey(request.apiKey()));	
 		selectorMetrics.recordCompletedReceive(cr.destination(), cr.requestLatencyMs());
@@ -448,7 +580,7 @@ public final class AQKafkaProducer extends AQClient {
 		TopicPublisher publisher = null;
 		int retryCnt = 2; 
 		AQjmsBytesMessage byteMessage  = null;
-		TopicTeqParameters topicTeqParam = metadata.topicParaMap.get(topicPartition.topic());
+		TopicTeqParameters topicTeqParam = metadata.topicParameters(topicPartition.topic());
 		long batchSize=memoryRecords.sizeInBytes();
 		int msgVersion = topicTeqParam.getMsgVersion();
 
@@ -456,6 +588,8 @@ public final class AQKafkaProducer extends AQClient {
 		boolean disconnected = false;
 		boolean notALeader = false;
 		Exception pException = null;
+		PublisherPool publisherPool = null;
+		TopicPublishers leasedPublishers = null;
 
 		log.debug("Publish request for node " + node);
 
@@ -473,214 +607,233 @@ public final class AQKafkaProducer extends AQClient {
 			return createClientResponse(request, topicPartition, partitionResponse, disconnected);
 		}
 
-		do
-		{	
-			disconnected = false;
-			checkForCommit = false;
-			notALeader = false;
-			pException = null;
-			retryCnt--;
+		try {
+			do
+			{	
+				disconnected = false;
+				checkForCommit = false;
+				notALeader = false;
+				pException = null;
+				retryCnt--;
+
+				try  {
+					if(sessionsPerNode > 1 && leasedPublishers == null)
+					{
+						// Pipelined produce: Lease one of the sessions of this node for the whole request 
+						publisherPool = getPublisherPool(node);
+						if(publisherPool != null)
+							leasedPublishers = partitionAffinity ? publisherPool.borrow(topicPartition.partition() % sessionsPerNode) : publisherPool.borrow();
+					}
+					nodePublishers = leasedPublishers != null ? leasedPublishers : topicPublishersMap.get(node);
+					if(nodePublishers == null)
+					{
+						throw new NullPointerException("No publishers created for node " + node);
+					}
+					log.debug("Found a publisher " + nodePublishers +" for node " + node);
+					TopicSession session = nodePublishers.getSession();
 
-			try  {
-				nodePublishers = topicPublishersMap.get(node);
-				if(nodePublishers == null)
-				{
-					throw new NullPointerException("No publishers created for node " + node);
-				}
-				log.debug("Found a publisher " + nodePublishers +" for node " + node);
-				TopicSession session = nodePublishers.getSession();
+					if(idempotentProducer)
+					{
+						String checkMsgId = null;
+						try {
+							if(produceRequest.checkForDups())
+							{
+								Connection dbConn = ((AQjmsSession)session).getDBConnection();
+								List<OKafkaOffset> retryMsgIds = produceRequest.retryMsgList();
 
-				if(idempotentProducer)
-				{
-					String checkMsgId = null;
-					try {
-						if(produceRequest.checkForDups())
-						{
-							Connection dbConn = ((AQjmsSession)session).getDBConnection();
-							List<OKafkaOffset> retryMsgIds = produceRequest.retryMsgList();
+								if(retryMsgIds != null && retryMsgIds.size()  > 0)
+								{
+									checkMsgId = retryMsgIds.get(0).getMsgId().substring(3);
+									log.debug("Duplicate Check for parition " + topicPartition + "for msgId  " + checkMsgId);
+								}
 
-							if(retryMsgIds != null && retryMsgIds.size()  > 0)
-							{
-								checkMsgId = retryMsgIds.get(0).getMsgId().substring(3);
-								log.debug("Duplicate Check for parition " + topicPartition + "for msgId  " + checkMsgId);
+								boolean msgIdExist = ConnectionUtils.checkIfMsgIdExist(dbConn, topicPartition.topic(), checkMsgId, log);
+								if(msgIdExist)
+								{
+									log.info("Message Id " +checkMsgId +" exists for topic partition "+ topicPartition+". Records were succesfully produced.");
+									partitionResponse = createResponses(topicPartition, null, null);
+									partitionResponse.setCheckDuplicate(false);
+									partitionResponse.setOffsets(retryMsgIds);
+									return createClientResponse(request, topicPartition, partitionResponse, false);
+								}
+								else
+								{
+									log.info("Message Id " + checkMsgId +" for topic partition "+ topicPartition +" does not exist. Retrying to publish");
+								}
 							}
 
-							boolean msgIdExist = ConnectionUtils.checkIfMsgIdExist(dbConn, topicPartition.topic(), checkMsgId, log);
-							if(msgIdExist)
-							{
-								log.info("Message Id " +checkMsgId +" exists for topic partition "+ topicPartition+". Records were succesfully produced.");
-								partitionResponse = createResponses(topicPartition, null, null);
-								partitionResponse.setCheckDuplicate(false);
-								partitionResponse.setOffsets(retryMsgIds);
-								return createClientResponse(request, topicPartition, partitionResponse, false);
-							}
-							else
-							{
-								log.info("Message Id " + checkMsgId +" for topic partition "+ topicPartition +" does not exist. Retrying to publish");
-							}
+						}catch(Exception e) 
+						{
+							log.error("Exception while checking for duplicates for topic partition " + topicPartition +" message id " + checkMsgId +" Exception : "+ e ,e);
+							checkForCommit = produceRequest.checkForDups();
+							throw e;
 						}
+					}
 
-					}catch(Exception e) 
+					final List<AQjmsBytesMessage> messages = new ArrayList<>();	
+					final PayloadBuffer payloadBuffer = new PayloadBuffer(batchEnvelope ? (int)batchSize : INITIAL_PAYLOAD_BUFFER_SIZE);
+					if(batchEnvelope && msgVersion == 2)
 					{
-						log.error("Exception while checking for duplicates for topic partition " + topicPartition +" message id " + checkMsgId +" Exception : "+ e ,e);
-						checkForCommit = produceRequest.checkForDups();
-						throw e;
+						messages.add(createEnvelopeMessage(session, topicPartition, memoryRecords, payloadBuffer));
 					}
-				}
-
-				final List<AQjmsBytesMessage> messages = new ArrayList<>();	
-				Iterator<MutableRecordBatch> mutableRecordBatchIterator = memoryRecords.batchIterator();
-				while(mutableRecordBatchIterator.hasNext()) {
-					Iterator<Record>  recordIterator = mutableRecordBatchIterator.next().iterator();
-					while(recordIterator.hasNext()) {
-						Record record = recordIterator.next();
-						byteMessage = createBytesMessage(session, topicPartition, record.key(), record.value(), record.headers(), msgVersion);
-						messages.add(byteMessage);
+					else {
+						Iterator<MutableRecordBatch> mutableRecordBatchIterator = memoryRecords.batchIterator();
+						while(mutableRecordBatchIterator.hasNext()) {
+							Iterator<Record>  recordIterator = mutableRecordBatchIterator.next().iterator();
+							while(recordIterator.hasNext()) {
+								Record record = recordIterator.next();
+								byteMessage = createBytesMessage(session, topicPartition, record.key(), record.value(), record.headers(), msgVersion, payloadBuffer);
+								messages.add(byteMessage);
+							}
+						}
 					}
-				}
 
-				publisher = nodePublishers.getTopicPublisher(topicPartition.topic());
-				msgs = messages.toArray(new AQjmsBytesMessage[0]);
+					publisher = nodePublishers.getTopicPublisher(topicPartition.topic());
+					msgs = messages.toArray(new AQjmsBytesMessage[0]);
 
-				log.trace("sending messages to topic : {} with partition: {}, number of messages: {}", topicPartition.topic(), topicPartition.partition(), msgs.length);
+					log.trace("sending messages to topic : {} with partition: {}, number of messages: {}", topicPartition.topic(), topicPartition.partition(), msgs.length);
 
-				sendToAQ(msgs, publisher);
-				if(idempotentProducer)
-				{
-					try {
-						//Session must be a transacted session. 
-						log.trace("Idempotent Producer. Committing with node " + node);
+					sendToAQ(msgs, publisher);
+					if(idempotentProducer)
+					{
+						try {
+							//Session must be a transacted session. 
+							log.trace("Idempotent Producer. Committing with node " + node);
 
-						if(forceRollback) {
-							nodePublishers.sess.rollback();
-							forceRetry = true;
-							forceRollback = false;
-						}
-						else
-						{
-							nodePublishers.sess.commit();
-						}
+							if(forceRollback) {
+								nodePublishers.sess.rollback();
+								forceRetry = true;
+								forceRollback = false;
+							}
+							else
+							{
+								nodePublishers.sess.commit();
+							}
 
-						if(forceDisconnect) {
-							nodePublishers.sess.close();
-							forceRetry  = true;
-							forceDisconnect = false;
-						}
+							if(forceDisconnect) {
+								nodePublishers.sess.close();
+								forceRetry  = true;
+								forceDisconnect = false;
+							}
 
-						if(forceRetry)
+							if(forceRetry)
+							{
+								forceRetry = false;
+								throw new KafkaException("Dummy Exception");
+							}
+						}catch(Exception e)
 						{
-							forceRetry = false;
-							throw new KafkaException("Dummy Exception");
+							log.error("Exception while committing records " + e.getMessage());
+							checkForCommit = true;
+							throw e;
 						}
-					}catch(Exception e)
-					{
-						log.error("Exception while committing records " + e.getMessage());
-						checkForCommit = true;
-						throw e;
 					}
+					selectorMetrics.recordCompletedSend(request.destination(),batchSize, System.currentTimeMillis());
+					log.trace("Messages sent successfully to topic : {} with partition: {}, number of messages: {}", topicPartition.topic(), topicPartition.partition(), msgs.length);
+					retryCnt = 0;
 				}
-				selectorMetrics.recordCompletedSend(request.destination(),batchSize, System.currentTimeMillis());
-				log.trace("Messages sent successfully to topic : {} with partition: {}, number of messages: {}", topicPartition.topic(), topicPartition.partition(), msgs.length);
-				retryCnt = 0;
-			}
-			catch(Exception e) {
+				catch(Exception e) {
 
-				pException = e;
+					pException = e;
 
-				if(!checkForCommit) {
-					log.error("Exception while sending records for topic partition " + topicPartition + " no node " + node , e);
-				}
-				else {
-					log.error("Exception while committing records for topic partition " + topicPartition + " no node " + node , e);
-				}
+					if(!checkForCommit) {
+						log.error("Exception while sending records for topic partition " + topicPartition + " no node " + node , e);
+					}
+					else {
+						log.error("Exception while committing records for topic partition " + topicPartition + " no node " + node , e);
+					}
 
-				if ( e instanceof JMSException) {
-					log.info(" Encountered JMS Exception:" + e.getMessage() );
-					// This exception is thrown from sever when AQ tries to publish into a partition which is not owned by the connected node
-					if( (e instanceof AQjmsException ) && ((AQjmsException)e).getErrorNumber() == 25348 )
-					{
-						notALeader = true;
-						retryCnt = 0;
-						break;
+					if ( e instanceof JMSException) {
+						log.info(" Encountered JMS Exception:" + e.getMessage() );
+						// This exception is thrown from sever when AQ tries to publish into a partition which is not owned by the connected node
+						if( (e instanceof AQjmsException ) && ((AQjmsException)e).getErrorNumber() == 25348 )
+						{
+							notALeader = true;
+							retryCnt = 0;
+							break;
+						}
 					}
-				}
-				if(nodePublishers != null)
-				{
-					boolean connected = nodePublishers.isConnected();
-					log.info("KafkaProducer is connected to the broker? " + connected);
-					// Database connection used to publish the records is terminated.
-					if(!connected )
+					if(nodePublishers != null)
 					{
-						try {
-							nodePublishers.close();
-							if (!stopReconnect && retryCnt > 0) {
-								log.info("Reconnecting to node " + node);
-
-								boolean reCreate = nodePublishers.reCreate();
-								if (!reCreate) {
+						boolean connected = nodePublishers.isConnected();
+						log.info("KafkaProducer is connected to the broker? " + connected);
+						// Database connection used to publish the records is terminated.
+						if(!connected )
+						{
+							try {
+								nodePublishers.close();
+								if (!stopReconnect && retryCnt > 0) {
+									log.info("Reconnecting to node " + node);
+
+									boolean reCreate = nodePublishers.reCreate();
+									if (!reCreate) {
+										log.info("Failed to reconnect to  " + node + " . Failing this batch for "
+												+ topicPartition);
+										disconnected = true;
+									}
+								} else {
+									disconnected = true;
 									log.info("Failed to reconnect to  " + node + " . Failing this batch for "
 											+ topicPartition);
-									disconnected = true;
 								}
-							} else {
+								stopReconnect = false;
+
+							}catch(Exception reConnException)
+							{
+								log.error("Exception while reconnecting to node " + node , reConnException);
 								disconnected = true;
-								log.info("Failed to reconnect to  " + node + " . Failing this batch for "
-										+ topicPartition);
+								retryCnt = 0;
+								try {
+									// Close again just to be sure that we are not leaking connections.
+									nodePublishers.close();  
+								}catch(Exception ignoreExcp) {}
 							}
-							stopReconnect = false;
-
-						}catch(Exception reConnException)
-						{
-							log.error("Exception while reconnecting to node " + node , reConnException);
-							disconnected = true;
-							retryCnt = 0;
-							try {
-								// Close again just to be sure that we are not leaking connections.
-								nodePublishers.close();  
-							}catch(Exception ignoreExcp) {}
 						}
-					}
-					if(checkForCommit)
-					{
-						if(!disconnected ) {
-							//Re-connected to the same database instance after one retry
-							try {
-								log.debug("Connection to node is fine. Checking if previous publish was successfull or not.");
-								nodePublishers = topicPublishersMap.get(node);
-								java.sql.Connection conn = ((AQjmsSession)nodePublishers.sess).getDBConnection();
-								String jmsMsgId = msgs[0].getJMSMessageID();
-								String msgId = jmsMsgId != null ? jmsMsgId.substring(3) : null;
-								boolean msgIdExists = ConnectionUtils.checkIfMsgIdExist(conn, topicPartition.topic(), msgId, log);
-								checkForCommit = false;
-								if(msgIdExists) {
-									//successfully produced the message
-									log.debug("Message Id " + msgId+" already present in for " + topicPartition + ". No need to retry.");
-									retryCnt = 0;
-									pException = null;
+						if(checkForCommit)
+						{
+							if(!disconnected ) {
+								//Re-connected to the same database instance after one retry
+								try {
+									log.debug("Connection to node is fine. Checking if previous publish was successfull or not.");
+									nodePublishers = leasedPublishers != null ? leasedPublishers : topicPublishersMap.get(node);
+									java.sql.Connection conn = ((AQjmsSession)nodePublishers.sess).getDBConnection();
+									String jmsMsgId = msgs[0].getJMSMessageID();
+									String msgId = jmsMsgId != null ? jmsMsgId.substring(3) : null;
+									boolean msgIdExists = ConnectionUtils.checkIfMsgIdExist(conn, topicPartition.topic(), msgId, log);
+									checkForCommit = false;
+									if(msgIdExists) {
+										//successfully produced the message
+										log.debug("Message Id " + msgId+" already present in for " + topicPartition + ". No need to retry.");
+										retryCnt = 0;
+										pException = null;
+									}
+									else {
+										/* DO Nothing. 
+										 * Producer is successfully connected to the database node.
+										 * It will retry one more time to produce.
+										 */
+									}
 								}
-								else {
-									/* DO Nothing. 
-									 * Producer is successfully connected to the database node.
-									 * It will retry one more time to produce.
-									 */
+								catch(Exception msgIdExcp) 
+								{
+									log.info("Exception while checking if message id exists or not " + msgIdExcp);
+									log.info("Batch will be processed again after checking for duplicates.");
+									checkForCommit = true;
+									retryCnt=0;
 								}
 							}
-							catch(Exception msgIdExcp) 
-							{
-								log.info("Exception while checking if message id exists or not " + msgIdExcp);
-								log.info("Batch will be processed again after checking for duplicates.");
-								checkForCommit = true;
+							else {
+								log.info("Node " + node + " is not reachable. Batch will be reprocessed after checking for duplicates.");
 								retryCnt=0;
 							}
 						}
-						else {
-							log.info("Node " + node + " is not reachable. Batch will be reprocessed after checking for duplicates.");
-							retryCnt=0;
-						}
 					}
 				}
-			}
-		}while(retryCnt > 0);
+			}while(retryCnt > 0);
+		} finally {
+			if(leasedPublishers != null)
+				publisherPool.release(leasedPublishers);
+		}
 		if(pException != null)
 		{
 			if(notALeader)
@@ -703,6 +856,20 @@ public final class AQKafkaProducer extends AQClient {
 		{
 			partitionResponse = createResponses(topicPartition, null, msgs);
 		}
+		if(partitionResponse.msgIds != null && partitionResponse.msgIds.size() == 1 && msgs != null && msgs.length == 1 
+				&& batchEnvelope && msgVersion == 2)
+		{
+			// Records of a batch envelope get offsets derived from the offset of the message carrying them, see MessageIdConverter
+			int recordCount = 0;
+			for(MutableRecordBatch recordBatch : memoryRecords.batches())
+				recordCount += recordBatch.countOrNull() != null ? recordBatch.countOrNull() : 0;
+			OKafkaOffset messageOffset = partitionResponse.msgIds.get(0);
+			List<OKafkaOffset> recordOffsets = new ArrayList<>(Math.max(recordCount, 1));
+			for(int i = 0; i < recordCount - 1; i++)
+				recordOffsets.add(messageOffset.envelopeRecord(i));
+			recordOffsets.add(messageOffset);
+			partitionResponse.msgIds = recordOffsets;
+		}
 		partitionResponse.setCheckDuplicate(checkForCommit);
 		return createClientResponse(request, topicPartition, partitionResponse, disconnected);
 	}
@@ -744,10 +911,19 @@ public final class AQKafkaProducer extends AQClient {
 	 */
 	private AQjmsBytesMessage createBytesMessage(TopicSession session, TopicPartition topicPartition, 
 			ByteBuffer key, ByteBuffer value, Header[] headers, int messageVersion) throws JMSException {
+		return createBytesMessage(session, topicPartition, key, value, headers, messageVersion, null);
+	}
+
+	/**
+	 * Creates AQjmsBytesMessage from ByteBuffer's key, value and headers. 
+	 * V2 payload is encoded into the given payloadBuffer, which is reused for all records of a batch.
+	 */
+	private AQjmsBytesMessage createBytesMessage(TopicSession session, TopicPartition topicPartition, 
+			ByteBuffer key, ByteBuffer value, Header[] headers, int messageVersion, PayloadBuffer payloadBuffer) throws JMSException {
 
 		AQjmsBytesMessage msg=null;
 		if(messageVersion == 2) {
-			msg = createBytesMessageV2(session,topicPartition,key, value, headers);
+			msg = createBytesMessageV2(session,topicPartition,key, value, headers, payloadBuffer);
 		}
 		else {
 			msg = createBytesMessageV1(session,topicPartition,key, value, headers);
@@ -800,98 +976,221 @@ public final class AQKafkaProducer extends AQClient {
 	 * 
 	 * 	*/
 	private AQjmsBytesMessage createBytesMessageV2(TopicSession session, TopicPartition topicPartition, 
-			ByteBuffer key, ByteBuffer value, Header[] headers) throws JMSException {
-
-		AQjmsBytesMessage msg=null;
-		int keyLen = 0;
-		int valueLen =0;
+			ByteBuffer key, ByteBuffer value, Header[] headers, PayloadBuffer payloadBuffer) throws JMSException {
 
-		int hKeysLen[] = null;
-		int hValuesLen[] = null;
+		AQjmsBytesMessage msg = (AQjmsBytesMessage)(session.createBytesMessage());
+		// Encode straight into the payload buffer of the batch. The message copies the bytes it is given. 
+		if(payloadBuffer == null)
+			payloadBuffer = new PayloadBuffer(INITIAL_PAYLOAD_BUFFER_SIZE);
+		int totalSize = encodeV2Payload(key, value, headers, payloadBuffer);
+		byte[] payload = payloadBuffer.buffer();
 
-		byte[] keyByteArray  = null;
-		byte[] valueByteArray = null;
+		int keyLen = key != null ? key.remaining() : 0;
+		if(keyLen > 0) {
+			msg.setJMSCorrelationID(new String(payload, DLENGTH_SIZE, keyLen));
+		}
 
+		int messageVersion = 2;
+		if(compression.type() != CompressionType.NONE)
+		{
+			ByteBufferOutputStream compressed = payloadBuffer.compressionStream(totalSize);
+			int compressedSize = PayloadCompression.compress(compression, payload, 0, totalSize, compressed);
+			// Incompressible payloads are sent as plain V2
+			if(compressedSize < totalSize)
+			{
+				msg.writeBytes(compressed.buffer().array(), 0, compressedSize);
+				messageVersion = MESSAGE_VERSION_COMPRESSED;
+			}
+		}
+		if(messageVersion == 2)
+			msg.writeBytes(payload, 0, totalSize);
 
-		if(headers != null)
+		msg.setLongProperty(PARTITION_PROPERTY, topicPartition.partition()*2);
+		if(headers !=null)
 		{
-			hKeysLen = new int[headers.length];
-			hValuesLen = new int[headers.length];
+			msg.setIntProperty(HEADERCOUNT_PROPERTY, headers.length);
 		}
 
-		msg = (AQjmsBytesMessage)(session.createBytesMessage());
+		msg.setIntProperty(MESSAGE_VERSION, messageVersion);
 
-		int totalSize = 0;
-		if(key != null) {
+		return msg;
+	}
 
-			keyByteArray =  new byte[key.limit()];
-			key.get(keyByteArray);
-			keyLen = keyByteArray.length;
+	/*
+	 * Creates one AQjmsBytesMessage carrying all records of the batch.
+	 * 
+	 * Construct Byte Payload in below format:
+	 * | RECORD COUNT (4 Bytes Fixed) |
+	 * | RECORD LENGTH (4 Bytes Fixed) | RECORD PAYLOAD in V2 format |
+	 * | RECORD LENGTH (4 Bytes Fixed) | RECORD PAYLOAD in V2 format |
+	 * 
+	 * The whole envelope is then stored as described in PayloadCompression, compressed with the 
+	 * producer's compression.type or uncompressed when compression is not configured or does not help.
+	 */
+	private AQjmsBytesMessage createEnvelopeMessage(TopicSession session, TopicPartition topicPartition, 
+			MemoryRecords memoryRecords, PayloadBuffer payloadBuffer) throws JMSException {
+
+		AQjmsBytesMessage msg = (AQjmsBytesMessage)(session.createBytesMessage());
+		byte[] payload = payloadBuffer.ensureCapacity(DLENGTH_SIZE);
+		int pos = DLENGTH_SIZE;
+		int recordCount = 0;
+
+		for(MutableRecordBatch recordBatch : memoryRecords.batches()) {
+			for(Record record : recordBatch) {
+				// The accumulator closes batches of envelopes before this, the index of a record would spill into the offset of its message
+				if(recordCount > MessageIdConverter.MAX_ENVELOPE_INDEX)
+					throw new KafkaException("Batch of " + topicPartition + " holds more than " + (MessageIdConverter.MAX_ENVELOPE_INDEX + 1) + " records, too many for one batch envelope");
+				Header[] headers = record.headers();
+				byte[][] hKeys = encodeHeaderKeys(headers);
+				int recordSize = v2PayloadSize(record.key(), record.value(), headers, hKeys);
+				payload = payloadBuffer.ensureCapacity(pos + DLENGTH_SIZE + recordSize, pos);
+				ConnectionUtils.writeInt(payload, pos, recordSize);
+				pos = writeV2Payload(payload, pos + DLENGTH_SIZE, record.key(), record.value(), headers, hKeys);
+				recordCount++;
+			}
 		}
+		ConnectionUtils.writeInt(payload, 0, recordCount);
 
-		totalSize += (keyLen + DLENGTH_SIZE );
+		ByteBufferOutputStream envelope = payloadBuffer.compressionStream(pos);
+		int envelopeSize = PayloadCompression.compress(compression, payload, 0, pos, envelope);
+		if(compression.type() != CompressionType.NONE && envelopeSize >= pos + PayloadCompression.COMPRESSION_HEADER_SIZE)
+			envelopeSize = PayloadCompression.compress(Compression.NONE, payload, 0, pos, envelope);
+		msg.writeBytes(envelope.buffer().array(), 0, envelopeSize);
 
-		if(value != null) {
-			valueByteArray = new byte[value.limit()];
-			value.get(valueByteArray);
-			valueLen = valueByteArray.length;
+		msg.setLongProperty(PARTITION_PROPERTY, topicPartition.partition()*2);
+		msg.setIntProperty(MESSAGE_VERSION, MESSAGE_VERSION_ENVELOPE);
+		return msg;
+	}
 
-		}
-		totalSize += (valueLen + DLENGTH_SIZE);
+	/**
+	 * Encodes the V2 payload of a record at the start of the payload buffer, in the format described in createBytesMessageV2.
+	 * @return the size of the payload
+	 */
+	static int encodeV2Payload(ByteBuffer key, ByteBuffer value, Header[] headers, PayloadBuffer payloadBuffer) {
+		// Encode each header key only once
+		byte[][] hKeys = encodeHeaderKeys(headers);
+		int totalSize = v2PayloadSize(key, value, headers, hKeys);
+		writeV2Payload(payloadBuffer.ensureCapacity(totalSize), 0, key, value, headers, hKeys);
+		return totalSize;
+	}
 
-		if(headers != null) {
-			int hIndex = 0;
-			for(Header h:headers)
+	private static byte[][] encodeHeaderKeys(Header[] headers) {
+		if(headers == null || headers.length == 0)
+			return null;
+		byte[][] hKeys = new byte[headers.length][];
+		for(int hIndex = 0; hIndex < headers.length; hIndex++)
+			hKeys[hIndex] = headers[hIndex].key().getBytes();
+		return hKeys;
+	}
+
+	/**
+	 * Returns the size of the V2 payload of a record whose header keys are already encoded in hKeys
+	 */
+	private static int v2PayloadSize(ByteBuffer key, ByteBuffer value, Header[] headers, byte[][] hKeys) {
+		int totalSize = (key != null ? key.remaining() : 0) + DLENGTH_SIZE;
+		totalSize += (value != null ? value.remaining() : 0) + DLENGTH_SIZE;
+		if(hKeys != null) {
+			for(int hIndex = 0; hIndex < headers.length; hIndex++)
 			{
-				int hKeyLen = h.key().getBytes().length;
-				totalSize += (hKeyLen + DLENGTH_SIZE);
-				hKeysLen[hIndex] = hKeyLen;
-				int hValueLength = h.value().length;
-				totalSize += (hValueLength +DLENGTH_SIZE);
-				hValuesLen[hIndex++] = hValueLength;
+				totalSize += (hKeys[hIndex].length + DLENGTH_SIZE);
+				totalSize += (headerValueLength(headers[hIndex]) + DLENGTH_SIZE);
 			}
 		}
-		ByteBuffer pBuffer = ByteBuffer.allocate(totalSize);
+		return totalSize;
+	}
+
+	/**
+	 * Writes the V2 payload of a record into payload starting at pos. 
+	 * @return position in payload following the record
+	 */
+	private static int writeV2Payload(byte[] payload, int pos, ByteBuffer key, ByteBuffer value, Header[] headers, byte[][] hKeys) {
+		int keyLen = key != null ? key.remaining() : 0;
+		int valueLen = value != null ? value.remaining() : 0;
 
 		//If Key is null Put Length = 0
-		pBuffer.put(ConnectionUtils.convertTo4Byte(keyLen));
+		ConnectionUtils.writeInt(payload, pos, keyLen);
+		pos += DLENGTH_SIZE;
 		if(keyLen > 0) {
-			pBuffer.put(keyByteArray);
-			msg.setJMSCorrelationID(new String(keyByteArray));
+			key.duplicate().get(payload, pos, keyLen);
+			pos += keyLen;
 		}
 		//If Value is null then put length = 0
-		pBuffer.put(ConnectionUtils.convertTo4Byte(valueLen));
+		ConnectionUtils.writeInt(payload, pos, valueLen);
+		pos += DLENGTH_SIZE;
 		if(valueLen > 0)
 		{
-			pBuffer.put(valueByteArray);
+			value.duplicate().get(payload, pos, valueLen);
+			pos += valueLen;
 		}
 
-		if(headers != null)
+		if(hKeys != null)
 		{
-			int hIndex = 0;
-			for(Header h : headers)
+			for(int hIndex = 0; hIndex < headers.length; hIndex++)
 			{
-				pBuffer.put(ConnectionUtils.convertTo4Byte(hKeysLen[hIndex]));
-				pBuffer.put(h.key().getBytes());
-				pBuffer.put(ConnectionUtils.convertTo4Byte(hValuesLen[hIndex++]));
-				pBuffer.put(h.value());
+				ConnectionUtils.writeInt(payload, pos, hKeys[hIndex].length);
+				pos += DLENGTH_SIZE;
+				System.arraycopy(hKeys[hIndex], 0, payload, pos, hKeys[hIndex].length);
+				pos += hKeys[hIndex].length;
+				byte[] hValue = headers[hIndex].value();
+				int hValueLen = headerValueLength(headers[hIndex]);
+				ConnectionUtils.writeInt(payload, pos, hValueLen);
+				pos += DLENGTH_SIZE;
+				if(hValueLen > 0)
+				{
+					System.arraycopy(hValue, 0, payload, pos, hValueLen);
+					pos += hValueLen;
+				}
 			}
 		}
+		return pos;
+	}
 
-		pBuffer.rewind();
-		byte[] payload = new byte[pBuffer.limit()];
-		pBuffer.get(payload);
-		msg.writeBytes(payload);
-		payload = null;
-		msg.setLongProperty(PARTITION_PROPERTY, topicPartition.partition()*2);
-		if(headers !=null)
-		{
-			msg.setIntProperty(HEADERCOUNT_PROPERTY, headers.length);
+	private static int headerValueLength(Header header) {
+		return header.value() != null ? header.value().length : 0;
+	}
+
+	/**
+	 * Scratch buffer into which the payloads of all records of a batch are encoded one after another.
+	 * Grows to the size of the largest record payload of the batch, or of the whole batch for batch envelopes.
+	 */
+	static final class PayloadBuffer {
+		private byte[] buffer;
+		private ByteBufferOutputStream compressionStream;
+
+		PayloadBuffer(int initialCapacity) {
+			this.buffer = new byte[Math.max(initialCapacity, 0)];
 		}
 
-		msg.setIntProperty(MESSAGE_VERSION, 2);
+		byte[] buffer() {
+			return buffer;
+		}
 
-		return msg;
+		byte[] ensureCapacity(int size) {
+			if(buffer.length < size)
+				buffer = new byte[size];
+			return buffer;
+		}
+
+		/**
+		 * Grows the buffer to at least size bytes, keeping the first preserve bytes already written.
+		 */
+		byte[] ensureCapacity(int size, int preserve) {
+			if(buffer.length < size) {
+				byte[] grown = new byte[Math.max(size, buffer.length * 2)];
+				System.arraycopy(buffer, 0, grown, 0, preserve);
+				buffer = grown;
+			}
+			return buffer;
+		}
+
+		/**
+		 * Stream into which compressed payloads of the batch are written. Grows as required.
+		 */
+		ByteBufferOutputStream compressionStream(int payloadSize) {
+			if(compressionStream == null)
+				compressionStream = new ByteBufferOutputStream(payloadSize + PayloadCompression.COMPRESSION_HEADER_SIZE);
+			return compressionStream;
+		}
 	}
 
 
@@ -1028,14 +1327,83 @@ public final class AQKafkaProducer extends AQClient {
 			close(nodePublishers.getKey(), nodePublishers.getValue());
 		}
 		topicPublishersMap.clear();
+		for(PublisherPool pool : publisherPoolMap.values()) {
+			pool.close();
+		}
+		publisherPoolMap.clear();
+		ConnectionPool.release(this);
 		status = AQKafkaProducerStatus.CLOSE;
 	}
 
+	/**
+	 * Checks with a single database call whether the first message of each retried batch was published to the node.
+	 * Uses the primary session of the node, whose prepared statement is reused across checks. With pipelined produce,
+	 * the check leases an idle session of the node instead, as the primary one may be publishing. If none is idle, the
+	 * check is not made and each batch is checked while it is published.
+	 */
+	@Override
+	public Map<TopicPartition, Boolean> checkDuplicates(Node node, Map<TopicPartition, OKafkaOffset> firstMsgIds) throws Exception {
+		PublisherPool publisherPool = sessionsPerNode > 1 ? getPublisherPool(node) : null;
+		TopicPublishers nodePublishers = publisherPool != null ? publisherPool.tryBorrow() : topicPublishersMap.get(node);
+		try {
+			return checkDuplicates(nodePublishers, firstMsgIds);
+		} finally {
+			if(publisherPool != null && nodePublishers != null)
+				publisherPool.release(nodePublishers);
+		}
+	}
+
+	private Map<TopicPartition, Boolean> checkDuplicates(TopicPublishers nodePublishers, Map<TopicPartition, OKafkaOffset> firstMsgIds) throws Exception {
+		if(nodePublishers == null || !nodePublishers.isConnected())
+			return null;
+
+		List<TopicPartition> partitions = new ArrayList<>(firstMsgIds.size());
+		List<String> topics = new ArrayList<>(firstMsgIds.size());
+		List<String> msgIds = new ArrayList<>(firstMsgIds.size());
+		for(Map.Entry<TopicPartition, OKafkaOffset> entry : firstMsgIds.entrySet()) {
+			partitions.add(entry.getKey());
+			topics.add(entry.getKey().topic());
+			msgIds.add(entry.getValue().getMsgId());
+		}
+		boolean[] exists = nodePublishers.checkMsgIdsExist(topics, msgIds);
+		Map<TopicPartition, Boolean> result = new HashMap<>();
+		for(int i = 0; i < partitions.size(); i++) {
+			result.put(partitions.get(i), exists[i]);
+		}
+		return result;
+	}
+
 	//Close publishers for this node only
 	public void close(Node node) {
 		TopicPublishers tpNode = topicPublishersMap.get(node);
 		close(node, tpNode);
 		topicPublishersMap.remove(node);
+		PublisherPool pool = publisherPoolMap.remove(node);
+		if(pool != null)
+			pool.close();
+	}
+
+	/**
+	 * Returns the pool of publishers of this node used for pipelined produce. 
+	 * Pool is created on first use around the publishers already connected to this node.
+	 */
+	private PublisherPool getPublisherPool(Node node) {
+		TopicPublishers primary = topicPublishersMap.get(node);
+		if(primary == null)
+			return null;
+		PublisherPool pool = publisherPoolMap.get(node);
+		if(pool == null || pool.primary != primary) {
+			synchronized(publisherPoolMap) {
+				pool = publisherPoolMap.get(node);
+				if(pool == null || pool.primary != primary) {
+					if(pool != null)
+						pool.close();
+					pool = new PublisherPool(node, primary, sessionsPerNode);
+					publisherPoolMap.put(node, pool);
+				}
+			}
+		}
+		return pool;
 	}
 
 	public boolean isClosed()
@@ -1073,6 +1441,124 @@ public final class AQKafkaProducer extends AQClient {
 		}
 	}
 
+	/**
+	 * Pool of TopicPublishers connected to the same node, used for pipelined produce.
+	 * Each produce request leases one TopicPublishers for its whole duration so that several batches can be published to the node concurrently.
+	 * Publishers other than the primary one are created on demand, up to the size of the pool.
+	 * With partition affinity, a partition is always published through the publishers of the same slot.
+	 */
+	private final class PublisherPool {
+		private final Node node;
+		private final TopicPublishers primary;
+		private final TopicPublishers[] slots;
+		private final boolean[] leased;
+		private boolean closed = false;
+
+		PublisherPool(Node node, TopicPublishers primary, int size) {
+			this.node = node;
+			this.primary = primary;
+			this.slots = new TopicPublishers[size];
+			this.leased = new boolean[size];
+			slots[0] = primary;
+		}
+
+		/**
+		 * Lease any idle publishers of this node. Creates publishers for an empty slot if none is idle.
+		 */
+		synchronized TopicPublishers borrow() throws JMSException {
+			long deadline = System.currentTimeMillis() + configs.getInt(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG);
+			while(true) {
+				TopicPublishers publishers = tryBorrow();
+				if(publishers != null)
+					return publishers;
+				awaitRelease(deadline);
+			}
+		}
+
+		/**
+		 * Lease any idle publishers of this node without waiting. Creates publishers for an empty slot if none is idle.
+		 * @return the leased publishers, or null if every slot is in use
+		 */
+		synchronized TopicPublishers tryBorrow() throws JMSException {
+			int emptySlot = -1;
+			for(int i = 0; i < slots.length; i++) {
+				if(slots[i] != null && !leased[i])
+					return lease(i);
+				if(slots[i] == null && emptySlot < 0)
+					emptySlot = i;
+			}
+			if(emptySlot >= 0 && !closed) {
+				create(emptySlot);
+				return lease(emptySlot);
+			}
+			return null;
+		}
+
+		/**
+		 * Lease the publishers of the given slot, waiting for the slot to be released if it is in use.
+		 */
+		synchronized TopicPublishers borrow(int slot) throws JMSException {
+			long deadline = System.currentTimeMillis() + configs.getInt(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG);
+			while(leased[slot])
+				awaitRelease(deadline);
+			if(slots[slot] == null) {
+				if(closed)
+					throw new JMSException("Publisher sessions of node " + node + " are closed");
+				create(slot);
+			}
+			return lease(slot);
+		}
+
+		private TopicPublishers lease(int slot) {
+			leased[slot] = true;
+			return slots[slot];
+		}
+
+		private void create(int slot) throws JMSException {
+			log.debug("Creating publisher session " + (slot + 1) + " of " + slots.length + " for node " + node);
+			slots[slot] = new TopicPublishers(node, connectMode);
+			selectorMetrics.connectionCreated.record();
+		}
+
+		private void awaitRelease(long deadline) {
+			long remaining = deadline - System.currentTimeMillis();
+			if(remaining <= 0)
+				throw new TimeoutException("Timed out waiting for a free publisher session to node " + node);
+			try {
+				wait(remaining);
+			} catch(InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new org.apache.kafka.common.errors.InterruptException(ie);
+			}
+		}
+
+		synchronized void release(TopicPublishers publishers) {
+			for(int i = 0; i < slots.length; i++) {
+				if(slots[i] == publishers) {
+					leased[i] = false;
+					// Primary publishers are closed along with the node
+					if(closed && publishers != primary) {
+						AQKafkaProducer.this.close(node, publishers);
+						slots[i] = null;
+					}
+					break;
+				}
+			}
+			notifyAll();
+		}
+
+		synchronized void close() {
+			closed = true;
+			for(int i = 0; i < slots.length; i++) {
+				if(slots[i] != null && !leased[i] && slots[i] != primary) {
+					AQKafkaProducer.this.close(node, slots[i]);
+					slots[i] = null;
+				}
+			}
+			notifyAll();
+		}
+	}
+
 	/**This class is used to create and manage connection to database instance.
 	 * Also creates, manages session associated with each connection and topic publishers associated with each session
 	 */
@@ -1086,6 +1572,7 @@ public final class AQKafkaProducer extends AQClient {
 
 		private boolean isAlive = false;
 		PreparedStatement pingStmt = null;
+		CallableStatement dupCheckStmt = null;
 		private final String PING_QUERY = "SELECT banner FROM v$version where 1<>1";
 
 		private String connInfo = "";
@@ -1205,7 +1692,7 @@ public final class AQKafkaProducer extends AQClient {
 			}
 			else
 			{	
-				conn = ConnectionUtils.createTopicConnection(node, configs, log);
+				conn = ConnectionUtils.createTopicConnection(node, configs, log, AQKafkaProducer.this);
 			}
 			return conn;
 		}
@@ -1313,8 +1800,22 @@ public final class AQKafkaProducer extends AQClient {
 			return isAlive;
 		}
 
+		synchronized boolean[] checkMsgIdsExist(List<String> topics, List<String> msgIds) throws JMSException, SQLException
+		{
+			if(dupCheckStmt == null)
+				dupCheckStmt = ConnectionUtils.prepareMsgIdsExistCall(((AQjmsSession)sess).getDBConnection());
+			return ConnectionUtils.checkIfMsgIdsExist(dupCheckStmt, topics, msgIds, log);
+		}
+
 		public void close()
 		{
+			try {
+				if(dupCheckStmt != null && !dupCheckStmt.isClosed())
+					dupCheckStmt.close();
+			}catch(Exception e) {
+				log.error("Error while closing duplicate check statement for " + node);
+			}
+			dupCheckStmt = null;
 			try {
 				if(pingStmt != null )
 				{
@@ -0,0 +1,193 @@
+/*
+ ** OKafka Java Client version 23.4.
+ **
+ ** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+ ** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+
+package org.oracle.okafka.clients.producer.internals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.metrics.Measurable;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.utils.LogContext;
+import org.slf4j.Logger;
+
+/**
+ * Tunes the linger time and the size of new batches of each partition from the observed arrival rate of records and
+ * the time taken to publish a batch. Enabled by <code>oracle.producer.adaptive.batching</code>.
+ *
+ * A batch which takes longer than the target send time to publish holds the database session, so the batch size of
+ * its partition is reduced. A full batch published well within the target lets the batch size grow. Linger is the time
+ * the arrival rate takes to fill a batch, but not longer than a send, since records arriving during a send are batched
+ * anyway. When the arrival rate is too low to add records to a batch while it lingers, batches are sent without linger.
+ * Both stay within the configured bounds.
+ *
+ * The sender thread records drained batches and completed sends, and is the only writer. Application threads read the
+ * batch size when they create a batch.
+ */
+public final class AdaptiveBatching {
+
+	// Weight of the latest observation in the moving averages
+	private static final double ALPHA = 0.3;
+	private static final double SHRINK = 0.75;
+	private static final double GROW = 1.25;
+	// Drained batches are closed, so a batch counts as full when filled up to this ratio of its capacity
+	private static final double FULL_RATIO = 0.9;
+
+	private final Logger log;
+	private final Metrics metrics;
+	private final String metricGrpName;
+	private final long maxLingerMs;
+	private final int minBatchSize;
+	private final int maxBatchSize;
+	private final int initialBatchSize;
+	private final long initialLingerMs;
+	private final long targetSendMs;
+	private final ConcurrentMap<TopicPartition, PartitionState> partitions = new ConcurrentHashMap<>();
+
+	/**
+	 * @param lingerMs linger time of a partition until its batches are observed
+	 * @param batchSize batch size of a partition until its batches are observed
+	 * @param maxLingerMs the longest linger chosen
+	 * @param minBatchSize the smallest batch size chosen
+	 * @param maxBatchSize the largest batch size chosen
+	 * @param targetSendMs the time publishing a batch should take
+	 */
+	public AdaptiveBatching(LogContext logContext, Metrics metrics, String metricGrpName, long lingerMs, int batchSize,
+			long maxLingerMs, int minBatchSize, int maxBatchSize, long targetSendMs) {
+		this.log = logContext.logger(AdaptiveBatching.class);
+		this.metrics = metrics;
+		this.metricGrpName = metricGrpName;
+		this.maxLingerMs = maxLingerMs;
+		this.minBatchSize = minBatchSize;
+		this.maxBatchSize = Math.max(minBatchSize, maxBatchSize);
+		this.initialBatchSize = Math.min(Math.max(batchSize, this.minBatchSize), this.maxBatchSize);
+		this.initialLingerMs = Math.min(lingerMs, maxLingerMs);
+		this.targetSendMs = targetSendMs;
+	}
+
+	/**
+	 * Returns the size of the next batch created for the partition.
+	 */
+	public int batchSize(TopicPartition tp) {
+		PartitionState state = partitions.get(tp);
+		return state == null ? initialBatchSize : state.batchSize;
+	}
+
+	/**
+	 * Returns how long a batch of the partition which is not full waits before it is sent.
+	 */
+	public long lingerMs(TopicPartition tp) {
+		PartitionState state = partitions.get(tp);
+		return state == null ? initialLingerMs : state.lingerMs;
+	}
+
+	/**
+	 * Returns the longest linger of any partition.
+	 */
+	public long maxLingerMs() {
+		return maxLingerMs;
+	}
+
+	/**
+	 * Records a batch drained by the sender thread, to estimate the arrival rate of its partition.
+	 */
+	public void onDrained(ProducerBatch batch, long nowMs) {
+		if (batch.attempts() > 0)
+			return;
+		PartitionState state = partitions.get(batch.topicPartition);
+		if (state == null)
+			state = partitions.computeIfAbsent(batch.topicPartition, tp -> newState(tp, batch.createdMs));
+		state.pendingBytes += batch.estimatedSizeInBytes();
+		state.pendingRecords += batch.recordCount;
+		long intervalMs = nowMs - state.lastDrainMs;
+		if (intervalMs <= 0)
+			return;
+		state.arrivalBytesPerMs = average(state.arrivalBytesPerMs, (double) state.pendingBytes / intervalMs);
+		state.recordBytes = average(state.recordBytes, (double) state.pendingBytes / Math.max(1, state.pendingRecords));
+		state.pendingBytes = 0;
+		state.pendingRecords = 0;
+		state.lastDrainMs = nowMs;
+		updateLinger(state);
+	}
+
+	/**
+	 * Records the time taken to publish a batch, and adjusts the batch size of its partition.
+	 */
+	public void onSendCompleted(ProducerBatch batch, long sendMs) {
+		PartitionState state = partitions.get(batch.topicPartition);
+		if (state == null)
+			return;
+		state.sendMs = average(state.sendMs, sendMs);
+		int batchSize = state.batchSize;
+		if (state.sendMs > targetSendMs)
+			batchSize = Math.max(minBatchSize, (int) (batchSize * SHRINK));
+		else if (state.sendMs < targetSendMs / 2.0 && batch.estimatedSizeInBytes() >= batch.sizeLimit * FULL_RATIO)
+			batchSize = (int) Math.min(maxBatchSize, (long) (batchSize * GROW));
+		if (batchSize != state.batchSize) {
+			log.trace("Batch size of {} set to {} after sends of {} ms", batch.topicPartition, batchSize, state.sendMs);
+			state.batchSize = batchSize;
+		}
+		updateLinger(state);
+	}
+
+	private void updateLinger(PartitionState state) {
+		if (Double.isNaN(state.arrivalBytesPerMs) || state.arrivalBytesPerMs <= 0) {
+			state.lingerMs = 0;
+			return;
+		}
+		double fillMs = state.batchSize / state.arrivalBytesPerMs;
+		double lingerMs = Math.min(fillMs, Double.isNaN(state.sendMs) ? maxLingerMs : state.sendMs);
+		// Lingering only delays the batch when no other record is expected meanwhile
+		if (state.arrivalBytesPerMs * lingerMs < state.recordBytes)
+			lingerMs = 0;
+		state.lingerMs = Math.min(maxLingerMs, (long) Math.ceil(lingerMs));
+	}
+
+	private static double average(double current, double observed) {
+		return Double.isNaN(current) ? observed : current + ALPHA * (observed - current);
+	}
+
+	private PartitionState newState(TopicPartition tp, long firstDrainMs) {
+		PartitionState state = new PartitionState(initialBatchSize, initialLingerMs, firstDrainMs);
+		Map<String, String> tags = new HashMap<>(2);
+		tags.put("topic", tp.topic().replace('.', '_'));
+		tags.put("partition", String.valueOf(tp.partition()));
+		metrics.addMetric(metrics.metricName("adaptive-linger-ms", metricGrpName,
+				"The linger time currently chosen for the partition by adaptive batching", tags),
+				(Measurable) (config, now) -> state.lingerMs);
+		metrics.addMetric(metrics.metricName("adaptive-batch-size", metricGrpName,
+				"The size in bytes of new batches currently chosen for the partition by adaptive batching", tags),
+				(Measurable) (config, now) -> state.batchSize);
+		metrics.addMetric(metrics.metricName("adaptive-send-time-avg", metricGrpName,
+				"The moving average of the time in ms taken to publish a batch of the partition", tags),
+				(Measurable) (config, now) -> Double.isNaN(state.sendMs) ? 0 : state.sendMs);
+		metrics.addMetric(metrics.metricName("adaptive-arrival-byte-rate", metricGrpName,
+				"The moving average of the number of bytes per second sent to the partition", tags),
+				(Measurable) (config, now) -> Double.isNaN(state.arrivalBytesPerMs) ? 0 : state.arrivalBytesPerMs * 1000);
+		return state;
+	}
+
+	private static final class PartitionState {
+		volatile int batchSize;
+		volatile long lingerMs;
+		volatile double sendMs = Double.NaN;
+		volatile double arrivalBytesPerMs = Double.NaN;
+		double recordBytes = Double.NaN;
+		long lastDrainMs;
+		long pendingBytes;
+		int pendingRecords;
+
+		PartitionState(int batchSize, long lingerMs, long lastDrainMs) {
+			this.batchSize = batchSize;
+			this.lingerMs = lingerMs;
+			this.lastDrainMs = lastDrainMs;
+		}
+	}
+}
@@ -139,8 +139,14 @@ public final class FutureRecordMetadata implements Future<RecordMetadata> {
 					OKafkaOffset okOffset = this.result.msgIds().get((int) relativeOffset);
 					// OKafkaOffset okOffset = MessageIdConverter.getOKafkaOffset(msgId, true,
 					// true);
-					baseOffset = okOffset.subPartitionId()*MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
-					relOffset = okOffset.sequenceNo();
+					if (okOffset.envelopeIndex() >= 0) {
+						// Record of a batch envelope
+						baseOffset = okOffset.getOffset();
+						relOffset = 0;
+					} else {
+						baseOffset = okOffset.subPartitionId()*MessageIdConverter.DEFAULT_SUBPARTITION_SIZE;
+						relOffset = okOffset.sequenceNo();
+					}
 				}
 			} catch (RuntimeException exception) {
 				baseOffset = -1;
@@ -30,6 +30,7 @@
 package org.oracle.okafka.clients.producer.internals;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import org.apache.kafka.clients.producer.RecordMetadata;
@@ -45,6 +46,7 @@ import org.oracle.okafka.common.utils.MessageIdConverter.OKafkaOffset;
 public class ProduceRequestResult extends org.apache.kafka.clients.producer.internals.ProduceRequestResult {
 
 	private volatile List<OKafkaOffset> msgIds = null;
+	private volatile Runnable onAwait = null;
 
 	/**
 	 * Create an instance of this class.
@@ -81,4 +83,30 @@ public class ProduceRequestResult extends org.apache.kafka.clients.producer.inte
 		return msgIds;
 	}
 
+	/**
+	 * Sets the action which triggers the completion of this result. It is run before waiting for the result,
+	 * for records that are held back until they are explicitly published.
+	 */
+	public void onAwait(Runnable onAwait) {
+		this.onAwait = onAwait;
+	}
+
+	@Override
+	public void await() throws InterruptedException {
+		runOnAwait();
+		super.await();
+	}
+
+	@Override
+	public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+		runOnAwait();
+		return super.await(timeout, unit);
+	}
+
+	private void runOnAwait() {
+		Runnable action = onAwait;
+		if (action != null && !completed())
+			action.run();
+	}
+
 }
@@ -83,6 +83,10 @@ public final class ProducerBatch {
 
 	int recordCount;
 	int maxRecordSize;
+	// Size the batch is filled up to, which is less than the capacity of its buffer when adaptive batching chose it
+	int sizeLimit;
+	// Records the batch takes at most, bounded when the batch is published as one batch envelope
+	int recordLimit = Integer.MAX_VALUE;
 	private long lastAttemptMs;
 	private long lastAppendTime;
 	private long drainedMs;
@@ -103,6 +107,7 @@ public final class ProducerBatch {
 		this.produceFuture = new ProduceRequestResult(topicPartition);
 		this.retry = false;
 		this.isSplitBatch = isSplitBatch;
+		this.sizeLimit = recordsBuilder.initialCapacity();
 		float compressionRatioEstimation = CompressionRatioEstimator.estimation(topicPartition.topic(),
 				recordsBuilder.compression().type());
 		recordsBuilder.setEstimatedCompressionRatio(compressionRatioEstimation);
@@ -117,7 +122,7 @@ public final class ProducerBatch {
 	 */
 	public FutureRecordMetadata tryAppend(long timestamp, byte[] key, byte[] value, Header[] headers, Callback callback,
 			long now) {
-		if (!recordsBuilder.hasRoomFor(timestamp, key, value, headers)) {
+		if (recordCount >= recordLimit || !recordsBuilder.hasRoomFor(timestamp, key, value, headers)) {
 			return null;
 		} else {
 			this.recordsBuilder.append(timestamp, key, value, headers);
@@ -142,7 +147,7 @@ public final class ProducerBatch {
 	 * @return true if the record has been successfully appended, false otherwise.
 	 */
 	private boolean tryAppendForSplit(long timestamp, ByteBuffer key, ByteBuffer value, Header[] headers, Thunk thunk) {
-		if (!recordsBuilder.hasRoomFor(timestamp, key, value, headers)) {
+		if (recordCount >= recordLimit || !recordsBuilder.hasRoomFor(timestamp, key, value, headers)) {
 			return false;
 		} else {
 			// No need to get the CRC.
@@ -416,7 +421,9 @@ public final class ProducerBatch {
 		// with how normal batches are handled).
 		MemoryRecordsBuilder builder = MemoryRecords.builder(buffer, magic(), recordsBuilder.compression(),
 				TimestampType.CREATE_TIME, 0L);
-		return new ProducerBatch(topicPartition, builder, this.createdMs, true);
+		ProducerBatch batch = new ProducerBatch(topicPartition, builder, this.createdMs, true);
+		batch.recordLimit = recordLimit;
+		return batch;
 	}
 
 	public boolean isCompressed() {
@@ -504,7 +511,7 @@ public final class ProducerBatch {
 	}
 
 	public boolean isFull() {
-		return recordsBuilder.isFull();
+		return recordCount >= recordLimit || recordsBuilder.isFull();
 	}
 
 	public void setProducerState(ProducerIdAndEpoch producerIdAndEpoch, int baseSequence, boolean isTransactional) {
@@ -80,6 +80,7 @@ public final class RecordAccumulator {
     private final AtomicInteger flushesInProgress;
     private final AtomicInteger appendsInProgress;
     private final int batchSize;
+    private final int batchRecordLimit;
     private final Compression compression;
     private final int lingerMs;
     private final long retryBackoffMs;
@@ -87,6 +88,7 @@ public final class RecordAccumulator {
     private final BufferPool free;
     private final Time time;
     private final ApiVersions apiVersions;
+    private final AdaptiveBatching adaptiveBatching;
     private final ConcurrentMap<TopicPartition, Deque<ProducerBatch>> batches;
     private final IncompleteBatches incomplete;
     // The following variables are only accessed by the sender thread, so we don't need to protect them.
@@ -100,6 +102,7 @@ public final class RecordAccumulator {
      *
      * @param logContext The log context used for logging
      * @param batchSize The size to use when allocating {@link MemoryRecords} instances
+     * @param batchRecordLimit The number of records after which a batch is full whatever its size
      * @param compression The compression codec for the records
      * @param lingerMs An artificial delay time to add before declaring a records instance that isn't full ready for
      *        sending. This allows time for more records to arrive. Setting a non-zero lingerMs will trade off some
@@ -111,9 +114,13 @@ public final class RecordAccumulator {
      * @param apiVersions Request API versions for current connected brokers
      * @param transactionManager The shared transaction state object which tracks producer IDs, epochs, and sequence
      *                           numbers per partition.
+     * @param bufferPool The pool of buffers of batches
+     * @param adaptiveBatching Chooses the linger time and batch size of each partition, or null to use lingerMs and
+     *        batchSize for all partitions
      */
     public RecordAccumulator(LogContext logContext,
                              int batchSize,
+                             int batchRecordLimit,
                              Compression compression,
                              int lingerMs,
                              long retryBackoffMs,
@@ -123,17 +130,20 @@ public final class RecordAccumulator {
                              Time time,
                              ApiVersions apiVersions,
                              TransactionManager transactionManager,
-                             BufferPool bufferPool) {
+                             BufferPool bufferPool,
+                             AdaptiveBatching adaptiveBatching) {
         this.log = logContext.logger(RecordAccumulator.class);
         this.drainIndex = 0;
         this.closed = false;
         this.flushesInProgress = new AtomicInteger(0);
         this.appendsInProgress = new AtomicInteger(0);
         this.batchSize = batchSize;
+        this.batchRecordLimit = batchRecordLimit;
         this.compression = compression;
         this.lingerMs = lingerMs;
         this.retryBackoffMs = retryBackoffMs;
         this.deliveryTimeoutMs = deliveryTimeoutMs;
+        this.adaptiveBatching = adaptiveBatching;
         this.batches = new CopyOnWriteMap<>();
         this.free = bufferPool;
         this.incomplete = new IncompleteBatches();
@@ -219,9 +229,11 @@ public final class RecordAccumulator {
             }
 
             byte maxUsableMagic = apiVersions.maxUsableProduceMagic();
-            int size = Math.max(this.batchSize, AbstractRecords.estimateSizeInBytesUpperBound(maxUsableMagic, compression.type(), key, value, headers));
-            log.trace("Allocating a new {} byte message buffer for topic {} partition {} with remaining timeout {}ms", size, tp.topic(), tp.partition(), maxTimeToBlock);
-            buffer = free.allocate(size, maxTimeToBlock);
+            int size = Math.max(batchSize(tp), AbstractRecords.estimateSizeInBytesUpperBound(maxUsableMagic, compression.type(), key, value, headers));
+            // Adaptive batch sizes are filled in a buffer of their size class, which the pool reuses
+            int bufferSize = adaptiveBatching == null ? size : SizeClassBufferPool.sizeClass(size, free.poolableSize());
+            log.trace("Allocating a new {} byte message buffer for topic {} partition {} with remaining timeout {}ms", bufferSize, tp.topic(), tp.partition(), maxTimeToBlock);
+            buffer = free.allocate(bufferSize, maxTimeToBlock);
             
             // Update the current time in case the buffer allocation blocked above.
             nowMs = time.milliseconds();
@@ -236,8 +248,10 @@ public final class RecordAccumulator {
                     return appendResult;
                 }
 
-                MemoryRecordsBuilder recordsBuilder = recordsBuilder(buffer, maxUsableMagic);
+                MemoryRecordsBuilder recordsBuilder = recordsBuilder(buffer, maxUsableMagic, size);
                 ProducerBatch batch = new ProducerBatch(tp, recordsBuilder, nowMs);
+                batch.sizeLimit = size;
+                batch.recordLimit = batchRecordLimit;
                 FutureRecordMetadata future = Objects.requireNonNull(batch.tryAppend(timestamp, key, value, headers,
                         callback, nowMs));
 
@@ -255,12 +269,32 @@ public final class RecordAccumulator {
         }
     }
 
-    private MemoryRecordsBuilder recordsBuilder(ByteBuffer buffer, byte maxUsableMagic) {
+    private int batchSize(TopicPartition tp) {
+        return adaptiveBatching == null ? batchSize : adaptiveBatching.batchSize(tp);
+    }
+
+    private long lingerMs(TopicPartition tp) {
+        return adaptiveBatching == null ? lingerMs : adaptiveBatching.lingerMs(tp);
+    }
+
+    /**
+     * Returns the adaptive batching of the accumulator, or null if linger time and batch size are fixed.
+     */
+    public AdaptiveBatching adaptiveBatching() {
+        return adaptiveBatching;
+    }
+
+    private MemoryRecordsBuilder recordsBuilder(ByteBuffer buffer, byte maxUsableMagic, int sizeLimit) {
         if (transactionManager != null && maxUsableMagic < RecordBatch.MAGIC_VALUE_V2) {
             throw new UnsupportedVersionException("Attempting to use idempotence with a broker which does not " +
                 "support the required message format (v2). The broker must be version 0.11 or later.");
         }
-        return MemoryRecords.builder(buffer, maxUsableMagic, compression, TimestampType.CREATE_TIME, 0L);
+        if (sizeLimit >= buffer.remaining())
+            return MemoryRecords.builder(buffer, maxUsableMagic, compression, TimestampType.CREATE_TIME, 0L);
+        // The buffer is larger than the batch
+        return new MemoryRecordsBuilder(buffer, maxUsableMagic, compression, TimestampType.CREATE_TIME, 0L,
+                RecordBatch.NO_TIMESTAMP, RecordBatch.NO_PRODUCER_ID, RecordBatch.NO_PRODUCER_EPOCH, RecordBatch.NO_SEQUENCE,
+                false, false, RecordBatch.NO_PARTITION_LEADER_EPOCH, sizeLimit);
     }
 
     /**
@@ -476,7 +510,7 @@ public final class RecordAccumulator {
                     } else if (!readyNodes.contains(leader) && !isMuted(part)) {
                         long waitedTimeMs = batch.waitedTimeMs(nowMs);
                         boolean backingOff = batch.attempts() > 0 && waitedTimeMs < retryBackoffMs;
-                        long timeToWaitMs = backingOff ? retryBackoffMs : lingerMs;
+                        long timeToWaitMs = backingOff ? retryBackoffMs : lingerMs(part);
                         boolean full = deque.size() > 1 || batch.isFull();
                         boolean expired = waitedTimeMs >= timeToWaitMs;
                         boolean sendable = full || expired || exhausted || closed || flushInProgress();
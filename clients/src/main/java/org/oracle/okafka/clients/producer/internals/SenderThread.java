@@ -37,6 +37,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import org.apache.kafka.clients.ClientRequest;
@@ -57,6 +62,7 @@ import org.oracle.okafka.common.errors.InvalidLoginCredentialsException;
 import org.apache.kafka.common.InvalidRecordException;
 import org.apache.kafka.common.KafkaException;
 import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.DisconnectException;
 import org.apache.kafka.common.errors.InvalidMetadataException;
 import org.apache.kafka.common.errors.InvalidTopicException;
@@ -68,6 +74,7 @@ import org.apache.kafka.common.metrics.stats.Avg;
 import org.apache.kafka.common.metrics.stats.Max;
 import org.apache.kafka.common.metrics.stats.Meter;
 import org.apache.kafka.common.requests.ProduceResponse.RecordError;
+import org.apache.kafka.common.utils.KafkaThread;
 import org.apache.kafka.common.utils.LogContext;
 import org.apache.kafka.common.utils.Time;
 import org.slf4j.Logger;
@@ -134,6 +141,25 @@ public class SenderThread implements Runnable {
 	private Object syncObject = new Object();
 	private final ProducerConfig config;
 
+	/* the number of database sessions per node. More than one session enables pipelined produce */
+	private final int sessionsPerNode;
+
+	/* publish each partition through the same session of its node */
+	private final boolean partitionAffinity;
+
+	/* executors publishing the produce requests of each node when pipelined produce is enabled.
+	 * With partition affinity each node has one single threaded executor per session, otherwise one shared executor */
+	private final Map<Integer, ExecutorService[]> sendExecutors;
+
+	/* the number of produce requests dispatched to each node and not yet handled. Only accessed by the sender thread */
+	private final Map<Integer, Integer> inFlightRequests;
+
+	/* produce requests completed by the executors, waiting to be handled by the sender thread */
+	private final ConcurrentLinkedQueue<CompletedSend> completedSends;
+
+	/* chooses linger time and batch size of each partition from drained batches and send times, null if disabled */
+	private final AdaptiveBatching adaptiveBatching;
+
 	public SenderThread(LogContext logContext, String clientId, KafkaClient client, Metadata metadata,
 			RecordAccumulator accumulator, boolean guaranteeMessageOrder, ProducerConfig pConfig, short acks,
 			int retries, SenderMetricsRegistry metricsRegistry, Time time) {
@@ -153,6 +179,12 @@ public class SenderThread implements Runnable {
 		this.retries = retries;
 		this.requestTimeoutMs = config.getInt(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG);
 		this.retryBackoffMs = config.getLong(ProducerConfig.RETRY_BACKOFF_MS_CONFIG);
+		this.sessionsPerNode = config.getInt(ProducerConfig.ORACLE_PRODUCER_SESSIONS_PER_INSTANCE);
+		this.partitionAffinity = config.getBoolean(ProducerConfig.ORACLE_PRODUCER_PARTITION_AFFINITY);
+		this.sendExecutors = new HashMap<>();
+		this.inFlightRequests = new HashMap<>();
+		this.completedSends = new ConcurrentLinkedQueue<>();
+		this.adaptiveBatching = accumulator.adaptiveBatching();
 	}
 
 	/**
@@ -180,13 +212,14 @@ public class SenderThread implements Runnable {
 		// okay we stopped accepting requests but there may still be
 		// requests in the accumulator or waiting for acknowledgment,
 		// wait until these are completed.
-		while (!forceClose && this.accumulator.hasUndrained()) {
+		while (!forceClose && (this.accumulator.hasUndrained() || hasInFlightRequests())) {
 			try {
 				run(time.milliseconds());
 			} catch (Exception e) {
 				log.error("Uncaught error in kafka producer I/O thread: ", e);
 			}
 		}
+		closeSendExecutors();
 		if (forceClose) {
 			// We need to fail all the incomplete batches and wake up the threads waiting on
 			// the futures.
@@ -209,15 +242,17 @@ public class SenderThread implements Runnable {
 	 * @param now The current POSIX time in milliseconds
 	 */
 	void run(long now) {
+		handleCompletedSends();
 		long pollTimeOut = sendProducerData(now);
 		client.maybeUpdateMetadata(time.milliseconds());
 		try {
 			long sleepTime = pollTimeOut;
 			if (sleepTime == Long.MAX_VALUE) {
-				Long lingerConfig = config.getLong(ProducerConfig.LINGER_MS_CONFIG);
+				Long lingerConfig = adaptiveBatching != null ? adaptiveBatching.maxLingerMs()
+						: config.getLong(ProducerConfig.LINGER_MS_CONFIG);
 
 				if (lingerConfig.longValue() > 0)
-					sleepTime = (int) Math.min(config.getLong(ProducerConfig.LINGER_MS_CONFIG), 500);
+					sleepTime = (int) Math.min(lingerConfig, 500);
 				else
 					sleepTime = 500;
 			}
@@ -225,7 +260,9 @@ public class SenderThread implements Runnable {
 				log.debug("Sender waiting for " + sleepTime);
 				try {
 					synchronized (syncObject) {
-						syncObject.wait(sleepTime);
+						// Completed pipelined sends must be handled without waiting
+						if (completedSends.isEmpty())
+							syncObject.wait(sleepTime);
 					}
 				} catch (Exception sleepE) {
 				}
@@ -260,7 +297,11 @@ public class SenderThread implements Runnable {
 		long notReadyTimeout = Long.MAX_VALUE;
 		while (iter.hasNext()) {
 			Node node = (org.oracle.okafka.common.Node) iter.next();
-			if (!this.client.ready(node, now)) {
+			if (isPipelined() && inFlightRequestCount(node.id()) >= sessionsPerNode) {
+				// All sessions to this node are busy. Batches remain in the accumulator until a send completes.
+				iter.remove();
+				log.trace("Node {} has {} produce requests in flight", node, inFlightRequestCount(node.id()));
+			} else if (!this.client.ready(node, now)) {
 				iter.remove();
 				log.debug("Node " + node + " is not ready and is removed for now");
 				notReadyTimeout = Math.min(notReadyTimeout, this.client.pollDelayMs(node, now));
@@ -279,6 +320,13 @@ public class SenderThread implements Runnable {
 			}
 		}
 
+		if (adaptiveBatching != null) {
+			for (List<ProducerBatch> batchList : batches.values()) {
+				for (ProducerBatch batch : batchList)
+					adaptiveBatching.onDrained(batch, now);
+			}
+		}
+
 		// List<ProducerBatch> expiredBatches =
 		// this.accumulator.expiredBatches(this.requestTimeoutMs, now);
 
@@ -363,6 +411,7 @@ public class SenderThread implements Runnable {
 	private void sendProduceRequest(Node node, List<ProducerBatch> batches) {
 		if (batches.isEmpty())
 			return;
+		batches = resolveDuplicates(node, batches);
 		// Map<String, Map<TopicPartition, MemoryRecords>> produceRecordsByTopic = new
 		// HashMap<>();
 		// Map<TopicPartition, ProducerBatch> batchesByPartition = new HashMap<>();
@@ -393,8 +442,169 @@ public class SenderThread implements Runnable {
 					(short) 1, -1, checkForDuplicate, retryMsgIdList);
 			ClientRequest request = client.newClientRequest(node, builderRequest, time.milliseconds(), true, -1,
 					callback);
-			send(request, batch);
+			if (isPipelined())
+				sendPipelined(node, request, batch);
+			else
+				send(request, batch);
+		}
+	}
+
+	/**
+	 * Checks, with a single call to the node, whether retried batches were already published before the failure.
+	 * Batches found to be published are completed with their earlier message ids and are not sent again. Batches
+	 * not found are sent without a further duplicate check. If the node cannot check in one call, every retried
+	 * batch is checked individually while it is published.
+	 *
+	 * @return the batches which still need to be published
+	 */
+	private List<ProducerBatch> resolveDuplicates(Node node, List<ProducerBatch> batches) {
+		Map<TopicPartition, OKafkaOffset> firstMsgIds = null;
+		for (ProducerBatch batch : batches) {
+			if (batch.inRetry() && batch.retryMsgIdList() != null && !batch.retryMsgIdList().isEmpty()) {
+				if (firstMsgIds == null)
+					firstMsgIds = new HashMap<>();
+				firstMsgIds.put(batch.topicPartition, batch.retryMsgIdList().get(0));
+			}
+		}
+		if (firstMsgIds == null)
+			return batches;
+
+		Map<TopicPartition, Boolean> published;
+		try {
+			published = client.checkDuplicates(node, firstMsgIds);
+		} catch (Exception e) {
+			log.debug("Batched duplicate check failed for node " + node + ". Checking each batch while publishing. " + e);
+			published = null;
+		}
+		if (published == null)
+			return batches;
+
+		List<ProducerBatch> toSend = new ArrayList<>(batches.size());
+		for (ProducerBatch batch : batches) {
+			Boolean exists = firstMsgIds.containsKey(batch.topicPartition) ? published.get(batch.topicPartition) : null;
+			if (exists == null) {
+				toSend.add(batch);
+			} else if (exists) {
+				log.info("Message Id " + firstMsgIds.get(batch.topicPartition).getMsgId() + " exists for topic partition "
+						+ batch.topicPartition + ". Records were succesfully produced.");
+				ProduceResponse.PartitionResponse response = new ProduceResponse.PartitionResponse(null);
+				response.setOffsets(batch.retryMsgIdList());
+				completeBatch(batch, response);
+				if (guaranteeMessageOrder)
+					this.accumulator.unmutePartition(batch.topicPartition);
+			} else {
+				batch.setRetryMsgId(null);
+				toSend.add(batch);
+			}
+		}
+		return toSend;
+	}
+
+	private boolean isPipelined() {
+		return sessionsPerNode > 1;
+	}
+
+	private int inFlightRequestCount(int nodeId) {
+		Integer count = inFlightRequests.get(nodeId);
+		return count == null ? 0 : count;
+	}
+
+	private boolean hasInFlightRequests() {
+		return !inFlightRequests.isEmpty();
+	}
+
+	/**
+	 * Hand the produce request over to the executor of the destination node. The executor publishes it over one
+	 * of the sessions to the node, while this thread moves on to the next batch. The response is handled by this
+	 * thread in {@link #handleCompletedSends()}. With partition affinity, batches of a partition are always
+	 * published by the same executor, which is the only user of the session mapped to that partition.
+	 */
+	private void sendPipelined(Node node, ClientRequest request, ProducerBatch batch) {
+		ExecutorService[] executors = sendExecutors.get(node.id());
+		if (executors == null) {
+			executors = newSendExecutors(node);
+			sendExecutors.put(node.id(), executors);
 		}
+		ExecutorService executor = executors[partitionAffinity ? batch.topicPartition.partition() % sessionsPerNode : 0];
+		inFlightRequests.put(node.id(), inFlightRequestCount(node.id()) + 1);
+		executor.execute(() -> {
+			ClientResponse response = null;
+			Exception sendException = null;
+			long sendStartMs = time.milliseconds();
+			try {
+				response = client.send(request, sendStartMs);
+			} catch (Exception e) {
+				sendException = e;
+			}
+			completedSends.add(new CompletedSend(node.id(), batch, response, sendException,
+					time.milliseconds() - sendStartMs));
+			wakeup();
+		});
+	}
+
+	private ExecutorService[] newSendExecutors(Node node) {
+		final String threadPrefix = "kafka-producer-network-thread | " + clientId + " | node-" + node.id() + "-sender-";
+		final AtomicInteger threadIndex = new AtomicInteger(0);
+		if (!partitionAffinity) {
+			return new ExecutorService[] { Executors.newFixedThreadPool(sessionsPerNode,
+					runnable -> new KafkaThread(threadPrefix + threadIndex.getAndIncrement(), runnable, true)) };
+		}
+		ExecutorService[] executors = new ExecutorService[sessionsPerNode];
+		for (int i = 0; i < sessionsPerNode; i++) {
+			executors[i] = Executors.newSingleThreadExecutor(
+					runnable -> new KafkaThread(threadPrefix + threadIndex.getAndIncrement(), runnable, true));
+		}
+		return executors;
+	}
+
+	/**
+	 * Handle the produce requests completed by the executors since the last iteration.
+	 */
+	private void handleCompletedSends() {
+		CompletedSend completed;
+		while ((completed = completedSends.poll()) != null) {
+			int inFlight = inFlightRequestCount(completed.nodeId) - 1;
+			if (inFlight > 0)
+				inFlightRequests.put(completed.nodeId, inFlight);
+			else
+				inFlightRequests.remove(completed.nodeId);
+
+			if (completed.exception != null) {
+				handleSendFailure(completed.batch, completed.exception);
+			} else {
+				recordSendTime(completed.batch, completed.sendMs);
+				handleSendResponse(completed.response, completed.batch);
+			}
+		}
+	}
+
+	/**
+	 * Stop the executors of pipelined produce. Requests already dispatched are completed unless the producer is
+	 * closed forcefully.
+	 */
+	private void closeSendExecutors() {
+		for (ExecutorService[] executors : sendExecutors.values()) {
+			for (ExecutorService executor : executors) {
+				if (forceClose)
+					executor.shutdownNow();
+				else
+					executor.shutdown();
+			}
+		}
+		for (ExecutorService[] executors : sendExecutors.values()) {
+			for (ExecutorService executor : executors) {
+				try {
+					if (!executor.awaitTermination(requestTimeoutMs, TimeUnit.MILLISECONDS))
+						log.warn("Timed out waiting for in-flight produce requests to complete");
+				} catch (InterruptedException ie) {
+					log.warn("Interrupted while waiting for in-flight produce requests to complete");
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		if (!forceClose)
+			handleCompletedSends();
+		sendExecutors.clear();
 	}
 
 	/**
@@ -402,14 +612,37 @@ public class SenderThread implements Runnable {
 	 */
 	public void send(ClientRequest request, ProducerBatch batch) {
 		ClientResponse response = null;
+		long sendStartMs = time.milliseconds();
 		try {
-			response = client.send(request, time.milliseconds());
+			response = client.send(request, sendStartMs);
 		} catch (Exception e) {
-			log.error("Exception while sending the produce request for batch " + batch.topicPartition + " " + e, e);
-			accumulator.reenqueue(batch, System.currentTimeMillis());
+			handleSendFailure(batch, e);
 			return;
 		}
+		recordSendTime(batch, time.milliseconds() - sendStartMs);
+		handleSendResponse(response, batch);
+	}
+
+	private void recordSendTime(ProducerBatch batch, long sendMs) {
+		if (adaptiveBatching != null)
+			adaptiveBatching.onSendCompleted(batch, sendMs);
+	}
+
+	private void handleSendFailure(ProducerBatch batch, Exception e) {
+		log.error("Exception while sending the produce request for batch " + batch.topicPartition + " " + e, e);
+		reenqueueInFlightBatch(batch);
+	}
 
+	/**
+	 * Put a batch whose send failed back in the accumulator and allow the partition to be drained again.
+	 */
+	private void reenqueueInFlightBatch(ProducerBatch batch) {
+		accumulator.reenqueue(batch, System.currentTimeMillis());
+		if (guaranteeMessageOrder)
+			this.accumulator.unmutePartition(batch.topicPartition);
+	}
+
+	private void handleSendResponse(ClientResponse response, ProducerBatch batch) {
 		log.info("Batch Send complete, evaluating response " + batch.topicPartition);
 		ProduceResponse pResponse = (ProduceResponse) response.responseBody();
 		ProduceResponse.PartitionResponse partitionResponse = pResponse.getPartitionResponse();
@@ -441,7 +674,7 @@ public class SenderThread implements Runnable {
 					batch.setRetryMsgId(partitionResponse.msgIds);
 				}
 			}
-			accumulator.reenqueue(batch, System.currentTimeMillis());
+			reenqueueInFlightBatch(batch);
 		} else {
 			log.trace("No Exception from send. Completing the batch");
 			completeResponse(response);
@@ -628,6 +861,25 @@ public class SenderThread implements Runnable {
 		return running;
 	}
 
+	/**
+	 * Outcome of a produce request published by a pipelined produce executor
+	 */
+	private static final class CompletedSend {
+		final int nodeId;
+		final ProducerBatch batch;
+		final ClientResponse response;
+		final Exception exception;
+		final long sendMs;
+
+		CompletedSend(int nodeId, ProducerBatch batch, ClientResponse response, Exception exception, long sendMs) {
+			this.nodeId = nodeId;
+			this.batch = batch;
+			this.response = response;
+			this.exception = exception;
+			this.sendMs = sendMs;
+		}
+	}
+
 	/**
 	 * A collection of sensors for the sender
 	 */
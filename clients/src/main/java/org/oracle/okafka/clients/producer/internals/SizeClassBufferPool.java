@@ -0,0 +1,102 @@
+/*
+ ** OKafka Java Client version 23.4.
+ **
+ ** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+ ** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+
+package org.oracle.okafka.clients.producer.internals;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.kafka.clients.producer.internals.BufferPool;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.utils.Time;
+
+/**
+ * A buffer pool which also reuses the buffers of the size classes above the poolable size. A size class is the
+ * poolable size times a power of two. Adaptive batching chooses batch sizes which are rarely the poolable size, so
+ * the accumulator allocates the buffer of the size class of the chosen size, see {@link #sizeClass(int, int)}.
+ *
+ * A released buffer of a size class is kept as long as the memory not allocated from the pool covers the buffers
+ * kept, so that the pool holds no more than <code>buffer.memory</code> bytes.
+ */
+public final class SizeClassBufferPool extends BufferPool {
+
+	private final int poolableSize;
+	private final Map<Integer, Deque<ByteBuffer>> free = new HashMap<>();
+	private long freeBytes;
+	private boolean closed;
+
+	public SizeClassBufferPool(long memory, int poolableSize, Metrics metrics, Time time, String metricGrpName) {
+		super(memory, poolableSize, metrics, time, metricGrpName);
+		this.poolableSize = poolableSize;
+	}
+
+	/**
+	 * Returns the smallest size class which holds the given size, or the size itself when it does not fit in an int.
+	 */
+	public static int sizeClass(int size, int poolableSize) {
+		long sizeClass = poolableSize;
+		while (sizeClass < size)
+			sizeClass <<= 1;
+		return sizeClass > Integer.MAX_VALUE ? size : (int) sizeClass;
+	}
+
+	private boolean isSizeClass(int size) {
+		return size > poolableSize && size % poolableSize == 0 && Integer.bitCount(size / poolableSize) == 1;
+	}
+
+	@Override
+	protected ByteBuffer allocateByteBuffer(int size) {
+		synchronized (free) {
+			Deque<ByteBuffer> buffers = free.get(size);
+			ByteBuffer buffer = buffers == null ? null : buffers.pollLast();
+			if (buffer != null)
+				freeBytes -= size;
+			// The memory of the new buffer is no longer available to cover the buffers kept
+			trim(unallocatedMemory());
+			if (buffer != null)
+				return buffer;
+		}
+		return super.allocateByteBuffer(size);
+	}
+
+	@Override
+	public void deallocate(ByteBuffer buffer, int size) {
+		if (size == buffer.capacity() && isSizeClass(size)) {
+			synchronized (free) {
+				if (!closed && freeBytes <= unallocatedMemory()) {
+					buffer.clear();
+					free.computeIfAbsent(size, s -> new ArrayDeque<>()).addLast(buffer);
+					freeBytes += size;
+				}
+			}
+		}
+		super.deallocate(buffer, size);
+	}
+
+	@Override
+	public void close() {
+		synchronized (free) {
+			closed = true;
+			trim(0);
+		}
+		super.close();
+	}
+
+	// Drops kept buffers until they take no more than the given number of bytes
+	private void trim(long maxBytes) {
+		Iterator<Map.Entry<Integer, Deque<ByteBuffer>>> it = free.entrySet().iterator();
+		while (freeBytes > maxBytes && it.hasNext()) {
+			Map.Entry<Integer, Deque<ByteBuffer>> entry = it.next();
+			while (freeBytes > maxBytes && entry.getValue().pollFirst() != null)
+				freeBytes -= entry.getKey();
+		}
+	}
+}
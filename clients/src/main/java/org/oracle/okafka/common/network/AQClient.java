@@ -18,8 +18,10 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.kafka.clients.ClientRequest;
@@ -30,6 +32,7 @@ import org.oracle.okafka.common.Node;
 import org.oracle.okafka.common.errors.ConnectionException;
 import org.oracle.okafka.common.errors.RecordNotFoundSQLException;
 import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.Uuid;
 import org.apache.kafka.common.config.AbstractConfig;
 import org.apache.kafka.common.errors.DisconnectException;
@@ -43,6 +46,8 @@ import org.oracle.okafka.common.requests.ListOffsetsResponse.ListOffsetsPartitio
 import org.oracle.okafka.common.utils.ConnectionUtils;
 import org.oracle.okafka.common.utils.CreateTopics;
 import org.oracle.okafka.common.utils.FetchOffsets;
+import org.oracle.okafka.common.utils.TopicMetadataLoader;
+import org.oracle.okafka.common.utils.MessageIdConverter.OKafkaOffset;
 import org.slf4j.Logger;
 import java.sql.Timestamp;
 import java.sql.Date;
@@ -93,6 +98,10 @@ public abstract class AQClient {
 	public static final String PARTITION_PROPERTY = "AQINTERNAL_PARTITION";
 	public static final String HEADERCOUNT_PROPERTY = "AQINTERNAL_HEADERCOUNT";
 	public static final String MESSAGE_VERSION = "AQINTERNAL_MESSAGEVERSION";
+	// V2 payload compressed with the producer's compression.type, see PayloadCompression
+	public static final int MESSAGE_VERSION_COMPRESSED = 3;
+	// All records of a producer batch in one message, see AQKafkaProducer.createEnvelopeMessage
+	public static final int MESSAGE_VERSION_ENVELOPE = 4;
 	public static final String STICKYDEQ_PARAM = "STICKY_DEQUEUE";
 	public static final String KEYBASEDENQ_PARAM = "KEY_BASED_ENQUEUE";
 	public static final String SHARDNUM_PARAM = "SHARD_NUM";
@@ -143,6 +152,11 @@ public abstract class AQClient {
 	/* Closes all connection to all the database nodes */
 	public abstract void close();
 	
+	/* Checks in one call whether the given message ids were already published to the node. Null if not supported. */
+	public Map<TopicPartition, Boolean> checkDuplicates(Node node, Map<TopicPartition, OKafkaOffset> firstMsgIds) throws Exception {
+		return null;
+	}
+	
 	/* Get Metadata from Oracle Database.
 	 * This involves fetching information for all the available database instances.
 	 * Fetching partition count for the interested topics. 
@@ -211,21 +225,28 @@ public abstract class AQClient {
 			clusterId = ((oracle.jdbc.internal.OracleConnection) con).getServerSessionInfo()
 					.getProperty("DATABASE_NAME");
 			getPartitioninfo = getNodes(nodes, con, currentNode, metadataRequested);
-			if (getPartitioninfo || metadataRequested || builder.needPartitionInfo()) {
+			boolean needPartitionInfo = getPartitioninfo || metadataRequested || builder.needPartitionInfo();
+
+			// Queue parameters of all the topics are fetched in one call and shared by partition info and TEQ parameters
+			Set<String> loadTopics = new HashSet<>();
+			if (teqParaList != null)
+				loadTopics.addAll(teqParaList);
+			if (needPartitionInfo && metadataTopics != null)
+				loadTopics.addAll(metadataTopics);
+			Map<String, Uuid> queueIds = new HashMap<>();
+			Map<String, TopicTeqParameters> loadedParameters = TopicMetadataLoader.fetchQueueParameters(con, loadTopics, queueIds);
+
+			if (needPartitionInfo) {
 				getPartitionInfo(metadataTopics, new ArrayList<>(metadataTopics), con,
 						nodes.isEmpty() ? all_nodes : nodes, metadataRequest.allowAutoTopicCreation(), partitionInfo,
-						errorsPerTopic, topicNameIdMap);
+						errorsPerTopic, topicNameIdMap, loadedParameters, queueIds);
 			}
 			
 			topicParameterMap = new HashMap<String, TopicTeqParameters>(teqParaList.size());
 			for (String teqTopic : teqParaList) {
-				try {
-				TopicTeqParameters teqPara = fetchQueueParameters(teqTopic, con);
-				topicParameterMap.put(teqTopic, teqPara);
-				} catch (SQLException sqlE) {
-					if(sqlE.getErrorCode() != 24010)
-						throw sqlE;
-				}
+				TopicTeqParameters teqPara = loadedParameters.get(teqTopic);
+				if (teqPara != null)
+					topicParameterMap.put(teqTopic, teqPara);
 			}
 
 			if (topicIds != null) {
@@ -274,10 +295,13 @@ public abstract class AQClient {
 		
 		try {
 			List<String> allTopics = getAllTopics(con);
+			Map<String, Uuid> queueIds = new HashMap<>();
+			Map<String, TopicTeqParameters> loadedParameters = TopicMetadataLoader.fetchQueueParameters(con, allTopics, queueIds);
 			topicParameterMap = new HashMap<String, TopicTeqParameters>(allTopics.size());
 			for (String teqTopic : allTopics) {
 				TopicTeqParameters teqPara = new TopicTeqParameters();
-				teqPara.setStickyDeq(getQueueParameter(STICKYDEQ_PARAM, teqTopic, con));
+				TopicTeqParameters loadedPara = loadedParameters.get(teqTopic);
+				teqPara.setStickyDeq(loadedPara != null ? loadedPara.getStickyDeq() : 1);
 				topicParameterMap.put(teqTopic, teqPara);
 
 			}
@@ -286,7 +310,7 @@ public abstract class AQClient {
 						.getProperty("DATABASE_NAME");
 				 
 				getNodes(nodes,con, currentNode, true);
-				getPartitionInfo(allTopics, new ArrayList<>(allTopics), con, nodes.isEmpty()?all_nodes:nodes , false, partitionInfo, errorsPerTopic, new HashMap<>());
+				getPartitionInfo(allTopics, new ArrayList<>(allTopics), con, nodes.isEmpty()?all_nodes:nodes , false, partitionInfo, errorsPerTopic, new HashMap<>(), loadedParameters, queueIds);
 			}
 
 		} catch (Exception exception) {
@@ -610,21 +634,22 @@ public abstract class AQClient {
 
 	private void getPartitionInfo(List<String> topics, List<String> topicsRem, Connection con,
 			List<Node> nodes, boolean allowAutoTopicCreation, 
-			List<PartitionInfo> partitionInfo, Map<String, Exception> errorsPerTopic, Map<String,Uuid> topicNameIdMap) throws Exception {
+			List<PartitionInfo> partitionInfo, Map<String, Exception> errorsPerTopic, Map<String,Uuid> topicNameIdMap,
+			Map<String, TopicTeqParameters> teqParameters, Map<String, Uuid> queueIds) throws Exception {
 		if(nodes.size() <= 0 || topics == null || topics.isEmpty())
 			return;
 		
-		String queryQShard[] = {"select SHARD_ID, OWNER_INSTANCE, QUEUE_ID from user_queue_shards where  QUEUE_ID = (select qid from user_queues where name = upper(?)) ",
-		"select SHARD_ID, ENQUEUE_INSTANCE, QUEUE_ID from user_queue_shards where  QUEUE_ID = (select qid from user_queues where name = upper(?)) "};
+		String instanceColumn[] = {"OWNER_INSTANCE", "ENQUEUE_INSTANCE"};
 		
-		PreparedStatement stmt1 = null;
 		int qryIndex=userQueueShardsQueryIndex;
 		do {
 			try {
-				stmt1 = con.prepareStatement(queryQShard[qryIndex]);
+				// Shards of all the existing topics and their owner instances in one query
+				Map<String, List<int[]>> queueShards = Collections.emptyMap();
+				if(nodes.size() > 1)
+					queueShards = TopicMetadataLoader.fetchQueueShards(con, teqParameters.keySet(), instanceColumn[qryIndex]);
 				int nodeIndex = 0 ;
 				int nodesSize = nodes.size();
-				ResultSet result1 = null;
 				Node[] nodesArray = null;
 				if(nodesSize > 1) {
 					int max = -1;
@@ -641,52 +666,42 @@ public abstract class AQClient {
 				for(String topic : topics) {
 					boolean topicDone = false;
 					int partCnt = 0;
-					try {
-						//Get number of partitions
-						partCnt = getQueueParameter(SHARDNUM_PARAM, ConnectionUtils.enquote(topic), con);
-					}catch(SQLException sqlE) {
-						int errorNo = sqlE.getErrorCode();
-						if(errorNo == 24010)  {
-							if (!allowAutoTopicCreation) {
-								errorsPerTopic.put(topic, sqlE);
-								log.error("topic: " + topic + " doesn't exist");
-							}
-							//Topic does not exist, it will be created
-							continue;
+					TopicTeqParameters teqPara = teqParameters.get(topic);
+					if(teqPara == null) {
+						if (!allowAutoTopicCreation) {
+							errorsPerTopic.put(topic, new SQLException("ORA-24010: QUEUE " + topic + " does not exist", "72000", 24010));
+							log.error("topic: " + topic + " doesn't exist");
 						}
-						throw sqlE;
+						//Topic does not exist, it will be created
+						continue;
 					}
+					//Get number of partitions
+					partCnt = teqPara.getShardNum();
 					
 					boolean partArr[] =  new boolean[partCnt];
 					for(int i =0; i < partCnt ;i++)
 						partArr[i] = false;
 
 					// If more than one RAC node then check who is owner Node for which partition
-					if(nodes.size()  > 1) {
-						stmt1.clearParameters();
-						stmt1.setString(1, topic);
-						result1 = stmt1.executeQuery(); 
-						// If any row exist 
-						if(result1.isBeforeFirst()) {
-							while(result1.next()) {
-								int partNum = result1.getInt(1)/2;
-								int nodeNum = result1.getInt(2);
-								Uuid queue_id = new Uuid(0,result1.getInt(3));
-								partitionInfo.add(new PartitionInfo(topic, partNum , nodesArray[nodeNum-1], new Node[0], new Node[0]));	
-								partArr[partNum] = true;
-								topicNameIdMap.put(topic,queue_id);
-							}
+					List<int[]> shards = queueShards.get(topic);
+					// If any row exist 
+					if(nodes.size()  > 1 && shards != null) {
+						for(int[] shard : shards) {
+							int partNum = shard[0]/2;
+							int nodeNum = shard[1];
+							partitionInfo.add(new PartitionInfo(topic, partNum , nodesArray[nodeNum-1], new Node[0], new Node[0]));	
+							partArr[partNum] = true;
+						}
+						topicNameIdMap.put(topic, queueIds.getOrDefault(topic, Uuid.ZERO_UUID));
 
-							result1.close();
-							// For the partitions not yet mapped to an instance 
-							for(int i = 0; i < partCnt ; i++) {
-								if( partArr[i] == false ) {
-									partitionInfo.add(new PartitionInfo(topic, i , nodes.get(nodeIndex++%nodesSize), null, null));	
-								}
+						// For the partitions not yet mapped to an instance 
+						for(int i = 0; i < partCnt ; i++) {
+							if( partArr[i] == false ) {
+								partitionInfo.add(new PartitionInfo(topic, i , nodes.get(nodeIndex++%nodesSize), null, null));	
 							}
-							topicDone = true;
-						} // Entry Existed in USER_QUEUE_SHARD
-					}// Nodes > 1
+						}
+						topicDone = true;
+					}// Nodes > 1 and Entry Existed in USER_QUEUE_SHARD
 					
 					// No Record in USER_QUEUE_SHARD or Node =1 check if topic exist		   	
 					if(!topicDone && partCnt!=0){
@@ -696,12 +711,7 @@ public abstract class AQClient {
 							partitionInfo.add(new PartitionInfo(topic, i , nodes.get(nodeIndex++%nodesSize), null, null));
 						}
 						topicDone =true;
-						try {
-							topicNameIdMap.put(topic,ConnectionUtils.getIdByTopic(con,topic));
-						}catch(SQLException sqle) {
-							topicNameIdMap.put(topic, Uuid.ZERO_UUID);
-							throw sqle;
-						}
+						topicNameIdMap.put(topic, queueIds.getOrDefault(topic, Uuid.ZERO_UUID));
 					}
 					if(topicDone)
 						topicsRem.remove(topic);
@@ -735,15 +745,6 @@ public abstract class AQClient {
 				else
 					throw sqe;
 			}
-			finally {
-			
-				try {
-					if(stmt1 != null) 
-						stmt1.close();		
-				} catch(Exception ex) {
-					//do nothing
-				}
-			}
 		} 
 		while(qryIndex<2);
 	}
@@ -848,8 +849,8 @@ public abstract class AQClient {
 					}
 					throw sqlE;
 				}
+				List<ListOffsetsPartition> validPartitionList = new ArrayList<>(offSetPartitionList.size());
 				for (ListOffsetsPartition listOffsetPartition : offSetPartitionList) {
-					long timestamp = listOffsetPartition.timestamp();
 					int partition = listOffsetPartition.partitionIndex();
 
 					if (partition >= totalPartition) {
@@ -857,25 +858,21 @@ public abstract class AQClient {
 								.setError(new IllegalArgumentException("Invalid Partition number")));
 						continue;
 					}
-
-					ListOffsetsPartitionResponse listOffsetPartitionResp;
-					if (timestamp == ListOffsetsRequest.EARLIEST_TIMESTAMP)
-						listOffsetPartitionResp = FetchOffsets.fetchEarliestOffset(entry.getKey(), partition, jdbcConn);
-					else if (timestamp == ListOffsetsRequest.LATEST_TIMESTAMP)
-						listOffsetPartitionResp = FetchOffsets.fetchLatestOffset(entry.getKey(), partition, jdbcConn);
-					else if (timestamp == ListOffsetsRequest.MAX_TIMESTAMP)
-						listOffsetPartitionResp = FetchOffsets.fetchMaxTimestampOffset(entry.getKey(), partition,
-								jdbcConn);
-					else
-						listOffsetPartitionResp = FetchOffsets.fetchOffsetByTimestamp(entry.getKey(), partition,
-								timestamp, jdbcConn);
-					offSetPartitionRespList.add(listOffsetPartitionResp);
+					validPartitionList.add(listOffsetPartition);
+				}
+				// Offsets of all partitions of the topic are fetched in one call
+				if (!validPartitionList.isEmpty()) {
+					List<ListOffsetsPartitionResponse> validResponses = FetchOffsets.fetchOffsets(entry.getKey(),
+							validPartitionList, jdbcConn);
+					if (listOffsetRequest.backlogSubscriber() != null)
+						setBacklog(entry.getKey(), listOffsetRequest.backlogSubscriber(), validResponses, jdbcConn);
+					offSetPartitionRespList.addAll(validResponses);
 				}
 				offsetPartitionResponseMap.put(entry.getKey(), offSetPartitionRespList);
 			}
 		} catch (Exception e) {
 				log.error("Exception while getting offsets " + e.getMessage(), e);
-				disconnected = true;
+				disconnected = ConnectionUtils.isConnectionClosed(jdbcConn);
 				exception = e;
 		}
 		ListOffsetsResponse listOffsetResponse = new ListOffsetsResponse(offsetPartitionResponseMap);
@@ -885,6 +882,21 @@ public abstract class AQClient {
 				request.createdTimeMs(), System.currentTimeMillis(), disconnected, null, null, listOffsetResponse);
 	}
 
+	/*
+	 * Sets the backlog of the subscriber on each response. Leaves it unknown if the subscriber statistics can not be
+	 * read, for instance when SELECT privilege on GV$AQ_SHARDED_SUBSCRIBER_STAT is not granted.
+	 */
+	private void setBacklog(String topic, String subscriber, List<ListOffsetsPartitionResponse> responses,
+			Connection jdbcConn) {
+		try {
+			Map<Integer, Long> backlog = FetchOffsets.fetchBacklog(topic, subscriber, jdbcConn);
+			for (ListOffsetsPartitionResponse response : responses)
+				response.setBacklog(backlog.getOrDefault(response.partitionIndex(), 0L));
+		} catch (SQLException sqlE) {
+			log.debug("Failed to fetch backlog of " + topic + " for " + subscriber + ": " + sqlE.getMessage());
+		}
+	}
+
 	public static String getProperty(String str, String property) {
 		String tmp = str.toUpperCase();
 		int index = tmp.indexOf(property.toUpperCase());
@@ -39,16 +39,25 @@ public class FetchRequest extends AbstractRequest {
 		
 		private final String topic;
 		private final long pollTimeoutMs;
+		private final int maxRecords;
 		
 		public Builder(String topic, long pollTimeoutMs) {
+			this(topic, pollTimeoutMs, -1);
+		}
+		
+		/**
+		 * @param maxRecords maximum number of records to fetch from the topic. -1 to use max.poll.records.
+		 */
+		public Builder(String topic, long pollTimeoutMs, int maxRecords) {
 			super(ApiKeys.FETCH);
 			this.topic = topic;
 			this.pollTimeoutMs = pollTimeoutMs;
+			this.maxRecords = maxRecords;
 		}
 		
 		@Override
 		public FetchRequest build(short version) {
-			return new FetchRequest(topic, pollTimeoutMs, version);
+			return new FetchRequest(topic, pollTimeoutMs, maxRecords, version);
 		}
 		
 		@Override
@@ -64,10 +73,12 @@ public class FetchRequest extends AbstractRequest {
 	
 	private final String topic;
 	private final long pollTimeoutMs;
-	private FetchRequest(String topic, long pollTimeoutMs, short version) {
+	private final int maxRecords;
+	private FetchRequest(String topic, long pollTimeoutMs, int maxRecords, short version) {
 		super(ApiKeys.FETCH, version);
 		this.topic = topic;
 		this.pollTimeoutMs = pollTimeoutMs;
+		this.maxRecords = maxRecords;
 	}
 	
 	public String topic() {
@@ -77,6 +88,10 @@ public class FetchRequest extends AbstractRequest {
 	public long pollTimeout() {
 		return this.pollTimeoutMs;
 	}
+	
+	public int maxRecords() {
+		return this.maxRecords;
+	}
 
 	@Override
 	public ApiMessage data() {
@@ -14,35 +14,52 @@ public class ListOffsetsRequest extends AbstractRequest {
 	public static final long MAX_TIMESTAMP = -3L;
 
 	private final Map<String, List<ListOffsetsPartition>> topicoffsetPartitionMap;
+	private final String backlogSubscriber;
 
 	public static class Builder extends AbstractRequest.Builder<ListOffsetsRequest> {
 		private final Map<String, List<ListOffsetsPartition>> topicoffsetPartitionMap;
+		private final String backlogSubscriber;
 
 		public Builder(Map<String, List<ListOffsetsPartition>> topicoffsetPartitionMap) {
+			this(topicoffsetPartitionMap, null);
+		}
+
+		/**
+		 * @param backlogSubscriber subscriber whose backlog of each partition is fetched along with its offset, or null
+		 */
+		public Builder(Map<String, List<ListOffsetsPartition>> topicoffsetPartitionMap, String backlogSubscriber) {
 			super(ApiKeys.LIST_OFFSETS);
 			this.topicoffsetPartitionMap = topicoffsetPartitionMap;
+			this.backlogSubscriber = backlogSubscriber;
 		}
 
 		@Override
 		public ListOffsetsRequest build(short version) {
-			return new ListOffsetsRequest(topicoffsetPartitionMap, version);
+			return new ListOffsetsRequest(topicoffsetPartitionMap, backlogSubscriber, version);
 		}
 
 		@Override
 		public String toString() {
-			return "(type=ListOffsetsRequest, " + topicoffsetPartitionMap.toString();
+			return "(type=ListOffsetsRequest, " + topicoffsetPartitionMap.toString() + ", backlogSubscriber="
+					+ backlogSubscriber + ")";
 		}
 	}
 
-	private ListOffsetsRequest(Map<String, List<ListOffsetsPartition>> topicoffsetPartitionMap, short version) {
+	private ListOffsetsRequest(Map<String, List<ListOffsetsPartition>> topicoffsetPartitionMap,
+			String backlogSubscriber, short version) {
 		super(ApiKeys.LIST_OFFSETS, version);
 		this.topicoffsetPartitionMap = topicoffsetPartitionMap;
+		this.backlogSubscriber = backlogSubscriber;
 	}
 
 	public Map<String, List<ListOffsetsPartition>> getOffsetPartitionMap() {
 		return topicoffsetPartitionMap;
 	}
 
+	public String backlogSubscriber() {
+		return backlogSubscriber;
+	}
+
 	@Override
 	public ApiMessage data() {
 		// TODO Auto-generated method stub
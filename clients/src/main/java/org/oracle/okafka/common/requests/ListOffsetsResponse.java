@@ -23,7 +23,7 @@ public class ListOffsetsResponse extends AbstractResponse {
 	}
 
 	public void setException(Exception ex) {
-		if (exception != null) {
+		if (exception == null) {
 			exception = ex;
 		}
 	}
@@ -37,12 +37,14 @@ public class ListOffsetsResponse extends AbstractResponse {
 		Exception error;
 		long timestamp;
 		long offset;
+		long backlog;
 		
 		public ListOffsetsPartitionResponse() {
             this.partitionIndex = 0;
             this.error = null;
             this.timestamp = -1L;
             this.offset = -1L;
+            this.backlog = -1L;
         }
 
 		@Override
@@ -58,6 +60,8 @@ public class ListOffsetsResponse extends AbstractResponse {
 				return false;
 			if (offset != other.offset)
 				return false;
+			if (backlog != other.backlog)
+				return false;
 			return true;
 		}
 
@@ -67,13 +71,14 @@ public class ListOffsetsResponse extends AbstractResponse {
 			hashCode = 31 * hashCode + partitionIndex;
 			hashCode = 31 * hashCode + ((int) (timestamp >> 32) ^ (int) timestamp);
 			hashCode = 31 * hashCode + ((int) (offset >> 32) ^ (int) offset);
+			hashCode = 31 * hashCode + ((int) (backlog >> 32) ^ (int) backlog);
 			return hashCode;
 		}
 
 		@Override
 		public String toString() {
 			return "ListOffsetsPartitionResponse(" + "partitionIndex=" + partitionIndex + ", error=" + error
-					+ ", timestamp=" + timestamp + ", offset=" + offset + ")";
+					+ ", timestamp=" + timestamp + ", offset=" + offset + ", backlog=" + backlog + ")";
 		}
 
 		public int partitionIndex() {
@@ -92,6 +97,14 @@ public class ListOffsetsResponse extends AbstractResponse {
 			return this.offset;
 		}
 
+		/**
+		 * Returns the number of messages of the partition not yet dequeued by the subscriber of the request, or -1 if
+		 * it was not requested or could not be fetched.
+		 */
+		public long backlog() {
+			return this.backlog;
+		}
+
 		public ListOffsetsPartitionResponse setPartitionIndex(int v) {
 			this.partitionIndex = v;
 			return this;
@@ -111,6 +124,11 @@ public class ListOffsetsResponse extends AbstractResponse {
 			this.offset = v;
 			return this;
 		}
+
+		public ListOffsetsPartitionResponse setBacklog(long v) {
+			this.backlog = v;
+			return this;
+		}
 	}
 
 	@Override
@@ -7,6 +7,9 @@
 
 package org.oracle.okafka.common.requests;
 
+import java.util.Collections;
+import java.util.Set;
+
 import org.apache.kafka.common.protocol.ApiMessage;
 import org.apache.kafka.common.requests.AbstractResponse;
 import org.oracle.okafka.common.protocol.ApiKeys;
@@ -14,14 +17,24 @@ import org.oracle.okafka.common.protocol.ApiKeys;
 public class SubscribeRequest extends AbstractRequest {
 public static class Builder extends AbstractRequest.Builder<SubscribeRequest> {
 		private final String topic;
+		private final Set<String> subscription;
 		public Builder(String topic) {
+			this(topic, Collections.singleton(topic));
+		}
+
+		/**
+		 * @param topic topic to subscribe to
+		 * @param subscription all the topics subscribed by the consumer. Subscribers of other topics are closed.
+		 */
+		public Builder(String topic, Set<String> subscription) {
 			super(ApiKeys.SUBSCRIBE);
 			this.topic = topic;
+			this.subscription = subscription;
 		}
 
 		@Override
 		public SubscribeRequest build(short version) {
-			return new SubscribeRequest(topic, version);
+			return new SubscribeRequest(topic, subscription, version);
 		}
 		
 		@Override
@@ -35,16 +48,26 @@ public static class Builder extends AbstractRequest.Builder<SubscribeRequest> {
 	}
 
     private final String topic;
+    private final Set<String> subscription;
     
     public SubscribeRequest(String topic, short version) {
+    	this(topic, Collections.singleton(topic), version);
+    }
+
+    public SubscribeRequest(String topic, Set<String> subscription, short version) {
     	super(ApiKeys.SUBSCRIBE, version);
 	    this.topic = topic;
+	    this.subscription = subscription;
     }
 
     public String getTopic() {
     	return this.topic;
     }
 
+    public Set<String> getSubscription() {
+    	return this.subscription;
+    }
+
 	@Override
 	public ApiMessage data() {
 		// TODO Auto-generated method stub
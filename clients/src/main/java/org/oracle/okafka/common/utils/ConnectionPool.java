@@ -0,0 +1,349 @@
+/*
+ ** OKafka Java Client version 23.4.
+ **
+ ** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+ ** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+
+package org.oracle.okafka.common.utils;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+
+import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.common.utils.KafkaThread;
+import org.oracle.okafka.clients.CommonClientConfigs;
+import org.oracle.okafka.common.Node;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import oracle.jdbc.pool.OracleConnectionPoolDataSource;
+import oracle.jdbc.pool.OraclePooledConnection;
+
+/**
+ * Pool of physical database connections shared by all producers, consumers and admin clients of the JVM which
+ * connect to the same database instance, with the same <code>oracle.net.tns_admin</code> and security protocol.
+ *
+ * Clients borrow logical connections, either directly or through the {@link DataSource} used to create their topic
+ * connections. Closing a logical connection gives the physical connection back to the pool, rolled back. A connection
+ * which is not reusable, because its database session keeps state of the client, is closed instead.
+ *
+ * The pool opens connections in a background thread so that at least <code>oracle.connection.pool.initial.size</code>
+ * connections are idle, when it is created and whenever a connection is borrowed. A client connecting or reconnecting
+ * after a failover therefore gets a connection without waiting for the login. Idle connections are validated when borrowed.
+ * Size of a pool is set by the first client using it.
+ *
+ * A client using a pool releases it when closed, see {@link #release(Object)}. Once released by its last client, the
+ * pool closes its idle connections, and connections still borrowed are closed when given back.
+ */
+public final class ConnectionPool implements ConnectionEventListener {
+	public static final String CONNECTION_POOL_THREAD_PREFIX = "okafka-connection-pool-thread";
+
+	private static final Logger log = LoggerFactory.getLogger(ConnectionPool.class);
+	private static final Map<String, ConnectionPool> pools = new HashMap<>();
+
+	private final String url;
+	private final OracleConnectionPoolDataSource dataSource;
+	private final int initialSize;
+	private final int maxIdle;
+	private final Deque<PooledConnection> idle = new ArrayDeque<>();
+	// Borrowed connections, and whether they are given back to the pool once closed
+	private final Map<PooledConnection, Boolean> borrowed = new IdentityHashMap<>();
+	private final DataSource reusableDataSource = new PoolDataSource(true);
+	private final DataSource sessionDataSource = new PoolDataSource(false);
+	// Clients using the pool, guarded by pools
+	private final Set<Object> clients = Collections.newSetFromMap(new IdentityHashMap<>());
+	private int opening = 0;
+	private boolean closed = false;
+
+	private ConnectionPool(String url, OracleConnectionPoolDataSource dataSource, int initialSize, int maxIdle) {
+		this.url = url;
+		this.dataSource = dataSource;
+		this.initialSize = initialSize;
+		this.maxIdle = Math.max(initialSize, maxIdle);
+	}
+
+	/**
+	 * Returns the pool of connections to the given node, creating it if needed. The pool is used by the given client
+	 * until it is released.
+	 */
+	public static ConnectionPool get(Node node, AbstractConfig configs, Logger clientLog, Object client) throws SQLException {
+		String url = ConnectionUtils.createUrl(node, configs);
+		String protocol = configs.getString(CommonClientConfigs.SECURITY_PROTOCOL_CONFIG);
+		StringBuilder key = new StringBuilder(url).append('|').append(protocol).append('|')
+				.append(configs.getString(CommonClientConfigs.ORACLE_NET_TNS_ADMIN));
+		if (!protocol.equalsIgnoreCase("PLAINTEXT") && !node.isBootstrap())
+			key.append('|').append(node.instanceName());
+
+		ConnectionPool pool;
+		synchronized (pools) {
+			pool = pools.get(key.toString());
+			if (pool == null) {
+				OracleConnectionPoolDataSource poolDataSource = new OracleConnectionPoolDataSource();
+				ConnectionUtils.configureDataSource(poolDataSource, node, configs, clientLog);
+				pool = new ConnectionPool(url, poolDataSource,
+						configs.getInt(CommonClientConfigs.ORACLE_CONNECTION_POOL_INITIAL_SIZE),
+						configs.getInt(CommonClientConfigs.ORACLE_CONNECTION_POOL_MAX_IDLE));
+				pools.put(key.toString(), pool);
+				log.info("Created connection pool to " + url + " with " + pool.initialSize + " initial connections");
+			}
+			pool.clients.add(client);
+		}
+		pool.maybeOpenIdle();
+		return pool;
+	}
+
+	/**
+	 * Releases the pools used by the given client. A pool no longer used by any client is closed.
+	 */
+	public static void release(Object client) {
+		List<ConnectionPool> unused = new ArrayList<>();
+		synchronized (pools) {
+			Iterator<ConnectionPool> it = pools.values().iterator();
+			while (it.hasNext()) {
+				ConnectionPool pool = it.next();
+				if (pool.clients.remove(client) && pool.clients.isEmpty()) {
+					it.remove();
+					unused.add(pool);
+				}
+			}
+		}
+		unused.forEach(ConnectionPool::close);
+	}
+
+	/**
+	 * Returns the number of physical connections of the pools in use, idle or borrowed.
+	 */
+	public static int openConnections() {
+		List<ConnectionPool> inUse;
+		synchronized (pools) {
+			inUse = new ArrayList<>(pools.values());
+		}
+		int count = 0;
+		for (ConnectionPool pool : inUse) {
+			synchronized (pool) {
+				count += pool.idle.size() + pool.borrowed.size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns a data source borrowing connections from this pool.
+	 *
+	 * @param reusable true if connections are given back to the pool once closed, false if they are closed
+	 */
+	public DataSource dataSource(boolean reusable) {
+		return reusable ? reusableDataSource : sessionDataSource;
+	}
+
+	/**
+	 * Borrows a connection. Closing it gives it back to the pool if reusable, else closes the physical connection.
+	 */
+	public Connection getConnection(boolean reusable) throws SQLException {
+		PooledConnection pooled;
+		while (true) {
+			synchronized (this) {
+				pooled = idle.pollFirst();
+			}
+			if (pooled == null) {
+				pooled = open();
+				break;
+			}
+			if (!ConnectionUtils.isConnectionClosed(((OraclePooledConnection) pooled).getPhysicalHandle()))
+				break;
+			log.debug("Discarding closed idle connection to " + url);
+			discard(pooled);
+		}
+
+		Connection conn;
+		try {
+			synchronized (this) {
+				borrowed.put(pooled, reusable);
+			}
+			conn = pooled.getConnection();
+		} catch (SQLException sqlE) {
+			synchronized (this) {
+				borrowed.remove(pooled);
+			}
+			discard(pooled);
+			throw sqlE;
+		}
+		maybeOpenIdle();
+		return conn;
+	}
+
+	@Override
+	public void connectionClosed(ConnectionEvent event) {
+		PooledConnection pooled = (PooledConnection) event.getSource();
+		Boolean reusable;
+		synchronized (this) {
+			reusable = borrowed.remove(pooled);
+		}
+		if (reusable == null)
+			return;
+
+		if (reusable) {
+			try {
+				Connection physical = ((OraclePooledConnection) pooled).getPhysicalHandle();
+				// Work left uncommitted by the client must not be committed by the next one
+				physical.rollback();
+				synchronized (this) {
+					if (!closed && idle.size() < maxIdle) {
+						idle.addFirst(pooled);
+						return;
+					}
+				}
+			} catch (SQLException sqlE) {
+				log.debug("Discarding connection to " + url + ": " + sqlE.getMessage());
+			}
+		}
+		discard(pooled);
+		maybeOpenIdle();
+	}
+
+	@Override
+	public void connectionErrorOccurred(ConnectionEvent event) {
+		PooledConnection pooled = (PooledConnection) event.getSource();
+		synchronized (this) {
+			borrowed.remove(pooled);
+			idle.remove(pooled);
+		}
+		discard(pooled);
+	}
+
+	// Closes idle connections, borrowed ones are closed when given back
+	private void close() {
+		List<PooledConnection> toClose;
+		synchronized (this) {
+			closed = true;
+			toClose = new ArrayList<>(idle);
+			idle.clear();
+		}
+		toClose.forEach(this::discard);
+		log.info("Closed connection pool to " + url);
+	}
+
+	private PooledConnection open() throws SQLException {
+		PooledConnection pooled = dataSource.getPooledConnection();
+		pooled.addConnectionEventListener(this);
+		return pooled;
+	}
+
+	private void discard(PooledConnection pooled) {
+		try {
+			pooled.removeConnectionEventListener(this);
+			pooled.close();
+		} catch (SQLException sqlE) {
+			// do nothing
+		}
+	}
+
+	// Opens connections in background until initialSize connections are idle
+	private void maybeOpenIdle() {
+		int toOpen;
+		synchronized (this) {
+			toOpen = initialSize - idle.size() - opening;
+			if (closed || toOpen <= 0)
+				return;
+			opening += toOpen;
+		}
+		final int count = toOpen;
+		new KafkaThread(CONNECTION_POOL_THREAD_PREFIX, () -> {
+			int opened = 0;
+			try {
+				for (; opened < count; opened++) {
+					PooledConnection pooled = open();
+					boolean keep;
+					synchronized (this) {
+						opening--;
+						keep = !closed;
+						if (keep)
+							idle.addLast(pooled);
+					}
+					if (!keep)
+						discard(pooled);
+				}
+				log.debug("Opened " + count + " idle connections to " + url);
+			} catch (SQLException sqlE) {
+				log.warn("Failed to open idle connection to " + url + ": " + sqlE.getMessage());
+			} finally {
+				synchronized (this) {
+					opening -= count - opened;
+				}
+			}
+		}, true).start();
+	}
+
+	private final class PoolDataSource implements DataSource {
+		private final boolean reusable;
+
+		private PoolDataSource(boolean reusable) {
+			this.reusable = reusable;
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			return ConnectionPool.this.getConnection(reusable);
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			throw new SQLFeatureNotSupportedException("Connections of the pool use the credentials of oracle.net.tns_admin");
+		}
+
+		@Override
+		public PrintWriter getLogWriter() throws SQLException {
+			return dataSource.getLogWriter();
+		}
+
+		@Override
+		public void setLogWriter(PrintWriter out) throws SQLException {
+			dataSource.setLogWriter(out);
+		}
+
+		@Override
+		public void setLoginTimeout(int seconds) throws SQLException {
+			dataSource.setLoginTimeout(seconds);
+		}
+
+		@Override
+		public int getLoginTimeout() throws SQLException {
+			return dataSource.getLoginTimeout();
+		}
+
+		@Override
+		public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException();
+		}
+
+		@Override
+		public <T> T unwrap(Class<T> iface) throws SQLException {
+			if (iface.isInstance(this))
+				return iface.cast(this);
+			throw new SQLException("Not a wrapper for " + iface.getName());
+		}
+
+		@Override
+		public boolean isWrapperFor(Class<?> iface) throws SQLException {
+			return iface.isInstance(this);
+		}
+	}
+}
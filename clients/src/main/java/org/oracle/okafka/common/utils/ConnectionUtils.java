@@ -9,8 +9,10 @@ package org.oracle.okafka.common.utils;
 
 import java.io.File;
 import java.io.FileReader;
+import java.math.BigDecimal;
 import java.net.InetSocketAddress;
 import java.nio.ByteOrder;
+import java.sql.Array;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -26,6 +28,7 @@ import javax.jms.JMSException;
 import javax.jms.TopicSession;
 import javax.jms.TopicConnection;
 import javax.jms.TopicConnectionFactory;
+import javax.sql.DataSource;
 
 import org.oracle.okafka.clients.CommonClientConfigs;
 import org.oracle.okafka.common.Node;
@@ -37,6 +40,7 @@ import org.oracle.okafka.common.errors.RecordNotFoundSQLException;
 import org.oracle.okafka.common.utils.MessageIdConverter.OKafkaOffset;
 import org.slf4j.Logger;
 
+import oracle.jdbc.datasource.OracleCommonDataSource;
 import oracle.jdbc.internal.OracleConnection;
 import oracle.jdbc.pool.OracleDataSource;
 import oracle.jms.AQjmsFactory;
@@ -65,6 +69,11 @@ public class ConnectionUtils {
 	
 	public static OracleDataSource getOracleDataSource(Node node, AbstractConfig configs, Logger log) throws SQLException  {
 		OracleDataSource dataSource=new OracleDataSource();
+		configureDataSource(dataSource, node, configs, log);
+		return dataSource;
+	}
+
+	static void configureDataSource(OracleCommonDataSource dataSource, Node node, AbstractConfig configs, Logger log) throws SQLException  {
 		String dbUrl = createUrl(node, configs);
 		dataSource.setURL(dbUrl);
 		log.info("Connecting to Oracle Database : "+ dbUrl);
@@ -74,10 +83,21 @@ public class ConnectionUtils {
 			if(!node.isBootstrap())
 				dataSource.setConnectionProperty("oracle.jdbc.targetInstanceName", node.instanceName());
 		}
-		return dataSource;
+	}
+
+	private static boolean isPooled(AbstractConfig configs) {
+		return configs.getBoolean(CommonClientConfigs.ORACLE_CONNECTION_POOL);
 	}
 	
-	public static Connection createJDBCConnection(Node node, AbstractConfig configs, Logger log) throws SQLException{
+	/**
+	 * Creates a connection to the node, borrowed from the JVM wide {@link ConnectionPool} if 
+	 * <code>oracle.connection.pool</code> is set. Closing a borrowed connection gives it back to the pool.
+	 * 
+	 * @param client client borrowing the connection, which releases the pool with {@link ConnectionPool#release(Object)} when closed
+	 */
+	public static Connection createJDBCConnection(Node node, AbstractConfig configs, Logger log, Object client) throws SQLException{
+			if(isPooled(configs))
+				return ConnectionPool.get(node, configs, log, client).getConnection(true);
 			Connection conn =  getOracleDataSource(node, configs, log).getConnection();
 			return conn;
 	}
@@ -98,13 +118,27 @@ public class ConnectionUtils {
 		return conn; 
 	}
 
-	public static TopicConnection createTopicConnection(Node node,AbstractConfig configs, Logger log) throws JMSException {
+	public static TopicConnection createTopicConnection(Node node,AbstractConfig configs, Logger log, Object client) throws JMSException {
+		return createTopicConnection(node, configs, log, true, client);
+	}
+
+	/**
+	 * Creates a topic connection to the node. If <code>oracle.connection.pool</code> is set, database connections of its
+	 * sessions are borrowed from the JVM wide {@link ConnectionPool}.
+	 * 
+	 * @param reusable false if database sessions keep state of this client, and must not be given back to the pool
+	 * @param client client of the connection, which releases the pool with {@link ConnectionPool#release(Object)} when closed
+	 */
+	public static TopicConnection createTopicConnection(Node node,AbstractConfig configs, Logger log, boolean reusable, Object client) throws JMSException {
 		if(node==null) 
 			throw new ConnectionException("Invalid argument: Node cannot be null");
 
-		OracleDataSource dataSource;
+		DataSource dataSource;
 		try {
-			dataSource = getOracleDataSource(node, configs, log);
+			if(isPooled(configs))
+				dataSource = ConnectionPool.get(node, configs, log, client).dataSource(reusable);
+			else
+				dataSource = getOracleDataSource(node, configs, log);
 		}
 		catch(SQLException sql) {
 			throw new JMSException(sql.toString(), String.valueOf(sql.getErrorCode()));
@@ -278,6 +312,17 @@ public class ConnectionUtils {
 		return bArray;
 	}
 
+	/**
+	 * Writes the 4 byte representation of value into dest starting at offset, in the same byte order as {@link #convertTo4Byte(int)}
+	 */
+	public static void writeInt(byte[] dest, int offset, int value)
+	{
+		dest[offset] = (byte)( value >>> 24 );
+		dest[offset + 1] = (byte)( value >>> 16 );
+		dest[offset + 2] = (byte)( value >>> 8 );
+		dest[offset + 3] = (byte)( value );
+	}
+
 	public static int convertToInt(byte[] bInt)
 	{
 		return (((bInt[0] & 0xff) << 24) | 
@@ -372,6 +417,97 @@ public class ConnectionUtils {
 		return msgIdExists;
 	}
 	
+	/*
+	 * Counts, for each message id, the messages with that id in the partition of the queue table holding it. 
+	 * Message ids are passed without the "ID:" prefix.
+	 */
+	private static final String MSGIDS_EXIST_QRY = 
+			"DECLARE " +
+			"    queue_names SYS.ODCIVARCHAR2LIST := ?; " +
+			"    shard_nums SYS.ODCINUMBERLIST := ?; " +
+			"    subshard_nums SYS.ODCINUMBERLIST := ?; " +
+			"    msg_ids SYS.ODCIVARCHAR2LIST := ?; " +
+			"    msg_counts SYS.ODCINUMBERLIST := SYS.ODCINUMBERLIST(); " +
+			"    partition_name VARCHAR2(128); " +
+			"    msgCount NUMBER; " +
+			"BEGIN " +
+			"    msg_counts.EXTEND(msg_ids.COUNT); " +
+			"    FOR i IN 1 .. msg_ids.COUNT LOOP " +
+			"        BEGIN " +
+			"            SELECT LOWER(PARTNAME) INTO partition_name " +
+			"            FROM USER_QUEUE_PARTITION_MAP " +
+			"            WHERE QUEUE_TABLE = queue_names(i) AND SHARD = shard_nums(i) AND SUBSHARD = subshard_nums(i); " +
+			"            EXECUTE IMMEDIATE " +
+			"                'SELECT COUNT(*) FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_names(i)) || " +
+			"                ' PARTITION (' || DBMS_ASSERT.SIMPLE_SQL_NAME(partition_name) || ') WHERE MSGID = HEXTORAW(:msg_id)' " +
+			"            INTO msgCount USING msg_ids(i); " +
+			"            msg_counts(i) := msgCount; " +
+			"        EXCEPTION " +
+			"            WHEN NO_DATA_FOUND THEN " +
+			"                msg_counts(i) := 0; " +
+			"        END; " +
+			"    END LOOP; " +
+			"    ? := msg_counts; " +
+			"END;";
+
+	/**
+	 * Prepares the statement used by {@link #checkIfMsgIdsExist(CallableStatement, List, List, Logger)}. 
+	 * Statement can be reused for any number of checks on this connection.
+	 */
+	public static CallableStatement prepareMsgIdsExistCall(Connection con) throws SQLException
+	{
+		return con.prepareCall(MSGIDS_EXIST_QRY);
+	}
+
+	/**
+	 * Checks in one round trip whether each of the given message ids exists in the corresponding topic.
+	 * 
+	 * @param stmt statement prepared with {@link #prepareMsgIdsExistCall(Connection)}
+	 * @param topicNames topic of each message id
+	 * @param msgIds message ids, with or without "ID:" prefix
+	 * @return for each message id, true if it exists
+	 */
+	public static boolean[] checkIfMsgIdsExist(CallableStatement stmt, List<String> topicNames, List<String> msgIds, Logger log) throws SQLException
+	{
+		int count = msgIds.size();
+		String[] queueNames = new String[count];
+		BigDecimal[] shardNums = new BigDecimal[count];
+		BigDecimal[] subShardNums = new BigDecimal[count];
+		String[] hexMsgIds = new String[count];
+
+		for(int i = 0; i < count; i++)
+		{
+			String msgId = msgIds.get(i);
+			if(!msgId.startsWith("ID:"))
+				msgId = "ID:" + msgId;
+			OKafkaOffset okafkaOffset = MessageIdConverter.getOKafkaOffset(msgId, true, true);
+			queueNames[i] = topicNames.get(i);
+			shardNums[i] = BigDecimal.valueOf(okafkaOffset.partitionId());
+			subShardNums[i] = BigDecimal.valueOf(okafkaOffset.subPartitionId());
+			hexMsgIds[i] = msgId.substring(3);
+		}
+
+		OracleConnection oConn = stmt.getConnection().unwrap(OracleConnection.class);
+		stmt.setArray(1, oConn.createOracleArray("SYS.ODCIVARCHAR2LIST", queueNames));
+		stmt.setArray(2, oConn.createOracleArray("SYS.ODCINUMBERLIST", shardNums));
+		stmt.setArray(3, oConn.createOracleArray("SYS.ODCINUMBERLIST", subShardNums));
+		stmt.setArray(4, oConn.createOracleArray("SYS.ODCIVARCHAR2LIST", hexMsgIds));
+		stmt.registerOutParameter(5, Types.ARRAY, "SYS.ODCINUMBERLIST");
+		stmt.execute();
+
+		boolean[] exists = new boolean[count];
+		Array msgCounts = stmt.getArray(5);
+		try {
+			Object[] counts = (Object[])msgCounts.getArray();
+			for(int i = 0; i < count && i < counts.length; i++)
+				exists[i] = counts[i] != null && ((Number)counts[i]).intValue() != 0;
+		} finally {
+			msgCounts.free();
+		}
+		log.debug("Checked " + count + " message ids in one call");
+		return exists;
+	}
+
 	public static String getConnectedService(Connection conn)
 	{
 		String serviceName  = null;
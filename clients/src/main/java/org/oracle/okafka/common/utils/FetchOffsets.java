@@ -1,134 +1,120 @@
 package org.oracle.okafka.common.utils;
 
+import java.math.BigDecimal;
+import java.sql.Array;
 import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Timestamp;
 import java.sql.Types;
-import java.time.Instant;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.oracle.okafka.common.requests.ListOffsetsRequest;
+import org.oracle.okafka.common.requests.ListOffsetsRequest.ListOffsetsPartition;
 import org.oracle.okafka.common.requests.ListOffsetsResponse.ListOffsetsPartitionResponse;
 
+import oracle.jdbc.OracleConnection;
+
 public class FetchOffsets {
 	
-	private static final String EARLIEST_OFFSET_PLSQL =
-					"DECLARE " + 
-				    "    shard_num NUMBER := ?; " + 
-				    "    queue_name VARCHAR2(128) := ?; " + 
-				    "    partition_name VARCHAR2(50); " + 
-				    "    msg_id RAW(16); " + 
-				    "BEGIN " + 
-				    "    SELECT LOWER(PARTNAME) INTO partition_name " + 
-				    "    FROM USER_QUEUE_PARTITION_MAP " + 
-				    "    WHERE QUEUE_TABLE = queue_name AND SHARD = shard_num AND SUBSHARD = ( " + 
-				    "        SELECT MIN(SUBSHARD) " + 
-				    "        FROM USER_QUEUE_PARTITION_MAP " + 
-				    "        WHERE QUEUE_TABLE = queue_name AND SHARD = shard_num " + 
-				    "    ); " + 
-				    "    EXECUTE IMMEDIATE " + 
-			        "        'SELECT MIN(MSGID) " +
-			        "         FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_name) || ' PARTITION (' || partition_name || ') " +
-			        "         WHERE ENQUEUE_TIME = (SELECT MIN(ENQUEUE_TIME) FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_name) || ' PARTITION (' || partition_name || '))' " +
-			        "    INTO msg_id; " +
-				    "    ? := msg_id; " + 
-				    "EXCEPTION " + 
-				    "    WHEN OTHERS THEN " + 
-				    "        RAISE; " + 
-				    "END; ";
-	
-	private static final String LATEST_OFFSET_PLSQL = 
-					"DECLARE " +
-			        "    shard_num NUMBER := ?; " +
-			        "    queue_name VARCHAR2(128) := ?; " +
-			        "    partition_name VARCHAR2(50); " +
-			        "    msg_id RAW(16); " +
-			        "BEGIN " +
-			        "    SELECT LOWER(PARTNAME) INTO partition_name " +
-			        "    FROM USER_QUEUE_PARTITION_MAP " +
-			        "    WHERE QUEUE_TABLE = queue_name AND SHARD = shard_num AND SUBSHARD = ( " +
-			        "        SELECT MAX(SUBSHARD) " +
-			        "        FROM USER_QUEUE_PARTITION_MAP " +
-			        "        WHERE QUEUE_TABLE = queue_name AND SHARD = shard_num " +
-			        "    ); " +
-			        "    EXECUTE IMMEDIATE " +
-			        "        'SELECT MAX(MSGID) " +
-			        "         FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_name) || ' PARTITION (' || partition_name || ') " +
-			        "         WHERE ENQUEUE_TIME = (SELECT MAX(ENQUEUE_TIME) FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_name) || ' PARTITION (' || partition_name || '))' " +
-			        "    INTO msg_id; " +
-			        "    ? := msg_id; " +
-			        "EXCEPTION " +
-			        "    WHEN OTHERS THEN " +
-			        "        RAISE; " +
-			        "END;";
-
-	private static final String OFFSET_BY_TIMESTAMP_PLSQL = 
+	/*
+	 * Looks up, for each shard, the message of the requested offset. A timestamp of -2 (earliest) selects the first
+	 * message of the oldest subshard, -1 (latest) and -3 (max timestamp) the last message of the newest subshard, and
+	 * any other timestamp the first message enqueued at or after it, in milliseconds since epoch. Returns, for each shard,
+	 * the message id and its enqueue time in milliseconds since epoch, or NULL if there is no such message.
+	 */
+	private static final String OFFSETS_PLSQL =
 					"DECLARE " +
-			        "    shard_num NUMBER := ?; " +
 			        "    queue_name VARCHAR2(128) := ?; " +
-			        "    user_timestamp TIMESTAMP(6) WITH TIME ZONE := TO_TIMESTAMP_TZ(?, 'DD-MON-YY HH.MI.SSXFF AM TZR'); " +
-			        "    partition_list SYS.ODCIVARCHAR2LIST := SYS.ODCIVARCHAR2LIST(); " +
-			        "    next_timestamp TIMESTAMP(6) WITH TIME ZONE; " +
+			        "    shard_nums SYS.ODCINUMBERLIST := ?; " +
+			        "    timestamps SYS.ODCINUMBERLIST := ?; " +
+			        "    msg_ids SYS.ODCIRAWLIST := SYS.ODCIRAWLIST(); " +
+			        "    enqueue_times SYS.ODCINUMBERLIST := SYS.ODCINUMBERLIST(); " +
+			        "    partition_list SYS.ODCIVARCHAR2LIST; " +
+			        "    partition_name VARCHAR2(128); " +
+			        "    search_time TIMESTAMP(6) WITH TIME ZONE; " +
+			        "    enqueue_time TIMESTAMP(6) WITH TIME ZONE; " +
 			        "    msg_id RAW(16); " +
-			        "    found BOOLEAN := FALSE; " +
+			        "    epoch TIMESTAMP(6) WITH TIME ZONE := TIMESTAMP '1970-01-01 00:00:00 +00:00'; " +
+			        "    FUNCTION to_millis(t TIMESTAMP WITH TIME ZONE) RETURN NUMBER IS " +
+			        "        d INTERVAL DAY(9) TO SECOND(6) := t - epoch; " +
+			        "    BEGIN " +
+			        "        RETURN EXTRACT(DAY FROM d) * 86400000 + EXTRACT(HOUR FROM d) * 3600000 " +
+			        "            + EXTRACT(MINUTE FROM d) * 60000 + TRUNC(EXTRACT(SECOND FROM d) * 1000); " +
+			        "    END; " +
 			        "BEGIN " +
-			        "    SELECT LOWER(PARTNAME) " +
-			        "    BULK COLLECT INTO partition_list " +
-			        "    FROM USER_QUEUE_PARTITION_MAP " +
-			        "    WHERE QUEUE_TABLE = queue_name AND SHARD = shard_num; " +
-			        "    FOR i IN 1..partition_list.COUNT LOOP " +
-			        "        BEGIN " +
-			        "            EXECUTE IMMEDIATE " +
-			        "                'SELECT MSGID, ENQUEUE_TIME " +
-			        "                 FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_name) || ' PARTITION (' || partition_list(i) || ') " +
-			        "                 WHERE ENQUEUE_TIME >= :1 " +
-			        "                 ORDER BY ENQUEUE_TIME FETCH FIRST 1 ROW ONLY' " +
-			        "            INTO msg_id, next_timestamp " +
-			        "            USING user_timestamp; " +
-			        "            found := TRUE; " +
-			        "            EXIT; " +
-			        "        EXCEPTION " +
-			        "            WHEN NO_DATA_FOUND THEN " +
-			        "                NULL; " +
-			        "        END; " +
+			        "    msg_ids.EXTEND(shard_nums.COUNT); " +
+			        "    enqueue_times.EXTEND(shard_nums.COUNT); " +
+			        "    FOR i IN 1 .. shard_nums.COUNT LOOP " +
+			        "        msg_id := NULL; " +
+			        "        enqueue_time := NULL; " +
+			        "        IF timestamps(i) >= 0 THEN " +
+			        "            search_time := epoch + NUMTODSINTERVAL(timestamps(i) / 1000, 'SECOND'); " +
+			        "            SELECT LOWER(PARTNAME) " +
+			        "            BULK COLLECT INTO partition_list " +
+			        "            FROM USER_QUEUE_PARTITION_MAP " +
+			        "            WHERE QUEUE_TABLE = queue_name AND SHARD = shard_nums(i) " +
+			        "            ORDER BY SUBSHARD; " +
+			        "            FOR j IN 1 .. partition_list.COUNT LOOP " +
+			        "                BEGIN " +
+			        "                    EXECUTE IMMEDIATE " +
+			        "                        'SELECT MSGID, ENQUEUE_TIME " +
+			        "                         FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_name) || ' PARTITION (' || partition_list(j) || ') " +
+			        "                         WHERE ENQUEUE_TIME >= :1 " +
+			        "                         ORDER BY ENQUEUE_TIME, MSGID FETCH FIRST 1 ROW ONLY' " +
+			        "                    INTO msg_id, enqueue_time " +
+			        "                    USING search_time; " +
+			        "                    EXIT; " +
+			        "                EXCEPTION " +
+			        "                    WHEN NO_DATA_FOUND THEN " +
+			        "                        NULL; " +
+			        "                END; " +
+			        "            END LOOP; " +
+			        "        ELSE " +
+			        "            BEGIN " +
+			        "                IF timestamps(i) = -2 THEN " +
+			        "                    SELECT LOWER(PARTNAME) INTO partition_name " +
+			        "                    FROM USER_QUEUE_PARTITION_MAP " +
+			        "                    WHERE QUEUE_TABLE = queue_name AND SHARD = shard_nums(i) AND SUBSHARD = ( " +
+			        "                        SELECT MIN(SUBSHARD) " +
+			        "                        FROM USER_QUEUE_PARTITION_MAP " +
+			        "                        WHERE QUEUE_TABLE = queue_name AND SHARD = shard_nums(i) " +
+			        "                    ); " +
+			        "                    EXECUTE IMMEDIATE " +
+			        "                        'SELECT MSGID, ENQUEUE_TIME " +
+			        "                         FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_name) || ' PARTITION (' || partition_name || ') " +
+			        "                         ORDER BY ENQUEUE_TIME, MSGID FETCH FIRST 1 ROW ONLY' " +
+			        "                    INTO msg_id, enqueue_time; " +
+			        "                ELSE " +
+			        "                    SELECT LOWER(PARTNAME) INTO partition_name " +
+			        "                    FROM USER_QUEUE_PARTITION_MAP " +
+			        "                    WHERE QUEUE_TABLE = queue_name AND SHARD = shard_nums(i) AND SUBSHARD = ( " +
+			        "                        SELECT MAX(SUBSHARD) " +
+			        "                        FROM USER_QUEUE_PARTITION_MAP " +
+			        "                        WHERE QUEUE_TABLE = queue_name AND SHARD = shard_nums(i) " +
+			        "                    ); " +
+			        "                    EXECUTE IMMEDIATE " +
+			        "                        'SELECT MSGID, ENQUEUE_TIME " +
+			        "                         FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_name) || ' PARTITION (' || partition_name || ') " +
+			        "                         ORDER BY ENQUEUE_TIME DESC, MSGID DESC FETCH FIRST 1 ROW ONLY' " +
+			        "                    INTO msg_id, enqueue_time; " +
+			        "                END IF; " +
+			        "            EXCEPTION " +
+			        "                WHEN NO_DATA_FOUND THEN " +
+			        "                    NULL; " +
+			        "            END; " +
+			        "        END IF; " +
+			        "        msg_ids(i) := msg_id; " +
+			        "        IF enqueue_time IS NOT NULL THEN " +
+			        "            enqueue_times(i) := to_millis(enqueue_time); " +
+			        "        END IF; " +
 			        "    END LOOP; " +
-			        "    IF NOT found THEN " +
-			        "        RAISE_APPLICATION_ERROR(20003, 'No messages in the given partition'); " +
-			        "    END IF; " +
-			        "    ? := msg_id; " +
-			        "    ? := next_timestamp; " +
-			        "EXCEPTION " +
-			        "    WHEN OTHERS THEN " +
-			        "        RAISE; " +
-			        "END;";
-	
-	private static final String MAX_TIMESTAMP_OFFSET_PLSQL = 
-					"DECLARE " +
-			        "    shard_num NUMBER := ?; " +
-			        "    queue_name VARCHAR2(128) := ?; " +
-			        "    partition_name VARCHAR2(50); " +
-			        "    msg_id RAW(16); " +
-			        "    enqueue_time TIMESTAMP(6) WITH TIME ZONE; " +
-			        "BEGIN " +
-			        "    SELECT LOWER(PARTNAME) INTO partition_name " +
-			        "    FROM USER_QUEUE_PARTITION_MAP " +
-			        "    WHERE QUEUE_TABLE = queue_name AND SHARD = shard_num AND SUBSHARD = ( " +
-			        "        SELECT MAX(SUBSHARD) " +
-			        "        FROM USER_QUEUE_PARTITION_MAP " +
-			        "        WHERE QUEUE_TABLE = queue_name AND SHARD = shard_num " +
-			        "    ); " +
-			        "    EXECUTE IMMEDIATE " +
-			        "        'SELECT MSGID, ENQUEUE_TIME " +
-			        "         FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_name) || ' PARTITION (' || partition_name || ') " +
-			        "         WHERE ENQUEUE_TIME = (SELECT MAX(ENQUEUE_TIME) FROM ' || DBMS_ASSERT.SQL_OBJECT_NAME(queue_name) || ' PARTITION (' || partition_name || ')) " +
-			        "         ORDER BY MSGID DESC FETCH FIRST 1 ROW ONLY' "+
-			        "    INTO msg_id, enqueue_time; " +
-			        "    ? := msg_id; " +
-			        "    ? := enqueue_time; " +
-			        "EXCEPTION " +
-			        "    WHEN OTHERS THEN " +
-			        "        RAISE; " +
+			        "    ? := msg_ids; " +
+			        "    ? := enqueue_times; " +
 			        "END;";
 
 	private static final String COMMITTED_OFFSET_PLSQL = 
@@ -193,186 +179,124 @@ public class FetchOffsets {
 	        "    ? := seq_num; " +
 		    "END;";
 	
-	public static ListOffsetsPartitionResponse fetchEarliestOffset(String topic, int partition, Connection jdbcConn)
-			throws SQLException {
-		ListOffsetsPartitionResponse response = new ListOffsetsPartitionResponse().setPartitionIndex(partition);
-		CallableStatement cStmt = null;
-		
-		try {
-			cStmt = jdbcConn.prepareCall(EARLIEST_OFFSET_PLSQL);
-			cStmt.setInt(1, partition * 2);
-			cStmt.setString(2, topic.toUpperCase());
-
-			cStmt.registerOutParameter(3, Types.BINARY);
-
-			cStmt.executeQuery();
-
-			byte[] msgIdBytes = cStmt.getBytes(3);
-
-			StringBuilder msgIdHex = new StringBuilder();
-			for (byte b : msgIdBytes) {
-				msgIdHex.append(String.format("%02X", b));
-			}
-
-			long offset = MessageIdConverter.getOKafkaOffset("ID:" + msgIdHex, true, true).getOffset();
-			response.setOffset(offset);
+	// Messages enqueued and not yet dequeued by the subscriber, per shard and instance
+	private static final String BACKLOG_QUERY =
+			"SELECT s.SHARD_ID, SUM(s.ENQUEUED_MSGS - s.DEQUEUED_MSGS) " +
+			"FROM GV$AQ_SHARDED_SUBSCRIBER_STAT s, USER_QUEUES q, USER_QUEUE_SUBSCRIBERS u " +
+			"WHERE q.NAME = ? AND u.QUEUE_NAME = q.NAME AND u.CONSUMER_NAME = ? " +
+			"AND s.QUEUE_ID = q.QID AND s.SUBSCRIBER_ID = u.SUBSCRIBER_ID " +
+			"GROUP BY s.SHARD_ID";
+
+	/**
+	 * Fetches the offsets of the given partitions of a topic in one round trip. The timestamp of each partition is
+	 * {@link ListOffsetsRequest#EARLIEST_TIMESTAMP}, {@link ListOffsetsRequest#LATEST_TIMESTAMP},
+	 * {@link ListOffsetsRequest#MAX_TIMESTAMP} or the timestamp to search for.
+	 * 
+	 * An empty partition has offset 0 for earliest and latest, and no offset nor timestamp otherwise. 
+	 * A partition without message enqueued at or after the timestamp searched has no offset nor timestamp.
+	 * 
+	 * @return response for each partition, in the order of the given partitions
+	 */
+	public static List<ListOffsetsPartitionResponse> fetchOffsets(String topic, List<ListOffsetsPartition> partitions,
+			Connection jdbcConn) throws SQLException {
 
-		} catch (SQLException sqle) {
-			if (sqle.getErrorCode() == 1403) {
-				response.setOffset(0);
-			} else
-				throw sqle;
-		} finally {
-			try {
-				if (cStmt != null)
-					cStmt.close();
-			} catch (Exception ex) {
-				// do nothing
-			}
+		int count = partitions.size();
+		BigDecimal[] shardNums = new BigDecimal[count];
+		BigDecimal[] timestamps = new BigDecimal[count];
+		for (int i = 0; i < count; i++) {
+			shardNums[i] = BigDecimal.valueOf(partitions.get(i).partitionIndex() * 2);
+			timestamps[i] = BigDecimal.valueOf(partitions.get(i).timestamp());
 		}
-		return response;
-	}
-
-	public static ListOffsetsPartitionResponse fetchLatestOffset(String topic, int partition, Connection jdbcConn)
-			throws SQLException {
 
-		ListOffsetsPartitionResponse response = new ListOffsetsPartitionResponse().setPartitionIndex(partition);
+		List<ListOffsetsPartitionResponse> responses = new ArrayList<>(count);
 		CallableStatement cStmt = null;
-		
+		Array msgIdArray = null;
+		Array enqueueTimeArray = null;
 		try {
-			cStmt = jdbcConn.prepareCall(LATEST_OFFSET_PLSQL);
-			cStmt.setInt(1, partition * 2);
-			cStmt.setString(2, topic.toUpperCase());
-
-			cStmt.registerOutParameter(3, Types.BINARY);
-
-			cStmt.executeQuery();
-
-			byte[] msgIdBytes = cStmt.getBytes(3);
-
-			StringBuilder msgIdHex = new StringBuilder();
-			for (byte b : msgIdBytes) {
-				msgIdHex.append(String.format("%02X", b));
-			}
-			
-			long offset = MessageIdConverter.getOKafkaOffset("ID:" + msgIdHex, true, true).getOffset();
-			response.setOffset(offset+1);
-
-		} catch (SQLException sqle) {
-			if (sqle.getErrorCode() == 1403) {
-				response.setOffset(0);
-			} else
-				throw sqle;
-		} finally {
-			try {
-				if (cStmt != null)
-					cStmt.close();
-			} catch (Exception ex) {
-				// do nothing
-			}
-		}
-		return response;
-
-	}
-
-	public static ListOffsetsPartitionResponse fetchOffsetByTimestamp(String topic, int partition, long timestamp,
-			Connection jdbcConn) throws SQLException {
-
-		ListOffsetsPartitionResponse response = new ListOffsetsPartitionResponse().setPartitionIndex(partition);
-		CallableStatement cStmt = null;
-
-		try {
-			cStmt = jdbcConn.prepareCall(OFFSET_BY_TIMESTAMP_PLSQL);
-			cStmt.setInt(1, partition * 2);
-			cStmt.setString(2, topic.toUpperCase());
-			Instant instant = Instant.ofEpochMilli(timestamp);
-
-			DateTimeFormatter formatter = DateTimeFormatter
-					.ofPattern("dd-MMM-yy hh.mm.ss.SSSSSS a", java.util.Locale.ENGLISH).withZone(ZoneOffset.UTC);
-
-			String okafkaTimestampUTC = formatter.format(instant) + " " + "+00:00";
-			cStmt.setString(3, okafkaTimestampUTC.toUpperCase());
-
-			cStmt.registerOutParameter(4, Types.BINARY);
-			cStmt.registerOutParameter(5, Types.TIMESTAMP_WITH_TIMEZONE);
-
-			cStmt.executeQuery();
-
-			byte[] msgIdBytes = cStmt.getBytes(4);
-			Timestamp enqueueTimestamp = cStmt.getTimestamp(5);
-
-			StringBuilder msgIdHex = new StringBuilder();
-			for (byte b : msgIdBytes) {
-				msgIdHex.append(String.format("%02X", b));
+			OracleConnection oConn = jdbcConn.unwrap(OracleConnection.class);
+			cStmt = jdbcConn.prepareCall(OFFSETS_PLSQL);
+			cStmt.setString(1, topic.toUpperCase());
+			cStmt.setArray(2, oConn.createOracleArray("SYS.ODCINUMBERLIST", shardNums));
+			cStmt.setArray(3, oConn.createOracleArray("SYS.ODCINUMBERLIST", timestamps));
+			cStmt.registerOutParameter(4, Types.ARRAY, "SYS.ODCIRAWLIST");
+			cStmt.registerOutParameter(5, Types.ARRAY, "SYS.ODCINUMBERLIST");
+
+			cStmt.execute();
+
+			msgIdArray = cStmt.getArray(4);
+			enqueueTimeArray = cStmt.getArray(5);
+			Object[] msgIds = (Object[]) msgIdArray.getArray();
+			Object[] enqueueTimes = (Object[]) enqueueTimeArray.getArray();
+
+			for (int i = 0; i < count; i++) {
+				ListOffsetsPartition partition = partitions.get(i);
+				long timestamp = partition.timestamp();
+				ListOffsetsPartitionResponse response = new ListOffsetsPartitionResponse()
+						.setPartitionIndex(partition.partitionIndex());
+				byte[] msgIdBytes = (byte[]) msgIds[i];
+
+				if (msgIdBytes == null) {
+					if (timestamp == ListOffsetsRequest.EARLIEST_TIMESTAMP || timestamp == ListOffsetsRequest.LATEST_TIMESTAMP)
+						response.setOffset(0);
+				} else {
+					long offset = MessageIdConverter.getOffset(msgIdBytes);
+					if (timestamp == ListOffsetsRequest.LATEST_TIMESTAMP)
+						response.setOffset(offset + 1);
+					else if (timestamp == ListOffsetsRequest.EARLIEST_TIMESTAMP)
+						response.setOffset(offset);
+					else
+						response.setOffset(offset).setTimestamp(((Number) enqueueTimes[i]).longValue());
+				}
+				responses.add(response);
 			}
-
-			long offset = MessageIdConverter.getOKafkaOffset("ID:" + msgIdHex, true, true).getOffset();
-			long okafkaTimestamp = enqueueTimestamp.toInstant().toEpochMilli();
-
-			response.setOffset(offset).setTimestamp(okafkaTimestamp);
-
-		} catch (SQLException sqle) {
-			if (sqle.getErrorCode() == 1403) {
-				// do nothing;
-			} else
-				throw sqle;
 		} finally {
 			try {
+				if (msgIdArray != null)
+					msgIdArray.free();
+				if (enqueueTimeArray != null)
+					enqueueTimeArray.free();
 				if (cStmt != null)
 					cStmt.close();
 			} catch (Exception ex) {
 				// do nothing
 			}
 		}
-		return response;
+		return responses;
 	}
-
-	public static ListOffsetsPartitionResponse fetchMaxTimestampOffset(String topic, int partition, Connection jdbcConn)
+	
+	/**
+	 * Fetches the number of messages of each partition of a topic not yet dequeued by a subscriber. A partition without
+	 * statistics has no message to dequeue and is not in the returned map. Needs SELECT privilege on
+	 * GV$AQ_SHARDED_SUBSCRIBER_STAT.
+	 * 
+	 * @return number of messages not yet dequeued, by partition
+	 */
+	public static Map<Integer, Long> fetchBacklog(String topic, String subscriberName, Connection jdbcConn)
 			throws SQLException {
 
-		ListOffsetsPartitionResponse response = new ListOffsetsPartitionResponse().setPartitionIndex(partition);
-		CallableStatement cStmt = null;
-		
+		Map<Integer, Long> backlog = new HashMap<>();
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
 		try {
-			cStmt = jdbcConn.prepareCall(MAX_TIMESTAMP_OFFSET_PLSQL);
-			cStmt.setInt(1, partition * 2);
-			cStmt.setString(2, topic.toUpperCase());
-
-			cStmt.registerOutParameter(3, Types.BINARY);
-			cStmt.registerOutParameter(4, Types.TIMESTAMP_WITH_TIMEZONE);
-
-			cStmt.executeQuery();
-
-			byte[] msgIdBytes = cStmt.getBytes(3);
-			Timestamp enqueueTimestamp = cStmt.getTimestamp(4);
-
-			StringBuilder msgIdHex = new StringBuilder();
-			for (byte b : msgIdBytes) {
-				msgIdHex.append(String.format("%02X", b));
-			}
-
-			long offset = MessageIdConverter.getOKafkaOffset("ID:" + msgIdHex, true, true).getOffset();
-			long okafkaTimestamp = enqueueTimestamp.toInstant().toEpochMilli();
-
-			response.setOffset(offset).setTimestamp(okafkaTimestamp);
-
-		} catch (SQLException sqle) {
-			if (sqle.getErrorCode() == 1403) {
-				// do nothing
-			} else
-				throw sqle;
+			stmt = jdbcConn.prepareStatement(BACKLOG_QUERY);
+			stmt.setString(1, topic.toUpperCase());
+			stmt.setString(2, subscriberName.toUpperCase());
+			rs = stmt.executeQuery();
+			while (rs.next())
+				backlog.merge(rs.getInt(1) / 2, Math.max(0, rs.getLong(2)), Long::sum);
 		} finally {
 			try {
-				if (cStmt != null)
-					cStmt.close();
+				if (rs != null)
+					rs.close();
+				if (stmt != null)
+					stmt.close();
 			} catch (Exception ex) {
 				// do nothing
 			}
 		}
-		return response;
-
+		return backlog;
 	}
-	
+
 	public static long fetchCommittedOffset(String topic, int partition, String subscriberName, Connection jdbcConn)
 			throws SQLException {
 
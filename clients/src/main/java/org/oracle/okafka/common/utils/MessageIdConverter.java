@@ -14,7 +14,87 @@ public class MessageIdConverter {
 	public static int invokeCnt =0;
 
 	public static final int DEFAULT_SUBPARTITION_SIZE = 20000;
-	
+
+	/*
+	 * Layout of the RAW(16) message id:
+	 * | SUBSHARD (8 bytes) | SHARD (4 bytes) | PRIORITY (1 byte) | ENDIAN (1 byte) | SEQUENCE (2 bytes) |
+	 * Subshard, shard and sequence are stored in the endian given by the endian byte.
+	 * The string form of a message id is "ID:" followed by the 32 hexadecimal digits of the RAW(16) value.
+	 */
+	public static final int MSG_ID_LENGTH = 16;
+	private static final int SUBSHARD_POS = 0;
+	private static final int SHARD_POS = 8;
+	private static final int ENDIAN_POS = 13;
+	private static final int SEQUENCE_POS = 14;
+	private static final byte BIG_ENDIAN = (byte)0xFF;
+	private static final byte LITTLE_ENDIAN = (byte)0x66;
+	private static final byte PDP_ENDIAN = (byte)0x99;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/*
+	 * Records of a batch envelope are carried by one message. The last record of an envelope has the offset of the message,
+	 * every other record has an offset derived from the offset of the message and the index of the record in the envelope:
+	 * | 0 (1 bit) | 1 (1 bit) | OFFSET OF THE MESSAGE (42 bits) | RECORD INDEX (20 bits) |
+	 * Offsets of messages stay below this range. Within a partition, records of an envelope are ordered before the offset of its message.
+	 */
+	public static final int ENVELOPE_INDEX_BITS = 20;
+	public static final int MAX_ENVELOPE_INDEX = (1 << ENVELOPE_INDEX_BITS) - 1;
+	private static final long ENVELOPE_OFFSET_FLAG = 1L << 62;
+	private static final long ENVELOPE_MESSAGE_MASK = (1L << 42) - 1;
+
+	/**
+	 * Returns the offset of a record of a batch envelope, other than its last record.
+	 * @param messageOffset offset of the message carrying the envelope
+	 * @param index index of the record in the envelope
+	 */
+	public static long envelopeOffset(long messageOffset, int index) {
+		return ENVELOPE_OFFSET_FLAG | ((messageOffset & ENVELOPE_MESSAGE_MASK) << ENVELOPE_INDEX_BITS) | index;
+	}
+
+	public static boolean isEnvelopeOffset(long offset) {
+		return offset >= 0 && (offset & ENVELOPE_OFFSET_FLAG) != 0;
+	}
+
+	/**
+	 * Returns the offset of the message carrying the record with the given offset.
+	 */
+	public static long messageOffset(long offset) {
+		return isEnvelopeOffset(offset) ? (offset >>> ENVELOPE_INDEX_BITS) & ENVELOPE_MESSAGE_MASK : offset;
+	}
+
+	/**
+	 * Returns the index of the record in its envelope, or -1 if the offset is the offset of a message.
+	 */
+	public static int envelopeIndex(long offset) {
+		return isEnvelopeOffset(offset) ? (int)(offset & MAX_ENVELOPE_INDEX) : -1;
+	}
+
+	/**
+	 * Returns true if the record with the first offset comes before or is the record with the second offset, both in the same partition.
+	 */
+	public static boolean notAfter(long offset, long other) {
+		long messageOffset = messageOffset(offset);
+		long otherMessageOffset = messageOffset(other);
+		if(messageOffset != otherMessageOffset)
+			return messageOffset < otherMessageOffset;
+		// The offset of the message is the offset of the last record of its envelope
+		int index = isEnvelopeOffset(offset) ? envelopeIndex(offset) : Integer.MAX_VALUE;
+		int otherIndex = isEnvelopeOffset(other) ? envelopeIndex(other) : Integer.MAX_VALUE;
+		return index <= otherIndex;
+	}
+
+	/**
+	 * Returns the offset of the last message all records of which are consumed once the record with the given offset is consumed,
+	 * or -1 if it is not known. A message is consumed once the last record of its envelope is.
+	 */
+	public static long consumedMessageOffset(long offset) {
+		if(!isEnvelopeOffset(offset))
+			return offset;
+		long messageOffset = messageOffset(offset);
+		// The previous message of the subshard. The previous message of the first one of a subshard is not known.
+		return messageOffset % DEFAULT_SUBPARTITION_SIZE > 0 ? messageOffset - 1 : -1;
+	}
+
 	/*public static long getOffset(String msgId) {
 		if(msgId.length() != 35) 
 			throw new InvalidMessageIdException("Length of message Id  is not 35");
@@ -109,16 +189,16 @@ public class MessageIdConverter {
 			if(endianIndex == OKafkaOffset.MsgIdEndian.INVALID) 
 				throw new InvalidMessageIdException("Endian of message Id '" + msgId +"' is not valid");
 			
-			int relOffset = (int)getOffset(msgId.substring(31, 35), endianIndex);
+			int relOffset = (int)getOffset(msgId, 31, 35, endianIndex);
 
 			long subPartId = -1;
 			if(getSubPartId)
-				subPartId = getOffset(msgId.substring(3, 19), endianIndex);
+				subPartId = getOffset(msgId, 3, 19, endianIndex);
 			
 			long partId = -1;
 			if (getPartId)
 			{
-				partId = getOffset(msgId.substring(19,27), endianIndex);
+				partId = getOffset(msgId, 19, 27, endianIndex);
 			}
 			OKafkaOffset okOffset = new OKafkaOffset(partId, subPartId, relOffset, endianIndex, msgId);
 			return okOffset;
@@ -128,83 +208,148 @@ public class MessageIdConverter {
 	}
 
 	/**
-	 * Converts hexadecimal string which is in specific endian format to decimal number
-	 * @param data hexadecimal string representing either subshard or sequence number in a subshard.
+	 * Converts hexadecimal digits of a message id which are in specific endian format to decimal number
+	 * @param msgId message id in string form.
+	 * @param from index of the first hexadecimal digit of either subshard, shard or sequence number in a subshard.
+	 * @param to index after the last hexadecimal digit.
 	 * @param endianIndex index representing either of big, little and pdp endian.
-	 * @return decimal representation of hexadecimal string.
+	 * @return decimal representation of hexadecimal digits.
 	 */
-	private static long getOffset(String data, OKafkaOffset.MsgIdEndian endianIndex) {
-		String builderString = null;
+	private static long getOffset(String msgId, int from, int to, OKafkaOffset.MsgIdEndian endianIndex) {
+		long value = 0;
 		switch(endianIndex) {
 		case BIG : 
-			builderString = data;
-			break;
+			for(int i = from; i < to; i += 2)
+				value = (value << 8) | hexByte(msgId, i);
+			return value;
 		case LITTLE :
-			builderString = reverse(data);
-			break;
+			for(int i = to - 2; i >= from; i -= 2)
+				value = (value << 8) | hexByte(msgId, i);
+			return value;
 		case PDP :
-			builderString = swap(data);
-			break;
-		case INVALID:
-			builderString= null;
+			for(int i = from; i < to; i += 4)
+				value = (value << 16) | (hexByte(msgId, i + 2) << 8) | hexByte(msgId, i);
+			return value;
+		default :
+			return -1;
 		}
-		if(builderString != null) 
-			return Long.parseLong(builderString, 16);
-		
-		return -1;
+	}
+
+	private static int hexByte(String msgId, int index) {
+		int high = Character.digit(msgId.charAt(index), 16);
+		int low = Character.digit(msgId.charAt(index + 1), 16);
+		if(high < 0 || low < 0)
+			throw new NumberFormatException("For input string: \"" + msgId.substring(index, index + 2) + "\"");
+		return (high << 4) | low;
+	}
+
+	/**
+	 * Returns the offset of a message from its RAW(16) message id, as returned by getJMSMessageIDAsBytes(),
+	 * without converting the message id to a string.
+	 * @param msgId RAW(16) message id.
+	 * @return offset of the message.
+	 */
+	public static long getOffset(byte[] msgId) {
+		OKafkaOffset.MsgIdEndian endian = getEndian(msgId);
+		return decode(readBytes(msgId, SUBSHARD_POS, 8), endian) * DEFAULT_SUBPARTITION_SIZE + sequence(msgId, endian);
 	}
 
 	/**
-	 * convert hexadecimal string in little endian to big endian 
-	 * @param data hexadecimal string representing either subshard or sequence number in a subshard.
-	 * @return hexadecimal string in big endian
+	 * Returns offsets of the messages of a batch from their RAW(16) message ids. Messages of a batch dequeued from the same
+	 * subshard share the subshard bytes of their message id, which are decoded only when they differ from the previous message.
+	 * Not thread safe, use one instance per batch.
 	 */
-	private static String reverse(String data) {
-		char[] builderArray = new char[data.length()];
-		int length = data.length();
-		for(int i = length-2; i >= 0 ;  i= i-2) {
-			builderArray[length -2 -i] = data.charAt(i);
-			builderArray[length -1 -i] = data.charAt(i+1);
+	public static class OffsetDecoder {
+		private long subshardBytes = 0;
+		private byte endianByte = 0;
+		private long baseOffset = -1;
+
+		public long getOffset(byte[] msgId) {
+			OKafkaOffset.MsgIdEndian endian = getEndian(msgId);
+			long rawSubshard = readBytes(msgId, SUBSHARD_POS, 8);
+			if(baseOffset < 0 || rawSubshard != subshardBytes || msgId[ENDIAN_POS] != endianByte) {
+				subshardBytes = rawSubshard;
+				endianByte = msgId[ENDIAN_POS];
+				baseOffset = decode(rawSubshard, endian) * DEFAULT_SUBPARTITION_SIZE;
+			}
+			return baseOffset + sequence(msgId, endian);
+		}
+	}
+
+	private static OKafkaOffset.MsgIdEndian getEndian(byte[] msgId) {
+		if(msgId == null || msgId.length != MSG_ID_LENGTH)
+			throw new InvalidMessageIdException("Length of message Id  is not " + MSG_ID_LENGTH + " bytes");
+		switch(msgId[ENDIAN_POS]) {
+		case BIG_ENDIAN :
+			return OKafkaOffset.MsgIdEndian.BIG;
+		case LITTLE_ENDIAN :
+			return OKafkaOffset.MsgIdEndian.LITTLE;
+		case PDP_ENDIAN :
+			return OKafkaOffset.MsgIdEndian.PDP;
+		default :
+			throw new InvalidMessageIdException("Endian of message Id is not valid");
+		}
+	}
+
+	private static int sequence(byte[] msgId, OKafkaOffset.MsgIdEndian endian) {
+		int first = msgId[SEQUENCE_POS] & 0xFF;
+		int second = msgId[SEQUENCE_POS + 1] & 0xFF;
+		// A two byte number reads the same in little and pdp endian
+		return endian == OKafkaOffset.MsgIdEndian.BIG ? (first << 8) | second : (second << 8) | first;
+	}
+
+	// Reads up to 8 bytes as a big endian number
+	private static long readBytes(byte[] msgId, int from, int length) {
+		long value = 0;
+		for(int i = from; i < from + length; i++)
+			value = (value << 8) | (msgId[i] & 0xFF);
+		return value;
+	}
+
+	// Converts 8 bytes read as a big endian number to the number they represent in the given endian
+	private static long decode(long raw, OKafkaOffset.MsgIdEndian endian) {
+		switch(endian) {
+		case LITTLE :
+			return Long.reverseBytes(raw);
+		case PDP :
+			return swapWords(raw);
+		default :
+			return raw;
 		}
-		return new String(builderArray);
+	}
+
+	// Swaps the two bytes of every two byte word
+	private static long swapWords(long raw) {
+		return ((raw & 0xFF00FF00FF00FF00L) >>> 8) | ((raw & 0x00FF00FF00FF00FFL) << 8);
 	}
 
 	/**
-	 * convert hexadecimal string in pdp endian to big endian 
-	 * @param data hexadecimal string representing either subshard or sequence number in a subshard.
-	 * @return hexadecimal string in big endian
+	 * Appends hexadecimal digits of the lowest length bytes of value, in little endian if reverse is set, otherwise in pdp endian.
 	 */
-	private static String swap(String data) {
-		StringBuilder sb= new StringBuilder();
-		int length = data.length();
-		for(int i = 0; i < length; i = i+4) {
-			sb.append(data.substring(i+2, i+4));
-			sb.append(data.substring(i, i+2));
+	private static void appendHex(StringBuilder sb, long value, int length, boolean reverse) {
+		for(int i = 0; i < length; i++) {
+			int bytePos = reverse ? length - 1 - i : (i ^ 1);
+			int b = (int)(value >>> (8 * (length - 1 - bytePos))) & 0xFF;
+			sb.append(HEX_DIGITS[b >>> 4]).append(HEX_DIGITS[b & 0x0F]);
 		}
-		return sb.toString();	
 	}
+
 	public static String getMsgId(TopicPartition tp, long offset, String endian, int priority) {
-        
-		StringBuilder sb = new StringBuilder("");
-		/*String subpartition = String.format("%16s", Long.toHexString(offset >>> 16)).replace(' ', '0');     	
-   	    String partition =  String.format("%8s",Integer.toHexString(tp.partition())).replace(' ', '0');   	
-    	String seq = String.format("%4s", Long.toHexString(offset & 65535)).replace(' ', '0');
-		 */
-        String subpartition = String.format("%16s", Long.toHexString((int)(offset/20000))).replace(' ', '0');     	
-		String partition =  String.format("%8s",Integer.toHexString(2*tp.partition())).replace(' ', '0');   	
-		String seq = String.format("%4s", Long.toHexString(offset % 20000)).replace(' ', '0');
-        
+		StringBuilder sb = new StringBuilder(2 * MSG_ID_LENGTH);
+		long subpartition = (int)(offset/DEFAULT_SUBPARTITION_SIZE);
+		long partition = 2*tp.partition() & 0xFFFFFFFFL;
+		long seq = offset % DEFAULT_SUBPARTITION_SIZE;
 
 		if(endian.equals("66")) {
-			sb.append(reverse(subpartition));
-			sb.append(reverse(partition));
-			sb.append("0"+priority+"66");
-			sb.append(reverse(seq));   	
+			appendHex(sb, subpartition, 8, true);
+			appendHex(sb, partition, 4, true);
+			sb.append("0").append(priority).append("66");
+			appendHex(sb, seq, 2, true);
 		} else if (endian.equals("FF")) {
-			sb.append(swap(subpartition));
-			sb.append(swap(partition));
-			sb.append("0"+priority+"FF");
-			sb.append(swap(seq));
+			appendHex(sb, subpartition, 8, false);
+			appendHex(sb, partition, 4, false);
+			sb.append("0").append(priority).append("FF");
+			appendHex(sb, seq, 2, false);
 		}
 		return sb.toString();
 	}
@@ -238,12 +383,10 @@ public class MessageIdConverter {
 		if(prevOffset.msgId == null)
 			return false;
 		
-		String prevSubPart = prevOffset.msgId.substring(3, 19);
-		String thisSubPart = msgId.substring(3, 19);
-		if(!prevSubPart.equals(thisSubPart))
+		if(!prevOffset.msgId.regionMatches(3, msgId, 3, 16))
 			return false;
 		
-		int thisSeqNo = (int)getOffset(msgId.substring(31, 35) ,prevOffset.endian);
+		int thisSeqNo = (int)getOffset(msgId, 31, 35, prevOffset.endian);
 		
 		if(thisSeqNo != (prevOffset.sequenceNo+1) )
 			return false;
@@ -267,7 +410,9 @@ public class MessageIdConverter {
 		int sequenceNo;
 		MsgIdEndian endian;
 		String msgId;
-		
+		// Index of the record in its batch envelope, -1 for the offset of a message
+		int envelopeIndex = -1;
+
 		public OKafkaOffset(String _msgId)		
 		{
 			msgId = _msgId;
@@ -317,9 +462,23 @@ public class MessageIdConverter {
 		{
 			return msgId;
 		}
+		/**
+		 * Returns the offset of the record of a batch envelope with the given index, carried by this message.
+		 */
+		public OKafkaOffset envelopeRecord(int index)
+		{
+			OKafkaOffset recordOffset = new OKafkaOffset(partitionId, subPartitionId, sequenceNo, endian, msgId);
+			recordOffset.envelopeIndex = index;
+			return recordOffset;
+		}
+		public int envelopeIndex()
+		{
+			return envelopeIndex;
+		}
 		public long getOffset()
 		{
-			return (subPartitionId*DEFAULT_SUBPARTITION_SIZE + sequenceNo);
+			long offset = subPartitionId*DEFAULT_SUBPARTITION_SIZE + sequenceNo;
+			return envelopeIndex < 0 ? offset : MessageIdConverter.envelopeOffset(offset, envelopeIndex);
 		}
 		
 	}
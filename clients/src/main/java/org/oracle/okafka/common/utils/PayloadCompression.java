@@ -0,0 +1,73 @@
+/*
+ ** OKafka Java Client version 23.4.
+ **
+ ** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+ ** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+ */
+
+package org.oracle.okafka.common.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.compress.Compression;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.RecordBatch;
+import org.apache.kafka.common.utils.BufferSupplier;
+import org.apache.kafka.common.utils.ByteBufferOutputStream;
+
+/**
+ * Compresses and decompresses message payloads using the codecs of kafka-clients.
+ *
+ * Compressed payload is stored in below format:
+ * | COMPRESSION TYPE ID (4 Bytes Fixed) | UNCOMPRESSED LENGTH (4 Bytes Fixed) | COMPRESSED PAYLOAD |
+ *
+ * COMPRESSION TYPE ID is the id of the {@link CompressionType} used to compress the payload.
+ */
+public class PayloadCompression {
+
+	public static final int COMPRESSION_HEADER_SIZE = 8;
+
+	/**
+	 * Compresses len bytes of payload starting at offset into out, which is reset first.
+	 *
+	 * @return number of bytes written into out. Compressed bytes are available in out.buffer().array() from index 0.
+	 */
+	public static int compress(Compression compression, byte[] payload, int offset, int len, ByteBufferOutputStream out) {
+		out.position(0);
+		out.ensureRemaining(COMPRESSION_HEADER_SIZE);
+		out.buffer().putInt(compression.type().id).putInt(len);
+		try (OutputStream compressionStream = compression.wrapForOutput(out, RecordBatch.MAGIC_VALUE_V2)) {
+			compressionStream.write(payload, offset, len);
+		} catch (IOException e) {
+			throw new KafkaException("Failed to compress payload with " + compression.type().name, e);
+		}
+		return out.position();
+	}
+
+	/**
+	 * Decompresses a payload created by {@link #compress(Compression, byte[], int, int, ByteBufferOutputStream)}.
+	 */
+	public static byte[] decompress(byte[] compressedPayload) {
+		ByteBuffer buffer = ByteBuffer.wrap(compressedPayload);
+		CompressionType type = CompressionType.forId(buffer.getInt());
+		int uncompressedLen = buffer.getInt();
+		byte[] payload = new byte[uncompressedLen];
+
+		try (InputStream in = Compression.of(type).build().wrapForInput(buffer, RecordBatch.MAGIC_VALUE_V2, BufferSupplier.NO_CACHING)) {
+			int read = 0;
+			while (read < uncompressedLen) {
+				int n = in.read(payload, read, uncompressedLen - read);
+				if (n < 0)
+					throw new KafkaException("Compressed payload ended after " + read + " of " + uncompressedLen + " bytes");
+				read += n;
+			}
+		} catch (IOException e) {
+			throw new KafkaException("Failed to decompress payload with " + type.name, e);
+		}
+		return payload;
+	}
+}
@@ -0,0 +1,181 @@
+/*
+** OKafka Java Client version 23.4.
+**
+** Copyright (c) 2019, 2024 Oracle and/or its affiliates.
+** Licensed under the Universal Permissive License v 1.0 as shown at https://oss.oracle.com/licenses/upl.
+*/
+
+package org.oracle.okafka.common.utils;
+
+import java.sql.Array;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.kafka.common.Uuid;
+import org.oracle.okafka.clients.TopicTeqParameters;
+
+import oracle.jdbc.internal.OracleConnection;
+
+/**
+ * Loads queue metadata of many topics with set based calls, instead of one or more round trips per topic.
+ */
+public class TopicMetadataLoader {
+
+	/*
+	 * Fetches KEY_BASED_ENQUEUE, STICKY_DEQUEUE, SHARD_NUM and queue id of every queue in one call.
+	 * SHARD_NUM of a queue which does not exist (ORA-24010) is returned as NULL.
+	 */
+	private static final String QUEUE_PARAMETERS_PLSQL =
+			"DECLARE " +
+			"    queue_names SYS.ODCIVARCHAR2LIST := ?; " +
+			"    key_based SYS.ODCINUMBERLIST := SYS.ODCINUMBERLIST(); " +
+			"    sticky_deq SYS.ODCINUMBERLIST := SYS.ODCINUMBERLIST(); " +
+			"    shard_num SYS.ODCINUMBERLIST := SYS.ODCINUMBERLIST(); " +
+			"    queue_ids SYS.ODCINUMBERLIST := SYS.ODCINUMBERLIST(); " +
+			"    para NUMBER; " +
+			"BEGIN " +
+			"    key_based.EXTEND(queue_names.COUNT); " +
+			"    sticky_deq.EXTEND(queue_names.COUNT); " +
+			"    shard_num.EXTEND(queue_names.COUNT); " +
+			"    queue_ids.EXTEND(queue_names.COUNT); " +
+			"    FOR i IN 1 .. queue_names.COUNT LOOP " +
+			"        BEGIN " +
+			"            dbms_aqadm.get_queue_parameter(queue_names(i), 'KEY_BASED_ENQUEUE', para); " +
+			"            key_based(i) := para; " +
+			"            dbms_aqadm.get_queue_parameter(queue_names(i), 'STICKY_DEQUEUE', para); " +
+			"            sticky_deq(i) := para; " +
+			"            dbms_aqadm.get_queue_parameter(queue_names(i), 'SHARD_NUM', para); " +
+			"            shard_num(i) := para; " +
+			"            SELECT qid INTO para FROM user_queues WHERE name = UPPER(queue_names(i)); " +
+			"            queue_ids(i) := para; " +
+			"        EXCEPTION " +
+			"            WHEN NO_DATA_FOUND THEN " +
+			"                queue_ids(i) := NULL; " +
+			"            WHEN OTHERS THEN " +
+			"                IF SQLCODE = -24010 THEN " +
+			"                    shard_num(i) := NULL; " +
+			"                ELSE " +
+			"                    RAISE; " +
+			"                END IF; " +
+			"        END; " +
+			"    END LOOP; " +
+			"    ? := key_based; " +
+			"    ? := sticky_deq; " +
+			"    ? := shard_num; " +
+			"    ? := queue_ids; " +
+			"END;";
+
+	private static final String QUEUE_SHARDS_QUERY =
+			"select q.name, s.SHARD_ID, s.%s from user_queue_shards s, user_queues q " +
+			"where s.QUEUE_ID = q.qid and q.name in (select upper(column_value) from table(?))";
+
+	/**
+	 * Fetches the queue parameters of all the given topics in one database call.
+	 *
+	 * @param queueIds if not null, populated with the queue id of each existing topic
+	 * @return queue parameters of each existing topic. Topics which do not exist are not part of the returned map.
+	 */
+	public static Map<String, TopicTeqParameters> fetchQueueParameters(Connection con, Collection<String> topics,
+			Map<String, Uuid> queueIds) throws SQLException {
+		Map<String, TopicTeqParameters> topicParameters = new HashMap<>();
+		if (topics == null || topics.isEmpty())
+			return topicParameters;
+
+		List<String> topicList = new ArrayList<>(topics);
+		CallableStatement cStmt = null;
+		try {
+			OracleConnection oConn = con.unwrap(OracleConnection.class);
+			cStmt = con.prepareCall(QUEUE_PARAMETERS_PLSQL);
+			cStmt.setArray(1, oConn.createOracleArray("SYS.ODCIVARCHAR2LIST", topicList.toArray(new String[0])));
+			for (int i = 2; i <= 5; i++)
+				cStmt.registerOutParameter(i, Types.ARRAY, "SYS.ODCINUMBERLIST");
+			cStmt.execute();
+
+			Object[] keyBased = getNumbers(cStmt.getArray(2));
+			Object[] stickyDeq = getNumbers(cStmt.getArray(3));
+			Object[] shardNum = getNumbers(cStmt.getArray(4));
+			Object[] qids = getNumbers(cStmt.getArray(5));
+
+			for (int i = 0; i < topicList.size(); i++) {
+				if (shardNum[i] == null)
+					continue;
+				TopicTeqParameters teqPara = new TopicTeqParameters();
+				teqPara.setKeyBased(((Number) keyBased[i]).intValue());
+				teqPara.setStickyDeq(((Number) stickyDeq[i]).intValue());
+				teqPara.setShardNum(((Number) shardNum[i]).intValue());
+				topicParameters.put(topicList.get(i), teqPara);
+				if (queueIds != null)
+					queueIds.put(topicList.get(i), qids[i] == null ? Uuid.ZERO_UUID : new Uuid(0, ((Number) qids[i]).intValue()));
+			}
+		} finally {
+			try {
+				if (cStmt != null)
+					cStmt.close();
+			} catch (SQLException e) {
+				// do nothing
+			}
+		}
+		return topicParameters;
+	}
+
+	/**
+	 * Fetches the shards of all the given topics, and the database instance each shard is mapped to, in one query.
+	 *
+	 * @param instanceColumn column of USER_QUEUE_SHARDS holding the instance of the shard
+	 * @return for each topic having entries in USER_QUEUE_SHARDS, list of {shard id, instance number}
+	 */
+	public static Map<String, List<int[]>> fetchQueueShards(Connection con, Collection<String> topics,
+			String instanceColumn) throws SQLException {
+		Map<String, List<int[]>> queueShards = new HashMap<>();
+		if (topics == null || topics.isEmpty())
+			return queueShards;
+
+		Map<String, String> topicByQueueName = new HashMap<>();
+		for (String topic : topics)
+			topicByQueueName.put(topic.toUpperCase(Locale.ROOT), topic);
+
+		PreparedStatement stmt = null;
+		ResultSet result = null;
+		try {
+			OracleConnection oConn = con.unwrap(OracleConnection.class);
+			stmt = con.prepareStatement(String.format(QUEUE_SHARDS_QUERY, instanceColumn));
+			stmt.setArray(1, oConn.createOracleArray("SYS.ODCIVARCHAR2LIST", topics.toArray(new String[0])));
+			result = stmt.executeQuery();
+			while (result.next()) {
+				String topic = topicByQueueName.get(result.getString(1));
+				if (topic == null)
+					continue;
+				int[] shard = new int[] { result.getInt(2), result.getInt(3) };
+				queueShards.computeIfAbsent(topic, t -> new ArrayList<>()).add(shard);
+			}
+		} finally {
+			try {
+				if (result != null)
+					result.close();
+				if (stmt != null)
+					stmt.close();
+			} catch (SQLException e) {
+				// do nothing
+			}
+		}
+		return queueShards;
+	}
+
+	private static Object[] getNumbers(Array array) throws SQLException {
+		try {
+			return (Object[]) array.getArray();
+		} finally {
+			array.free();
+		}
+	}
+}
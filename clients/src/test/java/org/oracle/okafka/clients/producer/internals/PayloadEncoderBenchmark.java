@@ -0,0 +1,121 @@
+package org.oracle.okafka.clients.producer.internals;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.junit.Test;
+import org.oracle.okafka.common.utils.ConnectionUtils;
+
+/**
+ * Compares the bytes allocated and the time taken per record to encode V2 payloads: the former encoder copying key,
+ * value and payload into fresh arrays, and the single pass encoder writing into the payload buffer of the batch.
+ * The copy made by the JMS message is the same for both and is not included. Does not need a database.
+ */
+public class PayloadEncoderBenchmark {
+
+	static final int BATCH_SIZE = 500;
+	static final int BATCHES = 2000;
+	static final int ROUNDS = 5;
+
+	@Test
+	public void PayloadEncoderTest() {
+		ByteBuffer[] keys = new ByteBuffer[BATCH_SIZE];
+		ByteBuffer[] values = new ByteBuffer[BATCH_SIZE];
+		Header[][] headers = new Header[BATCH_SIZE][];
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			keys[i] = ByteBuffer.wrap(("key-" + i).getBytes(StandardCharsets.UTF_8));
+			byte[] value = new byte[100 + i % 50];
+			Arrays.fill(value, (byte) i);
+			values[i] = ByteBuffer.wrap(value);
+			headers[i] = new Header[] { new RecordHeader("trace-id", ("trace-" + i).getBytes(StandardCharsets.UTF_8)),
+					new RecordHeader("source", "benchmark".getBytes(StandardCharsets.UTF_8)) };
+		}
+
+		AQKafkaProducer.PayloadBuffer payloadBuffer = new AQKafkaProducer.PayloadBuffer(1024);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			byte[] legacy = legacyPayload(keys[i], values[i], headers[i]);
+			int size = AQKafkaProducer.encodeV2Payload(keys[i], values[i], headers[i], payloadBuffer);
+			assertArrayEquals(legacy, Arrays.copyOf(payloadBuffer.buffer(), size));
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+		long records = (long) BATCHES * BATCH_SIZE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long sum = 0;
+			long allocated = threads.getThreadAllocatedBytes(threadId);
+			long start = System.nanoTime();
+			for (int b = 0; b < BATCHES; b++)
+				for (int i = 0; i < BATCH_SIZE; i++)
+					sum += legacyPayload(keys[i], values[i], headers[i]).length;
+			long legacyNs = System.nanoTime() - start;
+			long legacyBytes = threads.getThreadAllocatedBytes(threadId) - allocated;
+
+			allocated = threads.getThreadAllocatedBytes(threadId);
+			start = System.nanoTime();
+			for (int b = 0; b < BATCHES; b++) {
+				AQKafkaProducer.PayloadBuffer batchBuffer = new AQKafkaProducer.PayloadBuffer(1024);
+				for (int i = 0; i < BATCH_SIZE; i++)
+					sum += AQKafkaProducer.encodeV2Payload(keys[i], values[i], headers[i], batchBuffer);
+			}
+			long currentNs = System.nanoTime() - start;
+			long currentBytes = threads.getThreadAllocatedBytes(threadId) - allocated;
+
+			System.out.println("Round " + round + " (" + sum + "): bytes allocated per record: former " + legacyBytes / records
+					+ ", current " + currentBytes / records + "; ns per record: former " + legacyNs / records + ", current "
+					+ currentNs / records);
+			if (round == ROUNDS - 1)
+				assertTrue("Single pass encoder allocates more than the former one", currentBytes < legacyBytes);
+		}
+	}
+
+	// Former encoder of V2 payloads, without the JMS message
+	private static byte[] legacyPayload(ByteBuffer key, ByteBuffer value, Header[] headers) {
+		key = key.duplicate();
+		value = value.duplicate();
+		int keyLen = 0;
+		int valueLen = 0;
+		int hKeysLen[] = new int[headers.length];
+		int hValuesLen[] = new int[headers.length];
+		byte[] keyByteArray = new byte[key.limit()];
+		key.get(keyByteArray);
+		keyLen = keyByteArray.length;
+		int totalSize = keyLen + 4;
+		byte[] valueByteArray = new byte[value.limit()];
+		value.get(valueByteArray);
+		valueLen = valueByteArray.length;
+		totalSize += valueLen + 4;
+		int hIndex = 0;
+		for (Header h : headers) {
+			int hKeyLen = h.key().getBytes().length;
+			totalSize += hKeyLen + 4;
+			hKeysLen[hIndex] = hKeyLen;
+			int hValueLength = h.value().length;
+			totalSize += hValueLength + 4;
+			hValuesLen[hIndex++] = hValueLength;
+		}
+		ByteBuffer pBuffer = ByteBuffer.allocate(totalSize);
+		pBuffer.put(ConnectionUtils.convertTo4Byte(keyLen));
+		pBuffer.put(keyByteArray);
+		pBuffer.put(ConnectionUtils.convertTo4Byte(valueLen));
+		pBuffer.put(valueByteArray);
+		hIndex = 0;
+		for (Header h : headers) {
+			pBuffer.put(ConnectionUtils.convertTo4Byte(hKeysLen[hIndex]));
+			pBuffer.put(h.key().getBytes());
+			pBuffer.put(ConnectionUtils.convertTo4Byte(hValuesLen[hIndex++]));
+			pBuffer.put(h.value());
+		}
+		pBuffer.rewind();
+		byte[] payload = new byte[pBuffer.limit()];
+		pBuffer.get(payload);
+		return payload;
+	}
+}
@@ -0,0 +1,139 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+import org.oracle.okafka.common.utils.MessageIdConverter;
+
+/**
+ * Compares the cost of converting message ids of consumed records to offsets, and offsets to message ids:
+ * the former substring and String.format based conversion, the conversion of the message id string,
+ * the conversion of the RAW(16) message id and the batch decoder reusing the decoded subshard.
+ * Does not need a database.
+ */
+public class MessageIdConverterBenchmark {
+
+	static final int BATCH_SIZE = 500;
+	static final int BATCHES = 2000;
+	static final int ROUNDS = 5;
+
+	@Test
+	public void MessageIdConverterTest() {
+		// Message ids of a batch dequeued from two subshards of partition 3, in little endian
+		byte[][] rawIds = new byte[BATCH_SIZE][];
+		String[] msgIds = new String[BATCH_SIZE];
+		long[] offsets = new long[BATCH_SIZE];
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			long subshard = 1234 + (i < BATCH_SIZE / 2 ? 0 : 1);
+			int seq = i % (BATCH_SIZE / 2);
+			rawIds[i] = rawMsgId(subshard, 6, seq);
+			msgIds[i] = "ID:" + hex(rawIds[i]);
+			offsets[i] = subshard * MessageIdConverter.DEFAULT_SUBPARTITION_SIZE + seq;
+		}
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			assertEquals(offsets[i], legacyOffset(msgIds[i]));
+			assertEquals(offsets[i], MessageIdConverter.getOKafkaOffset(msgIds[i], true, true).getOffset());
+			assertEquals(offsets[i], MessageIdConverter.getOffset(rawIds[i]));
+			assertEquals(legacyMsgId(new TopicPartition("T", 3), offsets[i], "66", 0),
+					MessageIdConverter.getMsgId(new TopicPartition("T", 3), offsets[i], "66", 0));
+		}
+
+		for (int round = 0; round < ROUNDS; round++) {
+			long sum = 0;
+			long start = System.nanoTime();
+			for (int b = 0; b < BATCHES; b++)
+				for (int i = 0; i < BATCH_SIZE; i++)
+					sum += legacyOffset(msgIds[i]);
+			long legacyNs = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int b = 0; b < BATCHES; b++)
+				for (int i = 0; i < BATCH_SIZE; i++)
+					sum += MessageIdConverter.getOKafkaOffset(msgIds[i], true, true).getOffset();
+			long stringNs = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int b = 0; b < BATCHES; b++)
+				for (int i = 0; i < BATCH_SIZE; i++)
+					sum += MessageIdConverter.getOffset(rawIds[i]);
+			long rawNs = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int b = 0; b < BATCHES; b++) {
+				MessageIdConverter.OffsetDecoder decoder = new MessageIdConverter.OffsetDecoder();
+				for (int i = 0; i < BATCH_SIZE; i++)
+					sum += decoder.getOffset(rawIds[i]);
+			}
+			long decoderNs = System.nanoTime() - start;
+
+			TopicPartition tp = new TopicPartition("T", 3);
+			start = System.nanoTime();
+			for (int b = 0; b < BATCHES / 10; b++)
+				for (int i = 0; i < BATCH_SIZE; i++)
+					sum += legacyMsgId(tp, offsets[i], "66", 0).length();
+			long legacyIdNs = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int b = 0; b < BATCHES / 10; b++)
+				for (int i = 0; i < BATCH_SIZE; i++)
+					sum += MessageIdConverter.getMsgId(tp, offsets[i], "66", 0).length();
+			long idNs = System.nanoTime() - start;
+
+			long ops = (long) BATCHES * BATCH_SIZE;
+			System.out.println("Round " + round + " (" + sum + "): offset from message id, ns/op: former " + legacyNs / ops
+					+ ", string " + stringNs / ops + ", raw " + rawNs / ops + ", batch decoder " + decoderNs / ops
+					+ "; message id from offset, ns/op: former " + legacyIdNs * 10 / ops + ", current " + idNs * 10 / ops);
+		}
+	}
+
+	private static byte[] rawMsgId(long subshard, int shard, int seq) {
+		byte[] id = new byte[MessageIdConverter.MSG_ID_LENGTH];
+		for (int i = 0; i < 8; i++)
+			id[i] = (byte) (subshard >>> (8 * i));
+		for (int i = 0; i < 4; i++)
+			id[8 + i] = (byte) (shard >>> (8 * i));
+		id[12] = 0;
+		id[13] = (byte) 0x66;
+		id[14] = (byte) seq;
+		id[15] = (byte) (seq >>> 8);
+		return id;
+	}
+
+	private static String hex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes)
+			sb.append(String.format("%02X", b));
+		return sb.toString();
+	}
+
+	// Former conversion of a little endian message id
+	private static long legacyOffset(String msgId) {
+		long subshard = Long.parseLong(legacyReverse(msgId.substring(3, 19)), 16);
+		Long.parseLong(legacyReverse(msgId.substring(19, 27)), 16);
+		long seq = Long.parseLong(legacyReverse(msgId.substring(31, 35)), 16);
+		return subshard * MessageIdConverter.DEFAULT_SUBPARTITION_SIZE + seq;
+	}
+
+	private static String legacyMsgId(TopicPartition tp, long offset, String endian, int priority) {
+		StringBuilder sb = new StringBuilder("");
+		String subpartition = String.format("%16s", Long.toHexString((int) (offset / 20000))).replace(' ', '0');
+		String partition = String.format("%8s", Integer.toHexString(2 * tp.partition())).replace(' ', '0');
+		String seq = String.format("%4s", Long.toHexString(offset % 20000)).replace(' ', '0');
+		sb.append(legacyReverse(subpartition));
+		sb.append(legacyReverse(partition));
+		sb.append("0" + priority + endian);
+		sb.append(legacyReverse(seq));
+		return sb.toString();
+	}
+
+	private static String legacyReverse(String data) {
+		char[] builderArray = new char[data.length()];
+		int length = data.length();
+		for (int i = length - 2; i >= 0; i = i - 2) {
+			builderArray[length - 2 - i] = data.charAt(i);
+			builderArray[length - 1 - i] = data.charAt(i + 1);
+		}
+		return new String(builderArray);
+	}
+}
@@ -0,0 +1,95 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+
+/**
+ * Produces at a low and then at a high rate with adaptive batching, and checks the linger time and batch size chosen
+ * for the partition adapt to the rate and stay within the configured bounds: records sent one at a time are not held
+ * back, and records sent at a high rate change the initial linger time or batch size.
+ */
+public class OkafkaAdaptiveBatching {
+
+	static final String TOPIC = "TEQ_ADAPTIVE";
+	static final long MAX_LINGER_MS = 50;
+	static final int MIN_BATCH_SIZE = 2048;
+	static final int MAX_BATCH_SIZE = 262144;
+	static final int BATCH_SIZE = 16384;
+	static final long LINGER_MS = 20;
+
+	@Test
+	public void AdaptiveBatchingTest() throws Exception {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPIC, 1, (short) 1))).all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException))
+				throw e;
+		}
+
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("oracle.producer.adaptive.batching", "true");
+		prop.put("oracle.producer.adaptive.linger.max.ms", String.valueOf(MAX_LINGER_MS));
+		prop.put("oracle.producer.adaptive.batch.size.min", String.valueOf(MIN_BATCH_SIZE));
+		prop.put("oracle.producer.adaptive.batch.size.max", String.valueOf(MAX_BATCH_SIZE));
+		prop.put("batch.size", String.valueOf(BATCH_SIZE));
+		prop.put("linger.ms", String.valueOf(LINGER_MS));
+
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			for (int i = 0; i < 20; i++) {
+				producer.send(new ProducerRecord<String, String>(TOPIC, 0, i + "", "Slow message # " + i)).get();
+				Thread.sleep(100);
+			}
+			Map<String, Double> values = adaptiveMetrics(producer);
+			System.out.println("Low rate: " + values);
+			assertNotNull("No adaptive-linger-ms metric", values.get("adaptive-linger-ms"));
+			assertEquals("Linger with one record at a time", 0, values.get("adaptive-linger-ms"), 0);
+
+			Future<RecordMetadata> last = null;
+			for (int i = 0; i < 20000; i++)
+				last = producer.send(new ProducerRecord<String, String>(TOPIC, 0, i + "", "Fast message # " + i));
+			last.get();
+			values = adaptiveMetrics(producer);
+			System.out.println("High rate: " + values);
+
+			assertNotNull("No adaptive-linger-ms metric", values.get("adaptive-linger-ms"));
+			assertNotNull("No adaptive-batch-size metric", values.get("adaptive-batch-size"));
+			assertTrue(values.get("adaptive-linger-ms") >= 0 && values.get("adaptive-linger-ms") <= MAX_LINGER_MS);
+			assertTrue(values.get("adaptive-batch-size") >= MIN_BATCH_SIZE && values.get("adaptive-batch-size") <= MAX_BATCH_SIZE);
+			assertTrue("Linger and batch size did not adapt to the high rate",
+					values.get("adaptive-linger-ms") > 0 || values.get("adaptive-batch-size") != BATCH_SIZE);
+		}
+	}
+
+	private static Map<String, Double> adaptiveMetrics(Producer<String, String> producer) {
+		Map<String, Double> values = new TreeMap<>();
+		for (Map.Entry<MetricName, ? extends Metric> entry : producer.metrics().entrySet()) {
+			MetricName name = entry.getKey();
+			if (name.name().startsWith("adaptive-") && TOPIC.equals(name.tags().get("topic"))
+					&& "0".equals(name.tags().get("partition")))
+				values.put(name.name(), (Double) entry.getValue().metricValue());
+		}
+		return values;
+	}
+}
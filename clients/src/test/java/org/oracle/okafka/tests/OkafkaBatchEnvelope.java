@@ -0,0 +1,128 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.consumer.KafkaConsumer;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+import org.oracle.okafka.common.utils.MessageIdConverter;
+
+/**
+ * Produces batch envelopes to one partition and checks that every record gets its own offset. Seeks to a record inside
+ * an envelope, and checks that the consumer resumes from that record, returns every later record once with the offset
+ * returned to the producer, and no more than max.poll.records records per poll.
+ */
+public class OkafkaBatchEnvelope {
+
+	static final String TOPIC = "TEQ_ENVELOPE";
+	static final int MSG_CNT = 500;
+	static final int MAX_POLL_RECORDS = 30;
+
+	@Test
+	public void BatchEnvelopeTest() throws Exception {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPIC, 1, (short) 1))).all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException))
+				throw e;
+		}
+
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("oracle.producer.batch.envelope", "true");
+		prop.put("linger.ms", "50");
+		Map<Long, String> produced = new HashMap<>();
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			List<Future<RecordMetadata>> futures = new ArrayList<>();
+			for (int i = 0; i < MSG_CNT; i++)
+				futures.add(producer.send(new ProducerRecord<String, String>(TOPIC, 0, i + "", "Envelope record # " + i)));
+			for (int i = 0; i < MSG_CNT; i++)
+				produced.put(futures.get(i).get().offset(), i + "");
+		}
+		assertEquals("Records of an envelope share an offset", MSG_CNT, produced.size());
+		long envelopeOffsets = produced.keySet().stream().filter(MessageIdConverter::isEnvelopeOffset).count();
+		assertTrue("No record was published in an envelope", envelopeOffsets > 0);
+
+		prop = OkafkaSetup.setup();
+		prop.put("group.id", "S_ENVELOPE");
+		prop.put("max.poll.records", MAX_POLL_RECORDS);
+		prop.put("auto.offset.reset", "earliest");
+		prop.put("enable.auto.commit", "false");
+		prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		TopicPartition tp = new TopicPartition(TOPIC, 0);
+		try (Consumer<String, String> consumer = new KafkaConsumer<String, String>(prop)) {
+			consumer.subscribe(Arrays.asList(TOPIC));
+			List<ConsumerRecord<String, String>> firstPoll = new ArrayList<>();
+			for (int i = 0; i < 10 && firstPoll.isEmpty(); i++) {
+				ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(5000));
+				assertTrue("Poll returned " + records.count() + " records", records.count() <= MAX_POLL_RECORDS);
+				firstPoll.addAll(records.records(tp));
+			}
+			assertTrue("No record received", !firstPoll.isEmpty());
+			consumer.commitSync();
+
+			// A record inside an envelope which is not consumed yet
+			long lastConsumed = firstPoll.get(firstPoll.size() - 1).offset();
+			long target = -1;
+			for (long offset : new TreeMap<>(produced).keySet()) {
+				if (MessageIdConverter.envelopeIndex(offset) > 0
+						&& MessageIdConverter.messageOffset(offset) > MessageIdConverter.messageOffset(lastConsumed)
+						&& (target < 0 || MessageIdConverter.notAfter(offset, target)))
+					target = offset;
+			}
+			assertTrue("No envelope left to seek into", target >= 0);
+			consumer.seek(tp, target);
+
+			Map<Long, String> consumed = new HashMap<>();
+			int emptyPolls = 0;
+			while (emptyPolls < 3) {
+				ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(5000));
+				assertTrue("Poll returned " + records.count() + " records", records.count() <= MAX_POLL_RECORDS);
+				if (records.count() == 0) {
+					emptyPolls++;
+					continue;
+				}
+				for (ConsumerRecord<String, String> record : records.records(tp)) {
+					if (consumed.isEmpty())
+						assertEquals("First record after seek", target, record.offset());
+					assertTrue("Record at offset " + record.offset() + " is before the seek offset",
+							MessageIdConverter.notAfter(target, record.offset()));
+					assertTrue("Record at offset " + record.offset() + " received twice",
+							consumed.put(record.offset(), record.key()) == null);
+					if (produced.containsKey(record.offset()))
+						assertEquals(produced.get(record.offset()), record.key());
+				}
+				consumer.commitSync();
+			}
+			for (Map.Entry<Long, String> entry : produced.entrySet()) {
+				if (MessageIdConverter.notAfter(target, entry.getKey()))
+					assertEquals("Record " + entry.getValue() + " not received", entry.getValue(), consumed.get(entry.getKey()));
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.consumer.KafkaConsumer;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+
+/**
+ * Consumes records, commits them with commitAsync(callback) and polls again. Checks that the callback is invoked by
+ * poll on the consumer thread with the offsets of the records consumed, and that these offsets are committed. Runs
+ * for a regular and a light weight subscriber, which commit over the consumer session and over a connection of their
+ * own respectively.
+ */
+public class OkafkaCommitAsync {
+
+	static final String TOPIC = "TEQ_ASYNC";
+	static final int MSG_CNT = 50;
+
+	@Test
+	public void CommitAsyncTest() throws Exception {
+		commitAsync("S_ASYNC", false);
+	}
+
+	@Test
+	public void LightWeightCommitAsyncTest() throws Exception {
+		commitAsync("S_ASYNC_LW", true);
+	}
+
+	private static void commitAsync(String group, boolean lightWeight) throws Exception {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPIC, 1, (short) 1))).all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException))
+				throw e;
+		}
+
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			for (int i = 0; i < MSG_CNT; i++)
+				producer.send(new ProducerRecord<String, String>(TOPIC, 0, i + "", "Async commit message # " + i));
+		}
+
+		prop = OkafkaSetup.setup();
+		prop.put("group.id", group);
+		prop.put("oracle.consumer.lightweight", String.valueOf(lightWeight));
+		prop.put("auto.offset.reset", "earliest");
+		prop.put("enable.auto.commit", "false");
+		prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		try (Consumer<String, String> consumer = new KafkaConsumer<String, String>(prop)) {
+			consumer.subscribe(Arrays.asList(TOPIC));
+			Map<TopicPartition, Long> consumed = new HashMap<>();
+			for (int i = 0; i < 10 && consumed.isEmpty(); i++) {
+				ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(5000));
+				for (ConsumerRecord<String, String> record : records)
+					consumed.put(new TopicPartition(record.topic(), record.partition()), record.offset());
+			}
+			assertFalse("No record received", consumed.isEmpty());
+
+			AtomicReference<Thread> callbackThread = new AtomicReference<>();
+			AtomicReference<Map<TopicPartition, OffsetAndMetadata>> callbackOffsets = new AtomicReference<>();
+			AtomicReference<Exception> callbackException = new AtomicReference<>();
+			consumer.commitAsync((offsets, exception) -> {
+				callbackThread.set(Thread.currentThread());
+				callbackOffsets.set(offsets);
+				callbackException.set(exception);
+			});
+			assertNull("Callback invoked before poll", callbackThread.get());
+
+			for (int i = 0; i < 10 && callbackThread.get() == null; i++)
+				consumer.poll(Duration.ofMillis(1000));
+			assertNotNull("Callback not invoked by poll", callbackThread.get());
+			assertSame("Callback invoked by another thread", Thread.currentThread(), callbackThread.get());
+			assertNull("Commit failed: " + callbackException.get(), callbackException.get());
+
+			Map<TopicPartition, OffsetAndMetadata> committed = consumer.committed(consumed.keySet());
+			for (Map.Entry<TopicPartition, Long> entry : consumed.entrySet()) {
+				OffsetAndMetadata offset = callbackOffsets.get().get(entry.getKey());
+				assertNotNull("No offset of " + entry.getKey() + " passed to the callback", offset);
+				assertEquals("Offset of " + entry.getKey() + " passed to the callback", (long) entry.getValue(),
+						offset.offset());
+				assertNotNull("No committed offset for " + entry.getKey(), committed.get(entry.getKey()));
+				assertEquals("Committed offset of " + entry.getKey(), (long) entry.getValue(),
+						committed.get(entry.getKey()).offset());
+			}
+		}
+	}
+}
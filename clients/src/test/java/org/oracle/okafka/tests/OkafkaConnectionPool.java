@@ -0,0 +1,86 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+import org.oracle.okafka.common.utils.ConnectionPool;
+
+/**
+ * A producer and two admin clients, one after the other, share the connection pool. Checks that the connection given
+ * back by the first admin client is reused by the second one, and that the pool closes its connections once the
+ * producer, its last client, is closed.
+ */
+public class OkafkaConnectionPool {
+
+	static final String TOPIC = "TEQ_POOL";
+	static final long SETTLE_MS = 1000;
+	static final long WAIT_MS = 10000;
+
+	@Test
+	public void ConnectionPoolTest() throws Exception {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPIC, 1, (short) 1))).all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException))
+				throw e;
+		}
+		assertEquals("Connections left open before the test", 0, settledConnections());
+
+		Properties prop = pooled(OkafkaSetup.setup());
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			producer.send(new ProducerRecord<String, String>(TOPIC, 0, "0", "Pooled message")).get();
+			int producing = settledConnections();
+			assertTrue("No pooled connection", producing > 0);
+
+			listTopics();
+			int afterFirstAdmin = settledConnections();
+			assertTrue("Pool grew from " + producing + " to " + afterFirstAdmin + " connections",
+					afterFirstAdmin <= producing + 1);
+
+			listTopics();
+			assertEquals("Connection of the first admin client not reused", afterFirstAdmin, settledConnections());
+		}
+		assertEquals("Connections left open after the last client closed", 0, settledConnections());
+	}
+
+	private static Properties pooled(Properties prop) {
+		prop.put("oracle.connection.pool", "true");
+		prop.put("oracle.connection.pool.initial.size", "1");
+		prop.put("oracle.connection.pool.max.idle", "4");
+		return prop;
+	}
+
+	private static void listTopics() throws Exception {
+		try (Admin admin = AdminClient.create(pooled(OkafkaSetup.setup()))) {
+			admin.listTopics().names().get();
+		}
+	}
+
+	// Waits for the connections opened in background by the pool
+	private static int settledConnections() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + WAIT_MS;
+		int count = ConnectionPool.openConnections();
+		while (System.currentTimeMillis() < deadline) {
+			Thread.sleep(SETTLE_MS);
+			int next = ConnectionPool.openConnections();
+			if (next == count)
+				break;
+			count = next;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,97 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Properties;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.consumer.KafkaConsumer;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+
+/**
+ * Produces records to a new topic and consumes some of them. Checks that currentLag() and the records-lag metric of the
+ * partition are the number of records not consumed yet.
+ */
+public class OkafkaConsumerLag {
+
+	static final int MSG_CNT = 100;
+	static final int MAX_POLL_RECORDS = 30;
+
+	@Test
+	public void ConsumerLagTest() throws Exception {
+		// A new topic, so that no record of an earlier run is counted in the lag
+		String topic = "TEQ_LAG_" + System.currentTimeMillis();
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(topic, 1, (short) 1))).all().get();
+			try {
+				consumeSome(topic);
+			} finally {
+				admin.deleteTopics(Arrays.asList(topic)).all().get();
+			}
+		}
+	}
+
+	private static void consumeSome(String topic) throws Exception {
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			for (int i = 0; i < MSG_CNT; i++)
+				producer.send(new ProducerRecord<String, String>(topic, 0, i + "", "Lag message # " + i));
+		}
+
+		prop = OkafkaSetup.setup();
+		prop.put("group.id", "S_LAG");
+		prop.put("max.poll.records", MAX_POLL_RECORDS);
+		prop.put("auto.offset.reset", "earliest");
+		prop.put("enable.auto.commit", "false");
+		// Fetch the latest offset on every poll
+		prop.put("oracle.consumer.lag.probe.interval.ms", "1");
+		prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		TopicPartition tp = new TopicPartition(topic, 0);
+		try (Consumer<String, String> consumer = new KafkaConsumer<String, String>(prop)) {
+			consumer.subscribe(Arrays.asList(topic));
+			int consumed = 0;
+			for (int i = 0; i < 10 && consumed == 0; i++) {
+				ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(5000));
+				consumed = records.count();
+			}
+			assertTrue("No record received", consumed > 0);
+			assertTrue("Consumed all " + consumed + " records in one poll", consumed < MSG_CNT);
+
+			OptionalLong lag = consumer.currentLag(tp);
+			assertTrue("Lag not known", lag.isPresent());
+			assertEquals("currentLag after consuming " + consumed + " records", MSG_CNT - consumed, lag.getAsLong());
+			Double metricLag = recordsLag(consumer, topic);
+			assertNotNull("No records-lag metric for the partition", metricLag);
+			assertEquals("records-lag after consuming " + consumed + " records", MSG_CNT - consumed, metricLag, 0);
+		}
+	}
+
+	private static Double recordsLag(Consumer<String, String> consumer, String topic) {
+		for (Map.Entry<MetricName, ? extends Metric> entry : consumer.metrics().entrySet()) {
+			MetricName name = entry.getKey();
+			if (name.name().equals("records-lag") && topic.equalsIgnoreCase(name.tags().get("topic"))
+					&& "0".equals(name.tags().get("partition")))
+				return (Double) entry.getValue().metricValue();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,99 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.consumer.KafkaConsumer;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+
+/**
+ * Checks beginningOffsets, endOffsets and offsetsForTimes of the consumer for every partition of a topic.
+ */
+public class OkafkaConsumerOffsets {
+
+	static final String TOPIC = "TEQ_OFFSETS";
+	static final int PARTITIONS = 4;
+	static final int MSG_CNT = 40;
+
+	@Test
+	public void ConsumerOffsetsTest() {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPIC, PARTITIONS, (short) 1))).all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException)) {
+				System.out.println("Exception while creating topic " + e);
+				e.printStackTrace();
+				return;
+			}
+		} catch (Exception e) {
+			System.out.println("Exception while creating topic " + e);
+			e.printStackTrace();
+			return;
+		}
+
+		List<TopicPartition> partitions = new ArrayList<>();
+		for (int i = 0; i < PARTITIONS; i++)
+			partitions.add(new TopicPartition(TOPIC, i));
+
+		Properties prop = OkafkaSetup.setup();
+		prop.put("group.id", "S_OFFSETS");
+		prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		try (Consumer<String, String> consumer = new KafkaConsumer<String, String>(prop)) {
+			Map<TopicPartition, Long> endBefore = consumer.endOffsets(partitions);
+			// Enqueue time is kept by the database, allow for clock difference with the client
+			long produceStart = System.currentTimeMillis() - 1000;
+
+			Properties producerProp = OkafkaSetup.setup();
+			producerProp.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+			producerProp.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+			try (Producer<String, String> producer = new KafkaProducer<String, String>(producerProp)) {
+				for (int i = 0; i < MSG_CNT; i++)
+					producer.send(new ProducerRecord<String, String>(TOPIC, i % PARTITIONS, i + "", "Test message # " + i));
+			}
+
+			Map<TopicPartition, Long> beginning = consumer.beginningOffsets(partitions);
+			Map<TopicPartition, Long> end = consumer.endOffsets(partitions);
+			Map<TopicPartition, Long> timestamps = new HashMap<>();
+			Map<TopicPartition, Long> futureTimestamps = new HashMap<>();
+			for (TopicPartition tp : partitions) {
+				timestamps.put(tp, produceStart);
+				futureTimestamps.put(tp, System.currentTimeMillis() + 3600000);
+			}
+			Map<TopicPartition, OffsetAndTimestamp> byTime = consumer.offsetsForTimes(timestamps);
+			Map<TopicPartition, OffsetAndTimestamp> future = consumer.offsetsForTimes(futureTimestamps);
+
+			assertEquals(PARTITIONS, end.size());
+			for (TopicPartition tp : partitions) {
+				System.out.println(tp + ": beginning " + beginning.get(tp) + ", end " + end.get(tp) + ", at "
+						+ produceStart + " " + byTime.get(tp));
+				assertTrue(tp + " end offset did not grow", end.get(tp) > endBefore.get(tp));
+				assertTrue(tp + " beginning offset is after end offset", beginning.get(tp) < end.get(tp));
+				assertNotNull(tp + " has no message after " + produceStart, byTime.get(tp));
+				assertTrue(byTime.get(tp).offset() >= beginning.get(tp) && byTime.get(tp).offset() < end.get(tp));
+				assertTrue(byTime.get(tp).timestamp() >= produceStart);
+				assertNull(future.get(tp));
+			}
+		}
+	}
+}
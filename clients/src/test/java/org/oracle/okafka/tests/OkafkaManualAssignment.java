@@ -0,0 +1,106 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.consumer.KafkaConsumer;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+
+/**
+ * Two consumers of the same group assign disjoint sets of partitions of a topic. Checks that each consumer receives
+ * records of its own partitions only, and that together they receive every record once.
+ */
+public class OkafkaManualAssignment {
+
+	static final String TOPIC = "TEQ_ASSIGN";
+	static final int PARTITIONS = 4;
+	static final int MSG_CNT = 400;
+	static final long WAIT_MS = 120000;
+
+	@Test
+	public void ManualAssignmentTest() throws Exception {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPIC, PARTITIONS, (short) 1))).all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException))
+				throw e;
+		}
+
+		// Records of earlier runs are told apart by the key prefix
+		String run = Long.toString(System.currentTimeMillis());
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			for (int i = 0; i < MSG_CNT; i++)
+				producer.send(new ProducerRecord<String, String>(TOPIC, i % PARTITIONS, run + "-" + i, "Test message # " + i));
+		}
+
+		Map<String, String> received = new ConcurrentHashMap<>();
+		List<String> errors = new ArrayList<>();
+		List<TopicPartition> first = Arrays.asList(new TopicPartition(TOPIC, 0), new TopicPartition(TOPIC, 1));
+		List<TopicPartition> second = Arrays.asList(new TopicPartition(TOPIC, 2), new TopicPartition(TOPIC, 3));
+		Thread firstConsumer = new Thread(() -> consume("first", first, run, received, errors));
+		Thread secondConsumer = new Thread(() -> consume("second", second, run, received, errors));
+		firstConsumer.start();
+		secondConsumer.start();
+		firstConsumer.join();
+		secondConsumer.join();
+
+		synchronized (errors) {
+			assertTrue(errors.toString(), errors.isEmpty());
+		}
+		assertEquals("Records received", MSG_CNT, received.size());
+	}
+
+	private static void consume(String name, List<TopicPartition> partitions, String run, Map<String, String> received,
+			List<String> errors) {
+		Properties prop = OkafkaSetup.setup();
+		prop.put("group.id", "S_ASSIGN");
+		prop.put("auto.offset.reset", "earliest");
+		prop.put("enable.auto.commit", "false");
+		prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		try (Consumer<String, String> consumer = new KafkaConsumer<String, String>(prop)) {
+			consumer.assign(partitions);
+			long deadline = System.currentTimeMillis() + WAIT_MS;
+			while (received.size() < MSG_CNT && System.currentTimeMillis() < deadline) {
+				for (ConsumerRecord<String, String> record : consumer.poll(Duration.ofMillis(1000))) {
+					if (!partitions.contains(new TopicPartition(record.topic(), record.partition())))
+						error(errors, name + " received a record of partition " + record.partition());
+					if (record.key() != null && record.key().startsWith(run + "-")
+							&& received.put(record.key(), name) != null)
+						error(errors, "Record " + record.key() + " received twice");
+				}
+				consumer.commitSync();
+			}
+		} catch (Exception e) {
+			error(errors, name + " failed: " + e);
+		}
+	}
+
+	private static void error(List<String> errors, String error) {
+		synchronized (errors) {
+			errors.add(error);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.consumer.KafkaConsumer;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+
+/**
+ * Consumes two topics with one consumer and checks that every poll honours max.poll.records across both topics.
+ */
+public class OkafkaMultiTopicConsumer {
+
+	static final String[] TOPICS = { "TEQ_MT1", "TEQ_MT2" };
+	static final int MSG_CNT = 500;
+	static final int MAX_POLL_RECORDS = 100;
+
+	@Test
+	public void MultiTopicConsumerTest() {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPICS[0], 5, (short) 1), new NewTopic(TOPICS[1], 5, (short) 1)))
+					.all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException)) {
+				System.out.println("Exception while creating topics " + e);
+				e.printStackTrace();
+				return;
+			}
+		} catch (Exception e) {
+			System.out.println("Exception while creating topics " + e);
+			e.printStackTrace();
+			return;
+		}
+
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			for (int i = 0; i < MSG_CNT; i++) {
+				for (String topic : TOPICS)
+					producer.send(new ProducerRecord<String, String>(topic, i + "", "Test message # " + i));
+			}
+		}
+
+		prop = OkafkaSetup.setup();
+		prop.put("group.id", "S_MT");
+		prop.put("max.poll.records", MAX_POLL_RECORDS);
+		prop.put("auto.offset.reset", "earliest");
+		prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		Consumer<String, String> consumer = new KafkaConsumer<String, String>(prop);
+		consumer.subscribe(Arrays.asList(TOPICS));
+		Map<String, Integer> msgCntByTopic = new HashMap<>();
+		int msgCnt = 0;
+		int emptyPolls = 0;
+		try {
+			while (msgCnt < MSG_CNT * TOPICS.length && emptyPolls < 10) {
+				ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(10000));
+				assertTrue("Poll returned " + records.count() + " records", records.count() <= MAX_POLL_RECORDS);
+				if (records.count() == 0) {
+					emptyPolls++;
+					continue;
+				}
+				for (ConsumerRecord<String, String> record : records)
+					msgCntByTopic.merge(record.topic(), 1, Integer::sum);
+				msgCnt += records.count();
+				consumer.commitSync();
+			}
+			System.out.println("Received messages per topic " + msgCntByTopic);
+			for (String topic : TOPICS)
+				assertTrue("No records received from " + topic, msgCntByTopic.getOrDefault(topic, 0) > 0);
+		} finally {
+			consumer.close();
+		}
+	}
+}
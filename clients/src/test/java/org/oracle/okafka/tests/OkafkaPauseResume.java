@@ -0,0 +1,204 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.apache.kafka.common.errors.WakeupException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.consumer.KafkaConsumer;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+
+/**
+ * Pauses every assigned partition, checks that poll returns no records and that wakeup ends a poll waiting for them,
+ * then resumes them and consumes the remaining records. Also pauses one partition of a topic, checks that records of
+ * the other partition keep being returned, and that records of the paused one are returned once it is resumed.
+ */
+public class OkafkaPauseResume {
+
+	static final String TOPIC = "TEQ_PAUSE";
+	static final int MSG_CNT = 200;
+	static final int PARTITION_MSG_CNT = 100;
+
+	@Test
+	public void PauseResumeTest() throws InterruptedException {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPIC, 5, (short) 1))).all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException)) {
+				System.out.println("Exception while creating topic " + e);
+				e.printStackTrace();
+				return;
+			}
+		} catch (Exception e) {
+			System.out.println("Exception while creating topic " + e);
+			e.printStackTrace();
+			return;
+		}
+
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			for (int i = 0; i < MSG_CNT; i++)
+				producer.send(new ProducerRecord<String, String>(TOPIC, i + "", "Test message # " + i));
+		}
+
+		prop = OkafkaSetup.setup();
+		prop.put("group.id", "S_PAUSE");
+		prop.put("max.poll.records", 10);
+		prop.put("auto.offset.reset", "earliest");
+		prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		Consumer<String, String> consumer = new KafkaConsumer<String, String>(prop);
+		consumer.subscribe(Arrays.asList(TOPIC));
+		try {
+			int msgCnt = 0;
+			for (int i = 0; i < 10 && consumer.assignment().isEmpty(); i++) {
+				msgCnt += consumer.poll(Duration.ofMillis(5000)).count();
+			}
+			consumer.commitSync();
+			Set<TopicPartition> assigned = consumer.assignment();
+			assertTrue("No partition assigned", !assigned.isEmpty());
+
+			consumer.pause(assigned);
+			assertEquals(assigned, consumer.paused());
+			ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(2000));
+			assertEquals("Poll returned records of paused partitions", 0, records.count());
+
+			Thread waker = new Thread(() -> {
+				try {
+					Thread.sleep(500);
+				} catch (InterruptedException e) {
+					return;
+				}
+				consumer.wakeup();
+			});
+			long pollStart = System.currentTimeMillis();
+			waker.start();
+			try {
+				consumer.poll(Duration.ofMillis(30000));
+				fail("Poll of paused partitions not woken up");
+			} catch (WakeupException e) {
+				assertTrue("Wakeup took " + (System.currentTimeMillis() - pollStart) + " ms",
+						System.currentTimeMillis() - pollStart < 10000);
+			}
+			waker.join();
+
+			consumer.resume(assigned);
+			assertTrue("Partitions still paused after resume", consumer.paused().isEmpty());
+			int emptyPolls = 0;
+			while (msgCnt < MSG_CNT && emptyPolls < 5) {
+				records = consumer.poll(Duration.ofMillis(5000));
+				if (records.count() == 0) {
+					emptyPolls++;
+					continue;
+				}
+				msgCnt += records.count();
+				consumer.commitSync();
+			}
+			System.out.println("Received messages " + msgCnt);
+			assertTrue("No records received after resume", msgCnt > 0);
+		} finally {
+			consumer.close();
+		}
+	}
+
+	@Test
+	public void PausePartitionTest() throws Exception {
+		pausePartition("S_PAUSE_PARTITION", false);
+	}
+
+	@Test
+	public void LightWeightPausePartitionTest() throws Exception {
+		pausePartition("S_PAUSE_PARTITION_LW", true);
+	}
+
+	private static void pausePartition(String group, boolean lightWeight) throws Exception {
+		// A new topic, so that every record received is one produced here
+		String topic = "TEQ_PAUSE_PARTITION_" + System.currentTimeMillis();
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(topic, 2, (short) 1))).all().get();
+			try {
+				consumePausedPartition(topic, group, lightWeight);
+			} finally {
+				admin.deleteTopics(Arrays.asList(topic)).all().get();
+			}
+		}
+	}
+
+	private static void consumePausedPartition(String topic, String group, boolean lightWeight) throws Exception {
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			for (int i = 0; i < PARTITION_MSG_CNT; i++) {
+				producer.send(new ProducerRecord<String, String>(topic, 0, i + "", "Paused partition message # " + i));
+				producer.send(new ProducerRecord<String, String>(topic, 1, i + "", "Unpaused partition message # " + i));
+			}
+		}
+
+		prop = OkafkaSetup.setup();
+		prop.put("group.id", group);
+		prop.put("oracle.consumer.lightweight", String.valueOf(lightWeight));
+		prop.put("max.poll.records", 10);
+		prop.put("auto.offset.reset", "earliest");
+		prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		try (Consumer<String, String> consumer = new KafkaConsumer<String, String>(prop)) {
+			consumer.subscribe(Arrays.asList(topic));
+			int[] received = new int[2];
+			for (int i = 0; i < 10 && consumer.assignment().size() < 2; i++)
+				count(consumer.poll(Duration.ofMillis(5000)), received);
+			assertEquals("Partitions assigned", 2, consumer.assignment().size());
+
+			TopicPartition paused = new TopicPartition(topic, 0);
+			consumer.pause(Collections.singleton(paused));
+			int pausedReceived = received[0];
+			int emptyPolls = 0;
+			while (received[1] < PARTITION_MSG_CNT && emptyPolls < 5) {
+				ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(5000));
+				if (records.count() == 0)
+					emptyPolls++;
+				count(records, received);
+				assertEquals("Poll returned records of the paused partition", pausedReceived, received[0]);
+				consumer.commitSync();
+			}
+			assertEquals("Records of the unpaused partition received while the other one is paused", PARTITION_MSG_CNT,
+					received[1]);
+
+			consumer.resume(Collections.singleton(paused));
+			emptyPolls = 0;
+			while (received[0] < PARTITION_MSG_CNT && emptyPolls < 5) {
+				ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(5000));
+				if (records.count() == 0)
+					emptyPolls++;
+				count(records, received);
+				consumer.commitSync();
+			}
+			assertEquals("Records of the paused partition received after resume", PARTITION_MSG_CNT, received[0]);
+		}
+	}
+
+	private static void count(ConsumerRecords<String, String> records, int[] received) {
+		for (ConsumerRecord<String, String> record : records)
+			received[record.partition()]++;
+	}
+}
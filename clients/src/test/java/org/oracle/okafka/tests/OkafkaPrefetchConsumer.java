@@ -0,0 +1,90 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.consumer.ConsumerConfig;
+import org.oracle.okafka.clients.consumer.KafkaConsumer;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+
+/**
+ * Consumes a topic with oracle.consumer.prefetch enabled, committing after every poll, and checks that every
+ * produced message is received.
+ */
+public class OkafkaPrefetchConsumer {
+
+	static final String TOPIC = "TEQ_PREFETCH";
+	static final int MSG_CNT = 1000;
+	static final int MAX_POLL_RECORDS = 100;
+
+	@Test
+	public void PrefetchConsumerTest() {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPIC, 5, (short) 1))).all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException)) {
+				System.out.println("Exception while creating topic " + e);
+				e.printStackTrace();
+				return;
+			}
+		} catch (Exception e) {
+			System.out.println("Exception while creating topic " + e);
+			e.printStackTrace();
+			return;
+		}
+
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			for (int i = 0; i < MSG_CNT; i++)
+				producer.send(new ProducerRecord<String, String>(TOPIC, i + "", "Test message # " + i));
+		}
+
+		prop = OkafkaSetup.setup();
+		prop.put("group.id", "S_PREFETCH");
+		prop.put("max.poll.records", MAX_POLL_RECORDS);
+		prop.put("auto.offset.reset", "earliest");
+		prop.put("enable.auto.commit", "false");
+		prop.put(ConsumerConfig.ORACLE_CONSUMER_PREFETCH, true);
+		prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		Consumer<String, String> consumer = new KafkaConsumer<String, String>(prop);
+		consumer.subscribe(Arrays.asList(TOPIC));
+		Set<String> keys = new HashSet<>();
+		int emptyPolls = 0;
+		try {
+			while (keys.size() < MSG_CNT && emptyPolls < 10) {
+				ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(10000));
+				assertTrue("Poll returned " + records.count() + " records", records.count() <= MAX_POLL_RECORDS);
+				if (records.count() == 0) {
+					emptyPolls++;
+					continue;
+				}
+				for (ConsumerRecord<String, String> record : records)
+					keys.add(record.key());
+				consumer.commitSync();
+			}
+			System.out.println("Received " + keys.size() + " distinct messages with prefetch");
+			assertTrue("Received " + keys.size() + " of " + MSG_CNT + " messages", keys.size() == MSG_CNT);
+		} finally {
+			consumer.close();
+		}
+	}
+}
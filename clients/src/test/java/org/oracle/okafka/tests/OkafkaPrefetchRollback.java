@@ -0,0 +1,107 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.consumer.ConsumerConfig;
+import org.oracle.okafka.clients.consumer.KafkaConsumer;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+
+/**
+ * Consumes a single partition with oracle.consumer.prefetch enabled. After every poll, waits for the next records to
+ * be prefetched, then either commits or seeks to the first record not returned yet. Checks that records prefetched
+ * when the commit or seek discards them are received again, so that every record is received once and in order.
+ */
+public class OkafkaPrefetchRollback {
+
+	static final int MSG_CNT = 200;
+	static final int MAX_POLL_RECORDS = 20;
+	static final long PREFETCH_WAIT_MS = 2000;
+
+	@Test
+	public void PrefetchRollbackTest() throws Exception {
+		// A new topic, so that the first record received is the first one produced
+		String topic = "TEQ_PREFETCH_" + System.currentTimeMillis();
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(topic, 1, (short) 1))).all().get();
+			try {
+				consumeWithDiscards(topic);
+			} finally {
+				admin.deleteTopics(Arrays.asList(topic)).all().get();
+			}
+		}
+	}
+
+	private static void consumeWithDiscards(String topic) throws Exception {
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		List<Long> offsets = new ArrayList<>();
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			List<Future<RecordMetadata>> futures = new ArrayList<>();
+			for (int i = 0; i < MSG_CNT; i++)
+				futures.add(producer.send(new ProducerRecord<String, String>(topic, 0, i + "", "Prefetch message # " + i)));
+			for (Future<RecordMetadata> future : futures)
+				offsets.add(future.get().offset());
+		}
+
+		prop = OkafkaSetup.setup();
+		prop.put("group.id", "S_PREFETCH_ROLLBACK");
+		prop.put("max.poll.records", MAX_POLL_RECORDS);
+		prop.put("auto.offset.reset", "earliest");
+		prop.put("enable.auto.commit", "false");
+		prop.put(ConsumerConfig.ORACLE_CONSUMER_PREFETCH, true);
+		prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+		TopicPartition tp = new TopicPartition(topic, 0);
+		try (Consumer<String, String> consumer = new KafkaConsumer<String, String>(prop)) {
+			consumer.subscribe(Arrays.asList(topic));
+			// Index of the next record expected
+			int next = 0;
+			int polls = 0;
+			int emptyPolls = 0;
+			while (next < MSG_CNT && emptyPolls < 10) {
+				ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(5000));
+				assertTrue("Poll returned " + records.count() + " records", records.count() <= MAX_POLL_RECORDS);
+				if (records.count() == 0) {
+					emptyPolls++;
+					continue;
+				}
+				for (ConsumerRecord<String, String> record : records) {
+					assertTrue("Record " + record.key() + " received after the last one", next < MSG_CNT);
+					assertEquals("Record received after record " + (next - 1), next + "", record.key());
+					assertEquals("Offset of record " + next, (long) offsets.get(next), record.offset());
+					next++;
+				}
+				if (next == MSG_CNT)
+					break;
+
+				// Let the next records be prefetched before they are discarded
+				Thread.sleep(PREFETCH_WAIT_MS);
+				if (polls++ % 2 == 0)
+					consumer.commitSync();
+				else
+					consumer.seek(tp, offsets.get(next));
+			}
+			assertEquals("Records received", MSG_CNT, next);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package org.oracle.okafka.tests;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+import org.oracle.okafka.clients.producer.ProducerConfig;
+
+/**
+ * Compares produce throughput of a single session per instance against pipelined produce
+ * with and without partition affinity, on a topic with 32 partitions.
+ */
+public class ProducerSessionsBenchmark {
+
+	static final String TOPIC = "TEQ_BENCH32";
+	static final int PARTITIONS = 32;
+	static final int MSG_CNT = 100000;
+
+	@Test
+	public void ProducerSessionsTest() {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPIC, PARTITIONS, (short) 1))).all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException)) {
+				System.out.println("Exception while creating topic " + e);
+				e.printStackTrace();
+				return;
+			}
+		} catch (Exception e) {
+			System.out.println("Exception while creating topic " + e);
+			e.printStackTrace();
+			return;
+		}
+
+		runProducer("single session", 1, false);
+		runProducer("4 sessions", 4, false);
+		runProducer("4 sessions, partition affinity", 4, true);
+	}
+
+	private void runProducer(String label, int sessions, boolean affinity) {
+		try {
+			Properties prop = OkafkaSetup.setup();
+			prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+			prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+			prop.put(ProducerConfig.ORACLE_PRODUCER_SESSIONS_PER_INSTANCE, sessions);
+			prop.put(ProducerConfig.ORACLE_PRODUCER_PARTITION_AFFINITY, affinity);
+			prop.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 1);
+			Producer<String, String> producer = new KafkaProducer<String, String>(prop);
+			Future<RecordMetadata> lastFuture = null;
+			long start = System.currentTimeMillis();
+			for (int i = 0; i < MSG_CNT; i++) {
+				ProducerRecord<String, String> producerRecord = new ProducerRecord<String, String>(TOPIC,
+						i % PARTITIONS, i + "", "Test message # " + i);
+				lastFuture = producer.send(producerRecord);
+			}
+			producer.flush();
+			lastFuture.get();
+			long elapsed = Math.max(1, System.currentTimeMillis() - start);
+			System.out.println(label + ": produced " + MSG_CNT + " messages in " + elapsed + " ms ("
+					+ (MSG_CNT * 1000L / elapsed) + " msgs/sec)");
+			producer.close();
+		} catch (Exception e) {
+			System.out.println("Exception in " + label + " run " + e);
+			e.printStackTrace();
+		}
+	}
+}
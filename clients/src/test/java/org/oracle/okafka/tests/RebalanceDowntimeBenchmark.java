@@ -0,0 +1,192 @@
+package org.oracle.okafka.tests;
+
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.kafka.clients.admin.Admin;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TopicExistsException;
+import org.junit.Test;
+import org.oracle.okafka.clients.admin.AdminClient;
+import org.oracle.okafka.clients.consumer.ConsumerConfig;
+import org.oracle.okafka.clients.consumer.KafkaConsumer;
+import org.oracle.okafka.clients.consumer.TxEQAssignor;
+import org.oracle.okafka.clients.consumer.TxEQCooperativeStickyAssignor;
+import org.oracle.okafka.clients.producer.KafkaProducer;
+
+/**
+ * Measures how long a consumer group stops consuming when one consumer joins, for growing group sizes, with eager
+ * (TxEQAssignor) and cooperative (TxEQCooperativeStickyAssignor) rebalancing. Also reports how many partitions are revoked.
+ */
+public class RebalanceDowntimeBenchmark {
+
+	static final String TOPIC = "TEQ_REBAL";
+	static final int PARTITIONS = 16;
+	static final int MSG_CNT = 1600;
+	static final int[] GROUP_SIZES = { 2, 4, 8 };
+	static final long WAIT_MS = 120000;
+
+	@Test
+	public void RebalanceDowntimeTest() {
+		try (Admin admin = AdminClient.create(OkafkaSetup.setup())) {
+			admin.createTopics(Arrays.asList(new NewTopic(TOPIC, PARTITIONS, (short) 1))).all().get();
+		} catch (ExecutionException e) {
+			if (!(e.getCause() instanceof TopicExistsException)) {
+				System.out.println("Exception while creating topic " + e);
+				e.printStackTrace();
+				return;
+			}
+		} catch (Exception e) {
+			System.out.println("Exception while creating topic " + e);
+			e.printStackTrace();
+			return;
+		}
+
+		// Partitions of a TxEventQ topic are created on first publish
+		Properties prop = OkafkaSetup.setup();
+		prop.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		prop.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+		try (Producer<String, String> producer = new KafkaProducer<String, String>(prop)) {
+			for (int i = 0; i < MSG_CNT; i++)
+				producer.send(new ProducerRecord<String, String>(TOPIC, i % PARTITIONS, i + "", "Test message # " + i));
+		}
+
+		for (int size : GROUP_SIZES) {
+			runGroup(TxEQAssignor.class, size);
+			runGroup(TxEQCooperativeStickyAssignor.class, size);
+		}
+	}
+
+	private void runGroup(Class<?> assignor, int size) {
+		String groupId = "S_REBAL_" + (assignor == TxEQAssignor.class ? "E" : "C") + size;
+		List<GroupMember> members = new ArrayList<>();
+		try {
+			for (int i = 0; i < size; i++)
+				members.add(new GroupMember(groupId, assignor));
+			if (!awaitAssigned(members, 0)) {
+				System.out.println(assignor.getSimpleName() + ", " + size + " consumers: group did not stabilize");
+				return;
+			}
+
+			for (GroupMember member : members)
+				member.revoked.clear();
+			long joinStart = System.currentTimeMillis();
+			GroupMember joining = new GroupMember(groupId, assignor);
+			members.add(joining);
+			if (!awaitAssigned(members, joinStart)) {
+				System.out.println(assignor.getSimpleName() + ", " + size + " consumers: rebalance did not complete");
+				return;
+			}
+
+			long downtime = 0;
+			int revokedCnt = 0;
+			for (GroupMember member : members) {
+				downtime = Math.max(downtime, member.lastAssignedMs - joinStart);
+				revokedCnt += member.revoked.size();
+				if (assignor == TxEQCooperativeStickyAssignor.class) {
+					Set<TopicPartition> stillOwned = new HashSet<>(member.revoked);
+					stillOwned.retainAll(member.assignment);
+					assertTrue("Cooperative rebalance revoked retained partitions " + stillOwned, stillOwned.isEmpty());
+				}
+			}
+			System.out.println(assignor.getSimpleName() + ", " + size + " consumers + 1 joining: rebalance took "
+					+ downtime + " ms, " + revokedCnt + " partitions revoked");
+		} finally {
+			for (GroupMember member : members)
+				member.close();
+		}
+	}
+
+	private boolean awaitAssigned(List<GroupMember> members, long sinceMs) {
+		long deadline = System.currentTimeMillis() + WAIT_MS;
+		while (System.currentTimeMillis() < deadline) {
+			boolean done = true;
+			for (GroupMember member : members) {
+				if (member.lastAssignedMs < sinceMs || member.assignment.isEmpty())
+					done = false;
+			}
+			if (done)
+				return true;
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private static class GroupMember implements Runnable, ConsumerRebalanceListener {
+		private final Consumer<String, String> consumer;
+		private final Thread thread;
+		private volatile boolean closed = false;
+		private volatile long lastAssignedMs = -1;
+		private volatile Set<TopicPartition> assignment = new HashSet<>();
+		private final Set<TopicPartition> revoked = Collections.synchronizedSet(new HashSet<>());
+
+		GroupMember(String groupId, Class<?> assignor) {
+			Properties prop = OkafkaSetup.setup();
+			prop.put("group.id", groupId);
+			prop.put("auto.offset.reset", "earliest");
+			prop.put("enable.auto.commit", "false");
+			prop.put(ConsumerConfig.PARTITION_ASSIGNMENT_STRATEGY_CONFIG, assignor.getName());
+			prop.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+			prop.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+			consumer = new KafkaConsumer<String, String>(prop);
+			consumer.subscribe(Arrays.asList(TOPIC), this);
+			thread = new Thread(this);
+			thread.start();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!closed) {
+					// Records are not committed, so that every run of the benchmark consumes the same records
+					consumer.poll(Duration.ofMillis(1000));
+					assignment = new HashSet<>(consumer.assignment());
+				}
+			} catch (Exception e) {
+				System.out.println("Exception in consumer " + e);
+				e.printStackTrace();
+			} finally {
+				consumer.close();
+			}
+		}
+
+		@Override
+		public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+			revoked.addAll(partitions);
+		}
+
+		@Override
+		public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+			assignment = new HashSet<>(consumer.assignment());
+			lastAssignedMs = System.currentTimeMillis();
+		}
+
+		void close() {
+			closed = true;
+			try {
+				thread.join(WAIT_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
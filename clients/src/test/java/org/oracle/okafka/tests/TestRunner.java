@@ -12,10 +12,12 @@ class TestRunner {
 		result = JUnitCore.runClasses(SimpleOkafkaAdmin.class, SimpleOkafkaProducer.class, OkafkaListOffsets.class,
 				OkafkaAutoOffsetReset.class, OkafkaFetchCommittedOffset.class, ListConsumerGroups.class,
 				ListConsumerGroupOffsets.class, SimpleOkafkaProducer.class, OkafkaSeekToEnd.class,
-				OkafkaSeekToBeginning.class, SimpleOkafkaProducer.class, OkafkaUnsubscribe.class,
-				ProducerMetricsTest.class, ConsumerMetricsTest.class, DeleteConsumerGroups.class,
-				OkafkaCreatePartitions.class, OkafkaDescribeTopics.class, OkafkaListTopics.class,
-				OkafkaDescribeTopicsById.class, OkafkaDeleteTopic.class, OkafkaDeleteTopicById.class);
+				OkafkaSeekToBeginning.class, OkafkaConsumerOffsets.class, SimpleOkafkaProducer.class, OkafkaUnsubscribe.class,
+				ProducerMetricsTest.class, ConsumerMetricsTest.class, OkafkaMultiTopicConsumer.class,
+				OkafkaPrefetchConsumer.class, OkafkaPauseResume.class, OkafkaInstanceSessions.class, DeleteConsumerGroups.class, OkafkaCreatePartitions.class, OkafkaDescribeTopics.class, OkafkaListTopics.class,
+				OkafkaDescribeTopicsById.class, OkafkaDeleteTopic.class, OkafkaDeleteTopicById.class, OkafkaAdaptiveBatching.class, OkafkaBatchEnvelope.class,
+				OkafkaManualAssignment.class, OkafkaConnectionPool.class, OkafkaConsumerLag.class, OkafkaCommitAsync.class,
+				OkafkaPrefetchRollback.class);
 
 		for (Failure failure : result.getFailures()) {
 			System.out.println("Test failure : " + failure.toString());